@@ -0,0 +1,91 @@
+package org.deeplearning4j.benchmarks;
+
+import org.deeplearning4j.datasets.iterator.AsyncDataSetIterator;
+import org.deeplearning4j.datasets.iterator.ExistingDataSetIterator;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of AsyncDataSetIterator, compared to iterating over the underlying iterator directly (async = false).
+ * The underlying iterator creates each DataSet on demand (simulating data loading/ETL), and the consumer does a
+ * small amount of work on each DataSet; with prefetching, the two should overlap.
+ * The score is the time to consume one epoch of {@link #numBatches} minibatches
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class AsyncDataSetIteratorBenchmark {
+
+    @Param({"32", "128"})
+    public int minibatch;
+
+    @Param({"256", "1024"})
+    public int width;
+
+    @Param({"c", "f"})
+    public String order;
+
+    @Param({"2", "8"})
+    public int queueSize;
+
+    @Param({"true", "false"})
+    public boolean async;
+
+    @Param({"50"})
+    public int numBatches;
+
+    @Setup
+    public void setup() {
+        Nd4j.getRandom().setSeed(BenchmarkData.SEED);
+    }
+
+    @Benchmark
+    public double epoch() {
+        DataSetIterator iter = new ExistingDataSetIterator(new Iterator<DataSet>() {
+            private int count = 0;
+
+            @Override
+            public boolean hasNext() {
+                return count < numBatches;
+            }
+
+            @Override
+            public DataSet next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                count++;
+                return BenchmarkData.dataSet(order.charAt(0), 10, minibatch, width);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        });
+
+        AsyncDataSetIterator asyncIter = null;
+        if (async) {
+            asyncIter = new AsyncDataSetIterator(iter, queueSize);
+            iter = asyncIter;
+        }
+
+        double sum = 0.0;
+        try {
+            while (iter.hasNext()) {
+                DataSet ds = iter.next();
+                sum += ds.getFeatureMatrix().mmul(ds.getFeatureMatrix().transpose()).sumNumber().doubleValue();
+            }
+        } finally {
+            if (asyncIter != null) asyncIter.shutdown();
+        }
+        return sum;
+    }
+}
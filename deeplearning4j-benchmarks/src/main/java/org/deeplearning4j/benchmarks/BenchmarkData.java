@@ -0,0 +1,53 @@
+package org.deeplearning4j.benchmarks;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+
+/**
+ * Random data for the benchmarks. All arrays are created in the requested order ('c' or 'f'), so that the effect of
+ * the memory layout of the input data on the hot paths can be measured
+ */
+public class BenchmarkData {
+
+    public static final long SEED = 12345;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @return Uniform random array in [0,1) with the specified order and shape
+     */
+    public static INDArray features(char order, int... shape) {
+        return Nd4j.rand(order, shape);
+    }
+
+    /**
+     * @return One-hot labels with shape [minibatch, nOut] (or [minibatch, nOut, timeSeriesLength] if timeSeriesLength > 0)
+     */
+    public static INDArray labels(char order, int minibatch, int nOut, int timeSeriesLength) {
+        if (timeSeriesLength <= 0) {
+            INDArray labels = Nd4j.create(new int[]{minibatch, nOut}, order);
+            for (int i = 0; i < minibatch; i++) {
+                labels.putScalar(i, i % nOut, 1.0);
+            }
+            return labels;
+        }
+
+        INDArray labels = Nd4j.create(new int[]{minibatch, nOut, timeSeriesLength}, order);
+        for (int i = 0; i < minibatch; i++) {
+            for (int j = 0; j < timeSeriesLength; j++) {
+                labels.putScalar(new int[]{i, (i + j) % nOut, j}, 1.0);
+            }
+        }
+        return labels;
+    }
+
+    /**
+     * @return DataSet with random features of the specified shape, and one-hot labels
+     */
+    public static DataSet dataSet(char order, int nOut, int... featureShape) {
+        int timeSeriesLength = (featureShape.length == 3 ? featureShape[2] : 0);
+        return new DataSet(features(order, featureShape), labels(order, featureShape[0], nOut, timeSeriesLength));
+    }
+}
@@ -0,0 +1,42 @@
+package org.deeplearning4j.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point for the DL4J benchmarks. Accepts the standard JMH command line options (for example, a benchmark name
+ * regex, "-p minibatch=32" to restrict a parameter, or "-f 1" for the number of forks), but unlike the default JMH
+ * main class the results are written as JSON by default, to {@link #DEFAULT_RESULT_FILE}. JSON results from two
+ * commits can then be compared directly, or loaded into a tool such as JMH Visualizer.<br>
+ * The benchmarks module is only built with the benchmarks profile: {@code mvn clean package -P benchmarks}<br>
+ * Usage: {@code java -jar deeplearning4j-benchmarks/target/benchmarks.jar [JMH options] [benchmark regex]}
+ */
+public class BenchmarkRunner {
+
+    public static final String DEFAULT_RESULT_FILE = "dl4j-benchmarks.json";
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmdOptions = new CommandLineOptions(args);
+        if (cmdOptions.shouldHelp()) {
+            cmdOptions.showHelp();
+            return;
+        }
+        if (cmdOptions.shouldList()) {
+            new Runner(cmdOptions).list();
+            return;
+        }
+
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(cmdOptions);
+        if (!cmdOptions.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        if (!cmdOptions.getResult().hasValue()) {
+            builder.result(DEFAULT_RESULT_FILE);
+        }
+
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,80 @@
+package org.deeplearning4j.benchmarks;
+
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.Updater;
+import org.deeplearning4j.nn.conf.graph.ElementWiseVertex;
+import org.deeplearning4j.nn.conf.graph.MergeVertex;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ComputationGraph fit and output, for a graph with two parallel branches (one with a residual connection) that
+ * are merged before the output layer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ComputationGraphBenchmark {
+
+    @Param({"32", "128"})
+    public int minibatch;
+
+    @Param({"128", "512"})
+    public int width;
+
+    @Param({"c", "f"})
+    public String order;
+
+    private ComputationGraph graph;
+    private DataSet data;
+
+    @Setup
+    public void setup() {
+        Nd4j.getRandom().setSeed(BenchmarkData.SEED);
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(BenchmarkData.SEED)
+                .weightInit(WeightInit.XAVIER)
+                .updater(Updater.NESTEROVS).momentum(0.9)
+                .learningRate(0.01)
+                .graphBuilder()
+                .addInputs("in")
+                .addLayer("a0", new DenseLayer.Builder().nIn(width).nOut(width).activation(Activation.RELU).build(), "in")
+                .addLayer("a1", new DenseLayer.Builder().nIn(width).nOut(width).activation(Activation.RELU).build(), "a0")
+                .addVertex("residual", new ElementWiseVertex(ElementWiseVertex.Op.Add), "a0", "a1")
+                .addLayer("b0", new DenseLayer.Builder().nIn(width).nOut(width).activation(Activation.TANH).build(), "in")
+                .addVertex("merge", new MergeVertex(), "residual", "b0")
+                .addLayer("out", new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(2 * width).nOut(10)
+                        .activation(Activation.SOFTMAX).build(), "merge")
+                .setOutputs("out")
+                .build();
+        graph = new ComputationGraph(conf);
+        graph.init();
+
+        data = BenchmarkData.dataSet(order.charAt(0), 10, minibatch, width);
+    }
+
+    @Benchmark
+    public ComputationGraph fit() {
+        graph.fit(data);
+        return graph;
+    }
+
+    @Benchmark
+    public INDArray[] output() {
+        return graph.output(false, data.getFeatureMatrix());
+    }
+}
@@ -0,0 +1,86 @@
+package org.deeplearning4j.benchmarks;
+
+import org.deeplearning4j.berkeley.Pair;
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.ConvolutionLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ConvolutionLayer forward pass (at training time) and backprop, for a 1x1 or 3x3 convolution on 32x32 inputs
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ConvolutionLayerBenchmark {
+
+    @Param({"16", "64"})
+    public int minibatch;
+
+    /** Number of input and output channels */
+    @Param({"16", "64"})
+    public int channels;
+
+    @Param({"c", "f"})
+    public String order;
+
+    @Param({"1", "3"})
+    public int kernelSize;
+
+    /** Standard im2col implementation (false) vs. CpuConvolutionHelper: direct GEMM for 1x1, Winograd for 3x3 (true) */
+    @Param({"false", "true"})
+    public boolean cpuHelper;
+
+    private Layer layer;
+    private INDArray input;
+    private INDArray epsilon;
+
+    @Setup
+    public void setup() {
+        Nd4j.getRandom().setSeed(BenchmarkData.SEED);
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(BenchmarkData.SEED)
+                .weightInit(WeightInit.RELU)
+                .list()
+                .layer(0, new ConvolutionLayer.Builder().kernelSize(kernelSize, kernelSize).stride(1, 1)
+                        .nOut(channels).cpuConvolutionHelper(cpuHelper).activation(Activation.RELU).build())
+                .layer(1, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nOut(10)
+                        .activation(Activation.SOFTMAX).build())
+                .setInputType(InputType.convolutional(32, 32, channels))
+                .build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        net.initGradientsView();
+
+        layer = net.getLayer(0);
+        input = BenchmarkData.features(order.charAt(0), minibatch, channels, 32, 32);
+        INDArray out = layer.activate(input, true);
+        epsilon = BenchmarkData.features(order.charAt(0), out.shape());
+    }
+
+    @Benchmark
+    public INDArray forward() {
+        return layer.activate(input, true);
+    }
+
+    @Benchmark
+    public Pair<Gradient, INDArray> backward() {
+        layer.setInput(input);
+        return layer.backpropGradient(epsilon);
+    }
+}
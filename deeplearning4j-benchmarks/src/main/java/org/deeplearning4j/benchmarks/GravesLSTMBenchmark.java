@@ -0,0 +1,87 @@
+package org.deeplearning4j.benchmarks;
+
+import org.deeplearning4j.berkeley.Pair;
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.GravesLSTM;
+import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
+import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GravesLSTM forward pass (at training time), backprop, and single step inference via rnnTimeStep
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class GravesLSTMBenchmark {
+
+    @Param({"16", "64"})
+    public int minibatch;
+
+    /** Layer size (and number of inputs) */
+    @Param({"64", "256"})
+    public int width;
+
+    @Param({"50"})
+    public int timeSeriesLength;
+
+    @Param({"c", "f"})
+    public String order;
+
+    private MultiLayerNetwork net;
+    private Layer layer;
+    private INDArray input;
+    private INDArray epsilon;
+    private INDArray stepInput;
+
+    @Setup
+    public void setup() {
+        Nd4j.getRandom().setSeed(BenchmarkData.SEED);
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(BenchmarkData.SEED)
+                .weightInit(WeightInit.XAVIER)
+                .list()
+                .layer(0, new GravesLSTM.Builder().nIn(width).nOut(width).activation(Activation.TANH).build())
+                .layer(1, new RnnOutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(width).nOut(10)
+                        .activation(Activation.SOFTMAX).build())
+                .build();
+        net = new MultiLayerNetwork(conf);
+        net.init();
+        net.initGradientsView();
+
+        layer = net.getLayer(0);
+        char c = order.charAt(0);
+        input = BenchmarkData.features(c, minibatch, width, timeSeriesLength);
+        epsilon = BenchmarkData.features(c, minibatch, width, timeSeriesLength);
+        stepInput = BenchmarkData.features(c, minibatch, width);
+    }
+
+    @Benchmark
+    public INDArray forward() {
+        return layer.activate(input, true);
+    }
+
+    @Benchmark
+    public Pair<Gradient, INDArray> backward() {
+        layer.setInput(input);
+        return layer.backpropGradient(epsilon);
+    }
+
+    @Benchmark
+    public INDArray rnnTimeStep() {
+        return net.rnnTimeStep(stepInput);
+    }
+}
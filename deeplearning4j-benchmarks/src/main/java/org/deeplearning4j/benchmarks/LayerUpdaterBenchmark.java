@@ -0,0 +1,80 @@
+package org.deeplearning4j.benchmarks;
+
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.api.Updater;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.gradient.DefaultGradient;
+import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.nn.params.DefaultParamInitializer;
+import org.deeplearning4j.nn.updater.UpdaterCreator;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each updater type applied via LayerUpdater, for a dense layer with [width, width] weights.
+ * As the updater modifies the gradient in-place, each invocation first restores the raw gradient (a single assign op)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LayerUpdaterBenchmark {
+
+    @Param({"SGD", "NESTEROVS", "ADAGRAD", "RMSPROP", "ADADELTA", "ADAM"})
+    public org.deeplearning4j.nn.conf.Updater updaterType;
+
+    @Param({"256", "1024"})
+    public int width;
+
+    @Param({"32"})
+    public int minibatch;
+
+    private Layer layer;
+    private Updater updater;
+    private Gradient gradient;
+    private INDArray gradientView;
+    private INDArray rawGradient;
+    private int iteration;
+
+    @Setup
+    public void setup() {
+        Nd4j.getRandom().setSeed(BenchmarkData.SEED);
+        NeuralNetConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(BenchmarkData.SEED)
+                .learningRate(0.01)
+                .momentum(0.9)
+                .layer(new DenseLayer.Builder().nIn(width).nOut(width).updater(updaterType).build())
+                .build();
+
+        int numParams = conf.getLayer().initializer().numParams(conf);
+        INDArray params = Nd4j.create(1, numParams);
+        layer = conf.getLayer().instantiate(conf, null, 0, params, true);
+        updater = UpdaterCreator.getUpdater(layer);
+        int updaterStateSize = updater.stateSizeForLayer(layer);
+        if (updaterStateSize > 0) {
+            updater.setStateViewArray(layer, Nd4j.create(1, updaterStateSize), true);
+        }
+
+        //Gradients as views of a single array, as per MultiLayerNetwork
+        gradientView = Nd4j.create(1, numParams);
+        Map<String, INDArray> views = conf.getLayer().initializer().getGradientsFromFlattened(conf, gradientView);
+        gradient = new DefaultGradient(gradientView);
+        gradient.setGradientFor(DefaultParamInitializer.WEIGHT_KEY, views.get(DefaultParamInitializer.WEIGHT_KEY));
+        gradient.setGradientFor(DefaultParamInitializer.BIAS_KEY, views.get(DefaultParamInitializer.BIAS_KEY));
+        rawGradient = Nd4j.rand(1, numParams).subi(0.5);
+    }
+
+    @Benchmark
+    public Gradient update() {
+        gradientView.assign(rawGradient);
+        updater.update(layer, gradient, iteration++, minibatch);
+        return gradient;
+    }
+}
@@ -0,0 +1,73 @@
+package org.deeplearning4j.benchmarks;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.Updater;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.deeplearning4j.util.ModelSerializer;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ModelSerializer write and restore (in memory, to exclude disk I/O), with and without the updater state
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ModelSerializerBenchmark {
+
+    @Param({"256", "1024"})
+    public int width;
+
+    @Param({"true", "false"})
+    public boolean saveUpdater;
+
+    private MultiLayerNetwork net;
+    private byte[] serialized;
+
+    @Setup
+    public void setup() throws IOException {
+        Nd4j.getRandom().setSeed(BenchmarkData.SEED);
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(BenchmarkData.SEED)
+                .weightInit(WeightInit.XAVIER)
+                .updater(Updater.ADAM)
+                .list()
+                .layer(0, new DenseLayer.Builder().nIn(width).nOut(width).activation(Activation.RELU).build())
+                .layer(1, new DenseLayer.Builder().nIn(width).nOut(width).activation(Activation.RELU).build())
+                .layer(2, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(width).nOut(10)
+                        .activation(Activation.SOFTMAX).build())
+                .build();
+        net = new MultiLayerNetwork(conf);
+        net.init();
+        //Fit once, so that the updater state exists
+        net.fit(BenchmarkData.dataSet('c', 10, 32, width));
+
+        serialized = write();
+    }
+
+    @Benchmark
+    public byte[] write() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ModelSerializer.writeModel(net, baos, saveUpdater);
+        return baos.toByteArray();
+    }
+
+    @Benchmark
+    public MultiLayerNetwork restore() throws IOException {
+        return ModelSerializer.restoreMultiLayerNetwork(new ByteArrayInputStream(serialized), saveUpdater);
+    }
+}
@@ -0,0 +1,89 @@
+package org.deeplearning4j.benchmarks;
+
+import org.deeplearning4j.berkeley.Pair;
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.BatchNormalization;
+import org.deeplearning4j.nn.conf.layers.LocalResponseNormalization;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BatchNormalization and LocalResponseNormalization forward pass (at training time) and backprop on 32x32 CNN
+ * activations, with the standard implementation vs. the CPU normalization helpers
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class NormalizationLayerBenchmark {
+
+    @Param({"16", "64"})
+    public int minibatch;
+
+    @Param({"16", "64"})
+    public int channels;
+
+    @Param({"c", "f"})
+    public String order;
+
+    @Param({"BatchNormalization", "LocalResponseNormalization"})
+    public String layerType;
+
+    @Param({"false", "true"})
+    public boolean cpuHelper;
+
+    private Layer layer;
+    private INDArray input;
+    private INDArray epsilon;
+
+    @Setup
+    public void setup() {
+        Nd4j.getRandom().setSeed(BenchmarkData.SEED);
+        org.deeplearning4j.nn.conf.layers.Layer layerConf;
+        if ("BatchNormalization".equals(layerType)) {
+            layerConf = new BatchNormalization.Builder().cpuNormalizationHelper(cpuHelper).build();
+        } else {
+            layerConf = new LocalResponseNormalization.Builder().cpuNormalizationHelper(cpuHelper).build();
+        }
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(BenchmarkData.SEED)
+                .list()
+                .layer(0, layerConf)
+                .layer(1, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nOut(10)
+                        .activation(Activation.SOFTMAX).build())
+                .setInputType(InputType.convolutional(32, 32, channels))
+                .build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        net.initGradientsView();
+
+        layer = net.getLayer(0);
+        input = BenchmarkData.features(order.charAt(0), minibatch, channels, 32, 32);
+        INDArray out = layer.activate(input, true);
+        epsilon = BenchmarkData.features(order.charAt(0), out.shape());
+    }
+
+    @Benchmark
+    public INDArray forward() {
+        return layer.activate(input, true);
+    }
+
+    @Benchmark
+    public Pair<Gradient, INDArray> backward() {
+        layer.setInput(input);
+        return layer.backpropGradient(epsilon);
+    }
+}
@@ -0,0 +1,77 @@
+package org.deeplearning4j.benchmarks;
+
+import org.deeplearning4j.berkeley.Pair;
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.conf.layers.SubsamplingLayer;
+import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SubsamplingLayer forward pass (at training time) and backprop, for 2x2 pooling with stride 2 on 32x32 inputs
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SubsamplingLayerBenchmark {
+
+    @Param({"16", "64"})
+    public int minibatch;
+
+    @Param({"16", "64"})
+    public int channels;
+
+    @Param({"c", "f"})
+    public String order;
+
+    @Param({"MAX", "AVG"})
+    public SubsamplingLayer.PoolingType poolingType;
+
+    private Layer layer;
+    private INDArray input;
+    private INDArray epsilon;
+
+    @Setup
+    public void setup() {
+        Nd4j.getRandom().setSeed(BenchmarkData.SEED);
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(BenchmarkData.SEED)
+                .list()
+                .layer(0, new SubsamplingLayer.Builder(poolingType).kernelSize(2, 2).stride(2, 2).build())
+                .layer(1, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nOut(10)
+                        .activation(Activation.SOFTMAX).build())
+                .setInputType(InputType.convolutional(32, 32, channels))
+                .build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        layer = net.getLayer(0);
+        input = BenchmarkData.features(order.charAt(0), minibatch, channels, 32, 32);
+        INDArray out = layer.activate(input, true);
+        epsilon = BenchmarkData.features(order.charAt(0), out.shape());
+    }
+
+    @Benchmark
+    public INDArray forward() {
+        return layer.activate(input, true);
+    }
+
+    @Benchmark
+    public Pair<Gradient, INDArray> backward() {
+        layer.setInput(input);
+        return layer.backpropGradient(epsilon);
+    }
+}
@@ -0,0 +1,141 @@
+package org.deeplearning4j.datasets.datavec;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded read-ahead for a (non thread safe) record source, as used by {@link RecordReaderDataSetIterator} and
+ * {@link RecordReaderMultiDataSetIterator}: a single background (daemon) thread reads elements from the source, in
+ * order, into a queue of fixed capacity, while the consumer converts the elements already read. The source is only
+ * ever accessed by the read-ahead thread, until {@link #stop()} returns.<br>
+ * Exceptions thrown by the source are rethrown (wrapped) to the consumer, in place of the element that failed.
+ *
+ * @param <T> Type of the elements (records or sequences)
+ */
+class RecordReadAhead<T> {
+
+    interface Source<T> {
+        boolean hasNext();
+
+        T next();
+    }
+
+    private static final Object END = new Object();
+
+    private static class Failure {
+        private final Throwable cause;
+
+        private Failure(Throwable cause) {
+            this.cause = cause;
+        }
+    }
+
+    private final Source<T> source;
+    private final BlockingQueue<Object> queue;
+    private final Thread thread;
+    private volatile boolean stopped = false;
+    //Next element (or END/Failure), taken from the queue by the consumer but not yet returned
+    private Object head;
+
+    /**
+     * @param name     Name of the read-ahead thread
+     * @param source   Source of the elements
+     * @param capacity Maximum number of elements read ahead of the consumer
+     */
+    RecordReadAhead(String name, Source<T> source, int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Read-ahead capacity must be positive, got " + capacity);
+        this.source = source;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                produce();
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void produce() {
+        try {
+            while (!stopped && source.hasNext()) {
+                if (!offer(source.next()))
+                    return;
+            }
+            offer(END);
+        } catch (Throwable t) {
+            offer(new Failure(t));
+        }
+    }
+
+    /**
+     * Add to the queue, waiting for space unless stopped. Not interrupted: interrupting a thread in a read can
+     * close the reader's underlying channel
+     */
+    private boolean offer(Object o) {
+        try {
+            while (!stopped) {
+                if (queue.offer(o, 100, TimeUnit.MILLISECONDS))
+                    return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private Object peek() {
+        if (head == null) {
+            try {
+                head = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for read-ahead thread", e);
+            }
+        }
+        if (head instanceof Failure) {
+            throw new RuntimeException("Error reading records (read-ahead thread)", ((Failure) head).cause);
+        }
+        return head;
+    }
+
+    /**
+     * @return True if the source has another element. Blocks until the next element has been read
+     */
+    boolean hasNext() {
+        return peek() != END;
+    }
+
+    @SuppressWarnings("unchecked")
+    T next() {
+        Object o = peek();
+        if (o == END)
+            throw new NoSuchElementException();
+        head = null;
+        return (T) o;
+    }
+
+    /**
+     * Stop the read-ahead thread, and discard any elements read ahead. Blocks until the thread no longer accesses
+     * the source (i.e., until any read in progress completes), after which the source may be used (or reset) by the
+     * caller
+     */
+    void stop() {
+        stopped = true;
+        queue.clear();
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        head = null;
+    }
+}
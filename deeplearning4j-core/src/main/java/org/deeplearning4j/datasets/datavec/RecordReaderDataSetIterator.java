@@ -27,9 +27,15 @@ import org.datavec.api.records.Record;
 import org.datavec.api.records.metadata.RecordMetaData;
 import org.datavec.api.records.reader.RecordReader;
 import org.datavec.api.records.reader.SequenceRecordReader;
+import org.datavec.api.writable.DoubleWritable;
+import org.datavec.api.writable.FloatWritable;
+import org.datavec.api.writable.IntWritable;
+import org.datavec.api.writable.LongWritable;
 import org.datavec.api.writable.Writable;
 import org.datavec.common.data.NDArrayWritable;
+import org.deeplearning4j.berkeley.Pair;
 import org.deeplearning4j.exception.DL4JInvalidInputException;
+import org.deeplearning4j.util.ParallelLoop;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.DataSet;
 import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
@@ -42,10 +48,16 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 /**
- * Record reader dataset iterator
+ * Record reader dataset iterator<br>
+ * Throughput: records are read from the RecordReader by a single thread, as RecordReaders are not thread safe. Reading
+ * can be overlapped with conversion and training using a bounded read-ahead thread ({@link #setReadAhead(int)}), and
+ * the conversion of each minibatch can be split across threads ({@link #setParallelism(int)}), but reading itself is
+ * never parallelized: if a single reader is the bottleneck, split the data across multiple readers (for example,
+ * {@link RecordReaderMultiDataSetIterator} reads its different readers in parallel).
  *
  * @author Adam Gibson
  */
@@ -66,6 +78,11 @@ public class RecordReaderDataSetIterator implements DataSetIterator {
 
     @Getter @Setter
     private boolean collectMetaData = false;
+    @Getter
+    private int parallelism = 1;
+    @Getter
+    private int readAhead = 0;
+    private RecordReadAhead<Pair<List<Writable>, RecordMetaData>> readAheadThread;
 
     public RecordReaderDataSetIterator(RecordReader recordReader, WritableConverter converter, int batchSize) {
         this(recordReader, converter, batchSize, -1,
@@ -146,6 +163,77 @@ public class RecordReaderDataSetIterator implements DataSetIterator {
     }
 
 
+    /**
+     * Set the number of threads used to convert the records of each minibatch to arrays. Records are still read
+     * from the RecordReader sequentially (RecordReaders are not thread safe), and the order of the examples in each
+     * minibatch is the same as for parallelism = 1. With parallelism > 1, any {@link WritableConverter} must be thread
+     * safe.<br>
+     * Default: 1 (conversion on the calling thread only)
+     *
+     * @param parallelism Maximum number of threads to use for conversion
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("Parallelism must be >= 1, got " + parallelism);
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Set the number of minibatches of records to read ahead, on a background thread, while the records already read
+     * are converted (and trained on). The read-ahead thread is the only thread that accesses the RecordReader (other
+     * than {@link #reset()} and {@link #loadFromMetaData(List)}, which first wait for any read in progress); it is
+     * stopped by {@link #reset()}. Set this (and {@link #setCollectMetaData(boolean)}) before iterating.<br>
+     * Default: 0 (no read-ahead: records are read on the calling thread)
+     *
+     * @param readAhead Number of minibatches to read ahead, or 0 to disable
+     */
+    public void setReadAhead(int readAhead) {
+        if (readAhead < 0)
+            throw new IllegalArgumentException("Read-ahead must be >= 0, got " + readAhead);
+        stopReadAhead();
+        this.readAhead = readAhead;
+    }
+
+    private RecordReadAhead<Pair<List<Writable>, RecordMetaData>> readAheadThread() {
+        if (readAhead > 0 && readAheadThread == null) {
+            final boolean meta = collectMetaData;
+            readAheadThread = new RecordReadAhead<>("RecordReaderDataSetIterator read-ahead",
+                    new RecordReadAhead.Source<Pair<List<Writable>, RecordMetaData>>() {
+                @Override
+                public boolean hasNext() {
+                    synchronized (recordReader) {
+                        return (sequenceIter != null && sequenceIter.hasNext()) || recordReader.hasNext();
+                    }
+                }
+
+                @Override
+                public Pair<List<Writable>, RecordMetaData> next() {
+                    synchronized (recordReader) {
+                        if (recordReader instanceof SequenceRecordReader) {
+                            if (sequenceIter == null || !sequenceIter.hasNext()) {
+                                sequenceIter = ((SequenceRecordReader) recordReader).sequenceRecord().iterator();
+                            }
+                            return new Pair<>(sequenceIter.next(), null);
+                        } else if (meta) {
+                            Record record = recordReader.nextRecord();
+                            return new Pair<>(record.getRecord(), record.getMetaData());
+                        } else {
+                            return new Pair<>(recordReader.next(), null);
+                        }
+                    }
+                }
+            }, readAhead * batchSize);
+        }
+        return readAheadThread;
+    }
+
+    private void stopReadAhead() {
+        if (readAheadThread != null) {
+            readAheadThread.stop();
+            readAheadThread = null;
+        }
+    }
+
     @Override
     public DataSet next(int num) {
         if (useCurrent) {
@@ -154,36 +242,39 @@ public class RecordReaderDataSetIterator implements DataSetIterator {
             return last;
         }
 
-        List<DataSet> dataSets = new ArrayList<>();
+        List<List<Writable>> records = new ArrayList<>();
         List<RecordMetaData> meta = (collectMetaData ? new ArrayList<RecordMetaData>() : null);
         for (int i = 0; i < num; i++) {
             if (!hasNext())
                 break;
-            if (recordReader instanceof SequenceRecordReader) {
+            if (readAheadThread != null) {
+                Pair<List<Writable>, RecordMetaData> next = readAheadThread.next();
+                records.add(next.getFirst());
+                if (collectMetaData && next.getSecond() != null)
+                    meta.add(next.getSecond());
+            } else if (recordReader instanceof SequenceRecordReader) {
                 if (sequenceIter == null || !sequenceIter.hasNext()) {
                     List<List<Writable>> sequenceRecord = ((SequenceRecordReader) recordReader).sequenceRecord();
                     sequenceIter = sequenceRecord.iterator();
                 }
 
-                List<Writable> record = sequenceIter.next();
-                dataSets.add(getDataSet(record));
+                records.add(sequenceIter.next());
             } else {
                 if(collectMetaData){
                     Record record = recordReader.nextRecord();
-                    dataSets.add(getDataSet(record.getRecord()));
+                    records.add(record.getRecord());
                     meta.add(record.getMetaData());
                 } else {
-                    List<Writable> record = recordReader.next();
-                    dataSets.add(getDataSet(record));
+                    records.add(recordReader.next());
                 }
             }
         }
+        DataSet ret = convertRecords(records);
         batchNum++;
 
-        if(dataSets.isEmpty())
+        if(ret == null)
             return new DataSet();
 
-        DataSet ret = DataSet.merge(dataSets);
         if(collectMetaData){
             ret.setExampleMetaData(meta);
         }
@@ -195,6 +286,135 @@ public class RecordReaderDataSetIterator implements DataSetIterator {
     }
 
 
+    /**
+     * Convert the records to a single DataSet, with examples in the same order as the records. If parallelism > 1 the
+     * conversion is split across multiple threads.
+     *
+     * @return The DataSet, or null if there are no records
+     */
+    private DataSet convertRecords(final List<List<Writable>> records) {
+        if (records.isEmpty())
+            return null;
+
+        //Infer the label index (if necessary) before any parallel conversion, as getDataSet would otherwise modify it
+        if (numPossibleLabels >= 1 && labelIndex < 0) {
+            labelIndex = records.get(0).size() - 1;
+        }
+
+        DataSet bulk = convertRecordsBulk(records);
+        if (bulk != null)
+            return bulk;
+
+        final DataSet[] out = new DataSet[records.size()];
+        ParallelLoop.forRange(records.size(), parallelism, new ParallelLoop.Body() {
+            @Override
+            public void apply(int from, int to) {
+                for (int i = from; i < to; i++) {
+                    out[i] = getDataSet(records.get(i));
+                }
+            }
+        });
+        List<DataSet> list = new ArrayList<>(out.length);
+        Collections.addAll(list, out);
+        return DataSet.merge(list);
+    }
+
+    /**
+     * Bulk conversion for the common case (all records have the same number of scalar values, no NDArrayWritables and
+     * no empty values): values are written directly to primitive buffers for the whole minibatch, instead of creating
+     * and merging one DataSet per record. Gives the same result as {@link #getDataSet(List)} + {@link DataSet#merge(List)}.
+     *
+     * @return The DataSet, or null if the records are not suitable for bulk conversion
+     */
+    private DataSet convertRecordsBulk(final List<List<Writable>> records) {
+        final int numExamples = records.size();
+        final int numColumns = records.get(0).size();
+        final int nLabels;
+        final int nFeatures;
+        if (labelIndex < 0) {
+            //No labels: features are also used as labels
+            nLabels = 0;
+            nFeatures = numColumns;
+        } else if (regression) {
+            if (labelIndexTo < labelIndex || labelIndexTo >= numColumns)
+                return null;
+            nLabels = labelIndexTo - labelIndex + 1;
+            nFeatures = numColumns - nLabels;
+        } else {
+            if (labelIndex >= numColumns)
+                return null;
+            if (numPossibleLabels < 1)
+                throw new IllegalStateException("Number of possible labels invalid, must be >= 1");
+            nLabels = numPossibleLabels;
+            nFeatures = numColumns - 1;
+        }
+        if (nFeatures <= 0)
+            return null;
+
+        final WritableBuffer features = new WritableBuffer(numExamples * nFeatures);
+        final WritableBuffer labels = (nLabels > 0 ? new WritableBuffer(numExamples * nLabels) : null);
+        final AtomicBoolean supported = new AtomicBoolean(true);
+        ParallelLoop.forRange(numExamples, parallelism, new ParallelLoop.Body() {
+            @Override
+            public void apply(int from, int to) {
+                for (int i = from; i < to && supported.get(); i++) {
+                    if (!convertRecordBulk(records.get(i), numColumns, i * nFeatures, features, i * nLabels, labels)) {
+                        supported.set(false);
+                    }
+                }
+            }
+        });
+        if (!supported.get())
+            return null;
+
+        INDArray f = features.toArray(new int[]{numExamples, nFeatures}, 'c');
+        INDArray l = (labels != null ? labels.toArray(new int[]{numExamples, nLabels}, 'c') : f.dup());
+        return new DataSet(f, l);
+    }
+
+    private boolean convertRecordBulk(List<Writable> record, int numColumns, int featureOffset, WritableBuffer features,
+                                      int labelOffset, WritableBuffer labels) {
+        if (record.size() != numColumns)
+            return false;
+
+        int featureCount = 0;
+        int labelCount = 0;
+        int j = 0;
+        for (Writable current : record) {
+            if (current instanceof NDArrayWritable || isEmpty(current))
+                return false;
+
+            if (labelIndex >= 0 && regression && j >= labelIndex && j <= labelIndexTo) {
+                labels.put(labelOffset + labelCount++, current.toDouble());
+            } else if (labelIndex >= 0 && !regression && j == labelIndex) {
+                if (converter != null)
+                    try {
+                        current = converter.convert(current);
+                    } catch (WritableConverterException e) {
+                        e.printStackTrace();
+                    }
+                int curr = current.toInt();
+                if (curr < 0 || curr >= numPossibleLabels) {
+                    throw new DL4JInvalidInputException("Invalid classification data: expect label value (at label index column = " + labelIndex
+                        + ") to be in range 0 to " + (numPossibleLabels-1) + " inclusive (0 to numClasses-1, with numClasses=" + numPossibleLabels
+                        + "); got label value of " + current);
+                }
+                labels.put(labelOffset + curr, 1.0);
+            } else {
+                features.put(featureOffset + featureCount++, current.toDouble());
+            }
+            j++;
+        }
+        return true;
+    }
+
+    private static boolean isEmpty(Writable w) {
+        //Numeric writables are never empty: avoid the cost of toString() for these
+        if (w instanceof DoubleWritable || w instanceof FloatWritable || w instanceof IntWritable || w instanceof LongWritable)
+            return false;
+        return w.toString().isEmpty();
+    }
+
     private DataSet getDataSet(List<Writable> record) {
         List<Writable> currList;
         if (record instanceof List)
@@ -338,6 +558,7 @@ public class RecordReaderDataSetIterator implements DataSetIterator {
     @Override
     public void reset() {
         batchNum = 0;
+        stopReadAhead();
         recordReader.reset();
     }
 
@@ -364,7 +585,10 @@ public class RecordReaderDataSetIterator implements DataSetIterator {
 
     @Override
     public boolean hasNext() {
-        return (recordReader.hasNext() && (maxNumBatches < 0 || batchNum < maxNumBatches));
+        if (maxNumBatches >= 0 && batchNum >= maxNumBatches)
+            return false;
+        RecordReadAhead<Pair<List<Writable>, RecordMetaData>> r = readAheadThread();
+        return r != null ? r.hasNext() : recordReader.hasNext();
     }
 
     @Override
@@ -403,19 +627,22 @@ public class RecordReaderDataSetIterator implements DataSetIterator {
      * @throws IOException If an error occurs during loading of the data
      */
     public DataSet loadFromMetaData(List<RecordMetaData> list) throws IOException {
-        List<Record> records = recordReader.loadFromMetaData(list);
-        List<DataSet> dataSets = new ArrayList<>();
+        List<Record> records;
+        synchronized (recordReader) {
+            records = recordReader.loadFromMetaData(list);
+        }
+        List<List<Writable>> writables = new ArrayList<>();
         List<RecordMetaData> meta = new ArrayList<>();
         for(Record r : records){
-            dataSets.add(getDataSet(r.getRecord()));
+            writables.add(r.getRecord());
             meta.add(r.getMetaData());
         }
+        DataSet ret = convertRecords(writables);
 
-        if(dataSets.isEmpty()) {
+        if(ret == null) {
             return new DataSet();
         }
 
-        DataSet ret = DataSet.merge(dataSets);
         ret.setExampleMetaData(meta);
         last = ret;
         if (preProcessor != null) preProcessor.preProcess(ret);
@@ -31,17 +31,19 @@ import org.datavec.api.records.reader.SequenceRecordReader;
 import org.datavec.api.writable.Writable;
 import org.datavec.common.data.NDArrayWritable;
 import org.deeplearning4j.berkeley.Pair;
+import org.deeplearning4j.exception.DL4JInvalidInputException;
+import org.deeplearning4j.util.ParallelLoop;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.DataSet;
 import org.nd4j.linalg.dataset.api.MultiDataSet;
 import org.nd4j.linalg.dataset.api.MultiDataSetPreProcessor;
 import org.nd4j.linalg.dataset.api.iterator.MultiDataSetIterator;
-import org.nd4j.linalg.factory.Nd4j;
-import org.nd4j.linalg.indexing.INDArrayIndex;
 import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.nd4j.linalg.util.ArrayUtil;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 /**
  * RecordReaderMultiDataSetIterator: A {@link MultiDataSetIterator} for data from one or more RecordReaders and SequenceRecordReaders<br>
@@ -50,7 +52,11 @@ import java.util.*;
  * as different columns in the same record/sequence); it is also possible to mix different types of data (for example, using both
  * RecordReaders and SequenceRecordReaders in the same RecordReaderMultiDataSetIterator).<br>
  * Uses a builder pattern ({@link RecordReaderMultiDataSetIterator.Builder} to specify the various
- * inputs and subsets.
+ * inputs and subsets.<br>
+ * Throughput: each reader is read by a single thread, as readers are not thread safe. Different readers can be read in
+ * parallel ({@link Builder#parallelism(int)}), and each reader can be read ahead on its own bounded background thread
+ * ({@link Builder#readAhead(int)}), but the reading of any one reader is never parallelized: if a single reader is
+ * the bottleneck, split its data across multiple readers.
  *
  * @author Alex Black
  */
@@ -79,10 +85,26 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator {
     @Setter
     private boolean collectMetaData = false;
 
+    /**
+     * Number of threads used to read and convert each minibatch. See {@link Builder#parallelism(int)}
+     */
+    @Getter
+    private int parallelism;
+
+    /**
+     * Number of minibatches read ahead for each reader. See {@link Builder#readAhead(int)}
+     */
+    @Getter
+    private int readAhead;
+    private Map<String, RecordReadAhead<Pair<List<Writable>, RecordMetaData>>> recordReadAheads;
+    private Map<String, RecordReadAhead<Pair<List<List<Writable>>, RecordMetaData>>> sequenceReadAheads;
+
     private MultiDataSetPreProcessor preProcessor;
 
     private RecordReaderMultiDataSetIterator(Builder builder) {
         this.batchSize = builder.batchSize;
+        this.parallelism = builder.parallelism;
+        this.readAhead = builder.readAhead;
         this.alignmentMode = builder.alignmentMode;
         this.recordReaders = builder.recordReaders;
         this.sequenceRecordReaders = builder.sequenceRecordReaders;
@@ -101,60 +123,100 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator {
     }
 
     @Override
-    public MultiDataSet next(int num) {
+    public MultiDataSet next(final int num) {
         if (!hasNext()) throw new NoSuchElementException("No next elements");
 
-        //First: load the next values from the RR / SeqRRs
+        //First: load the next values from the RR / SeqRRs. Each reader is read sequentially, but different readers
+        // may be read in parallel
+        List<Callable<ReaderValues>> readTasks = new ArrayList<>();
+        for (final Map.Entry<String, RecordReader> entry : recordReaders.entrySet()) {
+            readTasks.add(new Callable<ReaderValues>() {
+                @Override
+                public ReaderValues call() {
+                    return readRecords(entry.getKey(), entry.getValue(), num);
+                }
+            });
+        }
+        for (final Map.Entry<String, SequenceRecordReader> entry : sequenceRecordReaders.entrySet()) {
+            readTasks.add(new Callable<ReaderValues>() {
+                @Override
+                public ReaderValues call() {
+                    return readSequences(entry.getKey(), entry.getValue(), num);
+                }
+            });
+        }
+
+        List<ReaderValues> read = ParallelLoop.invokeAll(readTasks, parallelism);
+
         Map<String, List<List<Writable>>> nextRRVals = new HashMap<>();
         Map<String, List<List<List<Writable>>>> nextSeqRRVals = new HashMap<>();
         List<RecordMetaDataComposableMap> nextMetas = (collectMetaData ? new ArrayList<RecordMetaDataComposableMap>() : null);
+        for (ReaderValues v : read) {
+            if (v.records != null) {
+                nextRRVals.put(v.readerName, v.records);
+            } else {
+                nextSeqRRVals.put(v.readerName, v.sequences);
+            }
 
-
-        for (Map.Entry<String, RecordReader> entry : recordReaders.entrySet()) {
-            RecordReader rr = entry.getValue();
-            List<List<Writable>> writables = new ArrayList<>(num);
-            for (int i = 0; i < num && rr.hasNext(); i++) {
-                List<Writable> record;
-                if (collectMetaData) {
-                    Record r = rr.nextRecord();
-                    record = r.getRecord();
+            if (collectMetaData) {
+                for (int i = 0; i < v.meta.size(); i++) {
                     if (nextMetas.size() <= i) {
                         nextMetas.add(new RecordMetaDataComposableMap(new HashMap<String, RecordMetaData>()));
                     }
-                    RecordMetaDataComposableMap map = nextMetas.get(i);
-                    map.getMeta().put(entry.getKey(), r.getMetaData());
-                } else {
-                    record = rr.next();
+                    nextMetas.get(i).getMeta().put(v.readerName, v.meta.get(i));
                 }
-                writables.add(record);
             }
-
-            nextRRVals.put(entry.getKey(), writables);
         }
 
-        for (Map.Entry<String, SequenceRecordReader> entry : sequenceRecordReaders.entrySet()) {
-            SequenceRecordReader rr = entry.getValue();
-            List<List<List<Writable>>> writables = new ArrayList<>(num);
-            for (int i = 0; i < num && rr.hasNext(); i++) {
-                List<List<Writable>> sequence;
-                if (collectMetaData) {
-                    SequenceRecord r = rr.nextSequence();
-                    sequence = r.getSequenceRecord();
-                    if (nextMetas.size() <= i) {
-                        nextMetas.add(new RecordMetaDataComposableMap(new HashMap<String, RecordMetaData>()));
-                    }
-                    RecordMetaDataComposableMap map = nextMetas.get(i);
-                    map.getMeta().put(entry.getKey(), r.getMetaData());
-                } else {
-                    sequence = rr.sequenceRecord();
-                }
-                writables.add(sequence);
-            }
+        return nextMultiDataSet(nextRRVals, nextSeqRRVals, nextMetas);
+    }
 
-            nextSeqRRVals.put(entry.getKey(), writables);
+    private ReaderValues readRecords(String readerName, RecordReader rr, int num) {
+        List<List<Writable>> writables = new ArrayList<>(num);
+        List<RecordMetaData> meta = (collectMetaData ? new ArrayList<RecordMetaData>(num) : null);
+        if (recordReadAheads != null) {
+            RecordReadAhead<Pair<List<Writable>, RecordMetaData>> r = recordReadAheads.get(readerName);
+            for (int i = 0; i < num && r.hasNext(); i++) {
+                Pair<List<Writable>, RecordMetaData> next = r.next();
+                writables.add(next.getFirst());
+                if (collectMetaData) meta.add(next.getSecond());
+            }
+            return new ReaderValues(readerName, writables, null, meta);
+        }
+        for (int i = 0; i < num && rr.hasNext(); i++) {
+            if (collectMetaData) {
+                Record r = rr.nextRecord();
+                writables.add(r.getRecord());
+                meta.add(r.getMetaData());
+            } else {
+                writables.add(rr.next());
+            }
         }
+        return new ReaderValues(readerName, writables, null, meta);
+    }
 
-        return nextMultiDataSet(nextRRVals, nextSeqRRVals, nextMetas);
+    private ReaderValues readSequences(String readerName, SequenceRecordReader rr, int num) {
+        List<List<List<Writable>>> writables = new ArrayList<>(num);
+        List<RecordMetaData> meta = (collectMetaData ? new ArrayList<RecordMetaData>(num) : null);
+        if (sequenceReadAheads != null) {
+            RecordReadAhead<Pair<List<List<Writable>>, RecordMetaData>> r = sequenceReadAheads.get(readerName);
+            for (int i = 0; i < num && r.hasNext(); i++) {
+                Pair<List<List<Writable>>, RecordMetaData> next = r.next();
+                writables.add(next.getFirst());
+                if (collectMetaData) meta.add(next.getSecond());
+            }
+            return new ReaderValues(readerName, null, writables, meta);
+        }
+        for (int i = 0; i < num && rr.hasNext(); i++) {
+            if (collectMetaData) {
+                SequenceRecord r = rr.nextSequence();
+                writables.add(r.getSequenceRecord());
+                meta.add(r.getMetaData());
+            } else {
+                writables.add(rr.sequenceRecord());
+            }
+        }
+        return new ReaderValues(readerName, null, writables, meta);
     }
 
     private MultiDataSet nextMultiDataSet(Map<String, List<List<Writable>>> nextRRVals, Map<String, List<List<List<Writable>>>> nextSeqRRVals,
@@ -248,47 +310,57 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator {
         return mds;
     }
 
-    private INDArray convertWritables(List<List<Writable>> list, int minValues, SubsetDetails details) {
-        INDArray arr;
+    private INDArray convertWritables(final List<List<Writable>> list, int minValues, final SubsetDetails details) {
+        int[] shape;
         if (details.entireReader) {
             if (list.get(0).size() == 1 && list.get(0).get(0) instanceof NDArrayWritable) {
                 //Special case: single NDArrayWritable...
                 INDArray temp = ((NDArrayWritable) list.get(0).get(0)).get();
-                int[] shape = ArrayUtils.clone(temp.shape());
+                shape = ArrayUtils.clone(temp.shape());
                 shape[0] = minValues;
-                arr = Nd4j.create(shape);
             } else {
-                arr = Nd4j.create(minValues, list.get(0).size());
+                shape = new int[]{minValues, list.get(0).size()};
             }
         } else if (details.oneHot) {
-            arr = Nd4j.zeros(minValues, details.oneHotNumClasses);
+            shape = new int[]{minValues, details.oneHotNumClasses};
         } else {
             if (details.subsetStart == details.subsetEndInclusive && list.get(0).get(details.subsetStart) instanceof NDArrayWritable) {
                 //Special case: single NDArrayWritable (example: ImageRecordReader)
                 INDArray temp = ((NDArrayWritable) list.get(0).get(details.subsetStart)).get();
-                int[] shape = ArrayUtils.clone(temp.shape());
+                shape = ArrayUtils.clone(temp.shape());
                 shape[0] = minValues;
-                arr = Nd4j.create(shape);
             } else {
-                arr = Nd4j.create(minValues, details.subsetEndInclusive - details.subsetStart + 1);
+                shape = new int[]{minValues, details.subsetEndInclusive - details.subsetStart + 1};
             }
         }
 
-        for( int i = 0; i < minValues; i++) {
+        //Values are written to a 'c' order buffer for the whole minibatch: example i starts at i * exampleLength
+        final int exampleLength = ArrayUtil.prod(shape) / minValues;
+        final WritableBuffer buffer = new WritableBuffer(minValues * exampleLength);
+        ParallelLoop.forRange(minValues, parallelism, new ParallelLoop.Body() {
+            @Override
+            public void apply(int from, int to) {
+                convertRows(buffer, exampleLength, list, details, from, to);
+            }
+        });
+
+        return buffer.toArray(shape, 'c');
+    }
+
+    private void convertRows(WritableBuffer buffer, int exampleLength, List<List<Writable>> list, SubsetDetails details,
+                             int from, int to) {
+        for( int i = from; i < to; i++) {
             List<Writable> c = list.get(i);
+            int offset = i * exampleLength;
             if (details.entireReader) {
                 //Convert entire reader contents, without modification
                 int j = 0;
                 for (Writable w : c) {
-                    try {
-                        arr.putScalar(i, j, w.toDouble());
-                    } catch (UnsupportedOperationException e) {
-                        // This isn't a scalar, so check if we got an array already
-                        if (w instanceof NDArrayWritable) {
-                            putExample(arr, ((NDArrayWritable) w).get(), i);
-                        } else {
-                            throw e;
-                        }
+                    if (w instanceof NDArrayWritable) {
+                        //Already an array: copy the entire example
+                        buffer.put(offset, 1, ((NDArrayWritable) w).get());
+                    } else {
+                        buffer.put(offset + j, w.toDouble());
                     }
                     j++;
                 }
@@ -296,13 +368,13 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator {
                 //Convert a single column to a one-hot representation
                 Writable w = c.get(details.subsetStart);
                 //Index of class
-                arr.putScalar(i, w.toInt(), 1.0);
+                buffer.put(offset + classIndex(w, details), 1.0);
             } else {
                 //Convert a subset of the columns
 
                 //Special case: subsetStart == subsetEndInclusive && NDArrayWritable. Example: ImageRecordReader
                 if (details.subsetStart == details.subsetEndInclusive && (c.get(details.subsetStart) instanceof NDArrayWritable)) {
-                    putExample(arr, ((NDArrayWritable) c.get(details.subsetStart)).get(), i);
+                    buffer.put(offset, 1, ((NDArrayWritable) c.get(details.subsetStart)).get());
                 } else {
 
                     Iterator<Writable> iter = c.iterator();
@@ -310,64 +382,74 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator {
                     int k = 0;
                     for (int j = details.subsetStart; j <= details.subsetEndInclusive; j++) {
                         Writable w = iter.next();
-                        try {
-                            arr.putScalar(i, k, w.toDouble());
-                        } catch (UnsupportedOperationException e) {
-                            // This isn't a scalar, so check if we got an array already
-                            if (w instanceof NDArrayWritable) {
-                                putExample(arr, ((NDArrayWritable) w).get(), i);
-                            } else {
-                                throw e;
-                            }
+                        if (w instanceof NDArrayWritable) {
+                            buffer.put(offset, 1, ((NDArrayWritable) w).get());
+                        } else {
+                            buffer.put(offset + k, w.toDouble());
                         }
                         k++;
                     }
                 }
             }
         }
-
-        return arr;
     }
 
-    private void putExample(INDArray arr, INDArray singleExample, int exampleIdx) {
-        switch (arr.rank()) {
-            case 2:
-                arr.put(new INDArrayIndex[]{NDArrayIndex.point(exampleIdx), NDArrayIndex.all()}, singleExample);
-                break;
-            case 3:
-                arr.put(new INDArrayIndex[]{NDArrayIndex.point(exampleIdx), NDArrayIndex.all(), NDArrayIndex.all()}, singleExample);
-                break;
-            case 4:
-                arr.put(new INDArrayIndex[]{NDArrayIndex.point(exampleIdx), NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.all()}, singleExample);
-                break;
-            default:
-                throw new RuntimeException("Unexpected rank: " + arr.rank());
+    private static int classIndex(Writable w, SubsetDetails details) {
+        int idx = w.toInt();
+        if (idx < 0 || idx >= details.oneHotNumClasses) {
+            throw new DL4JInvalidInputException("Invalid one-hot data (reader \"" + details.readerName + "\", column "
+                    + details.subsetStart + "): expect value to be in range 0 to " + (details.oneHotNumClasses - 1)
+                    + " inclusive; got value of " + w);
         }
+        return idx;
     }
 
     /**
      * Convert the writables to a sequence (3d) data set, and also return the mask array (if necessary)
      */
-    private Pair<INDArray, INDArray> convertWritablesSequence(List<List<List<Writable>>> list, int minValues,
-                                                              int maxTSLength, SubsetDetails details, int[] longestSequence) {
+    private Pair<INDArray, INDArray> convertWritablesSequence(final List<List<List<Writable>>> list, int minValues,
+                                                              int maxTSLength, final SubsetDetails details,
+                                                              final int[] longestSequence) {
         if (maxTSLength == -1) maxTSLength = list.get(0).size();
-        INDArray arr;
+        int size;
         if (details.entireReader) {
-            int size = list.get(0).iterator().next().size();
-            arr = Nd4j.create(new int[]{minValues, size, maxTSLength}, 'f');
-        } else if (details.oneHot) arr = Nd4j.create(new int[]{minValues, details.oneHotNumClasses, maxTSLength}, 'f');
-        else
-            arr = Nd4j.create(new int[]{minValues, details.subsetEndInclusive - details.subsetStart + 1, maxTSLength}, 'f');
+            size = list.get(0).iterator().next().size();
+        } else if (details.oneHot) {
+            size = details.oneHotNumClasses;
+        } else {
+            size = details.subsetEndInclusive - details.subsetStart + 1;
+        }
+        int[] shape = new int[]{minValues, size, maxTSLength};
 
         boolean needMaskArray = false;
         for (List<List<Writable>> c : list) {
             if (c.size() < maxTSLength) needMaskArray = true;
         }
-        INDArray maskArray;
-        if (needMaskArray) maskArray = Nd4j.ones(minValues, maxTSLength);
-        else maskArray = null;
 
-        for (int i = 0; i < minValues; i++) {
+        //Features/labels buffer is 'f' order: element [i,j,k] is at i + minValues * (j + size * k)
+        //Mask buffer is 'c' order: element [i,t] is at i * maxTSLength + t
+        final WritableBuffer buffer = new WritableBuffer(minValues * size * maxTSLength);
+        final WritableBuffer maskBuffer = (needMaskArray ? WritableBuffer.ones(minValues * maxTSLength) : null);
+        final int[] sh = shape;
+        ParallelLoop.forRange(minValues, parallelism, new ParallelLoop.Body() {
+            @Override
+            public void apply(int from, int to) {
+                convertSequences(buffer, maskBuffer, sh, list, details, longestSequence, from, to);
+            }
+        });
+
+        INDArray arr = buffer.toArray(shape, 'f');
+        INDArray maskArray = (needMaskArray ? maskBuffer.toArray(new int[]{minValues, maxTSLength}, 'c') : null);
+        return new Pair<>(arr, maskArray);
+    }
+
+    private void convertSequences(WritableBuffer buffer, WritableBuffer maskBuffer, int[] shape,
+                                  List<List<List<Writable>>> list, SubsetDetails details, int[] longestSequence,
+                                  int from, int to) {
+        int minValues = shape[0];
+        int size = shape[1];
+        int maxTSLength = shape[2];
+        for (int i = from; i < to; i++) {
             List<List<Writable>> sequence = list.get(i);
 
             //Offset for alignment:
@@ -384,6 +466,8 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator {
             int k;
             for (List<Writable> timeStep : sequence) {
                 k = startOffset + t++;
+                //Index of element [i,0,k]; consecutive values in the time step are minValues apart
+                int offset = i + minValues * size * k;
 
                 if (details.entireReader) {
                     //Convert entire reader contents, without modification
@@ -391,16 +475,10 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator {
                     int j = 0;
                     while (iter.hasNext()) {
                         Writable w = iter.next();
-                        try {
-                            arr.putScalar(i, j, k, w.toDouble());
-                        } catch (UnsupportedOperationException e) {
-                            // This isn't a scalar, so check if we got an array already
-                            if (w instanceof NDArrayWritable) {
-                                arr.get(NDArrayIndex.point(i), NDArrayIndex.all(), NDArrayIndex.point(k))
-                                        .putRow(0, ((NDArrayWritable) w).get());
-                            } else {
-                                throw e;
-                            }
+                        if (w instanceof NDArrayWritable) {
+                            buffer.put(offset, minValues, ((NDArrayWritable) w).get());
+                        } else {
+                            buffer.put(offset + minValues * j, w.toDouble());
                         }
                         j++;
                     }
@@ -412,8 +490,7 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator {
                         Iterator<Writable> iter = timeStep.iterator();
                         for (int x = 0; x <= details.subsetStart; x++) w = iter.next();
                     }
-                    int classIdx = w.toInt();
-                    arr.putScalar(i, classIdx, k, 1.0);
+                    buffer.put(offset + minValues * classIndex(w, details), 1.0);
                 } else {
                     //Convert a subset of the columns...
                     Iterator<Writable> iter = timeStep.iterator();
@@ -421,42 +498,34 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator {
                     int l = 0;
                     for (int j = details.subsetStart; j <= details.subsetEndInclusive; j++) {
                         Writable w = iter.next();
-                        try {
-                            arr.putScalar(i, l++, k, w.toDouble());
-                        } catch (UnsupportedOperationException e) {
-                            // This isn't a scalar, so check if we got an array already
-                            if (w instanceof NDArrayWritable) {
-                                arr.get(NDArrayIndex.point(i), NDArrayIndex.all(), NDArrayIndex.point(k))
-                                        .putRow(0, ((NDArrayWritable) w).get().get(NDArrayIndex.all(),
-                                                NDArrayIndex.interval(details.subsetStart, details.subsetEndInclusive + 1)));
-                            } else {
-                                throw e;
-                            }
+                        if (w instanceof NDArrayWritable) {
+                            buffer.put(offset, minValues, ((NDArrayWritable) w).get().get(NDArrayIndex.all(),
+                                    NDArrayIndex.interval(details.subsetStart, details.subsetEndInclusive + 1)));
+                        } else {
+                            buffer.put(offset + minValues * l, w.toDouble());
                         }
+                        l++;
                     }
                 }
             }
 
             //For any remaining time steps: set mask array to 0 (just padding)
-            if (needMaskArray) {
+            if (maskBuffer != null) {
                 //Masking array entries at start (for align end)
                 if (alignmentMode == AlignmentMode.ALIGN_END) {
                     for (int t2 = 0; t2 < startOffset; t2++) {
-                        maskArray.putScalar(i, t2, 0.0);
+                        maskBuffer.put(i * maxTSLength + t2, 0.0);
                     }
                 }
 
                 //Masking array entries at end (for align start)
                 if (alignmentMode == AlignmentMode.ALIGN_START) {
                     for (int t2 = t; t2 < maxTSLength; t2++) {
-                        maskArray.putScalar(i, t2, 0.0);
+                        maskBuffer.put(i * maxTSLength + t2, 0.0);
                     }
                 }
             }
         }
-
-
-        return new Pair<>(arr, maskArray);
     }
 
     @Override
@@ -476,17 +545,91 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator {
 
     @Override
     public void reset() {
+        stopReadAhead();
         for (RecordReader rr : recordReaders.values()) rr.reset();
         for (SequenceRecordReader rr : sequenceRecordReaders.values()) rr.reset();
     }
 
     @Override
     public boolean hasNext() {
+        if (readAhead > 0) {
+            startReadAhead();
+            for (RecordReadAhead<?> r : recordReadAheads.values()) if (!r.hasNext()) return false;
+            for (RecordReadAhead<?> r : sequenceReadAheads.values()) if (!r.hasNext()) return false;
+            return true;
+        }
         for (RecordReader rr : recordReaders.values()) if (!rr.hasNext()) return false;
         for (SequenceRecordReader rr : sequenceRecordReaders.values()) if (!rr.hasNext()) return false;
         return true;
     }
 
+    /**
+     * Start one read-ahead thread per reader, if not already started
+     */
+    private void startReadAhead() {
+        if (recordReadAheads != null)
+            return;
+        final boolean meta = collectMetaData;
+        int capacity = readAhead * batchSize;
+        recordReadAheads = new HashMap<>();
+        for (final Map.Entry<String, RecordReader> entry : recordReaders.entrySet()) {
+            final RecordReader rr = entry.getValue();
+            recordReadAheads.put(entry.getKey(), new RecordReadAhead<>("RecordReaderMultiDataSetIterator read-ahead: " + entry.getKey(),
+                    new RecordReadAhead.Source<Pair<List<Writable>, RecordMetaData>>() {
+                @Override
+                public boolean hasNext() {
+                    synchronized (rr) {
+                        return rr.hasNext();
+                    }
+                }
+
+                @Override
+                public Pair<List<Writable>, RecordMetaData> next() {
+                    synchronized (rr) {
+                        if (meta) {
+                            Record r = rr.nextRecord();
+                            return new Pair<>(r.getRecord(), r.getMetaData());
+                        }
+                        return new Pair<>(rr.next(), null);
+                    }
+                }
+            }, capacity));
+        }
+        sequenceReadAheads = new HashMap<>();
+        for (final Map.Entry<String, SequenceRecordReader> entry : sequenceRecordReaders.entrySet()) {
+            final SequenceRecordReader rr = entry.getValue();
+            sequenceReadAheads.put(entry.getKey(), new RecordReadAhead<>("RecordReaderMultiDataSetIterator read-ahead: " + entry.getKey(),
+                    new RecordReadAhead.Source<Pair<List<List<Writable>>, RecordMetaData>>() {
+                @Override
+                public boolean hasNext() {
+                    synchronized (rr) {
+                        return rr.hasNext();
+                    }
+                }
+
+                @Override
+                public Pair<List<List<Writable>>, RecordMetaData> next() {
+                    synchronized (rr) {
+                        if (meta) {
+                            SequenceRecord r = rr.nextSequence();
+                            return new Pair<>(r.getSequenceRecord(), r.getMetaData());
+                        }
+                        return new Pair<>(rr.sequenceRecord(), null);
+                    }
+                }
+            }, capacity));
+        }
+    }
+
+    private void stopReadAhead() {
+        if (recordReadAheads == null)
+            return;
+        for (RecordReadAhead<?> r : recordReadAheads.values()) r.stop();
+        for (RecordReadAhead<?> r : sequenceReadAheads.values()) r.stop();
+        recordReadAheads = null;
+        sequenceReadAheads = null;
+    }
+
 
     public static class Builder {
 
@@ -497,6 +640,8 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator {
 
         private List<SubsetDetails> inputs = new ArrayList<>();
         private List<SubsetDetails> outputs = new ArrayList<>();
+        private int parallelism = 1;
+        private int readAhead = 0;
 
         /**
          * @param batchSize The batch size for the RecordReaderMultiDataSetIterator
@@ -527,6 +672,34 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator {
             return this;
         }
 
+        /**
+         * Set the number of threads used to produce each MultiDataSet. With parallelism > 1, different readers are
+         * read in parallel (each individual reader is still read sequentially, as readers are not thread safe), and
+         * the conversion of the records to arrays is split across multiple threads. The order of the examples is the
+         * same as for parallelism = 1. Default: 1
+         *
+         * @param parallelism Maximum number of threads to use
+         */
+        public Builder parallelism(int parallelism) {
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Set the number of minibatches to read ahead for each reader. With readAhead > 0, each reader is read by
+         * its own background (daemon) thread, into a queue of at most readAhead * batchSize records (or sequences),
+         * while the records already read are converted (and trained on). The read-ahead threads are started by the
+         * first call to hasNext()/next(), and stopped by {@link RecordReaderMultiDataSetIterator#reset()}; set
+         * {@link RecordReaderMultiDataSetIterator#setCollectMetaData(boolean)} before iterating.
+         * Default: 0 (no read-ahead: readers are read on the calling thread, or as per {@link #parallelism(int)})
+         *
+         * @param readAhead Number of minibatches to read ahead, or 0 to disable
+         */
+        public Builder readAhead(int readAhead) {
+            this.readAhead = readAhead;
+            return this;
+        }
+
         /**
          * Set the sequence alignment mode for all sequences
          */
@@ -615,6 +788,12 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator {
             if (batchSize <= 0)
                 throw new IllegalStateException("Cannot construct RecordReaderMultiDataSetIterator with batch size <= 0");
 
+            if (parallelism <= 0)
+                throw new IllegalStateException("Cannot construct RecordReaderMultiDataSetIterator with parallelism <= 0");
+
+            if (readAhead < 0)
+                throw new IllegalStateException("Cannot construct RecordReaderMultiDataSetIterator with readAhead < 0");
+
             if (inputs.isEmpty() && outputs.isEmpty()) {
                 throw new IllegalStateException("Cannot construct RecordReaderMultiDataSetIterator with no inputs/outputs");
             }
@@ -671,7 +850,10 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator {
                 thisRRMeta.add(m2.getMeta().get(entry.getKey()));
             }
 
-            List<Record> fromMeta = rr.loadFromMetaData(thisRRMeta);
+            List<Record> fromMeta;
+            synchronized (rr) {
+                fromMeta = rr.loadFromMetaData(thisRRMeta);
+            }
             List<List<Writable>> writables = new ArrayList<>(list.size());
             for (Record r : fromMeta) {
                 writables.add(r.getRecord());
@@ -689,7 +871,10 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator {
                 thisRRMeta.add(m2.getMeta().get(entry.getKey()));
             }
 
-            List<SequenceRecord> fromMeta = rr.loadSequenceFromMetaData(thisRRMeta);
+            List<SequenceRecord> fromMeta;
+            synchronized (rr) {
+                fromMeta = rr.loadSequenceFromMetaData(thisRRMeta);
+            }
             List<List<List<Writable>>> writables = new ArrayList<>(list.size());
             for (SequenceRecord r : fromMeta) {
                 writables.add(r.getSequenceRecord());
@@ -702,6 +887,14 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator {
 
     }
 
+    @AllArgsConstructor
+    private static class ReaderValues {
+        private final String readerName;
+        private final List<List<Writable>> records;
+        private final List<List<List<Writable>>> sequences;
+        private final List<RecordMetaData> meta;
+    }
+
     @AllArgsConstructor
     private static class SubsetDetails {
         private final String readerName;
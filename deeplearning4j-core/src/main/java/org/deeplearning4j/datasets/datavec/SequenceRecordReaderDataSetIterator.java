@@ -17,7 +17,6 @@ import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.indexing.INDArrayIndex;
 import org.nd4j.linalg.indexing.NDArrayIndex;
-import org.nd4j.linalg.util.FeatureUtil;
 
 import java.io.IOException;
 import java.util.*;
@@ -204,8 +203,8 @@ public class SequenceRecordReaderDataSetIterator implements DataSetIterator {
         //Note: using f order here, as each  time step is contiguous in the buffer with f order (isn't the case with c order)
         INDArray featuresOut = Nd4j.create(new int[]{listFeatures.size(),listFeatures.get(0).size(1),maxLength},'f');
         INDArray labelsOut = Nd4j.create(new int[]{listLabels.size(),listLabels.get(0).size(1),maxLength},'f');
-        INDArray featuresMask = null;
-        INDArray labelsMask = null;
+        WritableBuffer featuresMask = null;
+        WritableBuffer labelsMask = null;
 
         if(minLength == maxLength){
             for (int i = 0; i < listFeatures.size(); i++) {
@@ -214,8 +213,8 @@ public class SequenceRecordReaderDataSetIterator implements DataSetIterator {
                 labelsOut.tensorAlongDimension(i, 1, 2).permutei(1,0).assign(listLabels.get(i));
             }
         } else {
-            featuresMask = Nd4j.ones(listFeatures.size(),maxLength);
-            labelsMask = Nd4j.ones(listLabels.size(),maxLength);
+            featuresMask = WritableBuffer.ones(listFeatures.size() * maxLength);
+            labelsMask = WritableBuffer.ones(listLabels.size() * maxLength);
             for (int i = 0; i < listFeatures.size(); i++) {
                 INDArray f = listFeatures.get(i);
                 int tsLength = f.size(0);
@@ -225,8 +224,8 @@ public class SequenceRecordReaderDataSetIterator implements DataSetIterator {
                 labelsOut.tensorAlongDimension(i, 1, 2).permutei(1,0)
                         .put(new INDArrayIndex[]{NDArrayIndex.interval(0, tsLength), NDArrayIndex.all()}, listLabels.get(i));
                 for( int j=tsLength; j<maxLength; j++ ){
-                    featuresMask.put(i,j,0.0);
-                    labelsMask.put(i,j,0.0);
+                    featuresMask.put(i * maxLength + j, 0.0);
+                    labelsMask.put(i * maxLength + j, 0.0);
                 }
             }
         }
@@ -234,7 +233,7 @@ public class SequenceRecordReaderDataSetIterator implements DataSetIterator {
         cursor += listFeatures.size();
         if (inputColumns == -1) inputColumns = featuresOut.size(1);
         if (totalOutcomes == -1) totalOutcomes = labelsOut.size(1);
-        DataSet ds = new DataSet(featuresOut, labelsOut, featuresMask, labelsMask);
+        DataSet ds = new DataSet(featuresOut, labelsOut, toMask(featuresMask, featuresOut), toMask(labelsMask, featuresOut));
         if(collectMetaData){
             ds.setExampleMetaData(meta);
         }
@@ -272,6 +271,12 @@ public class SequenceRecordReaderDataSetIterator implements DataSetIterator {
         return nextMultipleSequenceReaders(featureList, labelList, meta);
     }
 
+    private static INDArray toMask(WritableBuffer mask, INDArray features3d) {
+        if (mask == null)
+            return null;
+        return mask.toArray(new int[]{features3d.size(0), features3d.size(2)}, 'c');
+    }
+
     private void assertNonZeroLengthSequence(List<?> sequence, String type) {
         if (sequence.size() == 0) {
             throw new ZeroLengthSequenceException(type);
@@ -283,8 +288,8 @@ public class SequenceRecordReaderDataSetIterator implements DataSetIterator {
         //Convert 2d sequences/time series to 3d minibatch data
         INDArray featuresOut;
         INDArray labelsOut;
-        INDArray featuresMask = null;
-        INDArray labelsMask = null;
+        WritableBuffer featuresMask = null;
+        WritableBuffer labelsMask = null;
         if(alignmentMode == AlignmentMode.EQUAL_LENGTH) {
             int[] featureShape = new int[3];
             featureShape[0] = featureList.size();   //mini batch size
@@ -324,8 +329,8 @@ public class SequenceRecordReaderDataSetIterator implements DataSetIterator {
 
             featuresOut = Nd4j.create(featuresShape,'f');
             labelsOut = Nd4j.create(labelsShape,'f');
-            featuresMask = Nd4j.ones(featureList.size(),longestTimeSeries);
-            labelsMask = Nd4j.ones(labelList.size(),longestTimeSeries);
+            featuresMask = WritableBuffer.ones(featureList.size() * longestTimeSeries);
+            labelsMask = WritableBuffer.ones(labelList.size() * longestTimeSeries);
             for (int i = 0; i < featureList.size(); i++) {
                 INDArray f = featureList.get(i);
                 INDArray l = labelList.get(i);
@@ -336,10 +341,10 @@ public class SequenceRecordReaderDataSetIterator implements DataSetIterator {
                 labelsOut.tensorAlongDimension(i, 1, 2).permutei(1,0)
                         .put(new INDArrayIndex[]{NDArrayIndex.interval(0, l.size(0)), NDArrayIndex.all()}, l);
                 for( int j=f.size(0); j<longestTimeSeries; j++ ){
-                    featuresMask.putScalar(i,j,0.0);
+                    featuresMask.put(i * longestTimeSeries + j, 0.0);
                 }
                 for( int j=l.size(0); j<longestTimeSeries; j++ ){
-                    labelsMask.putScalar(i,j,0.0);
+                    labelsMask.put(i * longestTimeSeries + j, 0.0);
                 }
             }
         } else if( alignmentMode == AlignmentMode.ALIGN_END ){    //Align at end
@@ -363,8 +368,8 @@ public class SequenceRecordReaderDataSetIterator implements DataSetIterator {
 
             featuresOut = Nd4j.create(featuresShape,'f');
             labelsOut = Nd4j.create(labelsShape,'f');
-            featuresMask = Nd4j.ones(featureList.size(), longestTimeSeries);
-            labelsMask = Nd4j.ones(labelList.size(), longestTimeSeries);
+            featuresMask = WritableBuffer.ones(featureList.size() * longestTimeSeries);
+            labelsMask = WritableBuffer.ones(labelList.size() * longestTimeSeries);
             for (int i = 0; i < featureList.size(); i++) {
                 INDArray f = featureList.get(i);
                 INDArray l = labelList.get(i);
@@ -380,15 +385,15 @@ public class SequenceRecordReaderDataSetIterator implements DataSetIterator {
                             .put(new INDArrayIndex[]{NDArrayIndex.interval(fLen-lLen, fLen), NDArrayIndex.all()}, l);
 
                     for( int j=fLen; j<longestTimeSeries; j++ ){
-                        featuresMask.putScalar(i,j,0.0);
+                        featuresMask.put(i * longestTimeSeries + j, 0.0);
                     }
                     //labels mask: component before labels
                     for( int j=0; j<fLen-lLen; j++ ){
-                        labelsMask.putScalar(i,j,0.0);
+                        labelsMask.put(i * longestTimeSeries + j, 0.0);
                     }
                     //labels mask: component after labels
                     for( int j=fLen; j<longestTimeSeries; j++ ){
-                        labelsMask.putScalar(i,j,0.0);
+                        labelsMask.put(i * longestTimeSeries + j, 0.0);
                     }
                 } else {
                     //Align features with end of labels (labels are longer)
@@ -399,16 +404,16 @@ public class SequenceRecordReaderDataSetIterator implements DataSetIterator {
 
                     //features mask: component before features
                     for( int j=0; j<lLen-fLen; j++ ){
-                        featuresMask.putScalar(i,j,0.0);
+                        featuresMask.put(i * longestTimeSeries + j, 0.0);
                     }
                     //features mask: component after features
                     for( int j=lLen; j<longestTimeSeries; j++ ){
-                        featuresMask.putScalar(i,j,0.0);
+                        featuresMask.put(i * longestTimeSeries + j, 0.0);
                     }
 
                     //labels mask
                     for( int j=lLen; j<longestTimeSeries; j++ ){
-                        labelsMask.putScalar(i,j,0.0);
+                        labelsMask.put(i * longestTimeSeries + j, 0.0);
                     }
                 }
             }
@@ -420,7 +425,7 @@ public class SequenceRecordReaderDataSetIterator implements DataSetIterator {
         cursor += featureList.size();
         if (inputColumns == -1) inputColumns = featuresOut.size(1);
         if (totalOutcomes == -1) totalOutcomes = labelsOut.size(1);
-        DataSet ds = new DataSet(featuresOut, labelsOut, featuresMask, labelsMask);
+        DataSet ds = new DataSet(featuresOut, labelsOut, toMask(featuresMask, featuresOut), toMask(labelsMask, featuresOut));
         if(collectMetaData){
             ds.setExampleMetaData(meta);
         }
@@ -511,8 +516,9 @@ public class SequenceRecordReaderDataSetIterator implements DataSetIterator {
 
         Iterator<List<Writable>> iter = features.iterator();
 
+        //Values are written to an 'f' order buffer: element [i,f] is at i + timeSeriesLength * f
         int i = 0;
-        INDArray out = null;
+        WritableBuffer out = null;
         while (iter.hasNext()) {
             List<Writable> step = iter.next();
             if (i == 0) {
@@ -523,7 +529,7 @@ public class SequenceRecordReaderDataSetIterator implements DataSetIterator {
                         shape[1]++;
                     }
                 }
-                out = Nd4j.create(shape,'f');
+                out = new WritableBuffer(shape[0] * shape[1]);
             }
 
             Iterator<Writable> timeStepIter = step.iterator();
@@ -534,16 +540,16 @@ public class SequenceRecordReaderDataSetIterator implements DataSetIterator {
                 if(current instanceof NDArrayWritable){
                     //Array writable -> multiple values
                     INDArray arr = ((NDArrayWritable) current).get();
-                    out.put(new INDArrayIndex[]{NDArrayIndex.point(i), NDArrayIndex.interval(f,f+arr.length())}, arr);
+                    out.put(i + shape[0] * f, shape[0], arr);
                     f += arr.length();
                 } else {
                     //Single value case
-                    out.put(i, f++, current.toDouble());
+                    out.put(i + shape[0] * f++, current.toDouble());
                 }
             }
             i++;
         }
-        return out;
+        return out.toArray(shape, 'f');
     }
 
     private INDArray getLabels(List<List<Writable>> labels) {
@@ -553,8 +559,9 @@ public class SequenceRecordReaderDataSetIterator implements DataSetIterator {
 
         Iterator<List<Writable>> iter = labels.iterator();
 
+        //Values are written to an 'f' order buffer: element [i,f] is at i + timeSeriesLength * f
         int i = 0;
-        INDArray out = null;
+        WritableBuffer out = null;
         while (iter.hasNext()) {
             List<Writable> step = iter.next();
 
@@ -570,7 +577,7 @@ public class SequenceRecordReaderDataSetIterator implements DataSetIterator {
                 } else {
                     shape[1] = numPossibleLabels;
                 }
-                out = Nd4j.create(shape,'f');
+                out = new WritableBuffer(shape[0] * shape[1]);
             }
 
             Iterator<Writable> timeStepIter = step.iterator();
@@ -581,10 +588,10 @@ public class SequenceRecordReaderDataSetIterator implements DataSetIterator {
                     Writable current = timeStepIter.next();
                     if(current instanceof NDArrayWritable){
                         INDArray w = ((NDArrayWritable) current).get();
-                        out.put(new INDArrayIndex[]{NDArrayIndex.point(i), NDArrayIndex.interval(f,f+w.length())},w);
+                        out.put(i + shape[0] * f, shape[0], w);
                         f += w.length();
                     } else {
-                        out.put(i, f++, current.toDouble());
+                        out.put(i + shape[0] * f++, current.toDouble());
                     }
                 }
             } else {
@@ -596,23 +603,24 @@ public class SequenceRecordReaderDataSetIterator implements DataSetIterator {
                             (numPossibleLabels-1) + " inclusive (0 to numClasses-1, with numClasses=" + numPossibleLabels
                             + "); got label value of " + idx);
                 }
-                INDArray line = FeatureUtil.toOutcomeVector(idx, numPossibleLabels);
-                out.getRow(i).assign(line);
+                out.put(i + shape[0] * idx, 1.0);
             }
 
             i++;
         }
-        return out;
+        return out.toArray(shape, 'f');
     }
 
     private INDArray[] getFeaturesLabelsSingleReader(List<List<Writable>> input){
         Iterator<List<Writable>> iter = input.iterator();
 
+        //Values are written to 'c' order buffers: element [i,j] is at i * size + j
         int i=0;
-        INDArray features = null;
-        INDArray labels = null;    //= Nd4j.zeros(input.size(), regression ? 1 : numPossibleLabels);
+        WritableBuffer features = null;
+        WritableBuffer labels = null;
 
         int featureSize = 0;
+        int labelSize = 0;
         while(iter.hasNext()){
             List<Writable> step = iter.next();
             if (i == 0) {
@@ -628,10 +636,9 @@ public class SequenceRecordReaderDataSetIterator implements DataSetIterator {
                         }
                     }
                 }
-                features = Nd4j.zeros( input.size(), featureSize);
+                features = new WritableBuffer(input.size() * featureSize);
 
                 //Second: determine the output (labels) size.
-                int labelSize;
                 if(regression){
                     if(step.get(labelIndex) instanceof NDArrayWritable){
                         labelSize = ((NDArrayWritable) step.get(labelIndex)).get().length();
@@ -642,7 +649,7 @@ public class SequenceRecordReaderDataSetIterator implements DataSetIterator {
                     //Classification: integer -> one-hot
                     labelSize = numPossibleLabels;
                 }
-                labels = Nd4j.zeros(input.size(), labelSize);
+                labels = new WritableBuffer(input.size() * labelSize);
             }
 
             Iterator<Writable> timeStepIter = step.iterator();
@@ -655,9 +662,9 @@ public class SequenceRecordReaderDataSetIterator implements DataSetIterator {
                     if(regression){
                         if(current instanceof NDArrayWritable){
                             //Standard case
-                            labels.putRow(i, ((NDArrayWritable) current).get());
+                            labels.put(i * labelSize, 1, ((NDArrayWritable) current).get());
                         } else {
-                            labels.put(i,0,current.toDouble());
+                            labels.put(i * labelSize, current.toDouble());
                         }
                     } else {
                         int idx = current.toInt();
@@ -666,7 +673,7 @@ public class SequenceRecordReaderDataSetIterator implements DataSetIterator {
                                     + ") to be in range 0 to " + (numPossibleLabels-1) + " inclusive (0 to numClasses-1, with numClasses=" + numPossibleLabels
                                     + "); got label value of " + current);
                         }
-                        labels.putScalar(i,current.toInt(),1.0);    //Labels initialized as 0s
+                        labels.put(i * labelSize + idx, 1.0);    //Labels initialized as 0s
                     }
                 } else {
                     //feature
@@ -674,18 +681,19 @@ public class SequenceRecordReaderDataSetIterator implements DataSetIterator {
                         //NDArrayWritable: multiple values
                         INDArray w = ((NDArrayWritable) current).get();
                         int length = w.length();
-                        features.put(new INDArrayIndex[]{NDArrayIndex.point(i),NDArrayIndex.interval(countFeatures,countFeatures+length)}, w);
+                        features.put(i * featureSize + countFeatures, 1, w);
                         countFeatures += length;
                     } else {
                         //Standard case: single value
-                        features.put(i, countFeatures++, current.toDouble());
+                        features.put(i * featureSize + countFeatures++, current.toDouble());
                     }
                 }
             }
             i++;
         }
 
-        return new INDArray[]{features,labels};
+        return new INDArray[]{features.toArray(new int[]{input.size(), featureSize}, 'c'),
+                labels.toArray(new int[]{input.size(), labelSize}, 'c')};
     }
 
 
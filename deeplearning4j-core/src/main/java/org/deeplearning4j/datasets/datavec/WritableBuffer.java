@@ -0,0 +1,86 @@
+package org.deeplearning4j.datasets.datavec;
+
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.Arrays;
+
+/**
+ * Primitive buffer for bulk conversion of Writables to an INDArray. Values are written directly into a Java
+ * float[] or double[] (depending on the current Nd4j data type), and the INDArray is created from the entire buffer
+ * at once - instead of one putScalar call (index calculation and native call) per value.<br>
+ * Different (non-overlapping) parts of the buffer may be written from different threads.
+ */
+final class WritableBuffer {
+
+    private final double[] doubles;
+    private final float[] floats;
+
+    WritableBuffer(int length) {
+        if (Nd4j.dataType() == DataBuffer.Type.DOUBLE) {
+            doubles = new double[length];
+            floats = null;
+        } else {
+            doubles = null;
+            floats = new float[length];
+        }
+    }
+
+    /**
+     * Create a buffer with all values set to 1.0 (for example, for mask arrays)
+     */
+    static WritableBuffer ones(int length) {
+        WritableBuffer b = new WritableBuffer(length);
+        if (b.doubles != null) {
+            Arrays.fill(b.doubles, 1.0);
+        } else {
+            Arrays.fill(b.floats, 1.0f);
+        }
+        return b;
+    }
+
+    void put(int idx, double value) {
+        if (doubles != null) {
+            doubles[idx] = value;
+        } else {
+            floats[idx] = (float) value;
+        }
+    }
+
+    /**
+     * Copy all values of the array into the buffer: value v (in the order of the array's 'c' (row major) linear index)
+     * is written to position idx + v * stride
+     */
+    void put(int idx, int stride, INDArray values) {
+        //Flattened copy: always a new array, with offset 0 and no views
+        INDArray flat = Nd4j.toFlattened('c', values);
+        int n = flat.length();
+        if (doubles != null) {
+            double[] d = flat.data().asDouble();
+            if (stride == 1) {
+                System.arraycopy(d, 0, doubles, idx, n);
+            } else {
+                for (int i = 0; i < n; i++) {
+                    doubles[idx + i * stride] = d[i];
+                }
+            }
+        } else {
+            float[] f = flat.data().asFloat();
+            if (stride == 1) {
+                System.arraycopy(f, 0, floats, idx, n);
+            } else {
+                for (int i = 0; i < n; i++) {
+                    floats[idx + i * stride] = f[i];
+                }
+            }
+        }
+    }
+
+    INDArray toArray(int[] shape, char order) {
+        if (doubles != null) {
+            return Nd4j.create(doubles, shape, order);
+        }
+        return Nd4j.create(floats, shape, order);
+    }
+}
@@ -31,6 +31,7 @@ import org.datavec.api.split.FileSplit;
 import org.datavec.api.split.NumberedFileInputSplit;
 import org.datavec.api.writable.DoubleWritable;
 import org.datavec.api.writable.IntWritable;
+import org.datavec.api.writable.Text;
 import org.datavec.api.writable.Writable;
 import org.datavec.common.data.NDArrayWritable;
 import org.deeplearning4j.datasets.datavec.exception.ZeroLengthSequenceException;
@@ -938,4 +939,100 @@ public class RecordReaderDataSetiteratorTest {
         assertEquals(expFeatures, ds.getFeatures());
         assertEquals(expLabels, ds.getLabels());
     }
+
+    @Test
+    public void testParallelism() throws Exception {
+        RecordReader csv = new CSVRecordReader();
+        csv.initialize(new FileSplit(new ClassPathResource("iris.txt").getTempFileFromArchive()));
+        RecordReader csv2 = new CSVRecordReader();
+        csv2.initialize(new FileSplit(new ClassPathResource("iris.txt").getTempFileFromArchive()));
+
+        //Label index of -1: inferred (as the last column) before any parallel conversion
+        RecordReaderDataSetIterator iter = new RecordReaderDataSetIterator(csv, 16, -1, 3);
+        RecordReaderDataSetIterator parallelIter = new RecordReaderDataSetIterator(csv2, 16, -1, 3);
+        iter.setCollectMetaData(true);
+        parallelIter.setCollectMetaData(true);
+        parallelIter.setParallelism(4);
+        assertEquals(4, parallelIter.getParallelism());
+
+        int count = 0;
+        while (iter.hasNext()) {
+            assertTrue(parallelIter.hasNext());
+            DataSet expected = iter.next();
+            DataSet actual = parallelIter.next();
+            assertEquals(expected.getFeatures(), actual.getFeatures());
+            assertEquals(expected.getLabels(), actual.getLabels());
+            assertEquals(expected.getExampleMetaData(), actual.getExampleMetaData());
+            count += actual.numExamples();
+        }
+        assertFalse(parallelIter.hasNext());
+        assertEquals(150, count);
+    }
+
+    @Test
+    public void testBulkConversionTextValues() {
+        //Text values (as from CSV files), with the label in the middle of the record
+        Collection<Collection<Writable>> data = new ArrayList<>();
+        data.add(Arrays.<Writable>asList(new Text("0.5"), new Text("2"), new Text("1.5")));
+        data.add(Arrays.<Writable>asList(new Text("2.5"), new Text("0"), new Text("3.5")));
+        data.add(Arrays.<Writable>asList(new Text("4.5"), new Text("1"), new Text("5.5")));
+
+        RecordReader rr = new CollectionRecordReader(data);
+        DataSetIterator rrdsi = new RecordReaderDataSetIterator(rr, 3, 1, 3);
+        DataSet ds = rrdsi.next();
+        assertEquals(Nd4j.create(new double[][]{{0.5, 1.5}, {2.5, 3.5}, {4.5, 5.5}}), ds.getFeatures());
+        assertEquals(Nd4j.create(new double[][]{{0, 0, 1}, {1, 0, 0}, {0, 1, 0}}), ds.getLabels());
+
+        //No labels: features are also used as the labels
+        rr = new CollectionRecordReader(data);
+        rrdsi = new RecordReaderDataSetIterator(rr, 2);
+        ds = rrdsi.next();
+        INDArray expFeatures = Nd4j.create(new double[][]{{0.5, 2, 1.5}, {2.5, 0, 3.5}});
+        assertEquals(expFeatures, ds.getFeatures());
+        assertEquals(expFeatures, ds.getLabels());
+        assertEquals(1, rrdsi.next().numExamples());
+    }
+
+    @Test
+    public void testReadAhead() throws Exception {
+        RecordReader csv = new CSVRecordReader();
+        csv.initialize(new FileSplit(new ClassPathResource("iris.txt").getTempFileFromArchive()));
+        RecordReader csv2 = new CSVRecordReader();
+        csv2.initialize(new FileSplit(new ClassPathResource("iris.txt").getTempFileFromArchive()));
+
+        RecordReaderDataSetIterator iter = new RecordReaderDataSetIterator(csv, 16, 4, 3);
+        RecordReaderDataSetIterator readAheadIter = new RecordReaderDataSetIterator(csv2, 16, 4, 3);
+        iter.setCollectMetaData(true);
+        readAheadIter.setCollectMetaData(true);
+        readAheadIter.setReadAhead(2);
+        readAheadIter.setParallelism(2);
+        assertEquals(2, readAheadIter.getReadAhead());
+
+        //Reset part way through the first epoch: the read-ahead thread is stopped and restarted
+        readAheadIter.next();
+        readAheadIter.reset();
+
+        for (int epoch = 0; epoch < 2; epoch++) {
+            int count = 0;
+            while (iter.hasNext()) {
+                assertTrue(readAheadIter.hasNext());
+                DataSet expected = iter.next();
+                DataSet actual = readAheadIter.next();
+                assertEquals(expected.getFeatures(), actual.getFeatures());
+                assertEquals(expected.getLabels(), actual.getLabels());
+                assertEquals(expected.getExampleMetaData(), actual.getExampleMetaData());
+                count += actual.numExamples();
+            }
+            assertFalse(readAheadIter.hasNext());
+            assertEquals(150, count);
+
+            //Loading from metadata is safe while the read-ahead thread is active
+            iter.reset();
+            readAheadIter.reset();
+            List<RecordMetaData> meta = readAheadIter.next().getExampleMetaData(RecordMetaData.class);
+            assertEquals(iter.next().getFeatures(), readAheadIter.loadFromMetaData(meta).getFeatures());
+            iter.reset();
+            readAheadIter.reset();
+        }
+    }
 }
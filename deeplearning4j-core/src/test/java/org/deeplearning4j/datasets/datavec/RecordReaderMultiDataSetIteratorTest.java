@@ -15,6 +15,7 @@ import org.datavec.api.split.FileSplit;
 import org.datavec.api.split.InputSplit;
 import org.datavec.api.split.NumberedFileInputSplit;
 import org.datavec.image.recordreader.ImageRecordReader;
+import org.deeplearning4j.exception.DL4JInvalidInputException;
 import org.junit.Test;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.DataSet;
@@ -644,4 +645,140 @@ public class RecordReaderMultiDataSetIteratorTest {
             os.write(b);
         }
     }
+
+    @Test
+    public void testParallelism() throws Exception {
+        //Parallel reading and conversion should give exactly the same MultiDataSets, in the same order
+        MultiDataSetIterator[] iters = new MultiDataSetIterator[2];
+        int[] parallelism = {1, 4};
+        for (int i = 0; i < 2; i++) {
+            RecordReader rr = new CSVRecordReader(0, ",");
+            rr.initialize(new FileSplit(new ClassPathResource("iris.txt").getTempFileFromArchive()));
+            RecordReader rr2 = new CSVRecordReader(0, ",");
+            rr2.initialize(new FileSplit(new ClassPathResource("iris.txt").getTempFileFromArchive()));
+
+            RecordReaderMultiDataSetIterator iter = new RecordReaderMultiDataSetIterator.Builder(10)
+                    .addReader("reader", rr)
+                    .addReader("reader2", rr2)
+                    .addInput("reader", 0, 3)
+                    .addInput("reader2", 0, 1)
+                    .addOutputOneHot("reader", 4, 3)
+                    .parallelism(parallelism[i])
+                    .build();
+            iter.setCollectMetaData(true);
+            assertEquals(parallelism[i], iter.getParallelism());
+            iters[i] = iter;
+        }
+
+        int count = 0;
+        while (iters[0].hasNext()) {
+            assertTrue(iters[1].hasNext());
+            MultiDataSet expected = iters[0].next();
+            MultiDataSet actual = iters[1].next();
+            assertArrayEquals(expected.getFeatures(), actual.getFeatures());
+            assertArrayEquals(expected.getLabels(), actual.getLabels());
+            assertEquals(expected.getExampleMetaData(), actual.getExampleMetaData());
+            count++;
+        }
+        assertFalse(iters[1].hasNext());
+        assertEquals(15, count);
+    }
+
+    @Test
+    public void testParallelismSequences() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            new ClassPathResource(String.format("csvsequence_%d.txt", i)).getTempFileFromArchive();
+            new ClassPathResource(String.format("csvsequencelabelsShort_%d.txt", i)).getTempFileFromArchive();
+        }
+        String featuresPath = new ClassPathResource("csvsequence_0.txt").getTempFileFromArchive().getAbsolutePath()
+                .replaceAll("0", "%d");
+        String labelsPath = new ClassPathResource("csvsequencelabelsShort_0.txt").getTempFileFromArchive()
+                .getAbsolutePath().replaceAll("0", "%d");
+
+        //Variable length label sequences: mask arrays are also converted in parallel
+        MultiDataSet[] out = new MultiDataSet[2];
+        int[] parallelism = {1, 3};
+        for (int i = 0; i < 2; i++) {
+            SequenceRecordReader featureReader = new CSVSequenceRecordReader(1, ",");
+            SequenceRecordReader labelReader = new CSVSequenceRecordReader(1, ",");
+            featureReader.initialize(new NumberedFileInputSplit(featuresPath, 0, 2));
+            labelReader.initialize(new NumberedFileInputSplit(labelsPath, 0, 2));
+
+            MultiDataSetIterator iter = new RecordReaderMultiDataSetIterator.Builder(3)
+                    .addSequenceReader("in", featureReader)
+                    .addSequenceReader("out", labelReader)
+                    .addInput("in")
+                    .addOutputOneHot("out", 0, 4)
+                    .sequenceAlignmentMode(RecordReaderMultiDataSetIterator.AlignmentMode.ALIGN_END)
+                    .parallelism(parallelism[i])
+                    .build();
+            out[i] = iter.next();
+            assertFalse(iter.hasNext());
+        }
+
+        assertArrayEquals(out[0].getFeatures(), out[1].getFeatures());
+        assertArrayEquals(out[0].getLabels(), out[1].getLabels());
+        assertNotNull(out[0].getLabelsMaskArrays());
+        assertArrayEquals(out[0].getLabelsMaskArrays(), out[1].getLabelsMaskArrays());
+    }
+
+    @Test(expected = DL4JInvalidInputException.class)
+    public void testInvalidOneHotIndex() throws Exception {
+        RecordReader rr = new CSVRecordReader(0, ",");
+        rr.initialize(new FileSplit(new ClassPathResource("iris.txt").getTempFileFromArchive()));
+
+        //Iris has 3 classes: index 2 is out of range for 2 classes
+        MultiDataSetIterator iter = new RecordReaderMultiDataSetIterator.Builder(150)
+                .addReader("reader", rr)
+                .addInput("reader", 0, 3)
+                .addOutputOneHot("reader", 4, 2)
+                .build();
+        iter.next();
+    }
+
+    @Test
+    public void testReadAhead() throws Exception {
+        //Reading ahead (one thread per reader) should give exactly the same MultiDataSets, in the same order
+        MultiDataSetIterator[] iters = new MultiDataSetIterator[2];
+        int[] readAhead = {0, 3};
+        for (int i = 0; i < 2; i++) {
+            RecordReader rr = new CSVRecordReader(0, ",");
+            rr.initialize(new FileSplit(new ClassPathResource("iris.txt").getTempFileFromArchive()));
+            RecordReader rr2 = new CSVRecordReader(0, ",");
+            rr2.initialize(new FileSplit(new ClassPathResource("iris.txt").getTempFileFromArchive()));
+
+            RecordReaderMultiDataSetIterator iter = new RecordReaderMultiDataSetIterator.Builder(10)
+                    .addReader("reader", rr)
+                    .addReader("reader2", rr2)
+                    .addInput("reader", 0, 3)
+                    .addInput("reader2", 0, 1)
+                    .addOutputOneHot("reader", 4, 3)
+                    .readAhead(readAhead[i])
+                    .build();
+            iter.setCollectMetaData(true);
+            assertEquals(readAhead[i], iter.getReadAhead());
+            iters[i] = iter;
+        }
+
+        //Reset part way through the first epoch: the read-ahead threads are stopped and restarted
+        iters[1].next();
+        iters[1].reset();
+
+        for (int epoch = 0; epoch < 2; epoch++) {
+            int count = 0;
+            while (iters[0].hasNext()) {
+                assertTrue(iters[1].hasNext());
+                MultiDataSet expected = iters[0].next();
+                MultiDataSet actual = iters[1].next();
+                assertArrayEquals(expected.getFeatures(), actual.getFeatures());
+                assertArrayEquals(expected.getLabels(), actual.getLabels());
+                assertEquals(expected.getExampleMetaData(), actual.getExampleMetaData());
+                count++;
+            }
+            assertFalse(iters[1].hasNext());
+            assertEquals(15, count);
+            iters[0].reset();
+            iters[1].reset();
+        }
+    }
 }
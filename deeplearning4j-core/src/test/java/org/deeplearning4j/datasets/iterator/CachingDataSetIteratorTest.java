@@ -0,0 +1,215 @@
+package org.deeplearning4j.datasets.iterator;
+
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.MultiDataSet;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class CachingDataSetIteratorTest {
+
+    private File dir;
+
+    @Before
+    public void before() {
+        dir = Files.createTempDir();
+    }
+
+    @After
+    public void after() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    private static List<DataSet> getData(int n) {
+        Nd4j.getRandom().setSeed(12345);
+        List<DataSet> list = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            //Variable minibatch size; time series with masks for some minibatches
+            int mb = 2 + i % 3;
+            if (i % 2 == 0) {
+                list.add(new DataSet(Nd4j.rand(mb, 5), Nd4j.rand(mb, 3)));
+            } else {
+                INDArray mask = Nd4j.ones(mb, 4);
+                mask.putScalar(0, 3, 0.0);
+                list.add(new DataSet(Nd4j.rand(new int[]{mb, 5, 4}), Nd4j.rand(new int[]{mb, 3, 4}), mask, mask.dup()));
+            }
+        }
+        return list;
+    }
+
+    private static class CountingIterator extends ExistingDataSetIterator {
+        private int count;
+
+        CountingIterator(List<DataSet> list) {
+            super(list);
+        }
+
+        @Override
+        public DataSet next() {
+            count++;
+            return super.next();
+        }
+    }
+
+    @Test
+    public void testCaching() {
+        List<DataSet> data = getData(10);
+        CountingIterator source = new CountingIterator(data);
+        CachingDataSetIterator iter = new CachingDataSetIterator(source, dir, "key");
+        assertFalse(iter.isCacheComplete());
+
+        for (int epoch = 0; epoch < 3; epoch++) {
+            int i = 0;
+            while (iter.hasNext()) {
+                assertEquals(data.get(i++), iter.next());
+            }
+            assertEquals(data.size(), i);
+            assertTrue(iter.isCacheComplete());
+            iter.reset();
+        }
+        //Source is only used in the first epoch
+        assertEquals(data.size(), source.count);
+        assertEquals(data.size(), iter.numCachedBatches());
+        assertEquals(data.get(7), iter.getCachedBatch(7));
+
+        //Existing complete cache is reused with the same key...
+        source = new CountingIterator(data);
+        iter = new CachingDataSetIterator(source, dir, "key");
+        assertTrue(iter.isCacheComplete());
+        int i = 0;
+        while (iter.hasNext()) {
+            assertEquals(data.get(i++), iter.next());
+        }
+        assertEquals(data.size(), i);
+        assertEquals(0, source.count);
+
+        //... but not with a different key
+        List<DataSet> data2 = getData(4);
+        iter = new CachingDataSetIterator(new ExistingDataSetIterator(data2), dir, "otherKey");
+        assertFalse(iter.isCacheComplete());
+        i = 0;
+        while (iter.hasNext()) {
+            assertEquals(data2.get(i++), iter.next());
+        }
+        assertEquals(data2.size(), iter.numCachedBatches());
+    }
+
+    @Test
+    public void testSourceConfigurationInKey() {
+        List<DataSet> data = getData(4);
+        CachingDataSetIterator iter = new CachingDataSetIterator(new ExistingDataSetIterator(data), dir, "key");
+        while (iter.hasNext()) {
+            iter.next();
+        }
+        assertTrue(iter.isCacheComplete());
+
+        //Same user supplied key, but the source now has a preprocessor: cache must not be reused
+        ExistingDataSetIterator source = new ExistingDataSetIterator(data);
+        source.setPreProcessor(new DataSetPreProcessor() {
+            @Override
+            public void preProcess(org.nd4j.linalg.dataset.api.DataSet toPreProcess) {
+            }
+        });
+        iter = new CachingDataSetIterator(source, dir, "key");
+        assertFalse(iter.isCacheComplete());
+    }
+
+    @Test
+    public void testResetIncompleteCacheWithoutSourceReset() {
+        List<DataSet> data = getData(4);
+        CachingDataSetIterator iter = new CachingDataSetIterator(new ExistingDataSetIterator(data.iterator()), dir, "key");
+        assertFalse(iter.resetSupported());
+        //Nothing written yet: nothing to reset
+        iter.reset();
+
+        iter.next();
+        try {
+            iter.reset();
+            fail("Expected exception");
+        } catch (UnsupportedOperationException e) {
+            assertTrue(e.getMessage().contains("incomplete"));
+        }
+    }
+
+    @Test
+    public void testPartialEpochAndShuffle() {
+        List<DataSet> data = getData(8);
+        CachingDataSetIterator iter = new CachingDataSetIterator(new ExistingDataSetIterator(data), dir, "key", true, 12345);
+
+        //Reset before the source is fully consumed: incomplete cache is rewritten
+        iter.next();
+        iter.next();
+        iter.reset();
+        assertFalse(iter.isCacheComplete());
+        int count = 0;
+        while (iter.hasNext()) {
+            iter.next();
+            count++;
+        }
+        assertEquals(data.size(), count);
+        assertTrue(iter.isCacheComplete());
+        assertEquals(data.size(), iter.numCachedBatches());
+
+        boolean anyDifferentOrder = false;
+        for (int epoch = 0; epoch < 3; epoch++) {
+            iter.reset();
+            Set<Integer> seen = new HashSet<>();
+            int pos = 0;
+            while (iter.hasNext()) {
+                DataSet ds = iter.next();
+                int idx = data.indexOf(ds);
+                assertTrue(idx >= 0);
+                assertTrue(seen.add(idx));
+                if (idx != pos++)
+                    anyDifferentOrder = true;
+            }
+            assertEquals(data.size(), seen.size());
+        }
+        assertTrue(anyDifferentOrder);
+    }
+
+    @Test
+    public void testCachingMultiDataSet() {
+        Nd4j.getRandom().setSeed(12345);
+        List<MultiDataSet> data = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            INDArray[] f = new INDArray[]{Nd4j.rand(3, 4), Nd4j.rand(new int[]{3, 2, 5})};
+            INDArray[] l = new INDArray[]{Nd4j.rand(3, 2)};
+            //Mask arrays: null for one input only
+            INDArray[] fm = new INDArray[]{null, Nd4j.ones(3, 5)};
+            data.add(new org.nd4j.linalg.dataset.MultiDataSet(f, l, fm, null));
+        }
+
+        //Source iterator does not support reset: the cache does, once complete
+        CachingMultiDataSetIterator iter = new CachingMultiDataSetIterator(
+                        new IteratorMultiDataSetIterator(data.iterator(), 3), dir, "key");
+        assertFalse(iter.resetSupported());
+        for (int epoch = 0; epoch < 2; epoch++) {
+            int i = 0;
+            while (iter.hasNext()) {
+                MultiDataSet expected = data.get(i++);
+                MultiDataSet actual = iter.next();
+                assertArrayEquals(expected.getFeatures(), actual.getFeatures());
+                assertArrayEquals(expected.getLabels(), actual.getLabels());
+                assertArrayEquals(expected.getFeaturesMaskArrays(), actual.getFeaturesMaskArrays());
+                assertNull(actual.getLabelsMaskArrays());
+            }
+            assertEquals(data.size(), i);
+            assertTrue(iter.resetSupported());
+            iter.reset();
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package org.deeplearning4j.datasets.iterator;
+
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class MultiProducerAsyncDataSetIteratorTest {
+
+    private static List<DataSet> getData(int n) {
+        List<DataSet> list = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            //Value of the features encodes the position in the base iterator
+            list.add(new DataSet(Nd4j.valueArrayOf(new int[] {5, 10}, i), Nd4j.zeros(5, 3)));
+        }
+        return list;
+    }
+
+    @Test
+    public void testOrdered() {
+        List<DataSet> data = getData(100);
+        for (int numProducers = 1; numProducers <= 4; numProducers++) {
+            MultiProducerAsyncDataSetIterator iter = new MultiProducerAsyncDataSetIterator(
+                            new ExistingDataSetIterator(data), 2 * numProducers, numProducers);
+            for (int epoch = 0; epoch < 3; epoch++) {
+                int cnt = 0;
+                while (iter.hasNext()) {
+                    DataSet ds = iter.next();
+                    assertEquals(cnt, ds.getFeatures().getDouble(0), 0.0);
+                    cnt++;
+                }
+                assertEquals(data.size(), cnt);
+                iter.reset();
+            }
+            assertEquals(3 * data.size(), iter.getNumNextCalls());
+            assertTrue(iter.getStarvationCount() <= iter.getNumNextCalls());
+            iter.shutdown();
+        }
+    }
+
+    @Test
+    public void testUnorderedWithPreProcessor() {
+        List<DataSet> data = getData(100);
+        MultiProducerAsyncDataSetIterator iter = new MultiProducerAsyncDataSetIterator(
+                        new ExistingDataSetIterator(data), 8, 4, false);
+        iter.setPreProcessor(new DataSetPreProcessor() {
+            @Override
+            public void preProcess(org.nd4j.linalg.dataset.api.DataSet toPreProcess) {
+                toPreProcess.getLabels().addi(1.0);
+            }
+        });
+
+        Set<Integer> seen = new HashSet<>();
+        while (iter.hasNext()) {
+            DataSet ds = iter.next();
+            assertTrue(seen.add((int) ds.getFeatures().getDouble(0)));
+            assertEquals(1.0, ds.getLabels().minNumber().doubleValue(), 0.0);
+        }
+        assertEquals(data.size(), seen.size());
+        iter.shutdown();
+    }
+
+    @Test
+    public void testPartialEpochReset() {
+        List<DataSet> data = getData(50);
+        MultiProducerAsyncDataSetIterator iter =
+                        new MultiProducerAsyncDataSetIterator(new ExistingDataSetIterator(data), 6, 3);
+        for (int i = 0; i < 10; i++) {
+            iter.next();
+        }
+        iter.reset();
+
+        int cnt = 0;
+        while (iter.hasNext()) {
+            assertEquals(cnt++, iter.next().getFeatures().getDouble(0), 0.0);
+        }
+        assertEquals(data.size(), cnt);
+        iter.shutdown();
+    }
+
+    @Test
+    public void testMultipleSources() {
+        //Unequal numbers of DataSets per source: exhausted sources are skipped in the round robin order
+        int[] sizes = {5, 2, 7};
+        List<DataSetIterator> sources = new ArrayList<>();
+        int offset = 0;
+        for (int size : sizes) {
+            List<DataSet> l = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                l.add(new DataSet(Nd4j.valueArrayOf(new int[] {5, 10}, offset + i), Nd4j.zeros(5, 3)));
+            }
+            sources.add(new ExistingDataSetIterator(l));
+            offset += 100;
+        }
+        double[] expected = {0, 100, 200, 1, 101, 201, 2, 202, 3, 203, 4, 204, 205, 206};
+
+        MultiProducerAsyncDataSetIterator iter = new MultiProducerAsyncDataSetIterator(sources, 6, true);
+        for (int epoch = 0; epoch < 2; epoch++) {
+            int cnt = 0;
+            while (iter.hasNext()) {
+                assertEquals(expected[cnt++], iter.next().getFeatures().getDouble(0), 0.0);
+            }
+            assertEquals(expected.length, cnt);
+            iter.reset();
+        }
+        iter.shutdown();
+
+        iter = new MultiProducerAsyncDataSetIterator(sources, 6, false);
+        Set<Integer> seen = new HashSet<>();
+        while (iter.hasNext()) {
+            assertTrue(seen.add((int) iter.next().getFeatures().getDouble(0)));
+        }
+        assertEquals(expected.length, seen.size());
+        iter.shutdown();
+    }
+
+    @Test(timeout = 60000L)
+    public void testMultipleSourcesSkewedSpeeds() {
+        //One slow source, two fast ones, with a small queue: the fast sources must not be able to take all queue slots
+        //while the consumer waits for the slow source (in ordered mode, this would deadlock)
+        int[] sizes = {10, 30, 30};
+        List<DataSetIterator> sources = new ArrayList<>();
+        int offset = 0;
+        for (int s = 0; s < sizes.length; s++) {
+            List<DataSet> l = new ArrayList<>();
+            for (int i = 0; i < sizes[s]; i++) {
+                l.add(new DataSet(Nd4j.valueArrayOf(new int[] {5, 10}, offset + i), Nd4j.zeros(5, 3)));
+            }
+            if (s == 0) {
+                sources.add(new ExistingDataSetIterator(l) {
+                    @Override
+                    public DataSet next() {
+                        try {
+                            Thread.sleep(20);
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                        return super.next();
+                    }
+                });
+            } else {
+                sources.add(new ExistingDataSetIterator(l));
+            }
+            offset += 100;
+        }
+
+        for (int queueSize : new int[] {3, 6}) {
+            MultiProducerAsyncDataSetIterator iter = new MultiProducerAsyncDataSetIterator(sources, queueSize, true);
+            int cnt = 0;
+            int[] perSource = new int[sizes.length];
+            while (iter.hasNext()) {
+                int value = (int) iter.next().getFeatures().getDouble(0);
+                int s = value / 100;
+                //Round robin while all sources have data; then the remaining fast sources in turn
+                if (cnt < 3 * sizes[0])
+                    assertEquals(cnt % 3, s);
+                assertEquals(100 * s + perSource[s]++, value);
+                cnt++;
+            }
+            assertEquals(70, cnt);
+            iter.shutdown();
+        }
+    }
+
+    @Test
+    public void testBufferRecycling() throws Exception {
+        List<DataSet> data = getData(50);
+        File dir = Files.createTempDir();
+        try {
+            CachingDataSetIterator caching = new CachingDataSetIterator(new ExistingDataSetIterator(data), dir, "key");
+            while (caching.hasNext()) {
+                caching.next();
+            }
+            caching.reset();
+            assertTrue(caching.isCacheComplete());
+
+            MultiProducerAsyncDataSetIterator iter = new MultiProducerAsyncDataSetIterator(caching, 4, 2, true, 8);
+            //Identity set: recycled DataSets reuse a previously returned features array
+            Set<INDArray> buffers = Collections.newSetFromMap(new IdentityHashMap<INDArray, Boolean>());
+            for (int epoch = 0; epoch < 2; epoch++) {
+                int cnt = 0;
+                while (iter.hasNext()) {
+                    DataSet ds = iter.next();
+                    assertEquals(cnt, ds.getFeatures().getDouble(0), 0.0);
+                    assertEquals(cnt, ds.getFeatures().getDouble(4, 9), 0.0);
+                    assertEquals(Nd4j.zeros(5, 3), ds.getLabels());
+                    buffers.add(ds.getFeatures());
+                    iter.release(ds);
+                    cnt++;
+                }
+                assertEquals(data.size(), cnt);
+                iter.reset();
+            }
+            //Without recycling, there would be one features array per DataSet (i.e., 2 * data.size())
+            assertTrue(String.valueOf(buffers.size()), buffers.size() < data.size());
+            iter.shutdown();
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    @Test
+    public void testSourcesLoadedInParallel() {
+        //Each source blocks in next() until the other has also entered next(): this can only complete if the two
+        //sources are loaded concurrently
+        final CountDownLatch latch = new CountDownLatch(2);
+        final AtomicBoolean timedOut = new AtomicBoolean(false);
+        List<DataSetIterator> sources = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            sources.add(new ExistingDataSetIterator(getData(3)) {
+                @Override
+                public DataSet next() {
+                    latch.countDown();
+                    try {
+                        if (!latch.await(10, TimeUnit.SECONDS))
+                            timedOut.set(true);
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    return super.next();
+                }
+            });
+        }
+
+        MultiProducerAsyncDataSetIterator iter = new MultiProducerAsyncDataSetIterator(sources, 4, true);
+        int cnt = 0;
+        while (iter.hasNext()) {
+            iter.next();
+            cnt++;
+        }
+        assertEquals(6, cnt);
+        assertFalse(timedOut.get());
+        iter.shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSameSourceTwice() {
+        DataSetIterator source = new ExistingDataSetIterator(getData(5));
+        new MultiProducerAsyncDataSetIterator(Arrays.asList(source, source), 4, true);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRemove() {
+        MultiProducerAsyncDataSetIterator iter =
+                        new MultiProducerAsyncDataSetIterator(new ExistingDataSetIterator(getData(5)), 2, 1);
+        try {
+            iter.remove();
+        } finally {
+            iter.shutdown();
+        }
+    }
+}
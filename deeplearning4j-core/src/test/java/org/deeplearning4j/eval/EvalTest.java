@@ -27,11 +27,13 @@ import org.deeplearning4j.datasets.iterator.impl.IrisDataSetIterator;
 import org.deeplearning4j.datasets.iterator.impl.ListDataSetIterator;
 import org.deeplearning4j.eval.meta.Prediction;
 import org.deeplearning4j.nn.api.OptimizationAlgorithm;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.conf.Updater;
 import org.deeplearning4j.nn.conf.layers.DenseLayer;
 import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.nn.weights.WeightInit;
 import org.deeplearning4j.optimize.api.IterationListener;
@@ -695,4 +697,176 @@ public class EvalTest {
 
 
     }
+
+    @Test
+    public void testBinaryConfusionMatrix(){
+        Evaluation e = new Evaluation(1);
+
+        INDArray labels = Nd4j.create(new double[]{1, 1, 0, 0, 1}, new int[]{5, 1});
+        INDArray predicted = Nd4j.create(new double[]{0.9, 0.2, 0.7, 0.1, 0.6}, new int[]{5, 1});
+        e.eval(labels, predicted);
+
+        ConfusionMatrix<Integer> cm = e.getConfusionMatrix();   //Order: actual, predicted
+        assertEquals(2, cm.getCount(1, 1));
+        assertEquals(1, cm.getCount(1, 0));
+        assertEquals(1, cm.getCount(0, 1));
+        assertEquals(1, cm.getCount(0, 0));
+
+        assertEquals(2, (int)e.truePositives().get(1));
+        assertEquals(1, (int)e.falsePositives().get(1));
+        assertEquals(1, (int)e.falseNegatives().get(1));
+        assertEquals(1, (int)e.trueNegatives().get(1));
+        assertEquals(2.0 / 3.0, e.precision(1), 1e-6);
+        assertEquals(2.0 / 3.0, e.recall(1), 1e-6);
+        assertEquals(0.6, e.accuracy(), 1e-6);
+    }
+
+    @Test
+    public void testBinarySingleLabel(){
+        //Single label: binary case, must have 2 classes
+        Evaluation e = new Evaluation(Collections.singletonList("positive"));
+
+        INDArray labels = Nd4j.create(new double[]{1, 1, 0, 0, 1}, new int[]{5, 1});
+        INDArray predicted = Nd4j.create(new double[]{0.9, 0.2, 0.7, 0.1, 0.6}, new int[]{5, 1});
+        e.eval(labels, predicted);
+
+        assertEquals(2, e.getConfusionMatrix().getClasses().size());
+        assertEquals(2, (int)e.truePositives().get(1));
+        assertEquals(1, (int)e.falsePositives().get(1));
+        assertEquals(0.6, e.accuracy(), 1e-6);
+        assertNotNull(e.stats());
+        assertNotNull(e.confusionToString());
+    }
+
+    @Test
+    public void testEvalUnknownClass(){
+        //Classes outside of the declared classes are added to the confusion matrix
+        Evaluation e = new Evaluation(2);
+        e.eval(0, 0);
+        e.eval(3, 1);   //order: predicted, actual
+        e.eval(1, 4);
+
+        ConfusionMatrix<Integer> cm = e.getConfusionMatrix();
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), cm.getClasses());
+        assertEquals(1, cm.getCount(0, 0));     //Order: actual, predicted
+        assertEquals(1, cm.getCount(1, 3));
+        assertEquals(1, cm.getCount(4, 1));
+        assertEquals(3, e.getNumRowCounter());
+        assertEquals(1.0 / 3.0, e.accuracy(), 1e-6);
+        assertEquals(1, (int)e.falsePositives().get(3));
+        assertEquals(1, (int)e.falseNegatives().get(4));
+        assertNotNull(e.stats());
+        assertNotNull(e.confusionToString());
+
+        //Label arrays with more columns than the declared number of classes
+        Evaluation e2 = new Evaluation(2);
+        e2.eval(Nd4j.create(new double[]{0, 0, 1}), Nd4j.create(new double[]{0.1, 0.2, 0.7}));
+        assertEquals(1, e2.getConfusionMatrix().getCount(2, 2));
+        assertEquals(1.0, e2.accuracy(), 1e-6);
+    }
+
+    @Test
+    public void testMergeDifferentNumClasses(){
+        Evaluation e2Classes = new Evaluation(2);
+        e2Classes.eval(0, 0);
+        e2Classes.eval(1, 0);
+
+        Evaluation e4Classes = new Evaluation(4);
+        e4Classes.eval(3, 3);
+        e4Classes.eval(2, 1);
+
+        Evaluation expected = new Evaluation(4);
+        expected.eval(0, 0);
+        expected.eval(1, 0);
+        expected.eval(3, 3);
+        expected.eval(2, 1);
+
+        //Merge in both directions: smaller into larger, and larger into smaller
+        Evaluation merged1 = new Evaluation(2);
+        merged1.merge(e2Classes);
+        merged1.merge(e4Classes);
+        Evaluation merged2 = new Evaluation(4);
+        merged2.merge(e4Classes);
+        merged2.merge(e2Classes);
+
+        for (Evaluation merged : new Evaluation[]{merged1, merged2}) {
+            assertEquals(expected.getConfusionMatrix(), merged.getConfusionMatrix());
+            assertEquals(expected.getNumRowCounter(), merged.getNumRowCounter());
+            assertEquals(expected.accuracy(), merged.accuracy(), 1e-6);
+            assertEquals(expected.precision(), merged.precision(), 1e-6);
+            assertEquals(expected.recall(), merged.recall(), 1e-6);
+        }
+    }
+
+    @Test
+    public void testDeprecatedIncrementMethods(){
+        Evaluation e = new Evaluation(2);
+        e.eval(1, 1);
+        e.incrementTruePositives(1);
+        e.incrementFalsePositives(0);
+        e.incrementFalseNegatives(0);
+        e.incrementTrueNegatives(0);
+
+        assertEquals(2, (int)e.truePositives().get(1));
+        assertEquals(1, (int)e.falsePositives().get(0));
+        assertEquals(1, (int)e.falseNegatives().get(0));
+        assertEquals(2, (int)e.trueNegatives().get(0));
+
+        Evaluation merged = new Evaluation(2);
+        merged.merge(e);
+        assertEquals(2, (int)merged.truePositives().get(1));
+        assertEquals(1, (int)merged.falsePositives().get(0));
+    }
+
+    @Test
+    public void testParallelEvaluation(){
+        Nd4j.getRandom().setSeed(12345);
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .list()
+                .layer(0, new DenseLayer.Builder().nIn(4).nOut(5).activation(Activation.TANH).build())
+                .layer(1, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT)
+                        .activation(Activation.SOFTMAX).nIn(5).nOut(3).build())
+                .pretrain(false).backprop(true)
+                .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        DataSetIterator iter = new IrisDataSetIterator(10, 150);
+        Evaluation evalExpected = net.evaluate(iter, null, 2);
+        iter.reset();
+        Evaluation evalParallel = net.evaluate(iter, null, 2, 4);
+
+        checkEvaluationEquality(evalExpected, evalParallel);
+        assertEquals(150, evalParallel.getNumRowCounter());
+        assertEquals(evalExpected.topNAccuracy(), evalParallel.topNAccuracy(), 1e-6);
+
+        //More workers than minibatches: some workers don't see any data
+        iter = new IrisDataSetIterator(50, 150);
+        evalParallel = net.evaluate(iter, null, 2, 8);
+        checkEvaluationEquality(evalExpected, evalParallel);
+
+
+        ComputationGraphConfiguration graphConf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .graphBuilder()
+                .addInputs("in")
+                .addLayer("0", new DenseLayer.Builder().nIn(4).nOut(5).activation(Activation.TANH).build(), "in")
+                .addLayer("1", new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT)
+                        .activation(Activation.SOFTMAX).nIn(5).nOut(3).build(), "0")
+                .setOutputs("1")
+                .pretrain(false).backprop(true)
+                .build();
+
+        ComputationGraph graph = new ComputationGraph(graphConf);
+        graph.init();
+
+        iter = new IrisDataSetIterator(10, 150);
+        evalExpected = graph.evaluate(iter);
+        iter.reset();
+        evalParallel = graph.evaluate(iter, null, 1, 4);
+        checkEvaluationEquality(evalExpected, evalParallel);
+        assertEquals(150, evalParallel.getNumRowCounter());
+    }
 }
@@ -8,6 +8,7 @@ import org.deeplearning4j.nn.api.OptimizationAlgorithm;
 import org.deeplearning4j.nn.conf.BackpropType;
 import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.Updater;
 import org.deeplearning4j.nn.conf.distribution.NormalDistribution;
 import org.deeplearning4j.nn.conf.layers.DenseLayer;
 import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
@@ -566,4 +567,129 @@ public class ComputationGraphTestRNN {
         }
     }
 
+    @Test
+    public void testMicroBatchesMatchFullBatch() {
+        int timeSeriesLength = 10;
+        int miniBatchSize = 5;
+        int nIn = 3;
+        int nOut = 4;
+
+        ComputationGraph[] graphs = new ComputationGraph[2];
+        int[] numMicroBatches = {1, 2};
+        for (int i = 0; i < 2; i++) {
+            ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder()
+                    .seed(12345)
+                    .optimizationAlgo(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT)
+                    .updater(Updater.SGD).learningRate(0.1)
+                    .weightInit(WeightInit.XAVIER)
+                    .graphBuilder()
+                    .addInputs("in")
+                    .addLayer("lstm", new org.deeplearning4j.nn.conf.layers.GravesLSTM.Builder().nIn(nIn).nOut(5)
+                            .activation(Activation.TANH).build(), "in")
+                    .addLayer("out", new RnnOutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(5).nOut(nOut)
+                            .activation(Activation.SOFTMAX).build(), "lstm")
+                    .setOutputs("out")
+                    .numMicroBatches(numMicroBatches[i])
+                    .build();
+            graphs[i] = new ComputationGraph(conf);
+            graphs[i].init();
+        }
+        graphs[1].setParams(graphs[0].params().dup());
+
+        Nd4j.getRandom().setSeed(12345);
+        INDArray features = Nd4j.rand(new int[]{miniBatchSize, nIn, timeSeriesLength});
+        INDArray labels = Nd4j.zeros(miniBatchSize, nOut, timeSeriesLength);
+        INDArray mask = Nd4j.ones(miniBatchSize, timeSeriesLength);
+        for (int i = 0; i < miniBatchSize; i++) {
+            for (int j = 0; j < timeSeriesLength; j++) {
+                labels.putScalar(new int[]{i, (i + j) % nOut, j}, 1.0);
+            }
+            for (int j = timeSeriesLength - 2 * i; j < timeSeriesLength; j++) {
+                mask.putScalar(i, j, 0.0);
+            }
+        }
+
+        for (ComputationGraph graph : graphs) {
+            graph.setInputs(features);
+            graph.setLabels(labels);
+            graph.setLayerMaskArrays(new INDArray[]{mask}, new INDArray[]{mask});
+            graph.computeGradientAndScore();
+        }
+        assertEquals(graphs[0].score(), graphs[1].score(), 1e-5);
+        Map<String, INDArray> g0 = graphs[0].gradient().gradientForVariable();
+        Map<String, INDArray> g1 = graphs[1].gradient().gradientForVariable();
+        for (String key : g0.keySet()) {
+            assertTrue(key, g0.get(key).equalsWithEps(g1.get(key), 1e-5));
+        }
+        //Full minibatch is restored after computing the gradients
+        assertEquals(miniBatchSize, graphs[1].batchSize());
+
+        for (ComputationGraph graph : graphs) {
+            graph.clearLayerMaskArrays();
+            graph.fit(new DataSet(features, labels, mask, mask));
+        }
+        assertTrue(graphs[0].params().equalsWithEps(graphs[1].params(), 1e-5));
+    }
+
+    @Test
+    public void testMicroBatchesScoreWithRegularization() {
+        //L1/L2 regularization must be included once in the score, not once per micro-batch
+        int timeSeriesLength = 6;
+        int miniBatchSize = 6;
+        int nIn = 3;
+        int nOut = 4;
+
+        ComputationGraph[] graphs = new ComputationGraph[2];
+        int[] numMicroBatches = {1, 3};
+        for (int i = 0; i < 2; i++) {
+            ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder()
+                    .seed(12345)
+                    .optimizationAlgo(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT)
+                    .updater(Updater.SGD).learningRate(0.1)
+                    .regularization(true).l1(0.01).l2(0.02)
+                    .weightInit(WeightInit.XAVIER)
+                    .graphBuilder()
+                    .addInputs("in")
+                    .addLayer("lstm", new org.deeplearning4j.nn.conf.layers.GravesLSTM.Builder().nIn(nIn).nOut(5)
+                            .activation(Activation.TANH).build(), "in")
+                    .addLayer("out", new RnnOutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(5).nOut(nOut)
+                            .activation(Activation.SOFTMAX).build(), "lstm")
+                    .setOutputs("out")
+                    .numMicroBatches(numMicroBatches[i])
+                    .build();
+            graphs[i] = new ComputationGraph(conf);
+            graphs[i].init();
+        }
+        graphs[1].setParams(graphs[0].params().dup());
+        assertTrue(graphs[0].calcL1() > 0.0);
+        assertTrue(graphs[0].calcL2() > 0.0);
+
+        Nd4j.getRandom().setSeed(12345);
+        INDArray features = Nd4j.rand(new int[]{miniBatchSize, nIn, timeSeriesLength});
+        INDArray labels = Nd4j.zeros(miniBatchSize, nOut, timeSeriesLength);
+        for (int i = 0; i < miniBatchSize; i++) {
+            for (int j = 0; j < timeSeriesLength; j++) {
+                labels.putScalar(new int[]{i, (i + j) % nOut, j}, 1.0);
+            }
+        }
+
+        for (ComputationGraph graph : graphs) {
+            graph.setInputs(features);
+            graph.setLabels(labels);
+            graph.computeGradientAndScore();
+        }
+        assertEquals(graphs[0].score(), graphs[1].score(), 1e-5);
+        Map<String, INDArray> g0 = graphs[0].gradient().gradientForVariable();
+        Map<String, INDArray> g1 = graphs[1].gradient().gradientForVariable();
+        for (String key : g0.keySet()) {
+            assertTrue(key, g0.get(key).equalsWithEps(g1.get(key), 1e-5));
+        }
+
+        //Score after fitting, as reported to listeners and early stopping
+        DataSet ds = new DataSet(features, labels);
+        graphs[0].fit(ds);
+        graphs[1].fit(ds);
+        assertEquals(graphs[0].score(), graphs[1].score(), 1e-5);
+        assertEquals(graphs[0].score(ds, true), graphs[1].score(ds, true), 1e-5);
+    }
 }
@@ -7,9 +7,11 @@ import org.deeplearning4j.berkeley.Pair;
 import org.deeplearning4j.datasets.datavec.RecordReaderMultiDataSetIterator;
 import org.deeplearning4j.datasets.iterator.impl.IrisDataSetIterator;
 import org.deeplearning4j.eval.Evaluation;
+import org.deeplearning4j.nn.api.Model;
 import org.deeplearning4j.nn.api.OptimizationAlgorithm;
 import org.deeplearning4j.nn.conf.*;
 import org.deeplearning4j.nn.conf.distribution.UniformDistribution;
+import org.deeplearning4j.nn.conf.graph.ElementWiseVertex;
 import org.deeplearning4j.nn.conf.graph.LayerVertex;
 import org.deeplearning4j.nn.conf.graph.MergeVertex;
 import org.deeplearning4j.nn.conf.graph.SubsetVertex;
@@ -21,9 +23,11 @@ import org.deeplearning4j.nn.conf.preprocessor.FeedForwardToRnnPreProcessor;
 import org.deeplearning4j.nn.conf.preprocessor.RnnToFeedForwardPreProcessor;
 import org.deeplearning4j.nn.gradient.DefaultGradient;
 import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.nn.graph.vertex.GraphVertex;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.nn.transferlearning.TransferLearning;
 import org.deeplearning4j.nn.weights.WeightInit;
+import org.deeplearning4j.optimize.api.LayerTrainingListener;
 import org.deeplearning4j.optimize.listeners.ScoreIterationListener;
 import org.deeplearning4j.util.ModelSerializer;
 import org.junit.Test;
@@ -40,6 +44,8 @@ import org.nd4j.linalg.lossfunctions.LossFunctions;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -945,4 +951,268 @@ public class TestComputationGraphNetwork {
                 .build();
         System.out.println(modelNow.summary());
     }
+
+    @Test
+    public void testOutputInferenceReleasesIntermediateActivations() {
+        Nd4j.getRandom().setSeed(12345);
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .graphBuilder()
+                .addInputs("in")
+                .addLayer("d0", new DenseLayer.Builder().nIn(4).nOut(6).activation(Activation.TANH).build(), "in")
+                .addLayer("d1", new DenseLayer.Builder().nIn(4).nOut(5).activation(Activation.TANH).build(), "in")
+                .addLayer("act", new ActivationLayer.Builder().activation(Activation.SIGMOID).build(), "in")
+                .addVertex("merge", new MergeVertex(), "d0", "d1", "act")
+                .addLayer("out", new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(15).nOut(3)
+                        .activation(Activation.SOFTMAX).build(), "merge")
+                .setOutputs("out")
+                .build();
+
+        ComputationGraph graph = new ComputationGraph(conf);
+        graph.init();
+
+        INDArray input = Nd4j.rand(10, 4);
+        INDArray inputCopy = input.dup();
+
+        INDArray expected = graph.feedForward(input.dup(), false).get("out");
+
+        //Standard output method: layer inputs are retained
+        assertEquals(expected, graph.outputSingle(input));
+        for (String s : new String[]{"d0", "d1", "act", "out"}) {
+            assertNotNull(graph.getLayer(s).input());
+        }
+
+        INDArray out = graph.outputSingleInference(input);
+
+        assertEquals(expected, out);
+        //Network input must not be modified, even though it isn't copied for each consumer
+        assertEquals(inputCopy, input);
+
+        //Intermediate activations should have been released
+        for (String s : new String[]{"d0", "d1", "act", "out"}) {
+            assertNull(graph.getLayer(s).input());
+        }
+        for (GraphVertex gv : graph.getVertices()) {
+            if (gv.isInputVertex()) continue;
+            for (INDArray in : gv.getInputs()) {
+                assertNull(in);
+            }
+        }
+
+        //Repeated calls: same result
+        assertEquals(expected, graph.outputSingleInference(input));
+        assertEquals(expected, graph.outputInference(input)[0]);
+    }
+
+    @Test
+    public void testConcurrentBranchExecution() {
+        Nd4j.getRandom().setSeed(12345);
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .weightInit(WeightInit.XAVIER)
+                .graphBuilder()
+                .addInputs("in0", "in1")
+                .addLayer("a0", new DenseLayer.Builder().nIn(4).nOut(5).activation(Activation.TANH).build(), "in0")
+                .addLayer("a1", new DenseLayer.Builder().nIn(5).nOut(5).activation(Activation.TANH).build(), "a0")
+                .addLayer("b0", new DenseLayer.Builder().nIn(4).nOut(6).activation(Activation.TANH).build(), "in0")
+                .addLayer("c0", new DenseLayer.Builder().nIn(3).nOut(7).activation(Activation.TANH).build(), "in1")
+                .addVertex("merge", new MergeVertex(), "a1", "b0", "c0")
+                .addLayer("out", new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(18).nOut(3)
+                        .activation(Activation.SOFTMAX).build(), "merge")
+                .setOutputs("out")
+                .build();
+
+        ComputationGraph sequential = new ComputationGraph(conf);
+        sequential.init();
+
+        ComputationGraph concurrent = new ComputationGraph(conf.clone());
+        concurrent.init(sequential.params().dup(), false);
+        concurrent.setConcurrentBranchExecution(true);
+
+        INDArray in0 = Nd4j.rand(10, 4);
+        INDArray in1 = Nd4j.rand(10, 3);
+        INDArray labels = Nd4j.zeros(10, 3);
+        for (int i = 0; i < 10; i++) labels.putScalar(i, i % 3, 1.0);
+
+        Map<String, INDArray> expActivations = sequential.feedForward(new INDArray[]{in0, in1}, false);
+        Map<String, INDArray> actActivations = concurrent.feedForward(new INDArray[]{in0, in1}, false);
+        assertEquals(expActivations.keySet(), actActivations.keySet());
+        for (String s : expActivations.keySet()) {
+            assertEquals(s, expActivations.get(s), actActivations.get(s));
+        }
+        assertEquals(sequential.outputSingle(in0, in1), concurrent.outputSingle(in0, in1));
+
+        org.nd4j.linalg.dataset.MultiDataSet mds = new org.nd4j.linalg.dataset.MultiDataSet(new INDArray[]{in0, in1}, new INDArray[]{labels});
+        sequential.setInputs(in0, in1);
+        sequential.setLabels(labels);
+        sequential.computeGradientAndScore();
+        concurrent.setInputs(in0, in1);
+        concurrent.setLabels(labels);
+        concurrent.computeGradientAndScore();
+
+        assertEquals(sequential.score(), concurrent.score(), 1e-6);
+        Map<String, INDArray> expGrad = sequential.gradient().gradientForVariable();
+        Map<String, INDArray> actGrad = concurrent.gradient().gradientForVariable();
+        assertEquals(new ArrayList<>(expGrad.keySet()), new ArrayList<>(actGrad.keySet()));
+        for (String s : expGrad.keySet()) {
+            assertEquals(s, expGrad.get(s), actGrad.get(s));
+        }
+
+        //Fitting should give identical parameters, and the same per-vertex listener events
+        LayerEventCounter expEvents = new LayerEventCounter();
+        LayerEventCounter actEvents = new LayerEventCounter();
+        sequential.setListeners(expEvents);
+        concurrent.setListeners(actEvents);
+        sequential.fit(mds);
+        concurrent.fit(mds);
+        assertEquals(sequential.params(), concurrent.params());
+        assertFalse(expEvents.counts.isEmpty());
+        assertEquals(expEvents.counts, actEvents.counts);
+        assertTrue(actEvents.counts.containsKey("a1_FORWARD_start"));
+        assertTrue(actEvents.counts.containsKey("c0_BACKWARD_end"));
+    }
+
+    private static class LayerEventCounter implements LayerTrainingListener {
+        private final Map<String, Integer> counts = new HashMap<>();
+
+        private synchronized void count(String event) {
+            Integer c = counts.get(event);
+            counts.put(event, c == null ? 1 : c + 1);
+        }
+
+        @Override
+        public void onLayerStart(Model model, String layerName, Phase phase) {
+            count(layerName + "_" + phase + "_start");
+        }
+
+        @Override
+        public void onLayerEnd(Model model, String layerName, Phase phase) {
+            count(layerName + "_" + phase + "_end");
+        }
+
+        @Override
+        public void onEpochStart(Model model) {}
+
+        @Override
+        public void onEpochEnd(Model model) {}
+
+        @Override
+        public void onForwardPass(Model model, List<INDArray> activations) {}
+
+        @Override
+        public void onForwardPass(Model model, Map<String, INDArray> activations) {}
+
+        @Override
+        public void onGradientCalculation(Model model) {}
+
+        @Override
+        public void onBackwardPass(Model model) {}
+
+        @Override
+        public boolean invoked() {
+            return false;
+        }
+
+        @Override
+        public void invoke() {}
+
+        @Override
+        public void iterationDone(Model model, int iteration) {}
+    }
+
+    @Test
+    public void testActivationCheckpointing() {
+        Nd4j.getRandom().setSeed(12345);
+        ComputationGraphConfiguration.GraphBuilder builder = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .weightInit(WeightInit.XAVIER)
+                .learningRate(0.1)
+                .graphBuilder()
+                .addInputs("in")
+                .addLayer("d0", new DenseLayer.Builder().nIn(4).nOut(8).activation(Activation.TANH).build(), "in");
+        String last = "d0";
+        for (int i = 0; i < 4; i++) {
+            //Residual blocks: dense -> batch norm -> add
+            builder.addLayer("block" + i + "_dense", new DenseLayer.Builder().nIn(8).nOut(8).activation(Activation.TANH).build(), last)
+                    .addLayer("block" + i + "_bn", new BatchNormalization.Builder().nIn(8).nOut(8).build(), "block" + i + "_dense")
+                    .addVertex("block" + i + "_add", new ElementWiseVertex(ElementWiseVertex.Op.Add), "block" + i + "_bn", last);
+            last = "block" + i + "_add";
+        }
+        ComputationGraphConfiguration conf = builder
+                .addLayer("auxOut", new OutputLayer.Builder(LossFunctions.LossFunction.MSE).nIn(8).nOut(2)
+                        .activation(Activation.IDENTITY).build(), "block0_add")
+                .addLayer("out", new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(8).nOut(3)
+                        .activation(Activation.SOFTMAX).build(), last)
+                .setOutputs("out", "auxOut")
+                .build();
+
+        ComputationGraph expected = new ComputationGraph(conf);
+        expected.init();
+
+        INDArray in = Nd4j.rand(10, 4);
+        INDArray labels = Nd4j.zeros(10, 3);
+        for (int i = 0; i < 10; i++) labels.putScalar(i, i % 3, 1.0);
+        INDArray auxLabels = Nd4j.rand(10, 2);
+        org.nd4j.linalg.dataset.MultiDataSet mds = new org.nd4j.linalg.dataset.MultiDataSet(new INDArray[]{in}, new INDArray[]{labels, auxLabels});
+
+        expected.setInputs(in);
+        expected.setLabels(labels, auxLabels);
+        expected.computeGradientAndScore();
+        double expScore = expected.score();
+        Map<String, INDArray> expGrad = expected.gradient().gradientForVariable();
+        ComputationGraph expectedFit = expected.clone();
+        expectedFit.fit(mds);
+
+        for (int test = 0; test < 4; test++) {
+            ComputationGraph graph = new ComputationGraph(conf.clone());
+            graph.init(expected.params().dup(), false);
+            switch (test) {
+                case 0:
+                    graph.setActivationCheckpointing(2);
+                    break;
+                case 1:
+                    graph.setActivationCheckpointing(5);
+                    break;
+                case 2:
+                    graph.setActivationCheckpointing(1000);
+                    break;
+                case 3:
+                    graph.setActivationCheckpoints("block0_add", "block2_add");
+                    break;
+            }
+            assertTrue(graph.isActivationCheckpointing());
+
+            graph.setInputs(in);
+            graph.setLabels(labels, auxLabels);
+            graph.computeGradientAndScore();
+            assertEquals(String.valueOf(test), expScore, graph.score(), 1e-6);
+            Map<String, INDArray> actGrad = graph.gradient().gradientForVariable();
+            assertEquals(expGrad.keySet(), actGrad.keySet());
+            for (String s : expGrad.keySet()) {
+                assertTrue(test + " - " + s, expGrad.get(s).equalsWithEps(actGrad.get(s), 1e-6));
+            }
+
+            //Fitting should give the same parameters (including batch norm mean/variance)
+            graph.fit(mds);
+            assertTrue(String.valueOf(test), expectedFit.params().equalsWithEps(graph.params(), 1e-6));
+        }
+
+        ComputationGraph disabled = new ComputationGraph(conf.clone());
+        disabled.init();
+        disabled.setActivationCheckpointing(2);
+        disabled.setActivationCheckpointing(0);
+        assertFalse(disabled.isActivationCheckpointing());
+
+        //Checkpointing must not reseed the global RNG (no dropout in this network, hence no other use of the RNG)
+        ComputationGraph graph = new ComputationGraph(conf.clone());
+        graph.init(expected.params().dup(), false);
+        graph.setActivationCheckpointing(2);
+        graph.setInputs(in);
+        graph.setLabels(labels, auxLabels);
+        Nd4j.getRandom().setSeed(42);
+        graph.computeGradientAndScore();
+        double afterCheckpointing = Nd4j.getRandom().nextDouble();
+        Nd4j.getRandom().setSeed(42);
+        assertEquals(Nd4j.getRandom().nextDouble(), afterCheckpointing, 0.0);
+    }
 }
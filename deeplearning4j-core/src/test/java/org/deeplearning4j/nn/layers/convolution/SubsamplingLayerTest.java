@@ -3,6 +3,7 @@ package org.deeplearning4j.nn.layers.convolution;
 import org.deeplearning4j.berkeley.Pair;
 import org.deeplearning4j.datasets.iterator.impl.MnistDataSetIterator;
 import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.conf.ConvolutionMode;
 import org.deeplearning4j.nn.conf.GradientNormalization;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
@@ -143,6 +144,43 @@ public class SubsamplingLayerTest {
         assertEquals(depth, out.getSecond().size(1)); // depth retained
     }
 
+    @Test
+    public void testSubSampleLayerMaxBackpropArgMax() throws Exception {
+        //Backprop using the argmax indices from the forward pass (training == true) should match backprop without them
+        // (training == false: im2col + IsMax), including overlapping kernels and padding
+        Nd4j.getRandom().setSeed(12345);
+        int[][] kernels = {{2, 2}, {3, 3}, {3, 2}};
+        int[][] strides = {{2, 2}, {1, 1}, {2, 1}};
+        int[][] paddings = {{0, 0}, {1, 1}, {1, 0}};
+        for (ConvolutionMode cm : new ConvolutionMode[]{ConvolutionMode.Truncate, ConvolutionMode.Same}) {
+            for (int i = 0; i < kernels.length; i++) {
+                NeuralNetConfiguration conf = new NeuralNetConfiguration.Builder()
+                        .convolutionMode(cm)
+                        .layer(new SubsamplingLayer.Builder(SubsamplingLayer.PoolingType.MAX)
+                                .kernelSize(kernels[i]).stride(strides[i]).padding(paddings[i])
+                                .build())
+                        .build();
+                Layer layer = conf.getLayer().instantiate(conf, null, 0, null, true);
+
+                //Negative values: max may be in the padding
+                INDArray input = Nd4j.rand(new int[]{3, 2, 7, 6}).subi(0.75);
+                INDArray outTrain = layer.activate(input.dup(), true);
+                INDArray epsilon = Nd4j.rand(outTrain.shape());
+                INDArray epsArgMax = layer.backpropGradient(epsilon).getSecond();
+                //Indices are released once used: a second backprop falls back to im2col, with the same result
+                assertEquals(epsArgMax, layer.backpropGradient(epsilon).getSecond());
+
+                INDArray outTest = layer.activate(input.dup(), false);
+                assertEquals(outTest, outTrain);
+                INDArray epsIm2col = layer.backpropGradient(epsilon).getSecond();
+
+                String msg = "mode=" + cm + ", i=" + i;
+                assertArrayEquals(msg, input.shape(), epsArgMax.shape());
+                assertEquals(msg, epsIm2col, epsArgMax);
+            }
+        }
+    }
+
     @Test
     public void testSubSampleLayerAvgBackprop() throws Exception{
         INDArray expectedContainedEpsilonInput = Nd4j.create(new double[] {
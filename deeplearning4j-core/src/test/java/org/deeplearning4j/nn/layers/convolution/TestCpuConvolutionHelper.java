@@ -0,0 +1,139 @@
+package org.deeplearning4j.nn.layers.convolution;
+
+import org.deeplearning4j.berkeley.Pair;
+import org.deeplearning4j.nn.conf.ConvolutionMode;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.params.ConvolutionParamInitializer;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.junit.Before;
+import org.junit.Test;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.buffer.util.DataTypeUtil;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compare the CPU convolution helper (direct 1x1 GEMM and Winograd) against the standard im2col implementation
+ */
+public class TestCpuConvolutionHelper {
+
+    @Before
+    public void before() {
+        DataTypeUtil.setDTypeForContext(DataBuffer.Type.DOUBLE);
+        Nd4j.factory().setDType(DataBuffer.Type.DOUBLE);
+    }
+
+    @Test
+    public void testSelectAlgorithm() {
+        assertEquals(CpuConvolutionHelper.Algorithm.GEMM_1X1,
+                CpuConvolutionHelper.selectAlgorithm(new int[]{1, 1}, new int[]{1, 1}, new int[]{0, 0}));
+        assertEquals(CpuConvolutionHelper.Algorithm.IM2COL,
+                CpuConvolutionHelper.selectAlgorithm(new int[]{1, 1}, new int[]{2, 2}, new int[]{0, 0}));
+        assertEquals(CpuConvolutionHelper.Algorithm.WINOGRAD_2X2_3X3,
+                CpuConvolutionHelper.selectAlgorithm(new int[]{3, 3}, new int[]{1, 1}, new int[]{1, 1}));
+        assertEquals(CpuConvolutionHelper.Algorithm.IM2COL,
+                CpuConvolutionHelper.selectAlgorithm(new int[]{3, 3}, new int[]{2, 2}, new int[]{0, 0}));
+        assertEquals(CpuConvolutionHelper.Algorithm.IM2COL,
+                CpuConvolutionHelper.selectAlgorithm(new int[]{5, 5}, new int[]{1, 1}, new int[]{0, 0}));
+    }
+
+    @Test
+    public void testHelperOptIn() {
+        for (boolean useHelper : new boolean[]{false, true}) {
+            MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                    .list()
+                    .layer(0, new org.deeplearning4j.nn.conf.layers.ConvolutionLayer.Builder().kernelSize(3, 3)
+                            .nOut(4).cpuConvolutionHelper(useHelper).build())
+                    .layer(1, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nOut(3)
+                            .activation(Activation.SOFTMAX).build())
+                    .setInputType(InputType.convolutional(6, 6, 2))
+                    .build();
+
+            //JSON round trip should preserve the setting
+            conf = MultiLayerConfiguration.fromJson(conf.toJson());
+
+            MultiLayerNetwork net = new MultiLayerNetwork(conf);
+            net.init();
+            ConvolutionLayer layer = (ConvolutionLayer) net.getLayer(0);
+            if (useHelper) {
+                assertTrue(layer.helper instanceof CpuConvolutionHelper);
+            } else {
+                assertFalse(layer.helper instanceof CpuConvolutionHelper);
+            }
+        }
+    }
+
+    @Test
+    public void testCompareHelperVsIm2col() {
+        int[][] kernels = {{1, 1}, {3, 3}};
+        int[][] paddings = {{0, 0}, {1, 1}, {2, 1}};
+        ConvolutionMode[] modes = {ConvolutionMode.Truncate, ConvolutionMode.Same};
+        int[] minibatches = {1, 3};
+        int[] inSizes = {5, 6};
+
+        for (int[] kernel : kernels) {
+            for (int[] padding : paddings) {
+                for (ConvolutionMode cm : modes) {
+                    for (int minibatch : minibatches) {
+                        for (int inSize : inSizes) {
+                            String msg = "kernel=" + kernel[0] + ", padding=" + padding[0] + "," + padding[1] + ", mode="
+                                    + cm + ", minibatch=" + minibatch + ", inSize=" + inSize;
+
+                            MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                                    .seed(12345)
+                                    .weightInit(WeightInit.XAVIER)
+                                    .convolutionMode(cm)
+                                    .list()
+                                    .layer(0, new org.deeplearning4j.nn.conf.layers.ConvolutionLayer.Builder()
+                                            .kernelSize(kernel).stride(1, 1).padding(padding).nOut(4)
+                                            .cpuConvolutionHelper(true).activation(Activation.TANH).build())
+                                    .layer(1, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nOut(3)
+                                            .activation(Activation.SOFTMAX).build())
+                                    .setInputType(InputType.convolutional(inSize, inSize + 1, 2))
+                                    .build();
+
+                            MultiLayerNetwork netHelper = new MultiLayerNetwork(conf);
+                            netHelper.init();
+                            netHelper.initGradientsView();
+                            MultiLayerNetwork netStd = new MultiLayerNetwork(conf.clone());
+                            netStd.init(netHelper.params().dup(), false);
+                            netStd.initGradientsView();
+
+                            ConvolutionLayer layerHelper = (ConvolutionLayer) netHelper.getLayer(0);
+                            ConvolutionLayer layerStd = (ConvolutionLayer) netStd.getLayer(0);
+                            assertTrue(layerHelper.helper instanceof CpuConvolutionHelper);
+                            layerStd.helper = null;
+
+                            INDArray in = Nd4j.rand(new int[]{minibatch, 2, inSize, inSize + 1});
+                            INDArray outHelper = layerHelper.activate(in, true);
+                            INDArray outStd = layerStd.activate(in, true);
+                            assertArrayEquals(msg, outStd.shape(), outHelper.shape());
+                            assertEquals(msg, outStd, outHelper);
+
+                            INDArray epsilon = Nd4j.rand(outStd.shape());
+                            Pair<Gradient, INDArray> pHelper = layerHelper.backpropGradient(epsilon);
+                            Pair<Gradient, INDArray> pStd = layerStd.backpropGradient(epsilon);
+
+                            assertArrayEquals(msg, pStd.getSecond().shape(), pHelper.getSecond().shape());
+                            assertEquals(msg, pStd.getSecond(), pHelper.getSecond());
+                            for (String key : new String[]{ConvolutionParamInitializer.WEIGHT_KEY, ConvolutionParamInitializer.BIAS_KEY}) {
+                                INDArray gStd = pStd.getFirst().getGradientFor(key);
+                                INDArray gHelper = pHelper.getFirst().getGradientFor(key);
+                                assertEquals(msg + ", " + key, gStd, gHelper);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.deeplearning4j.nn.layers.feedforward.embedding;
 
+import org.deeplearning4j.exception.DL4JInvalidConfigException;
 import org.deeplearning4j.nn.api.Layer;
 import org.deeplearning4j.nn.api.OptimizationAlgorithm;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
@@ -22,8 +23,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 
-import static org.junit.Assert.assertArrayEquals;
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class EmbeddingLayerTest {
 
@@ -339,4 +339,188 @@ public class EmbeddingLayerTest {
         }
     }
 
+
+    @Test
+    public void testEmbeddingSparseGradients() {
+        //With SGD: row-sparse updates should give exactly the same result as standard dense updates
+        //With other updaters: rows not present in any minibatch should not be modified
+
+        int nClassesIn = 20;
+        int batchSize = 4;
+
+        for (Updater u : new Updater[]{Updater.SGD, Updater.ADAM, Updater.RMSPROP}) {
+            MultiLayerNetwork[] nets = new MultiLayerNetwork[2];
+            for (int i = 0; i < 2; i++) {
+                MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                        .optimizationAlgo(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT)
+                        .activation(Activation.TANH)
+                        .updater(u).learningRate(0.1)
+                        .seed(12345)
+                        .list()
+                        .layer(0, new EmbeddingLayer.Builder().nIn(nClassesIn).nOut(5).sparseGradients(i == 1).build())
+                        .layer(1, new OutputLayer.Builder().nIn(5).nOut(4).activation(Activation.SOFTMAX)
+                                .lossFunction(LossFunctions.LossFunction.MCXENT).build())
+                        .pretrain(false).backprop(true)
+                        .build();
+                nets[i] = new MultiLayerNetwork(conf);
+                nets[i].init();
+            }
+            assertEquals(nets[0].params(), nets[1].params());
+            INDArray initialWeights = nets[1].getLayer(0).getParam(DefaultParamInitializer.WEIGHT_KEY).dup();
+
+            //Only classes 0 to 9 are used
+            Random r = new Random(12345);
+            for (int iter = 0; iter < 10; iter++) {
+                INDArray in = Nd4j.create(batchSize, 1);
+                INDArray labels = Nd4j.create(batchSize, 4);
+                for (int i = 0; i < batchSize; i++) {
+                    in.putScalar(i, r.nextInt(nClassesIn / 2));
+                    labels.putScalar(new int[]{i, r.nextInt(4)}, 1.0);
+                }
+                nets[0].fit(in, labels);
+                nets[1].fit(in, labels);
+
+                int[] rows = ((org.deeplearning4j.nn.layers.feedforward.embedding.EmbeddingLayer) nets[1].getLayer(0))
+                        .getGradientRows(DefaultParamInitializer.WEIGHT_KEY);
+                for (int i = 1; i < rows.length; i++) {
+                    assertTrue(rows[i] > rows[i - 1]);
+                }
+                if (u == Updater.SGD) {
+                    assertEquals(nets[0].params(), nets[1].params());
+                }
+            }
+
+            INDArray weights = nets[1].getLayer(0).getParam(DefaultParamInitializer.WEIGHT_KEY);
+            for (int i = nClassesIn / 2; i < nClassesIn; i++) {
+                assertEquals(initialWeights.getRow(i), weights.getRow(i));
+            }
+            assertNotEquals(initialWeights, weights);
+        }
+    }
+
+    @Test
+    public void testEmbeddingSparseGradientsAllRowsEquivalence() {
+        //When every row is present in every minibatch, no updater state is decayed lazily: row-sparse updates should
+        //give the same result as standard dense updates, for all updaters
+
+        int nClassesIn = 6;
+
+        for (Updater u : new Updater[]{Updater.ADAM, Updater.RMSPROP, Updater.NESTEROVS, Updater.ADAGRAD, Updater.ADADELTA}) {
+            MultiLayerNetwork[] nets = new MultiLayerNetwork[2];
+            for (int i = 0; i < 2; i++) {
+                MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                        .optimizationAlgo(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT)
+                        .activation(Activation.TANH)
+                        .updater(u).learningRate(0.1)
+                        .seed(12345)
+                        .list()
+                        .layer(0, new EmbeddingLayer.Builder().nIn(nClassesIn).nOut(5).sparseGradients(i == 1).build())
+                        .layer(1, new OutputLayer.Builder().nIn(5).nOut(4).activation(Activation.SOFTMAX)
+                                .lossFunction(LossFunctions.LossFunction.MCXENT).build())
+                        .pretrain(false).backprop(true)
+                        .build();
+                nets[i] = new MultiLayerNetwork(conf);
+                nets[i].init();
+            }
+            assertEquals(nets[0].params(), nets[1].params());
+
+            Random r = new Random(12345);
+            for (int iter = 0; iter < 10; iter++) {
+                INDArray in = Nd4j.create(2 * nClassesIn, 1);
+                INDArray labels = Nd4j.create(2 * nClassesIn, 4);
+                for (int i = 0; i < 2 * nClassesIn; i++) {
+                    in.putScalar(i, i % nClassesIn);
+                    labels.putScalar(new int[]{i, r.nextInt(4)}, 1.0);
+                }
+                nets[0].fit(in, labels);
+                nets[1].fit(in, labels);
+
+                assertEquals(nClassesIn, ((org.deeplearning4j.nn.layers.feedforward.embedding.EmbeddingLayer) nets[1]
+                        .getLayer(0)).getGradientRows(DefaultParamInitializer.WEIGHT_KEY).length);
+                assertEquals(u.toString(), nets[0].params(), nets[1].params());
+            }
+        }
+    }
+
+    @Test
+    public void testEmbeddingSparseGradientsStateClone() {
+        //The iteration each row was last updated is copied when cloning (it isn't part of the updater state view): a
+        //cloned network should continue training in exactly the same way as the original
+
+        int nClassesIn = 20;
+        int batchSize = 4;
+
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .optimizationAlgo(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT)
+                .activation(Activation.TANH)
+                .updater(Updater.ADAM).learningRate(0.1)
+                .seed(12345)
+                .list()
+                .layer(0, new EmbeddingLayer.Builder().nIn(nClassesIn).nOut(5).sparseGradients(true).build())
+                .layer(1, new OutputLayer.Builder().nIn(5).nOut(4).activation(Activation.SOFTMAX)
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).build())
+                .pretrain(false).backprop(true)
+                .build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        Random r = new Random(12345);
+        INDArray[] in = new INDArray[10];
+        INDArray[] labels = new INDArray[10];
+        for (int iter = 0; iter < 10; iter++) {
+            in[iter] = Nd4j.create(batchSize, 1);
+            labels[iter] = Nd4j.create(batchSize, 4);
+            for (int i = 0; i < batchSize; i++) {
+                in[iter].putScalar(i, r.nextInt(nClassesIn));
+                labels[iter].putScalar(new int[]{i, r.nextInt(4)}, 1.0);
+            }
+        }
+
+        for (int iter = 0; iter < 5; iter++) {
+            net.fit(in[iter], labels[iter]);
+        }
+        MultiLayerNetwork clone = net.clone();
+        assertEquals(net.getUpdater().getStateViewArray(), clone.getUpdater().getStateViewArray());
+
+        for (int iter = 5; iter < 10; iter++) {
+            net.fit(in[iter], labels[iter]);
+            clone.fit(in[iter], labels[iter]);
+            assertEquals(net.params(), clone.params());
+        }
+    }
+
+    @Test
+    public void testEmbeddingSparseGradientsStateSize() {
+        //The iterations each row was last updated are kept outside of the (floating point, averaged) updater state
+        //view: the updater state should be the same size as for dense updates
+
+        INDArray[] states = new INDArray[2];
+        for (int i = 0; i < 2; i++) {
+            MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                    .updater(Updater.ADAM).learningRate(0.1)
+                    .seed(12345)
+                    .list()
+                    .layer(0, new EmbeddingLayer.Builder().nIn(100).nOut(5).sparseGradients(i == 1).build())
+                    .layer(1, new OutputLayer.Builder().nIn(5).nOut(4).activation(Activation.SOFTMAX)
+                            .lossFunction(LossFunctions.LossFunction.MCXENT).build())
+                    .pretrain(false).backprop(true)
+                    .build();
+            MultiLayerNetwork net = new MultiLayerNetwork(conf);
+            net.init();
+            net.fit(Nd4j.create(new double[]{1, 3, 3, 7}, new int[]{4, 1}), Nd4j.eye(4));
+            states[i] = net.getUpdater().getStateViewArray();
+        }
+        assertEquals(states[0].length(), states[1].length());
+    }
+
+    @Test(expected = DL4JInvalidConfigException.class)
+    public void testEmbeddingSparseGradientsUnsupportedUpdater() {
+        new NeuralNetConfiguration.Builder()
+                .updater(Updater.CUSTOM)
+                .list()
+                .layer(0, new EmbeddingLayer.Builder().nIn(10).nOut(5).sparseGradients(true).build())
+                .layer(1, new OutputLayer.Builder().nIn(5).nOut(4).activation(Activation.SOFTMAX)
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).build())
+                .build();
+    }
 }
@@ -0,0 +1,216 @@
+package org.deeplearning4j.nn.layers.normalization;
+
+import org.deeplearning4j.berkeley.Pair;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.nn.params.BatchNormalizationParamInitializer;
+import org.junit.Before;
+import org.junit.Test;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.buffer.util.DataTypeUtil;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compare the CPU batch normalization and local response normalization helpers against the standard implementations
+ */
+public class TestCpuNormalizationHelpers {
+
+    @Before
+    public void before() {
+        DataTypeUtil.setDTypeForContext(DataBuffer.Type.DOUBLE);
+        Nd4j.factory().setDType(DataBuffer.Type.DOUBLE);
+    }
+
+    private static BatchNormalization getBatchNorm(int nOut, boolean lockGammaBeta, boolean minibatch) {
+        org.deeplearning4j.nn.conf.layers.BatchNormalization.Builder b =
+                new org.deeplearning4j.nn.conf.layers.BatchNormalization.Builder().nOut(nOut).eps(1e-5).decay(0.9)
+                        .minibatch(minibatch).cpuNormalizationHelper(true);
+        if (lockGammaBeta) {
+            b.lockGammaBeta(true).gamma(2.0).beta(0.5);
+        }
+        NeuralNetConfiguration conf = new NeuralNetConfiguration.Builder().layer(b.build()).build();
+        int numParams = conf.getLayer().initializer().numParams(conf);
+        INDArray params = Nd4j.create(1, numParams);
+        BatchNormalization layer = (BatchNormalization) conf.getLayer().instantiate(conf, null, 0, params, true);
+        layer.setBackpropGradientsViewArray(Nd4j.create(1, numParams));
+        return layer;
+    }
+
+    @Test
+    public void testHelpersOptIn() {
+        //CPU helpers should only be used if enabled in the configuration
+        NeuralNetConfiguration conf = new NeuralNetConfiguration.Builder()
+                .layer(new org.deeplearning4j.nn.conf.layers.BatchNormalization.Builder().nOut(3).build())
+                .build();
+        int numParams = conf.getLayer().initializer().numParams(conf);
+        BatchNormalization bn = (BatchNormalization) conf.getLayer().instantiate(conf, null, 0, Nd4j.create(1, numParams), true);
+        assertFalse(bn.helper instanceof CpuBatchNormalizationHelper);
+
+        conf = new NeuralNetConfiguration.Builder()
+                .layer(new org.deeplearning4j.nn.conf.layers.LocalResponseNormalization.Builder().build())
+                .build();
+        LocalResponseNormalization lrn = (LocalResponseNormalization) conf.getLayer().instantiate(conf, null, 0, null, false);
+        assertFalse(lrn.helper instanceof CpuLocalResponseNormalizationHelper);
+    }
+
+    @Test
+    public void testBatchNormHelperVsStandard() {
+        Nd4j.getRandom().setSeed(12345);
+        int nOut = 5;
+        for (boolean lockGammaBeta : new boolean[]{false, true}) {
+            for (boolean minibatch : new boolean[]{true, false}) {
+                String msg = "lockGammaBeta=" + lockGammaBeta + ", minibatch=" + minibatch;
+                BatchNormalization layerHelper = getBatchNorm(nOut, lockGammaBeta, minibatch);
+                BatchNormalization layerStd = getBatchNorm(nOut, lockGammaBeta, minibatch);
+                assertTrue(layerHelper.helper instanceof CpuBatchNormalizationHelper);
+                layerStd.helper = null;
+
+                if (!lockGammaBeta) {
+                    INDArray gammaBeta = Nd4j.rand(1, 2 * nOut).addi(0.5);
+                    for (BatchNormalization l : new BatchNormalization[]{layerHelper, layerStd}) {
+                        l.getParam(BatchNormalizationParamInitializer.GAMMA)
+                                .assign(gammaBeta.get(NDArrayIndex.all(), NDArrayIndex.interval(0, nOut)));
+                        l.getParam(BatchNormalizationParamInitializer.BETA)
+                                .assign(gammaBeta.get(NDArrayIndex.all(), NDArrayIndex.interval(nOut, 2 * nOut)));
+                    }
+                }
+
+                for (int i = 0; i < 3; i++) {
+                    //Non-zero mean, non-unit variance; also use a non-c-order input
+                    INDArray in = Nd4j.rand(new int[]{4, nOut, 5, 6}).muli(3).addi(i).dup('f');
+
+                    INDArray outHelper = layerHelper.activate(in, true);
+                    INDArray outStd = layerStd.activate(in, true);
+                    assertEquals(msg, outStd, outHelper);
+
+                    INDArray epsilon = Nd4j.rand(outStd.shape());
+                    Pair<Gradient, INDArray> pHelper = layerHelper.backpropGradient(epsilon);
+                    Pair<Gradient, INDArray> pStd = layerStd.backpropGradient(epsilon);
+                    assertEquals(msg, pStd.getSecond(), pHelper.getSecond());
+                    for (String key : new String[]{BatchNormalizationParamInitializer.GAMMA,
+                            BatchNormalizationParamInitializer.BETA}) {
+                        assertEquals(msg + ", " + key, pStd.getFirst().getGradientFor(key),
+                                pHelper.getFirst().getGradientFor(key));
+                    }
+
+                    for (String key : new String[]{BatchNormalizationParamInitializer.GLOBAL_MEAN,
+                            BatchNormalizationParamInitializer.GLOBAL_VAR}) {
+                        assertEquals(msg + ", " + key, layerStd.getParam(key), layerHelper.getParam(key));
+                    }
+                }
+
+                //Inference, using the global mean/variance estimates
+                INDArray in = Nd4j.rand(new int[]{3, nOut, 4, 4});
+                assertEquals(msg, layerStd.activate(in, false), layerHelper.activate(in, false));
+            }
+        }
+    }
+
+    @Test
+    public void testBatchNormHelperForwardRank4() {
+        //The helper forward pass should be used for CNN activations, with decay 0 for full batch (minibatch(false)) training
+        for (final boolean minibatch : new boolean[]{true, false}) {
+            BatchNormalization layer = getBatchNorm(3, false, minibatch);
+            final CpuBatchNormalizationHelper delegate = (CpuBatchNormalizationHelper) layer.helper;
+            final List<Double> decays = new ArrayList<>();
+            layer.helper = new BatchNormalizationHelper() {
+                @Override
+                public Pair<Gradient, INDArray> backpropGradient(INDArray input, INDArray epsilon, int[] shape,
+                                INDArray gamma, INDArray dGammaView, INDArray dBetaView, double eps) {
+                    return delegate.backpropGradient(input, epsilon, shape, gamma, dGammaView, dBetaView, eps);
+                }
+
+                @Override
+                public INDArray preOutput(INDArray x, boolean training, int[] shape, INDArray gamma, INDArray beta,
+                                INDArray mean, INDArray var, double decay, double eps) {
+                    decays.add(decay);
+                    return delegate.preOutput(x, training, shape, gamma, beta, mean, var, decay, eps);
+                }
+            };
+
+            INDArray in = Nd4j.rand(new int[]{2, 3, 4, 4}).addi(1.0);
+            layer.activate(in, true);
+            assertEquals(1, decays.size());
+            assertEquals(minibatch ? 0.9 : 0.0, decays.get(0), 0.0);
+
+            if (!minibatch) {
+                //Global statistics should be replaced by (not averaged with) the statistics of the full batch
+                INDArray expMean = in.mean(0, 2, 3);
+                assertEquals(expMean, layer.getParam(BatchNormalizationParamInitializer.GLOBAL_MEAN));
+            }
+
+            layer.activate(in.dup(), false);
+            assertEquals(2, decays.size());
+        }
+    }
+
+    @Test
+    public void testHelpersInPlaceAccess() {
+        //'c' order inputs are read directly from their buffers, views are copied first: neither may be modified
+        Nd4j.getRandom().setSeed(12345);
+        BatchNormalization bnHelper = getBatchNorm(4, false, true);
+        BatchNormalization bnStd = getBatchNorm(4, false, true);
+        bnStd.helper = null;
+        NeuralNetConfiguration conf = new NeuralNetConfiguration.Builder()
+                .layer(new org.deeplearning4j.nn.conf.layers.LocalResponseNormalization.Builder()
+                        .cpuNormalizationHelper(true).build())
+                .build();
+        LocalResponseNormalization lrnHelper = (LocalResponseNormalization) conf.getLayer()
+                .instantiate(conf, null, 0, null, false);
+        LocalResponseNormalization lrnStd = (LocalResponseNormalization) conf.getLayer()
+                .instantiate(conf, null, 0, null, false);
+        lrnStd.helper = null;
+
+        INDArray full = Nd4j.rand(new int[]{6, 4, 5, 5}).muli(2);
+        INDArray view = full.get(NDArrayIndex.interval(1, 4), NDArrayIndex.all(), NDArrayIndex.all(),
+                NDArrayIndex.all());
+        for (INDArray in : new INDArray[]{full.dup('c'), view}) {
+            INDArray before = in.dup();
+            INDArray epsilon = Nd4j.rand(in.shape());
+            INDArray epsilonBefore = epsilon.dup();
+
+            assertEquals(bnStd.activate(in, true), bnHelper.activate(in, true));
+            assertEquals(bnStd.backpropGradient(epsilon).getSecond(), bnHelper.backpropGradient(epsilon).getSecond());
+            assertEquals(lrnStd.activate(in, true), lrnHelper.activate(in, true));
+            assertEquals(lrnStd.backpropGradient(epsilon).getSecond(),
+                    lrnHelper.backpropGradient(epsilon).getSecond());
+
+            assertEquals(before, in);
+            assertEquals(epsilonBefore, epsilon);
+        }
+    }
+
+    @Test
+    public void testLrnHelperVsStandard() {
+        Nd4j.getRandom().setSeed(12345);
+        for (int n : new int[]{1, 3, 5, 9}) {
+            NeuralNetConfiguration conf = new NeuralNetConfiguration.Builder()
+                    .layer(new org.deeplearning4j.nn.conf.layers.LocalResponseNormalization.Builder()
+                            .k(2).n(n).alpha(1e-2).beta(0.75).cpuNormalizationHelper(true).build())
+                    .build();
+            LocalResponseNormalization layerHelper = (LocalResponseNormalization) conf.getLayer()
+                    .instantiate(conf, null, 0, null, false);
+            LocalResponseNormalization layerStd = (LocalResponseNormalization) conf.getLayer()
+                    .instantiate(conf, null, 0, null, false);
+            assertTrue(layerHelper.helper instanceof CpuLocalResponseNormalizationHelper);
+            layerStd.helper = null;
+
+            INDArray in = Nd4j.rand(new int[]{3, 7, 4, 5}).subi(0.5).muli(4);
+            INDArray outHelper = layerHelper.activate(in, true);
+            INDArray outStd = layerStd.activate(in, true);
+            assertEquals("n=" + n, outStd, outHelper);
+
+            INDArray epsilon = Nd4j.rand(outStd.shape());
+            INDArray epsHelper = layerHelper.backpropGradient(epsilon).getSecond();
+            INDArray epsStd = layerStd.backpropGradient(epsilon).getSecond();
+            assertEquals("n=" + n, epsStd, epsHelper);
+        }
+    }
+}
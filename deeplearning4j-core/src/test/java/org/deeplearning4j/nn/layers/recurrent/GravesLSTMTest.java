@@ -176,6 +176,45 @@ public class GravesLSTMTest {
 		}
 	}
 
+	@Test
+	public void testRnnTimeStepMatchesFullSequence(){
+		//Input contributions are calculated for all time steps at once: check that this gives the same result as one
+		//time step at a time (including 2d input), with state carried between rnnTimeStep calls
+		Nd4j.getRandom().setSeed(12345);
+		int nIn = 5;
+		int miniBatchSize = 3;
+		int timeSeriesLength = 6;
+
+		MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+				.seed(12345)
+				.list()
+				.layer(0, new org.deeplearning4j.nn.conf.layers.GravesLSTM.Builder().activation(Activation.TANH).nIn(nIn).nOut(7).build())
+				.layer(1, new org.deeplearning4j.nn.conf.layers.RnnOutputLayer.Builder().lossFunction(LossFunctions.LossFunction.MSE)
+						.nIn(7).nOut(4).activation(Activation.IDENTITY).build())
+				.build();
+
+		MultiLayerNetwork net = new MultiLayerNetwork(conf);
+		net.init();
+
+		INDArray input = Nd4j.rand(new int[]{miniBatchSize, nIn, timeSeriesLength});
+		INDArray fullOut = net.output(input);
+
+		net.rnnClearPreviousState();
+		for( int i=0; i<timeSeriesLength; i++ ){
+			INDArray inputStep = input.tensorAlongDimension(i, 1, 0).dup();
+			INDArray outStep = net.rnnTimeStep(inputStep);
+			INDArray expOutStep = fullOut.tensorAlongDimension(i, 1, 0);
+			assertEquals(expOutStep, outStep);
+		}
+
+		//Also: two halves, carrying state
+		net.rnnClearPreviousState();
+		INDArray out1 = net.rnnTimeStep(input.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.interval(0, 2)));
+		INDArray out2 = net.rnnTimeStep(input.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.interval(2, timeSeriesLength)));
+		assertEquals(fullOut.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.interval(0, 2)), out1);
+		assertEquals(fullOut.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.interval(2, timeSeriesLength)), out2);
+	}
+
 	@Test
 	public void testSingleExample(){
 		Nd4j.getRandom().setSeed(12345);
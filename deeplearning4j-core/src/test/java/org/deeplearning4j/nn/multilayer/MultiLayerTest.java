@@ -1077,4 +1077,77 @@ public class MultiLayerTest {
         System.out.println(modelExpectedArch.summary());
         System.out.println(modelMow.summary());
     }
+
+    @Test
+    public void testLayerWorkspaces(){
+        //Training with reusable per-layer workspaces should give identical results to training without them,
+        //including when the minibatch size changes
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .optimizationAlgo(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT)
+                .updater(Updater.SGD).learningRate(0.1)
+                .weightInit(WeightInit.XAVIER)
+                .list()
+                .layer(0, new ConvolutionLayer.Builder().kernelSize(2,2).stride(1,1).nOut(3).activation(Activation.TANH).build())
+                .layer(1, new SubsamplingLayer.Builder().poolingType(SubsamplingLayer.PoolingType.MAX).kernelSize(2,2).stride(1,1).build())
+                .layer(2, new DenseLayer.Builder().nOut(5).activation(Activation.TANH).build())
+                .layer(3, new OutputLayer.Builder().lossFunction(LossFunctions.LossFunction.MCXENT).nOut(3).activation(Activation.SOFTMAX).build())
+                .setInputType(InputType.convolutional(6,6,2))
+                .build();
+
+        MultiLayerConfiguration confRnn = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .optimizationAlgo(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT)
+                .updater(Updater.SGD).learningRate(0.1)
+                .weightInit(WeightInit.XAVIER)
+                .list()
+                .layer(0, new GravesLSTM.Builder().nIn(4).nOut(5).activation(Activation.TANH).build())
+                .layer(1, new RnnOutputLayer.Builder().lossFunction(LossFunctions.LossFunction.MCXENT).nIn(5).nOut(3).activation(Activation.SOFTMAX).build())
+                .build();
+
+        Nd4j.getRandom().setSeed(12345);
+        List<DataSet> cnnData = new ArrayList<>();
+        List<DataSet> rnnData = new ArrayList<>();
+        for(int mb : new int[]{5,5,5,3}){
+            INDArray labels = Nd4j.zeros(mb, 3);
+            INDArray labelsRnn = Nd4j.zeros(new int[]{mb, 3, 6});
+            for(int i=0; i<mb; i++ ){
+                labels.putScalar(i, i%3, 1.0);
+                for(int j=0; j<6; j++ ){
+                    labelsRnn.putScalar(new int[]{i, (i+j)%3, j}, 1.0);
+                }
+            }
+            cnnData.add(new DataSet(Nd4j.rand(new int[]{mb,2,6,6}), labels));
+            rnnData.add(new DataSet(Nd4j.rand(new int[]{mb,4,6}), labelsRnn));
+        }
+
+        for(boolean rnn : new boolean[]{false, true}){
+            MultiLayerNetwork net1 = new MultiLayerNetwork(rnn ? confRnn : conf);
+            net1.init();
+
+            MultiLayerNetwork net2 = new MultiLayerNetwork((rnn ? confRnn : conf).clone());
+            net2.init();
+            net2.setLayerWorkspacesEnabled(true);
+            assertTrue(net2.isLayerWorkspacesEnabled());
+            assertEquals(net1.params(), net2.params());
+
+            for(int epoch=0; epoch<2; epoch++ ){
+                for(DataSet ds : (rnn ? rnnData : cnnData)){
+                    net1.fit(ds);
+                    net2.fit(ds);
+                    assertEquals(net1.score(), net2.score(), 1e-6);
+                    assertEquals(net1.params(), net2.params());
+                }
+            }
+
+            for(Layer l : net2.getLayers()){
+                assertNotNull(((org.deeplearning4j.nn.layers.BaseLayer<?>)l).getWorkspace());
+            }
+
+            net2.setLayerWorkspacesEnabled(false);
+            for(Layer l : net2.getLayers()){
+                assertNull(((org.deeplearning4j.nn.layers.BaseLayer<?>)l).getWorkspace());
+            }
+        }
+    }
 }
\ No newline at end of file
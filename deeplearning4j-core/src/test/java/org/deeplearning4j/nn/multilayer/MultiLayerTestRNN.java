@@ -8,6 +8,7 @@ import org.deeplearning4j.nn.conf.BackpropType;
 import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.Updater;
 import org.deeplearning4j.nn.conf.distribution.NormalDistribution;
 import org.deeplearning4j.nn.conf.layers.DenseLayer;
 import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
@@ -657,4 +658,135 @@ public class MultiLayerTestRNN {
         INDArray afterParams = mln.params();
         assertNotEquals(initialParams, afterParams);
     }
+
+    @Test
+    public void testMicroBatchesMatchFullBatch() {
+        //Gradient accumulation: gradients/score/params with micro-batches should be the same as with the full minibatch,
+        // for both standard BPTT and truncated BPTT, with masking
+        int timeSeriesLength = 12;
+        int miniBatchSize = 7;
+        int nIn = 5;
+        int nOut = 4;
+
+        for (BackpropType bpType : new BackpropType[]{BackpropType.Standard, BackpropType.TruncatedBPTT}) {
+            MultiLayerNetwork[] nets = new MultiLayerNetwork[2];
+            int[] numMicroBatches = {1, 3};
+            for (int i = 0; i < 2; i++) {
+                MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                        .seed(12345)
+                        .optimizationAlgo(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT)
+                        .updater(Updater.SGD).learningRate(0.1)
+                        .weightInit(WeightInit.XAVIER)
+                        .list()
+                        .layer(0, new org.deeplearning4j.nn.conf.layers.GravesLSTM.Builder()
+                                .nIn(nIn).nOut(6).activation(Activation.TANH).build())
+                        .layer(1, new RnnOutputLayer.Builder(LossFunction.MCXENT)
+                                .nIn(6).nOut(nOut).activation(Activation.SOFTMAX).build())
+                        .backpropType(bpType)
+                        .tBPTTBackwardLength(5).tBPTTForwardLength(5)
+                        .numMicroBatches(numMicroBatches[i])
+                        .build();
+                nets[i] = new MultiLayerNetwork(conf);
+                nets[i].init();
+            }
+            nets[1].setParams(nets[0].params().dup());
+
+            Nd4j.getRandom().setSeed(12345);
+            INDArray features = Nd4j.rand(new int[]{miniBatchSize, nIn, timeSeriesLength});
+            INDArray labels = Nd4j.zeros(miniBatchSize, nOut, timeSeriesLength);
+            INDArray mask = Nd4j.ones(miniBatchSize, timeSeriesLength);
+            for (int i = 0; i < miniBatchSize; i++) {
+                for (int j = 0; j < timeSeriesLength; j++) {
+                    labels.putScalar(new int[]{i, (i + j) % nOut, j}, 1.0);
+                }
+                //Variable length time series
+                for (int j = timeSeriesLength - i; j < timeSeriesLength; j++) {
+                    mask.putScalar(i, j, 0.0);
+                }
+            }
+
+            if (bpType == BackpropType.Standard) {
+                for (MultiLayerNetwork net : nets) {
+                    net.setInput(features);
+                    net.setLabels(labels);
+                    net.setLayerMaskArrays(mask, mask);
+                    net.computeGradientAndScore();
+                }
+                assertEquals(nets[0].score(), nets[1].score(), 1e-5);
+                Map<String, INDArray> g0 = nets[0].gradient().gradientForVariable();
+                Map<String, INDArray> g1 = nets[1].gradient().gradientForVariable();
+                for (String key : g0.keySet()) {
+                    assertTrue(key, g0.get(key).equalsWithEps(g1.get(key), 1e-5));
+                }
+                for (MultiLayerNetwork net : nets) {
+                    net.clearLayerMaskArrays();
+                }
+            }
+
+            DataSet ds = new DataSet(features, labels, mask, mask);
+            nets[0].fit(ds);
+            nets[1].fit(ds);
+            assertTrue(bpType.toString(), nets[0].params().equalsWithEps(nets[1].params(), 1e-5));
+        }
+    }
+
+    @Test
+    public void testMicroBatchesScoreWithRegularization() {
+        //L1/L2 regularization must be included once in the score, not once per micro-batch
+        int timeSeriesLength = 6;
+        int miniBatchSize = 8;
+        int nIn = 5;
+        int nOut = 4;
+
+        MultiLayerNetwork[] nets = new MultiLayerNetwork[2];
+        int[] numMicroBatches = {1, 4};
+        for (int i = 0; i < 2; i++) {
+            MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                    .seed(12345)
+                    .optimizationAlgo(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT)
+                    .updater(Updater.SGD).learningRate(0.1)
+                    .regularization(true).l1(0.01).l2(0.02)
+                    .weightInit(WeightInit.XAVIER)
+                    .list()
+                    .layer(0, new org.deeplearning4j.nn.conf.layers.GravesLSTM.Builder()
+                            .nIn(nIn).nOut(6).activation(Activation.TANH).build())
+                    .layer(1, new RnnOutputLayer.Builder(LossFunction.MCXENT)
+                            .nIn(6).nOut(nOut).activation(Activation.SOFTMAX).build())
+                    .numMicroBatches(numMicroBatches[i])
+                    .build();
+            nets[i] = new MultiLayerNetwork(conf);
+            nets[i].init();
+        }
+        nets[1].setParams(nets[0].params().dup());
+        assertTrue(nets[0].calcL1(true) > 0.0);
+        assertTrue(nets[0].calcL2(true) > 0.0);
+
+        Nd4j.getRandom().setSeed(12345);
+        INDArray features = Nd4j.rand(new int[]{miniBatchSize, nIn, timeSeriesLength});
+        INDArray labels = Nd4j.zeros(miniBatchSize, nOut, timeSeriesLength);
+        for (int i = 0; i < miniBatchSize; i++) {
+            for (int j = 0; j < timeSeriesLength; j++) {
+                labels.putScalar(new int[]{i, (i + j) % nOut, j}, 1.0);
+            }
+        }
+
+        for (MultiLayerNetwork net : nets) {
+            net.setInput(features);
+            net.setLabels(labels);
+            net.computeGradientAndScore();
+        }
+        assertEquals(nets[0].score(), nets[1].score(), 1e-5);
+        Map<String, INDArray> g0 = nets[0].gradient().gradientForVariable();
+        Map<String, INDArray> g1 = nets[1].gradient().gradientForVariable();
+        for (String key : g0.keySet()) {
+            assertTrue(key, g0.get(key).equalsWithEps(g1.get(key), 1e-5));
+        }
+
+        //Score after fitting, as reported to listeners and early stopping
+        DataSet ds = new DataSet(features, labels);
+        nets[0].fit(ds);
+        nets[1].fit(ds);
+        assertEquals(nets[0].score(), nets[1].score(), 1e-5);
+        assertEquals(nets[0].score(ds, true), nets[1].score(ds, true), 1e-5);
+    }
 }
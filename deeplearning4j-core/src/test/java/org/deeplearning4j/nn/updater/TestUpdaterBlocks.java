@@ -0,0 +1,314 @@
+package org.deeplearning4j.nn.updater;
+
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.GradientNormalization;
+import org.deeplearning4j.nn.conf.LearningRatePolicy;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.Updater;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.BatchNormalization;
+import org.deeplearning4j.nn.conf.layers.ConvolutionLayer;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.gradient.DefaultGradient;
+import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.transferlearning.TransferLearning;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.junit.Before;
+import org.junit.Test;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.buffer.util.DataTypeUtil;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for block updates (UpdaterBlock), as used by MultiLayerUpdater
+ */
+public class TestUpdaterBlocks {
+
+    @Before
+    public void before() {
+        DataTypeUtil.setDTypeForContext(DataBuffer.Type.DOUBLE);
+        Nd4j.factory().setDType(DataBuffer.Type.DOUBLE);
+    }
+
+    @Test
+    public void testCreateBlocks() {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .learningRate(0.1)
+                .updater(Updater.RMSPROP)
+                .list()
+                .layer(0, new DenseLayer.Builder().nIn(4).nOut(5).build())
+                .layer(1, new DenseLayer.Builder().nIn(5).nOut(6).build())
+                .layer(2, new DenseLayer.Builder().nIn(6).nOut(7).learningRate(0.2).build())
+                .layer(3, new DenseLayer.Builder().nIn(7).nOut(8).updater(Updater.ADAM).build())
+                .layer(4, new OutputLayer.Builder().nIn(8).nOut(3).updater(Updater.SGD).build())
+                .build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        Layer[] layers = net.getLayers();
+        org.deeplearning4j.nn.api.Updater[] updaters = ((MultiLayerUpdater) net.getUpdater()).getLayerUpdaters();
+        Gradient[] gradients = new Gradient[layers.length];
+        boolean[] eligible = new boolean[layers.length];
+        for (int i = 0; i < layers.length; i++) {
+            gradients[i] = new DefaultGradient();
+            for (String key : layers[i].paramTable().keySet()) {
+                gradients[i].setGradientFor(key, Nd4j.create(1, 1));
+            }
+            eligible[i] = UpdaterBlock.isEligible(layers[i], updaters[i], gradients[i]);
+            assertTrue(eligible[i]);
+        }
+
+        List<UpdaterBlock> blocks = UpdaterBlock.createBlocks(layers, updaters, gradients, eligible);
+        //Layers 0 and 1: one RMSProp block. Layer 2: different learning rate. Layer 3: Adam, one block per variable.
+        //Layer 4: SGD
+        assertEquals(5, blocks.size());
+        int l0 = 4 * 5 + 5;
+        int l1 = 5 * 6 + 6;
+        int l2 = 6 * 7 + 7;
+        int l3w = 7 * 8;
+        int l3b = 8;
+        int l4 = 8 * 3 + 3;
+
+        assertEquals(Updater.RMSPROP, blocks.get(0).getUpdaterType());
+        assertEquals(0, blocks.get(0).getParamOffsetStart());
+        assertEquals(l0 + l1, blocks.get(0).getParamOffsetEnd());
+        assertEquals(l0 + l1, blocks.get(0).getStateOffsetEnd());
+        assertEquals(4, blocks.get(0).getVariables().size());
+
+        assertEquals(Updater.RMSPROP, blocks.get(1).getUpdaterType());
+        assertEquals(l2, blocks.get(1).length());
+
+        assertEquals(Updater.ADAM, blocks.get(2).getUpdaterType());
+        assertEquals(l3w, blocks.get(2).length());
+        assertEquals(2 * l3w, blocks.get(2).getStateOffsetEnd() - blocks.get(2).getStateOffsetStart());
+        assertEquals(Updater.ADAM, blocks.get(3).getUpdaterType());
+        assertEquals(l3b, blocks.get(3).length());
+
+        assertEquals(Updater.SGD, blocks.get(4).getUpdaterType());
+        assertEquals(l4, blocks.get(4).length());
+        assertEquals(blocks.get(4).getStateOffsetStart(), blocks.get(4).getStateOffsetEnd());
+        assertEquals(net.numParams(), blocks.get(4).getParamOffsetEnd());
+        assertEquals(net.getUpdater().getStateViewArray().length(), blocks.get(4).getStateOffsetEnd());
+    }
+
+    @Test
+    public void testFlattenedVsPerLayerUpdates() {
+        for (Updater u : new Updater[]{Updater.SGD, Updater.NESTEROVS, Updater.RMSPROP, Updater.ADAGRAD,
+                Updater.ADAM, Updater.ADADELTA}) {
+            MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                    .seed(12345)
+                    .learningRate(0.05)
+                    .updater(u)
+                    .momentum(0.9)
+                    .regularization(true).l2(1e-3).l1(1e-4)
+                    .weightInit(WeightInit.XAVIER)
+                    .activation(Activation.TANH)
+                    .list()
+                    .layer(0, new ConvolutionLayer.Builder().kernelSize(2, 2).nOut(3).build())
+                    .layer(1, new BatchNormalization.Builder().build())
+                    .layer(2, new DenseLayer.Builder().nOut(6)
+                            .gradientNormalization(GradientNormalization.ClipL2PerLayer)
+                            .gradientNormalizationThreshold(0.5).build())
+                    .layer(3, new DenseLayer.Builder().nOut(5).biasLearningRate(0.1).build())
+                    .layer(4, new DenseLayer.Builder().nOut(5).updater(Updater.RMSPROP).build())
+                    .layer(5, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nOut(3)
+                            .activation(Activation.SOFTMAX).build())
+                    .setInputType(InputType.convolutional(5, 5, 2))
+                    .build();
+
+            MultiLayerNetwork netFlat = new MultiLayerNetwork(conf);
+            netFlat.init();
+            MultiLayerNetwork netPerLayer = new MultiLayerNetwork(conf.clone());
+            netPerLayer.init(netFlat.params().dup(), false);
+
+            //Block updates are opt-in
+            assertFalse(((MultiLayerUpdater) netPerLayer.getUpdater()).isFlattenedUpdates());
+            ((MultiLayerUpdater) netFlat.getUpdater()).setFlattenedUpdates(true);
+
+            Nd4j.getRandom().setSeed(12345);
+            for (int i = 0; i < 5; i++) {
+                INDArray f = Nd4j.rand(new int[]{4, 2, 5, 5});
+                INDArray l = Nd4j.zeros(4, 3);
+                for (int j = 0; j < 4; j++) {
+                    l.putScalar(j, (i + j) % 3, 1.0);
+                }
+                DataSet ds = new DataSet(f, l);
+                netFlat.fit(ds);
+                netPerLayer.fit(ds);
+
+                assertEquals(u + ", iter " + i, netPerLayer.params(), netFlat.params());
+                assertEquals(u + ", iter " + i, netPerLayer.getUpdater().getStateViewArray(),
+                        netFlat.getUpdater().getStateViewArray());
+            }
+        }
+    }
+
+    @Test
+    public void testFlattenedVsPerLayerUpdatesSchedulesFrozen() {
+        //All updaters, with learning rate and momentum schedules, per-layer learning rates, gradient normalization,
+        // and frozen layers: block updates should give exactly the same results as per-layer updates
+        Map<Integer, Double> lrSchedule = new HashMap<>();
+        lrSchedule.put(0, 0.05);
+        lrSchedule.put(2, 0.02);
+        Map<Integer, Double> momentumSchedule = new HashMap<>();
+        momentumSchedule.put(3, 0.5);
+        for (Updater u : Updater.values()) {
+            if (u == Updater.CUSTOM) continue;
+            for (boolean schedules : new boolean[]{false, true}) {
+                NeuralNetConfiguration.Builder b = new NeuralNetConfiguration.Builder()
+                        .seed(12345)
+                        .learningRate(0.05)
+                        .updater(u)
+                        .momentum(0.9)
+                        .regularization(true).l2(1e-3).l1(1e-4)
+                        .weightInit(WeightInit.XAVIER)
+                        .activation(Activation.TANH);
+                if (schedules) {
+                    b.learningRateDecayPolicy(LearningRatePolicy.Schedule).learningRateSchedule(lrSchedule)
+                            .momentumAfter(momentumSchedule);
+                }
+                MultiLayerConfiguration conf = b.list()
+                        .layer(0, new DenseLayer.Builder().nIn(4).nOut(5).build())
+                        .layer(1, new DenseLayer.Builder().nIn(5).nOut(5).learningRate(0.1).biasLearningRate(0.2)
+                                .build())
+                        .layer(2, new DenseLayer.Builder().nIn(5).nOut(5)
+                                .gradientNormalization(GradientNormalization.ClipElementWiseAbsoluteValue)
+                                .gradientNormalizationThreshold(0.01).build())
+                        .layer(3, new DenseLayer.Builder().nIn(5).nOut(5)
+                                .gradientNormalization(GradientNormalization.RenormalizeL2PerParamType).build())
+                        .layer(4, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(5).nOut(3)
+                                .activation(Activation.SOFTMAX).build())
+                        .build();
+
+                MultiLayerNetwork orig = new MultiLayerNetwork(conf);
+                orig.init();
+                //Layer 0 frozen. Separate copies: the transfer learning network may share parameters with the original
+                MultiLayerNetwork netFlat = new TransferLearning.Builder(orig.clone()).setFeatureExtractor(0).build();
+                MultiLayerNetwork netPerLayer = new TransferLearning.Builder(orig.clone()).setFeatureExtractor(0).build();
+                ((MultiLayerUpdater) netFlat.getUpdater()).setFlattenedUpdates(true);
+                INDArray frozenParams = netFlat.getLayer(0).params().dup();
+
+                Nd4j.getRandom().setSeed(12345);
+                for (int i = 0; i < 5; i++) {
+                    INDArray f = Nd4j.rand(4, 4);
+                    INDArray l = Nd4j.zeros(4, 3);
+                    for (int j = 0; j < 4; j++) {
+                        l.putScalar(j, (i + j) % 3, 1.0);
+                    }
+                    DataSet ds = new DataSet(f, l);
+                    netFlat.fit(ds);
+                    netPerLayer.fit(ds);
+
+                    String msg = u + ", schedules=" + schedules + ", iter " + i;
+                    assertEquals(msg, netPerLayer.params(), netFlat.params());
+                    INDArray statePerLayer = netPerLayer.getUpdater().getStateViewArray();
+                    if (statePerLayer != null) {
+                        assertEquals(msg, statePerLayer, netFlat.getUpdater().getStateViewArray());
+                    }
+                }
+                assertEquals(frozenParams, netFlat.getLayer(0).params());
+            }
+        }
+    }
+
+    @Test
+    public void testBlocksReusedAndInvalidated() {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .learningRate(0.1)
+                .updater(Updater.NESTEROVS)
+                .list()
+                .layer(0, new DenseLayer.Builder().nIn(4).nOut(5).build())
+                .layer(1, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(5).nOut(3)
+                        .activation(Activation.SOFTMAX).build())
+                .build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        MultiLayerUpdater updater = (MultiLayerUpdater) net.getUpdater();
+        updater.setFlattenedUpdates(true);
+
+        DataSet ds = new DataSet(Nd4j.rand(3, 4), Nd4j.create(new double[][]{{1, 0, 0}, {0, 1, 0}, {0, 0, 1}}));
+        net.fit(ds);
+        List<UpdaterBlock> blocks = updater.getUpdaterBlocks().getBlocks();
+        assertEquals(1, blocks.size());
+
+        //Same configuration: blocks (and their gradient updaters) should be reused
+        net.fit(ds);
+        assertSame(blocks, updater.getUpdaterBlocks().getBlocks());
+
+        //Changed configuration: blocks should be recreated
+        net.getLayer(0).conf().setLearningRateByParam("W", 0.2);
+        assertFalse(blocks.get(0).isCurrent());
+        net.fit(ds);
+        List<UpdaterBlock> blocks2 = updater.getUpdaterBlocks().getBlocks();
+        assertNotSame(blocks, blocks2);
+        assertEquals(2, blocks2.size());
+        for (UpdaterBlock b : blocks2) {
+            assertTrue(b.isCurrent());
+        }
+    }
+
+    @Test
+    public void testFlattenedVsPerLayerUpdatesGraph() {
+        for (Updater u : new Updater[]{Updater.SGD, Updater.NESTEROVS, Updater.RMSPROP, Updater.ADAM}) {
+            //Vertices are defined in a different order to the topological order: the parameters are in topological
+            //order, but the updater state is in the order of the layers
+            ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder()
+                    .seed(12345)
+                    .learningRate(0.05)
+                    .updater(u)
+                    .momentum(0.9)
+                    .regularization(true).l2(1e-3)
+                    .weightInit(WeightInit.XAVIER)
+                    .activation(Activation.TANH)
+                    .graphBuilder()
+                    .addInputs("in")
+                    .addLayer("out", new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(6).nOut(3)
+                            .activation(Activation.SOFTMAX).build(), "d2")
+                    .addLayer("d2", new DenseLayer.Builder().nIn(5).nOut(6).updater(Updater.SGD).build(), "d1")
+                    .addLayer("d1", new DenseLayer.Builder().nIn(5).nOut(5).build(), "d0")
+                    .addLayer("d0", new DenseLayer.Builder().nIn(4).nOut(5).build(), "in")
+                    .setOutputs("out")
+                    .build();
+
+            ComputationGraph netFlat = new ComputationGraph(conf);
+            netFlat.init();
+            ComputationGraph netPerLayer = new ComputationGraph(conf.clone());
+            netPerLayer.init(netFlat.params().dup(), false);
+
+            assertFalse(netPerLayer.getUpdater().isFlattenedUpdates());
+            netFlat.getUpdater().setFlattenedUpdates(true);
+
+            Nd4j.getRandom().setSeed(12345);
+            for (int i = 0; i < 5; i++) {
+                INDArray f = Nd4j.rand(4, 4);
+                INDArray l = Nd4j.zeros(4, 3);
+                for (int j = 0; j < 4; j++) {
+                    l.putScalar(j, (i + j) % 3, 1.0);
+                }
+                DataSet ds = new DataSet(f, l);
+                netFlat.fit(ds);
+                netPerLayer.fit(ds);
+
+                assertEquals(u + ", iter " + i, netPerLayer.params(), netFlat.params());
+                assertEquals(u + ", iter " + i, netPerLayer.getUpdater().getStateViewArray(),
+                        netFlat.getUpdater().getStateViewArray());
+            }
+        }
+    }
+}
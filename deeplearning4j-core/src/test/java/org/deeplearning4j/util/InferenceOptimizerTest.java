@@ -0,0 +1,115 @@
+package org.deeplearning4j.util;
+
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.*;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.junit.Test;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class InferenceOptimizerTest {
+
+    @Test
+    public void testOptimizeMultiLayerNetwork() throws Exception {
+        Nd4j.getRandom().setSeed(12345);
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .weightInit(WeightInit.XAVIER)
+                .learningRate(0.1)
+                .list()
+                .layer(0, new DenseLayer.Builder().nIn(10).nOut(12).activation(Activation.IDENTITY).build())
+                .layer(1, new BatchNormalization.Builder().build())
+                .layer(2, new ActivationLayer.Builder().activation(Activation.RELU).build())
+                .layer(3, new DropoutLayer.Builder(0.5).build())
+                .layer(4, new DenseLayer.Builder().nIn(12).nOut(8).activation(Activation.TANH).dropOut(0.5).build())
+                .layer(5, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(8).nOut(3)
+                        .activation(Activation.SOFTMAX).build())
+                .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        //Train for a few iterations, so that the batch norm parameters and global mean/variance are non-trivial
+        INDArray labels = Nd4j.zeros(20, 3);
+        for (int i = 0; i < 20; i++) labels.putScalar(i, i % 3, 1.0);
+        DataSet ds = new DataSet(Nd4j.rand(20, 10).muli(3).addi(1), labels);
+        for (int i = 0; i < 5; i++) net.fit(ds);
+
+        MultiLayerNetwork optimized = InferenceOptimizer.optimize(net);
+
+        //Dense + batch norm + activation -> 1 layer; dropout removed
+        assertEquals(3, optimized.getnLayers());
+        assertEquals(0.0, optimized.getLayer(1).conf().getLayer().getDropOut(), 0.0);
+
+        INDArray in = Nd4j.rand(15, 10).muli(3).addi(1);
+        INDArray expected = net.output(in, false);
+        INDArray out = optimized.output(in, false);
+        assertTrue(expected.equalsWithEps(out, 1e-5));
+
+        File f = File.createTempFile("inferenceOptimizerMLN", ".zip");
+        f.deleteOnExit();
+        ModelSerializer.writeModel(optimized, f, false);
+        MultiLayerNetwork restored = ModelSerializer.restoreMultiLayerNetwork(f);
+        assertEquals(optimized.params(), restored.params());
+        assertTrue(expected.equalsWithEps(restored.output(in, false), 1e-5));
+    }
+
+    @Test
+    public void testOptimizeComputationGraph() throws Exception {
+        Nd4j.getRandom().setSeed(12345);
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .weightInit(WeightInit.XAVIER)
+                .learningRate(0.1)
+                .graphBuilder()
+                .addInputs("in")
+                .addLayer("conv", new ConvolutionLayer.Builder().kernelSize(2, 2).stride(1, 1).nOut(4)
+                        .activation(Activation.IDENTITY).build(), "in")
+                .addLayer("bn", new BatchNormalization.Builder().build(), "conv")
+                .addLayer("act", new ActivationLayer.Builder().activation(Activation.TANH).build(), "bn")
+                .addLayer("dropout", new DropoutLayer.Builder(0.5).build(), "act")
+                .addLayer("out", new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nOut(3)
+                        .activation(Activation.SOFTMAX).build(), "dropout")
+                .setOutputs("out")
+                .setInputTypes(InputType.convolutional(5, 5, 2))
+                .build();
+
+        ComputationGraph graph = new ComputationGraph(conf);
+        graph.init();
+
+        INDArray labels = Nd4j.zeros(10, 3);
+        for (int i = 0; i < 10; i++) labels.putScalar(i, i % 3, 1.0);
+        DataSet ds = new DataSet(Nd4j.rand(new int[]{10, 2, 5, 5}).muli(2).subi(0.5), labels);
+        for (int i = 0; i < 5; i++) graph.fit(ds);
+
+        ComputationGraph optimized = InferenceOptimizer.optimize(graph);
+
+        assertEquals(2, optimized.getNumLayers());
+        assertNotNull(optimized.getLayer("conv"));
+        assertNull(optimized.getConfiguration().getVertices().get("bn"));
+        assertEquals("conv", optimized.getConfiguration().getVertexInputs().get("out").get(0));
+
+        INDArray in = Nd4j.rand(new int[]{6, 2, 5, 5}).muli(2).subi(0.5);
+        INDArray expected = graph.outputSingle(false, in);
+        INDArray out = optimized.outputSingle(false, in);
+        assertTrue(expected.equalsWithEps(out, 1e-5));
+
+        File f = File.createTempFile("inferenceOptimizerCG", ".zip");
+        f.deleteOnExit();
+        ModelSerializer.writeModel(optimized, f, false);
+        ComputationGraph restored = ModelSerializer.restoreComputationGraph(f);
+        assertTrue(expected.equalsWithEps(restored.outputSingle(false, in), 1e-5));
+    }
+}
@@ -0,0 +1,132 @@
+package org.deeplearning4j.util;
+
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.ConvolutionLayer;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.junit.Test;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+import java.io.File;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class QuantizedParametersTest {
+
+    @Test
+    public void testHalfConversion() {
+        float[] exact = {0.0f, -0.0f, 1.0f, -2.0f, 0.5f, 65504.0f, 6.103515625e-5f, 5.9604645e-8f, 1024.0f, 0.333251953125f};
+        for (float f : exact) {
+            assertEquals(f, QuantizedParameters.fromHalf(QuantizedParameters.toHalf(f)), 0.0f);
+        }
+        assertEquals(0x3c00, QuantizedParameters.toHalf(1.0f) & 0xffff);
+        assertEquals(0xc000, QuantizedParameters.toHalf(-2.0f) & 0xffff);
+        assertEquals(Float.POSITIVE_INFINITY, QuantizedParameters.fromHalf(QuantizedParameters.toHalf(1e6f)), 0.0f);
+        assertTrue(Float.isNaN(QuantizedParameters.fromHalf(QuantizedParameters.toHalf(Float.NaN))));
+
+        //Relative error for normal values: at most 2^-11
+        for (int i = 0; i < 1000; i++) {
+            float f = (float) ((Math.random() - 0.5) * 100);
+            float r = QuantizedParameters.fromHalf(QuantizedParameters.toHalf(f));
+            assertEquals(f, r, Math.abs(f) / 2048.0f);
+        }
+    }
+
+    @Test
+    public void testQuantizedMultiLayerNetwork() throws Exception {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .weightInit(WeightInit.XAVIER)
+                .list()
+                .layer(0, new ConvolutionLayer.Builder().kernelSize(3, 3).nOut(8).activation(Activation.RELU).build())
+                .layer(1, new DenseLayer.Builder().nOut(32).activation(Activation.TANH).build())
+                .layer(2, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nOut(4)
+                        .activation(Activation.SOFTMAX).build())
+                .setInputType(InputType.convolutional(10, 10, 3))
+                .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        File full = File.createTempFile("quantizedMLN", "full.zip");
+        full.deleteOnExit();
+        ModelSerializer.writeModel(net, full, false);
+
+        INDArray in = Nd4j.rand(new int[]{5, 3, 10, 10});
+        INDArray expOut = net.output(in, false);
+
+        for (QuantizedParameters.Type type : QuantizedParameters.Type.values()) {
+            for (QuantizedParameters.Granularity g : QuantizedParameters.Granularity.values()) {
+                File f = File.createTempFile("quantizedMLN", ".zip");
+                f.deleteOnExit();
+                ModelSerializer.writeQuantizedModel(net, f, type, g);
+
+                double ratio = (type == QuantizedParameters.Type.INT8 ? 0.4 : 0.7);
+                assertTrue(type + " - " + g, f.length() < ratio * full.length());
+
+                MultiLayerNetwork restored = ModelSerializer.restoreMultiLayerNetwork(f);
+                assertEquals(net.getLayerWiseConfigurations().toJson(), restored.getLayerWiseConfigurations().toJson());
+                checkParams(net.paramTable(), restored.paramTable(), type);
+
+                INDArray out = restored.output(in, false);
+                assertTrue(type + " - " + g, expOut.equalsWithEps(out, 0.05));
+            }
+        }
+    }
+
+    @Test
+    public void testQuantizedComputationGraph() throws Exception {
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .weightInit(WeightInit.XAVIER)
+                .graphBuilder()
+                .addInputs("in")
+                .addLayer("dense_0", new DenseLayer.Builder().nIn(20).nOut(30).activation(Activation.TANH).build(), "in")
+                .addLayer("out", new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(30).nOut(5)
+                        .activation(Activation.SOFTMAX).build(), "dense_0")
+                .setOutputs("out")
+                .build();
+
+        ComputationGraph graph = new ComputationGraph(conf);
+        graph.init();
+
+        QuantizedParameters quantized = QuantizedParameters.quantize(graph, QuantizedParameters.Type.INT8);
+        assertEquals(4, quantized.getParamNames().size());
+        //Biases are stored in full precision
+        assertEquals(graph.paramTable().get("dense_0_b"), quantized.dequantize("dense_0_b"));
+
+        File f = File.createTempFile("quantizedCG", ".zip");
+        f.deleteOnExit();
+        ModelSerializer.writeQuantizedModel(graph, f, QuantizedParameters.Type.INT8, QuantizedParameters.Granularity.CHANNEL);
+        ComputationGraph restored = ModelSerializer.restoreComputationGraph(f);
+        checkParams(graph.paramTable(), restored.paramTable(), QuantizedParameters.Type.INT8);
+
+        INDArray in = Nd4j.rand(10, 20);
+        assertTrue(graph.outputSingle(in).equalsWithEps(restored.outputSingle(in), 0.05));
+    }
+
+    private static void checkParams(Map<String, INDArray> expected, Map<String, INDArray> actual, QuantizedParameters.Type type) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (String key : expected.keySet()) {
+            INDArray exp = expected.get(key);
+            INDArray act = actual.get(key);
+            assertArrayEquals(key, exp.shape(), act.shape());
+            //Int8: error at most half a quantization step, where step <= (max-min)/255
+            double range = Math.max(exp.maxNumber().doubleValue(), 0) - Math.min(exp.minNumber().doubleValue(), 0);
+            double tol = (type == QuantizedParameters.Type.INT8 ? range / 255 : range / 1024) + 1e-6;
+            double maxError = Transforms.abs(exp.sub(act), false).maxNumber().doubleValue();
+            assertTrue(key + ": " + maxError + " vs. " + tol, maxError <= tol);
+        }
+    }
+}
@@ -41,7 +41,10 @@ import static org.bytedeco.javacpp.cuda.*;
 import static org.bytedeco.javacpp.cudnn.*;
 
 /**
- * cuDNN-based helper for the batch normalization layer.
+ * cuDNN-based helper for the batch normalization layer.<br>
+ * The global mean and variance use the same convention as the standard implementation: the global variance is the
+ * exponential average of the biased minibatch variance plus eps. (cuDNN's own running variance is the unbiased
+ * estimate, without eps.) Hence networks trained with or without cuDNN give the same results at inference.
  *
  * @author saudet
  */
@@ -139,6 +142,9 @@ public class CudnnBatchNormalizationHelper implements BatchNormalizationHelper {
     CudnnContext cudnnContext = new CudnnContext();
     Cache meanCache = new Cache();
     Cache varCache = new Cache();
+    //Minibatch mean and (unbiased) variance from cuDNN in training, or global variance - eps at inference
+    INDArray tempMean;
+    INDArray tempVar;
     int dataType = Nd4j.dataType() == DataBuffer.Type.DOUBLE ? CUDNN_DATA_DOUBLE : Nd4j.dataType() == DataBuffer.Type.FLOAT ? CUDNN_DATA_FLOAT : CUDNN_DATA_HALF;
     int tensorFormat = CUDNN_TENSOR_NCHW;
     int batchNormMode = CUDNN_BATCHNORM_SPATIAL; // would need to increase rank of gamma and beta for CUDNN_BATCHNORM_PER_ACTIVATION
@@ -225,14 +231,25 @@ public class CudnnBatchNormalizationHelper implements BatchNormalizationHelper {
         checkCudnn(cudnnSetTensor4dDescriptor(cudnnContext.gammaBetaTensorDesc, tensorFormat, dataType,
                 shape[0], shape[1], shape.length > 2 ? shape[2] : 1, shape.length > 3 ? shape[3] : 1));
 
+        if (tempMean == null || tempMean.length() != mean.length()) {
+            tempMean = Nd4j.create(mean.shape());
+            tempVar = Nd4j.create(var.shape());
+        }
+        if (!training) {
+            //cuDNN normalizes by sqrt(var + eps), but the global variance already includes eps
+            tempVar.assign(var).subi(eps);
+        }
+
         Allocator allocator = AtomicAllocator.getInstance();
-        CudaContext context = allocator.getFlowController().prepareActionAllWrite(x, activations, gamma, beta, mean, var);
+        CudaContext context = allocator.getFlowController().prepareActionAllWrite(x, activations, gamma, beta, mean,
+                tempMean, tempVar);
         Pointer srcData = allocator.getPointer(x, context);
         Pointer dstData = allocator.getPointer(activations, context);
         Pointer gammaData = allocator.getPointer(gamma, context);
         Pointer betaData = allocator.getPointer(beta, context);
         Pointer meanData = allocator.getPointer(mean, context);
-        Pointer varData = allocator.getPointer(var, context);
+        Pointer tempMeanData = allocator.getPointer(tempMean, context);
+        Pointer tempVarData = allocator.getPointer(tempVar, context);
 
         if (Nd4j.getExecutioner() instanceof GridExecutioner)
             ((GridExecutioner)Nd4j.getExecutioner()).flushQueue();
@@ -247,16 +264,27 @@ public class CudnnBatchNormalizationHelper implements BatchNormalizationHelper {
                 varCache.deallocate();
                 varCache = new Cache(var.data().length() * mean.data().getElementSize());
             }
+            //Exponential average factor 1.0: cuDNN writes the minibatch mean and unbiased variance to the temp arrays
             checkCudnn(cudnnBatchNormalizationForwardTraining(cudnnContext, batchNormMode, this.alpha, this.beta,
                     cudnnContext.srcTensorDesc, srcData, cudnnContext.dstTensorDesc, dstData,
-                    cudnnContext.gammaBetaTensorDesc, gammaData, betaData, decay, meanData, varData, eps, meanCache, varCache));
+                    cudnnContext.gammaBetaTensorDesc, gammaData, betaData, 1.0, tempMeanData, tempVarData, eps,
+                    meanCache, varCache));
         } else {
             checkCudnn(cudnnBatchNormalizationForwardInference(cudnnContext, batchNormMode, this.alpha, this.beta,
                     cudnnContext.srcTensorDesc, srcData, cudnnContext.dstTensorDesc, dstData,
-                    cudnnContext.gammaBetaTensorDesc, gammaData, betaData, meanData, varData, eps));
+                    cudnnContext.gammaBetaTensorDesc, gammaData, betaData, meanData, tempVarData, eps));
         }
 
-        allocator.getFlowController().registerActionAllWrite(context, x, activations, gamma, beta, mean, var);
+        allocator.getFlowController().registerActionAllWrite(context, x, activations, gamma, beta, mean, tempMean,
+                tempVar);
+
+        if (training) {
+            //As per the standard implementation: global = decay * global + (1-decay) * minibatch, where the minibatch
+            //variance is the biased estimate plus eps
+            double n = (double) miniBatch * inH * inW;
+            mean.muli(decay).addi(tempMean.muli(1.0 - decay));
+            var.muli(decay).addi(tempVar.muli((n - 1.0) / n).addi(eps).muli(1.0 - decay));
+        }
 
         return activations;
     }
@@ -0,0 +1,84 @@
+package org.deeplearning4j.normalization;
+
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.BatchNormalization;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.params.BatchNormalizationParamInitializer;
+import org.junit.Test;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.lang.reflect.Field;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compare the cuDNN batch normalization forward pass (CNN activations) and global mean/variance estimates against the
+ * standard implementation
+ */
+public class TestBatchNormalization {
+
+    @Test
+    public void testCompareCudnnStandardGlobalStats() throws Exception {
+
+        for (boolean minibatch : new boolean[]{true, false}) {
+            MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                    .seed(12345)
+                    .list()
+                    .layer(0, new BatchNormalization.Builder().decay(0.9).minibatch(minibatch).build())
+                    .layer(1, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nOut(10)
+                            .activation(Activation.SOFTMAX).build())
+                    .setInputType(InputType.convolutional(8, 8, 3))
+                    .build();
+
+            MultiLayerNetwork net1 = new MultiLayerNetwork(conf);
+            net1.init();
+            MultiLayerNetwork net2 = new MultiLayerNetwork(conf);
+            net2.init();
+
+            Layer layerCudnn = net1.getLayer(0);
+            Layer layerStandard = net2.getLayer(0);
+
+            Field f = layerStandard.getClass().getDeclaredField("helper");
+            f.setAccessible(true);
+            f.set(layerStandard, null);
+
+            if (f.get(layerCudnn) == null) throw new RuntimeException();
+
+            Nd4j.getRandom().setSeed(12345);
+            for (int i = 0; i < 3; i++) {
+                INDArray in = Nd4j.rand(new int[]{4, 3, 8, 8}).muli(3).addi(i);
+
+                INDArray outCudnn = layerCudnn.activate(in, true);
+                INDArray outStd = layerStandard.activate(in, true);
+                assertTrue(outStd.equalsWithEps(outCudnn, 1e-4));
+
+                //Global stats: global = decay * global + (1-decay) * minibatch, or the minibatch stats if
+                //minibatch(false). The global variance is the biased variance estimate plus eps, in both cases
+                INDArray meanCudnn = layerCudnn.getParam(BatchNormalizationParamInitializer.GLOBAL_MEAN);
+                INDArray meanStd = layerStandard.getParam(BatchNormalizationParamInitializer.GLOBAL_MEAN);
+                assertTrue("minibatch=" + minibatch + ", i=" + i, meanStd.equalsWithEps(meanCudnn, 1e-4));
+                INDArray varCudnn = layerCudnn.getParam(BatchNormalizationParamInitializer.GLOBAL_VAR);
+                INDArray varStd = layerStandard.getParam(BatchNormalizationParamInitializer.GLOBAL_VAR);
+                assertTrue("minibatch=" + minibatch + ", i=" + i, varStd.equalsWithEps(varCudnn, 1e-4));
+
+                //Inference, using the global stats
+                INDArray testIn = Nd4j.rand(new int[]{4, 3, 8, 8}).muli(3).addi(i);
+                INDArray testOutCudnn = layerCudnn.activate(testIn, false);
+                INDArray testOutStd = layerStandard.activate(testIn, false);
+                assertTrue("minibatch=" + minibatch + ", i=" + i, testOutStd.equalsWithEps(testOutCudnn, 1e-4));
+            }
+
+            //Global stats from cuDNN training give the same results without cuDNN
+            f.set(layerCudnn, null);
+            INDArray testIn = Nd4j.rand(new int[]{4, 3, 8, 8}).muli(3);
+            assertTrue(layerStandard.activate(testIn, false).equalsWithEps(layerCudnn.activate(testIn, false), 1e-4));
+        }
+    }
+}
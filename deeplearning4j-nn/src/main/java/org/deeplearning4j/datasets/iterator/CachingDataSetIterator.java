@@ -0,0 +1,268 @@
+package org.deeplearning4j.datasets.iterator;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+
+import java.io.File;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * A DataSetIterator that caches the minibatches from another (usually expensive) iterator on disk, for multi-epoch
+ * training on data that doesn't fit in memory.<br>
+ * During the first epoch, each DataSet from the source iterator (after any preprocessing set on the source iterator)
+ * is written to the cache. Once the source iterator has been fully consumed, subsequent epochs read the DataSets from
+ * memory mapped cache files, without using the source iterator at all. Minibatches may be returned in the original
+ * order, or shuffled (minibatch order only) each epoch.<br>
+ * The cache persists between runs: a cache directory that already contains a complete cache for the same source key is
+ * used without reading the source iterator. The source key should identify the data and its configuration (for
+ * example: input paths, the JSON of any transform process and normalizer); if it changes, the cache is rewritten.
+ * The source iterator's class, minibatch size, number of input and output columns and preprocessor class are added to
+ * the key automatically. An incomplete cache (for example: reset before the source iterator was fully consumed) is also
+ * rewritten; this requires a source iterator that supports reset.
+ * <br>
+ * Once the cache is complete, {@link #next(DataSet)} reads minibatches directly into the arrays of a DataSet that is no
+ * longer required (for example, one recycled by {@link MultiProducerAsyncDataSetIterator}).<br>
+ * Notes: the preprocessor set on this iterator (if any) is applied every epoch, after reading from the cache. Example
+ * metadata is not cached.
+ */
+public class CachingDataSetIterator implements RecyclingDataSetIterator {
+
+    private final DataSetIterator source;
+    private final MinibatchCache cache;
+    private final boolean shuffle;
+    private final Random rng;
+    private DataSetPreProcessor preProcessor;
+
+    private int[] order;
+    private int position;
+
+    /**
+     * Create a caching iterator, that returns minibatches in the same order as the source iterator
+     *
+     * @param source         Source of the data
+     * @param cacheDirectory Directory for the cache files
+     * @param sourceKey      Key identifying the source data and its configuration
+     */
+    public CachingDataSetIterator(DataSetIterator source, File cacheDirectory, String sourceKey) {
+        this(source, cacheDirectory, sourceKey, false, 0);
+    }
+
+    /**
+     * @param source         Source of the data
+     * @param cacheDirectory Directory for the cache files
+     * @param sourceKey      Key identifying the source data and its configuration
+     * @param shuffle        If true: after the first epoch, return the cached minibatches in a random order each epoch
+     * @param seed           Random seed, for shuffling
+     */
+    public CachingDataSetIterator(DataSetIterator source, File cacheDirectory, String sourceKey, boolean shuffle,
+                                  long seed) {
+        this.source = source;
+        this.cache = new MinibatchCache(cacheDirectory, fullSourceKey(sourceKey, source));
+        this.shuffle = shuffle;
+        this.rng = new Random(seed);
+
+        if (cache.isComplete()) {
+            initOrder();
+        } else {
+            if (source.resetSupported()) source.reset();
+            cache.startWriting();
+        }
+    }
+
+    private static String fullSourceKey(String sourceKey, DataSetIterator source) {
+        if (sourceKey == null)
+            throw new IllegalArgumentException("Source key cannot be null");
+        String shape;
+        try {
+            shape = source.batch() + "," + source.inputColumns() + "," + source.totalOutcomes();
+        } catch (RuntimeException e) {
+            //Not supported by all iterators
+            shape = "?";
+        }
+        String preProcessor;
+        try {
+            DataSetPreProcessor pp = source.getPreProcessor();
+            preProcessor = (pp == null ? "null" : pp.getClass().getName());
+        } catch (RuntimeException e) {
+            preProcessor = "?";
+        }
+        return MinibatchCache.fullSourceKey(sourceKey, source.getClass().getName(), shape, preProcessor);
+    }
+
+    private void initOrder() {
+        order = new int[cache.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        if (shuffle) {
+            for (int i = order.length - 1; i > 0; i--) {
+                int j = rng.nextInt(i + 1);
+                int temp = order[i];
+                order[i] = order[j];
+                order[j] = temp;
+            }
+        }
+        position = 0;
+    }
+
+    /**
+     * @return True if the cache is complete (i.e., minibatches are read from the cache, not the source iterator)
+     */
+    public boolean isCacheComplete() {
+        return cache.isComplete();
+    }
+
+    /**
+     * @return Number of minibatches in the cache
+     */
+    public int numCachedBatches() {
+        return cache.size();
+    }
+
+    /**
+     * Load the specified minibatch from the cache (random access). The cache must be complete.
+     * The preprocessor (if any) is not applied.
+     *
+     * @param index Index of the minibatch, in the order of the source iterator
+     */
+    public DataSet getCachedBatch(int index) {
+        return getCachedBatch(index, null);
+    }
+
+    private DataSet getCachedBatch(int index, DataSet buffer) {
+        INDArray[][] reuse = null;
+        if (buffer != null) {
+            reuse = new INDArray[][] {{buffer.getFeatures()}, {buffer.getLabels()}, {buffer.getFeaturesMaskArray()},
+                            {buffer.getLabelsMaskArray()}};
+        }
+        INDArray[][] groups = cache.read(index, reuse);
+        return new DataSet(groups[0][0], groups[1][0], groups[2][0], groups[3][0]);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (cache.isWriting()) {
+            if (source.hasNext())
+                return true;
+            cache.finishWriting();
+            return false;
+        }
+        return order != null && position < order.length;
+    }
+
+    @Override
+    public DataSet next() {
+        return next(null);
+    }
+
+    /**
+     * Get the next DataSet. Once the cache is complete, values are read directly into the arrays of the buffer, where
+     * these have the required shapes. While the cache is being written, the buffer is not used
+     */
+    @Override
+    public DataSet next(DataSet buffer) {
+        DataSet ds;
+        if (cache.isWriting()) {
+            ds = source.next();
+            cache.write(new INDArray[][] {{ds.getFeatures()}, {ds.getLabels()}, {ds.getFeaturesMaskArray()},
+                            {ds.getLabelsMaskArray()}});
+        } else {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            ds = getCachedBatch(order[position++], buffer);
+        }
+
+        if (preProcessor != null)
+            preProcessor.preProcess(ds);
+        return ds;
+    }
+
+    @Override
+    public DataSet next(int num) {
+        throw new UnsupportedOperationException("next(int) not supported for CachingDataSetIterator");
+    }
+
+    @Override
+    public void reset() {
+        if (cache.isWriting()) {
+            if (cache.size() == 0)
+                return;
+            if (source.hasNext()) {
+                //Source not fully consumed: cache is incomplete, and must be written again from the start
+                if (!source.resetSupported())
+                    throw new UnsupportedOperationException("Cannot reset CachingDataSetIterator: the cache is "
+                                    + "incomplete (" + cache.size() + " minibatches written), and the source "
+                                    + "iterator does not support reset. Consume the source iterator fully before reset");
+                source.reset();
+                cache.startWriting();
+                return;
+            }
+            cache.finishWriting();
+        }
+        initOrder();
+    }
+
+    @Override
+    public boolean resetSupported() {
+        return cache.isComplete() || source.resetSupported();
+    }
+
+    @Override
+    public boolean asyncSupported() {
+        return true;
+    }
+
+    @Override
+    public int totalExamples() {
+        return source.totalExamples();
+    }
+
+    @Override
+    public int inputColumns() {
+        return source.inputColumns();
+    }
+
+    @Override
+    public int totalOutcomes() {
+        return source.totalOutcomes();
+    }
+
+    @Override
+    public int batch() {
+        return source.batch();
+    }
+
+    @Override
+    public int cursor() {
+        return source.cursor();
+    }
+
+    @Override
+    public int numExamples() {
+        return source.numExamples();
+    }
+
+    @Override
+    public void setPreProcessor(DataSetPreProcessor preProcessor) {
+        this.preProcessor = preProcessor;
+    }
+
+    @Override
+    public DataSetPreProcessor getPreProcessor() {
+        return preProcessor;
+    }
+
+    @Override
+    public List<String> getLabels() {
+        return source.getLabels();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,179 @@
+package org.deeplearning4j.datasets.iterator;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.api.MultiDataSet;
+import org.nd4j.linalg.dataset.api.MultiDataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.MultiDataSetIterator;
+
+import java.io.File;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * A MultiDataSetIterator that caches the minibatches from another (usually expensive) iterator on disk, for
+ * multi-epoch training on data that doesn't fit in memory. The MultiDataSet equivalent of
+ * {@link CachingDataSetIterator} - see that class for details. The source iterator's class is added to the source key
+ * automatically.
+ */
+public class CachingMultiDataSetIterator implements MultiDataSetIterator {
+
+    private final MultiDataSetIterator source;
+    private final MinibatchCache cache;
+    private final boolean shuffle;
+    private final Random rng;
+    private MultiDataSetPreProcessor preProcessor;
+
+    private int[] order;
+    private int position;
+
+    /**
+     * Create a caching iterator, that returns minibatches in the same order as the source iterator
+     *
+     * @param source         Source of the data
+     * @param cacheDirectory Directory for the cache files
+     * @param sourceKey      Key identifying the source data and its configuration
+     */
+    public CachingMultiDataSetIterator(MultiDataSetIterator source, File cacheDirectory, String sourceKey) {
+        this(source, cacheDirectory, sourceKey, false, 0);
+    }
+
+    /**
+     * @param source         Source of the data
+     * @param cacheDirectory Directory for the cache files
+     * @param sourceKey      Key identifying the source data and its configuration
+     * @param shuffle        If true: after the first epoch, return the cached minibatches in a random order each epoch
+     * @param seed           Random seed, for shuffling
+     */
+    public CachingMultiDataSetIterator(MultiDataSetIterator source, File cacheDirectory, String sourceKey,
+                                       boolean shuffle, long seed) {
+        this.source = source;
+        if (sourceKey == null)
+            throw new IllegalArgumentException("Source key cannot be null");
+        this.cache = new MinibatchCache(cacheDirectory,
+                        MinibatchCache.fullSourceKey(sourceKey, source.getClass().getName()));
+        this.shuffle = shuffle;
+        this.rng = new Random(seed);
+
+        if (cache.isComplete()) {
+            initOrder();
+        } else {
+            if (source.resetSupported()) source.reset();
+            cache.startWriting();
+        }
+    }
+
+    private void initOrder() {
+        order = new int[cache.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        if (shuffle) {
+            for (int i = order.length - 1; i > 0; i--) {
+                int j = rng.nextInt(i + 1);
+                int temp = order[i];
+                order[i] = order[j];
+                order[j] = temp;
+            }
+        }
+        position = 0;
+    }
+
+    /**
+     * @return True if the cache is complete (i.e., minibatches are read from the cache, not the source iterator)
+     */
+    public boolean isCacheComplete() {
+        return cache.isComplete();
+    }
+
+    /**
+     * @return Number of minibatches in the cache
+     */
+    public int numCachedBatches() {
+        return cache.size();
+    }
+
+    /**
+     * Load the specified minibatch from the cache (random access). The cache must be complete.
+     * The preprocessor (if any) is not applied.
+     *
+     * @param index Index of the minibatch, in the order of the source iterator
+     */
+    public MultiDataSet getCachedBatch(int index) {
+        INDArray[][] groups = cache.read(index);
+        return new org.nd4j.linalg.dataset.MultiDataSet(groups[0], groups[1], groups[2], groups[3]);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (cache.isWriting()) {
+            if (source.hasNext())
+                return true;
+            cache.finishWriting();
+            return false;
+        }
+        return order != null && position < order.length;
+    }
+
+    @Override
+    public MultiDataSet next() {
+        MultiDataSet mds;
+        if (cache.isWriting()) {
+            mds = source.next();
+            cache.write(new INDArray[][] {mds.getFeatures(), mds.getLabels(), mds.getFeaturesMaskArrays(),
+                            mds.getLabelsMaskArrays()});
+        } else {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            mds = getCachedBatch(order[position++]);
+        }
+
+        if (preProcessor != null)
+            preProcessor.preProcess(mds);
+        return mds;
+    }
+
+    @Override
+    public MultiDataSet next(int num) {
+        throw new UnsupportedOperationException("next(int) not supported for CachingMultiDataSetIterator");
+    }
+
+    @Override
+    public void reset() {
+        if (cache.isWriting()) {
+            if (cache.size() == 0)
+                return;
+            if (source.hasNext()) {
+                //Source not fully consumed: cache is incomplete, and must be written again from the start
+                if (!source.resetSupported())
+                    throw new UnsupportedOperationException("Cannot reset CachingMultiDataSetIterator: the cache is "
+                                    + "incomplete (" + cache.size() + " minibatches written), and the source "
+                                    + "iterator does not support reset. Consume the source iterator fully before reset");
+                source.reset();
+                cache.startWriting();
+                return;
+            }
+            cache.finishWriting();
+        }
+        initOrder();
+    }
+
+    @Override
+    public boolean resetSupported() {
+        return cache.isComplete() || source.resetSupported();
+    }
+
+    @Override
+    public boolean asyncSupported() {
+        return true;
+    }
+
+    @Override
+    public void setPreProcessor(MultiDataSetPreProcessor preProcessor) {
+        this.preProcessor = preProcessor;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
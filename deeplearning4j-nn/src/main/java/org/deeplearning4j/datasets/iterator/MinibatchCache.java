@@ -0,0 +1,515 @@
+package org.deeplearning4j.datasets.iterator;
+
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.concurrency.AffinityManager;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.executioner.GridExecutioner;
+import org.nd4j.linalg.factory.Nd4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * On-disk cache of minibatches, used by {@link CachingDataSetIterator} and {@link CachingMultiDataSetIterator}.<br>
+ * Each minibatch is stored as a group of arrays (for example: features, labels, feature mask, label mask), with each
+ * array stored as its shape followed by its values in 'c' order. Records use the native byte order, so values are
+ * written directly from each array's (off-heap) data buffer, and read with a single bulk copy from the memory mapped
+ * file into the (off-heap) data buffer of a new (or recycled) array. Minibatches are appended to segment files as length-prefixed
+ * records, and an index of (segment, offset, length) per minibatch is written once the cache is complete. Once
+ * complete, segment files are memory mapped (read only).<br>
+ * The index file also stores a source key: if the key doesn't match the key provided when the cache is opened (or the
+ * cache is incomplete, or was written by a different version or on a platform with a different byte order), the cache
+ * is considered invalid and is rewritten.
+ */
+class MinibatchCache implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(MinibatchCache.class);
+
+    private static final int MAGIC = 0x444C3443;   //"DL4C"
+    private static final int VERSION = 2;
+    private static final String INDEX_FILE = "minibatches.index";
+    private static final String SEGMENT_PREFIX = "minibatches-";
+    private static final String SEGMENT_SUFFIX = ".bin";
+    /** Maximum segment file size. Must be <= Integer.MAX_VALUE, the maximum size of a single memory mapping */
+    static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    private static final byte TYPE_FLOAT = 0;
+    private static final byte TYPE_DOUBLE = 1;
+
+    private final File directory;
+    private final String sourceKey;
+
+    //Index: one entry per minibatch
+    private int[] segments = new int[0];
+    private long[] offsets = new long[0];
+    private int[] lengths = new int[0];
+    private int size;
+    private boolean complete;
+    private byte dataType;
+
+    //Writing
+    private FileChannel out;
+    private ByteBuffer header = ByteBuffer.allocateDirect(1024).order(ByteOrder.nativeOrder());
+    private int writeSegment;
+    private long writeOffset;
+
+    //Reading
+    private MappedByteBuffer[] mapped;
+
+    /**
+     * @param directory Directory for the cache files. Created if it doesn't exist
+     * @param sourceKey Key identifying the source of the data (and its configuration)
+     */
+    MinibatchCache(File directory, String sourceKey) {
+        if (sourceKey == null)
+            throw new IllegalArgumentException("Source key cannot be null");
+        if (!directory.exists() && !directory.mkdirs())
+            throw new IllegalStateException("Could not create cache directory: " + directory.getAbsolutePath());
+        if (!directory.isDirectory())
+            throw new IllegalArgumentException("Not a directory: " + directory.getAbsolutePath());
+        this.directory = directory;
+        this.sourceKey = sourceKey;
+
+        try {
+            complete = loadIndex();
+        } catch (IOException e) {
+            log.warn("Could not load minibatch cache index from {}; cache will be rewritten", directory, e);
+            complete = false;
+        }
+        if (complete) {
+            log.info("Using existing minibatch cache at {}: {} minibatches", directory.getAbsolutePath(), size);
+        }
+    }
+
+    /**
+     * Combine the user provided source key with properties of the source iterator, so that a cache is not reused when
+     * any of them change
+     */
+    static String fullSourceKey(String sourceKey, String... sourceProperties) {
+        StringBuilder sb = new StringBuilder(sourceKey);
+        for (String s : sourceProperties) {
+            sb.append('\n').append(s);
+        }
+        return sb.toString();
+    }
+
+    boolean isComplete() {
+        return complete;
+    }
+
+    boolean isWriting() {
+        return out != null;
+    }
+
+    /**
+     * @return Number of minibatches in the cache (including those written so far, if the cache is incomplete)
+     */
+    int size() {
+        return size;
+    }
+
+    private boolean loadIndex() throws IOException {
+        File f = new File(directory, INDEX_FILE);
+        if (!f.exists())
+            return false;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                return false;
+            if (in.readBoolean() != (ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN))
+                return false;
+            if (!sourceKey.equals(in.readUTF())) {
+                log.info("Source key for minibatch cache at {} has changed; cache will be rewritten",
+                        directory.getAbsolutePath());
+                return false;
+            }
+            byte type = in.readByte();
+            int n = in.readInt();
+            int[] seg = new int[n];
+            long[] off = new long[n];
+            int[] len = new int[n];
+            for (int i = 0; i < n; i++) {
+                seg[i] = in.readInt();
+                off[i] = in.readLong();
+                len[i] = in.readInt();
+            }
+
+            int numSegments = (n == 0 ? 0 : seg[n - 1] + 1);
+            for (int s = 0; s < numSegments; s++) {
+                if (!segmentFile(s).exists())
+                    return false;
+            }
+
+            dataType = type;
+            segments = seg;
+            offsets = off;
+            lengths = len;
+            size = n;
+            return true;
+        }
+    }
+
+    private File segmentFile(int segment) {
+        return new File(directory, SEGMENT_PREFIX + segment + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Delete any existing contents of the cache, and start writing
+     */
+    void startWriting() {
+        close();
+        deleteFiles();
+        complete = false;
+        size = 0;
+        segments = new int[16];
+        offsets = new long[16];
+        lengths = new int[16];
+        dataType = (Nd4j.dataType() == DataBuffer.Type.DOUBLE ? TYPE_DOUBLE : TYPE_FLOAT);
+        writeSegment = 0;
+        writeOffset = 0;
+        try {
+            out = openSegment(0);
+        } catch (IOException e) {
+            throw new RuntimeException("Error creating minibatch cache file in " + directory.getAbsolutePath(), e);
+        }
+    }
+
+    private FileChannel openSegment(int segment) throws IOException {
+        return new FileOutputStream(segmentFile(segment)).getChannel();
+    }
+
+    private void deleteFiles() {
+        File index = new File(directory, INDEX_FILE);
+        if (index.exists() && !index.delete())
+            throw new IllegalStateException("Could not delete cache index file: " + index.getAbsolutePath());
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                String name = f.getName();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX) && !f.delete()) {
+                    throw new IllegalStateException("Could not delete cache file: " + f.getAbsolutePath());
+                }
+            }
+        }
+    }
+
+    /**
+     * Append a minibatch to the cache
+     *
+     * @param groups Arrays for the minibatch. Both groups and individual arrays may be null
+     */
+    void write(INDArray[][] groups) {
+        if (out == null)
+            throw new IllegalStateException("Cannot write: cache is not being written");
+
+        if (Nd4j.getExecutioner() instanceof GridExecutioner)
+            ((GridExecutioner) Nd4j.getExecutioner()).flushQueueBlocking();
+
+        //Record length (excluding the length prefix) is required up front: computed from the shapes
+        int elementSize = elementSize(dataType);
+        long length = 4;
+        INDArray[][] contiguous = new INDArray[groups.length][];
+        for (int g = 0; g < groups.length; g++) {
+            length += 4;
+            if (groups[g] == null)
+                continue;
+            contiguous[g] = new INDArray[groups[g].length];
+            for (int i = 0; i < groups[g].length; i++) {
+                length += 1;
+                INDArray arr = groups[g][i];
+                if (arr == null)
+                    continue;
+                contiguous[g][i] = (arr.ordering() == 'c' && !arr.isView() && arr.offset() == 0
+                                && arr.data().length() == arr.length() ? arr : arr.dup('c'));
+                length += 4 * (1 + arr.rank()) + (long) elementSize * arr.length();
+            }
+        }
+        if (4 + length > MAX_SEGMENT_BYTES)
+            throw new IllegalArgumentException("Minibatch too large to cache: " + length + " bytes");
+
+        try {
+            if (writeOffset > 0 && writeOffset + 4 + length > MAX_SEGMENT_BYTES) {
+                out.close();
+                out = openSegment(++writeSegment);
+                writeOffset = 0;
+            }
+
+            header.clear();
+            header.putInt((int) length);
+            header.putInt(groups.length);
+            for (INDArray[] group : contiguous) {
+                ensureHeaderCapacity(4);
+                if (group == null) {
+                    header.putInt(-1);
+                    continue;
+                }
+                header.putInt(group.length);
+                for (INDArray arr : group) {
+                    writeArray(arr);
+                }
+            }
+            header.flip();
+            writeFully(header);
+
+            if (size == segments.length) {
+                int newLength = 2 * size;
+                segments = Arrays.copyOf(segments, newLength);
+                offsets = Arrays.copyOf(offsets, newLength);
+                lengths = Arrays.copyOf(lengths, newLength);
+            }
+            segments[size] = writeSegment;
+            offsets[size] = writeOffset + 4;
+            lengths[size] = (int) length;
+            size++;
+            writeOffset += 4 + length;
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing to minibatch cache in " + directory.getAbsolutePath(), e);
+        }
+    }
+
+    //Appends the array's header to the header buffer, then writes the header buffer followed by the array's values
+    private void writeArray(INDArray arr) throws IOException {
+        if (arr == null) {
+            ensureHeaderCapacity(1);
+            header.put((byte) 0);
+            return;
+        }
+        int[] shape = arr.shape();
+        ensureHeaderCapacity(5 + 4 * shape.length);
+        header.put((byte) 1);
+        header.putInt(shape.length);
+        for (int s : shape) {
+            header.putInt(s);
+        }
+        header.flip();
+        writeFully(header);
+        header.clear();
+
+        int n = arr.length();
+        int elementSize = elementSize(dataType);
+        ByteBuffer values;
+        if (arr.data().getElementSize() == elementSize) {
+            //Values are written directly from the array's own buffer: no intermediate copies
+            Nd4j.getAffinityManager().ensureLocation(arr, AffinityManager.Location.HOST);
+            values = arr.data().asNio().duplicate();
+            values.position(0);
+            values.limit(n * elementSize);
+        } else {
+            //Array data type differs from the cache data type (for example: half precision), so must be converted
+            values = ByteBuffer.allocate(n * elementSize).order(ByteOrder.nativeOrder());
+            if (dataType == TYPE_DOUBLE) {
+                values.asDoubleBuffer().put(arr.data().asDouble(), 0, n);
+            } else {
+                values.asFloatBuffer().put(arr.data().asFloat(), 0, n);
+            }
+        }
+        writeFully(values);
+    }
+
+    private void ensureHeaderCapacity(int bytes) {
+        if (header.remaining() >= bytes)
+            return;
+        ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(2 * header.capacity(), header.position() + bytes))
+                        .order(ByteOrder.nativeOrder());
+        header.flip();
+        larger.put(header);
+        header = larger;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static int elementSize(byte dataType) {
+        return dataType == TYPE_DOUBLE ? 8 : 4;
+    }
+
+    /**
+     * Complete the cache: write the index, and memory map the segment files
+     */
+    void finishWriting() {
+        if (out == null)
+            throw new IllegalStateException("Cannot finish writing: cache is not being written");
+        try {
+            out.close();
+            out = null;
+
+            //Write to a temporary file first: the index only exists if the cache is complete
+            File tmp = new File(directory, INDEX_FILE + ".tmp");
+            try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                dos.writeInt(MAGIC);
+                dos.writeInt(VERSION);
+                dos.writeBoolean(ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN);
+                dos.writeUTF(sourceKey);
+                dos.writeByte(dataType);
+                dos.writeInt(size);
+                for (int i = 0; i < size; i++) {
+                    dos.writeInt(segments[i]);
+                    dos.writeLong(offsets[i]);
+                    dos.writeInt(lengths[i]);
+                }
+            }
+            File index = new File(directory, INDEX_FILE);
+            if (!tmp.renameTo(index))
+                throw new IOException("Could not rename " + tmp.getAbsolutePath() + " to " + index.getAbsolutePath());
+        } catch (IOException e) {
+            throw new RuntimeException("Error completing minibatch cache in " + directory.getAbsolutePath(), e);
+        }
+        complete = true;
+        log.info("Completed minibatch cache at {}: {} minibatches in {} segment file(s)", directory.getAbsolutePath(),
+                size, (size == 0 ? 0 : segments[size - 1] + 1));
+    }
+
+    /**
+     * Stop writing, and discard the partially written cache
+     */
+    void abortWriting() {
+        close();
+        deleteFiles();
+        size = 0;
+        complete = false;
+    }
+
+    /**
+     * Read the specified minibatch from the (complete) cache
+     *
+     * @param index Index of the minibatch, 0 to size()-1 inclusive
+     * @return Array groups, as passed to {@link #write(INDArray[][])}
+     */
+    INDArray[][] read(int index) {
+        return read(index, null);
+    }
+
+    /**
+     * Read the specified minibatch from the (complete) cache, writing the values into the given arrays where possible
+     * (i.e., where the array at the same position in reuse has the same shape and data type, and is not a view).
+     * New arrays are allocated for all other arrays
+     *
+     * @param index Index of the minibatch, 0 to size()-1 inclusive
+     * @param reuse Array groups to reuse (for example, from a previous call). May be null, or contain nulls
+     * @return Array groups, as passed to {@link #write(INDArray[][])}
+     */
+    INDArray[][] read(int index, INDArray[][] reuse) {
+        if (!complete)
+            throw new IllegalStateException("Cannot read: cache is not complete");
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Invalid minibatch index: " + index + ", cache size = " + size);
+
+        //Byte order is not retained by duplicate()
+        ByteBuffer bb = mapping(segments[index]).duplicate().order(ByteOrder.nativeOrder());
+        bb.position((int) offsets[index]);
+        bb.limit((int) offsets[index] + lengths[index]);
+
+        INDArray[][] groups = new INDArray[bb.getInt()][];
+        Set<INDArray> reused = Collections.newSetFromMap(new IdentityHashMap<INDArray, Boolean>());
+        for (int g = 0; g < groups.length; g++) {
+            int count = bb.getInt();
+            if (count < 0)
+                continue;
+            groups[g] = new INDArray[count];
+            for (int i = 0; i < count; i++) {
+                INDArray r = null;
+                if (reuse != null && g < reuse.length && reuse[g] != null && i < reuse[g].length)
+                    r = reuse[g][i];
+                if (r != null && reused.contains(r))
+                    r = null;   //Same array at multiple positions (for example: features also used as labels)
+                groups[g][i] = readArray(bb, r);
+                if (groups[g][i] == r && r != null)
+                    reused.add(r);
+            }
+        }
+        return groups;
+    }
+
+    private INDArray readArray(ByteBuffer bb, INDArray reuse) {
+        if (bb.get() == 0)
+            return null;
+        int[] shape = new int[bb.getInt()];
+        int n = 1;
+        for (int i = 0; i < shape.length; i++) {
+            shape[i] = bb.getInt();
+            n *= shape[i];
+        }
+
+        int bytes = n * elementSize(dataType);
+        ByteBuffer values = bb.slice().order(ByteOrder.nativeOrder());
+        values.limit(bytes);
+        bb.position(bb.position() + bytes);
+
+        INDArray arr;
+        if (canReuse(reuse, shape, n)) {
+            //Any pending ops on the reused array must complete before it is overwritten
+            if (Nd4j.getExecutioner() instanceof GridExecutioner)
+                ((GridExecutioner) Nd4j.getExecutioner()).flushQueueBlocking();
+            arr = reuse;
+        } else {
+            arr = Nd4j.create(shape, 'c');
+        }
+        if (arr.data().getElementSize() == elementSize(dataType)) {
+            //Single bulk copy from the mapped file into the array's (off-heap) buffer
+            ByteBuffer dest = arr.data().asNio().duplicate();
+            dest.position(0);
+            dest.limit(bytes);
+            dest.put(values);
+            Nd4j.getAffinityManager().tagLocation(arr, AffinityManager.Location.HOST);
+            return arr;
+        }
+
+        //Global data type has changed since the cache was written: convert
+        if (dataType == TYPE_DOUBLE) {
+            double[] d = new double[n];
+            values.asDoubleBuffer().get(d);
+            return Nd4j.create(d, shape, 'c');
+        } else {
+            float[] f = new float[n];
+            values.asFloatBuffer().get(f);
+            return Nd4j.create(f, shape, 'c');
+        }
+    }
+
+    private boolean canReuse(INDArray arr, int[] shape, int length) {
+        //Bulk copy requires a 'c' order array that uses its entire buffer, starting at offset 0
+        return arr != null && arr.ordering() == 'c' && arr.offset() == 0 && arr.data().length() == length
+                        && arr.data().getElementSize() == elementSize(dataType) && Arrays.equals(arr.shape(), shape);
+    }
+
+    private synchronized MappedByteBuffer mapping(int segment) {
+        if (mapped == null) {
+            mapped = new MappedByteBuffer[size == 0 ? 0 : segments[size - 1] + 1];
+        }
+        if (mapped[segment] == null) {
+            try (RandomAccessFile raf = new RandomAccessFile(segmentFile(segment), "r");
+                 FileChannel channel = raf.getChannel()) {
+                //Mapping remains valid after the channel is closed
+                mapped[segment] = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } catch (IOException e) {
+                throw new RuntimeException("Error mapping minibatch cache file " + segmentFile(segment), e);
+            }
+        }
+        return mapped[segment];
+    }
+
+    @Override
+    public void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                log.warn("Error closing minibatch cache file", e);
+            }
+            out = null;
+        }
+        mapped = null;
+    }
+
+}
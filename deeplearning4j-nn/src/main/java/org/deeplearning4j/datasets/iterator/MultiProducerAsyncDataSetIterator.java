@@ -0,0 +1,561 @@
+package org.deeplearning4j.datasets.iterator;
+
+import org.nd4j.linalg.api.ops.executioner.GridExecutioner;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An asynchronous (prefetching) DataSetIterator with multiple producer threads, as an alternative to
+ * {@link AsyncDataSetIterator} when a single thread can't produce DataSets as fast as they are consumed.<br>
+ * <br>
+ * Data is loaded from one or more source iterators. Base iterators are not in general thread safe, so producers
+ * sharing a source take turns calling its hasNext() and next(); producers using different sources run fully in
+ * parallel. Thus for loading (ETL) to run in parallel, provide one source per producer - for example, each reading
+ * a disjoint subset (shard) of the data - via {@link #MultiProducerAsyncDataSetIterator(List, int, boolean)}.
+ * With a single source, only the {@link DataSetPreProcessor} set on this iterator (for example: normalization or
+ * augmentation) runs in parallel, hence expensive preprocessing should be set on this iterator rather than on the
+ * base iterator. Preprocessors set on this iterator must be thread safe.<br>
+ * <br>
+ * Ordering: if ordered == true, DataSets are returned in the same order as they are returned by the source iterator.
+ * With multiple sources, DataSets are taken from each source in turn (round robin), skipping sources that have been
+ * exhausted. Otherwise, DataSets are returned as soon as they are ready, which may differ from the source order.
+ * The queue is divided evenly between the sources, so that a fast source can't fill the queue while the consumer is
+ * waiting for a slower one.<br>
+ * <br>
+ * Buffer recycling: if poolSize > 0, the consumer may hand back DataSets that are no longer needed (for example, after
+ * fitting a network on them) using {@link #release(DataSet)}. Sources that implement {@link RecyclingDataSetIterator}
+ * write subsequent DataSets directly into the arrays of these buffers (where the shapes match), so that the
+ * prefetched DataSets reuse the same set of arrays instead of allocating new ones, without any additional copy.
+ * DataSets must not be used after they have been released.<br>
+ * <br>
+ * Queue starvation metrics (the number of DataSets the consumer had to wait for, and the total time spent waiting) are
+ * available via {@link #getStarvationCount()} and {@link #getStarvationTimeMs()}.<br>
+ * Note that due to asynchronous loading of data, next(int) is not supported.
+ */
+public class MultiProducerAsyncDataSetIterator implements DataSetIterator {
+
+    protected static final Logger log = LoggerFactory.getLogger(MultiProducerAsyncDataSetIterator.class);
+
+    private final DataSetIterator[] sources;
+    private final int numProducers;
+    private final boolean ordered;
+    private final int poolSize;
+    private volatile DataSetPreProcessor preProcessor;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    //Queue slots, per source: DataSets loaded ahead of the consumer (including those in progress)
+    private final Semaphore[] slots;
+    private final int[] slotsPerSource;
+    private final ConcurrentLinkedQueue<DataSet> pool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger(0);
+
+    //Number of DataSets fetched from each source. Guarded by the source iterator's monitor
+    private final long[] fetched;
+    //Guarded by lock
+    private final TreeMap<Long, DataSet> ready = new TreeMap<>();
+    //Total number of DataSets in each source (once exhausted), or -1 if not yet known
+    private final long[] sourceEnd;
+    //Next sequence number to return, in ordered mode
+    private long nextSequence;
+    private long returned;
+    private RuntimeException exception;
+    private boolean starvedCurrent;
+
+    private volatile boolean killed;
+    private Thread[] producers;
+
+    private final AtomicLong nextCalls = new AtomicLong(0);
+    private final AtomicLong starvationCount = new AtomicLong(0);
+    private final AtomicLong starvationNanos = new AtomicLong(0);
+
+    /**
+     * Create an iterator with ordered output and no buffer recycling
+     *
+     * @param baseIterator The DataSetIterator to load data from asynchronously
+     * @param queueSize    Maximum number of DataSets loaded ahead of the consumer (including those in progress)
+     * @param numProducers Number of producer threads
+     */
+    public MultiProducerAsyncDataSetIterator(DataSetIterator baseIterator, int queueSize, int numProducers) {
+        this(baseIterator, queueSize, numProducers, true);
+    }
+
+    /**
+     * Create an iterator with no buffer recycling
+     *
+     * @param baseIterator The DataSetIterator to load data from asynchronously
+     * @param queueSize    Maximum number of DataSets loaded ahead of the consumer (including those in progress).
+     *                     Must be at least numProducers
+     * @param numProducers Number of producer threads
+     * @param ordered      If true: return DataSets in the base iterator order
+     */
+    public MultiProducerAsyncDataSetIterator(DataSetIterator baseIterator, int queueSize, int numProducers,
+                                             boolean ordered) {
+        this(baseIterator, queueSize, numProducers, ordered, 0);
+    }
+
+    /**
+     * @param baseIterator The DataSetIterator to load data from asynchronously
+     * @param queueSize    Maximum number of DataSets loaded ahead of the consumer (including those in progress).
+     *                     Must be at least numProducers
+     * @param numProducers Number of producer threads
+     * @param ordered      If true: return DataSets in the base iterator order
+     * @param poolSize     Maximum number of released DataSets to retain for recycling. 0 to disable recycling.
+     *                     Only used if the base iterator is a {@link RecyclingDataSetIterator}
+     */
+    public MultiProducerAsyncDataSetIterator(DataSetIterator baseIterator, int queueSize, int numProducers,
+                                             boolean ordered, int poolSize) {
+        this(new DataSetIterator[] {baseIterator}, queueSize, numProducers, ordered, poolSize);
+    }
+
+    /**
+     * Create an iterator with one producer thread per source iterator, and no buffer recycling. Each producer has
+     * exclusive use of its source, hence the sources are loaded fully in parallel.
+     *
+     * @param sources   Source iterators. Each must be a separate instance (for example: one per shard of the data)
+     * @param queueSize Maximum number of DataSets loaded ahead of the consumer (including those in progress).
+     *                  Must be at least the number of sources
+     * @param ordered   If true: return DataSets from each source in turn (round robin), in the order of each source
+     */
+    public MultiProducerAsyncDataSetIterator(List<? extends DataSetIterator> sources, int queueSize, boolean ordered) {
+        this(sources, queueSize, ordered, 0);
+    }
+
+    /**
+     * Create an iterator with one producer thread per source iterator. Each producer has exclusive use of its source,
+     * hence the sources are loaded fully in parallel.
+     *
+     * @param sources   Source iterators. Each must be a separate instance (for example: one per shard of the data)
+     * @param queueSize Maximum number of DataSets loaded ahead of the consumer (including those in progress).
+     *                  Must be at least the number of sources
+     * @param ordered   If true: return DataSets from each source in turn (round robin), in the order of each source
+     * @param poolSize  Maximum number of released DataSets to retain for recycling. 0 to disable recycling. Only used
+     *                  for sources that are {@link RecyclingDataSetIterator}s
+     */
+    public MultiProducerAsyncDataSetIterator(List<? extends DataSetIterator> sources, int queueSize, boolean ordered,
+                                             int poolSize) {
+        this(sources.toArray(new DataSetIterator[sources.size()]), queueSize, sources.size(), ordered, poolSize);
+    }
+
+    private MultiProducerAsyncDataSetIterator(DataSetIterator[] sources, int queueSize, int numProducers,
+                                              boolean ordered, int poolSize) {
+        if (sources.length == 0)
+            throw new IllegalArgumentException("At least one source iterator is required");
+        if (numProducers <= 0)
+            throw new IllegalArgumentException("Number of producers must be > 0");
+        if (queueSize < numProducers)
+            throw new IllegalArgumentException("Queue size (" + queueSize + ") must be >= number of producers ("
+                    + numProducers + ")");
+        if (poolSize < 0)
+            throw new IllegalArgumentException("Pool size must be >= 0");
+        for (int i = 0; i < sources.length; i++) {
+            for (int j = 0; j < i; j++) {
+                if (sources[i] == sources[j])
+                    throw new IllegalArgumentException("Source iterators must be separate instances: sources " + j
+                            + " and " + i + " are the same iterator");
+            }
+        }
+
+        this.sources = sources;
+        this.numProducers = numProducers;
+        this.ordered = ordered;
+        this.poolSize = poolSize;
+        //Each source has its own share of the queue (at least one slot, as queueSize >= numProducers >= sources).
+        //With a single shared queue, producers of fast sources could take all slots while the (ordered) consumer
+        //waits for a DataSet from a slow source, whose producer then can't acquire a slot: deadlock
+        this.slots = new Semaphore[sources.length];
+        this.slotsPerSource = new int[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            slotsPerSource[i] = queueSize / sources.length + (i < queueSize % sources.length ? 1 : 0);
+            slots[i] = new Semaphore(slotsPerSource[i]);
+        }
+        this.fetched = new long[sources.length];
+        this.sourceEnd = new long[sources.length];
+        Arrays.fill(sourceEnd, -1);
+
+        for (DataSetIterator source : sources) {
+            if (source.resetSupported())
+                source.reset();
+        }
+        startProducers();
+    }
+
+    private void startProducers() {
+        killed = false;
+        producers = new Thread[numProducers];
+        //Ensure that the producer threads have the same thread->device affinity as the master thread
+        Integer deviceId = Nd4j.getAffinityManager().getDeviceForCurrentThread();
+        for (int i = 0; i < numProducers; i++) {
+            producers[i] = new Thread(new Producer(i % sources.length),
+                    "MultiProducerAsyncDataSetIterator producer " + i);
+            Nd4j.getAffinityManager().attachThreadToDevice(producers[i], deviceId);
+            producers[i].setDaemon(true);
+            producers[i].start();
+        }
+    }
+
+    private void stopProducers() {
+        killed = true;
+        for (Thread t : producers) {
+            t.interrupt();
+        }
+        for (Thread t : producers) {
+            try {
+                t.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    /**
+     * Hand back a DataSet that is no longer required, for reuse as a buffer. The DataSet (and its arrays) must not
+     * be used again by the caller. Has no effect if the pool size is 0, no source is a {@link RecyclingDataSetIterator},
+     * or the pool is full
+     */
+    public void release(DataSet dataSet) {
+        if (poolSize == 0 || dataSet == null || dataSet.getFeatures() == null || !hasRecyclingSource())
+            return;
+        if (pooled.incrementAndGet() > poolSize) {
+            pooled.decrementAndGet();
+            return;
+        }
+        pool.offer(dataSet);
+    }
+
+    private boolean hasRecyclingSource() {
+        for (DataSetIterator source : sources) {
+            if (source instanceof RecyclingDataSetIterator)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return A released DataSet to reuse, or null if none is available
+     */
+    private DataSet pollPool() {
+        DataSet buffer = pool.poll();
+        if (buffer != null)
+            pooled.decrementAndGet();
+        return buffer;
+    }
+
+    private class Producer implements Runnable {
+        private final int sourceIdx;
+
+        private Producer(int sourceIdx) {
+            this.sourceIdx = sourceIdx;
+        }
+
+        @Override
+        public void run() {
+            DataSetIterator source = sources[sourceIdx];
+            Semaphore sourceSlots = slots[sourceIdx];
+            try {
+                while (!killed) {
+                    sourceSlots.acquire();
+                    DataSet ds;
+                    long sequence;
+                    //Only producers sharing this source wait here; producers of other sources are not blocked
+                    synchronized (source) {
+                        if (killed) {
+                            sourceSlots.release();
+                            return;
+                        }
+                        if (!source.hasNext()) {
+                            sourceSlots.release();
+                            lock.lock();
+                            try {
+                                sourceEnd[sourceIdx] = fetched[sourceIdx];
+                                changed.signalAll();
+                            } finally {
+                                lock.unlock();
+                            }
+                            return;
+                        }
+                        if (source instanceof RecyclingDataSetIterator) {
+                            //Values are written directly into the recycled buffer's arrays, where possible
+                            ds = ((RecyclingDataSetIterator) source).next(pollPool());
+                        } else {
+                            ds = source.next();
+                        }
+                        sequence = fetched[sourceIdx]++ * sources.length + sourceIdx;
+                    }
+
+                    DataSetPreProcessor pp = preProcessor;
+                    if (pp != null)
+                        pp.preProcess(ds);
+
+                    if (Nd4j.getExecutioner() instanceof GridExecutioner)
+                        ((GridExecutioner) Nd4j.getExecutioner()).flushQueueBlocking();
+
+                    lock.lock();
+                    try {
+                        ready.put(sequence, ds);
+                        changed.signalAll();
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            } catch (InterruptedException e) {
+                if (!killed)
+                    setException(new RuntimeException("Producer interrupted unexpectedly", e));
+            } catch (RuntimeException e) {
+                if (!killed)
+                    setException(e);
+            }
+        }
+    }
+
+    private void setException(RuntimeException e) {
+        lock.lock();
+        try {
+            if (exception == null)
+                exception = e;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Must hold lock
+    private boolean isReady() {
+        if (!ordered)
+            return !ready.isEmpty();
+        //Skip the sequence numbers of exhausted sources
+        while (!ready.containsKey(nextSequence)) {
+            int sourceIdx = (int) (nextSequence % sources.length);
+            long end = sourceEnd[sourceIdx];
+            if (end < 0 || nextSequence / sources.length < end || isFinished())
+                return false;
+            nextSequence++;
+        }
+        return true;
+    }
+
+    //Must hold lock
+    private boolean isFinished() {
+        long total = 0;
+        for (long end : sourceEnd) {
+            if (end < 0)
+                return false;
+            total += end;
+        }
+        return returned >= total;
+    }
+
+    //Must hold lock. Wait until the next DataSet is ready, or there are no more DataSets
+    private void awaitNext() {
+        if (isReady() || isFinished() || exception != null)
+            return;
+
+        long start = System.nanoTime();
+        if (!starvedCurrent) {
+            starvedCurrent = true;
+            starvationCount.incrementAndGet();
+        }
+        try {
+            while (!isReady() && !isFinished() && exception == null) {
+                changed.await(100, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            starvationNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        lock.lock();
+        try {
+            awaitNext();
+            if (exception != null)
+                throw exception;
+            return isReady();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public DataSet next() {
+        lock.lock();
+        try {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            long sequence = ordered ? nextSequence++ : ready.firstKey();
+            DataSet ds = ready.remove(sequence);
+            returned++;
+            starvedCurrent = false;
+            nextCalls.incrementAndGet();
+            slots[(int) (sequence % sources.length)].release();
+            return ds;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public DataSet next(int num) {
+        throw new UnsupportedOperationException("Next(int) not supported for MultiProducerAsyncDataSetIterator");
+    }
+
+    @Override
+    public void reset() {
+        if (!resetSupported())
+            throw new UnsupportedOperationException("Cannot reset Async iterator wrapping iterator that does not support reset");
+        stopProducers();
+        log.debug("Reset: {} DataSets returned, consumer waited for {} of them ({} ms total)", nextCalls.get(),
+                starvationCount.get(), getStarvationTimeMs());
+
+        lock.lock();
+        try {
+            ready.clear();
+            nextSequence = 0;
+            returned = 0;
+            Arrays.fill(sourceEnd, -1);
+            exception = null;
+            starvedCurrent = false;
+        } finally {
+            lock.unlock();
+        }
+        for (int i = 0; i < sources.length; i++) {
+            slots[i].drainPermits();
+            slots[i].release(slotsPerSource[i]);
+        }
+        for (int i = 0; i < sources.length; i++) {
+            synchronized (sources[i]) {
+                fetched[i] = 0;
+                sources[i].reset();
+            }
+        }
+        startProducers();
+    }
+
+    /**
+     * Shut down the producer threads. Behaviour of next(), hasNext() etc after shutdown is undefined
+     */
+    public void shutdown() {
+        stopProducers();
+    }
+
+    /**
+     * @return Total number of DataSets returned by next()
+     */
+    public long getNumNextCalls() {
+        return nextCalls.get();
+    }
+
+    /**
+     * @return Number of DataSets that were not ready when the consumer requested them (via hasNext() or next())
+     */
+    public long getStarvationCount() {
+        return starvationCount.get();
+    }
+
+    /**
+     * @return Total time the consumer spent waiting for DataSets to be ready, in milliseconds
+     */
+    public long getStarvationTimeMs() {
+        return TimeUnit.NANOSECONDS.toMillis(starvationNanos.get());
+    }
+
+    @Override
+    public int totalExamples() {
+        int sum = 0;
+        for (DataSetIterator source : sources) {
+            sum += source.totalExamples();
+        }
+        return sum;
+    }
+
+    @Override
+    public int inputColumns() {
+        return sources[0].inputColumns();
+    }
+
+    @Override
+    public int totalOutcomes() {
+        return sources[0].totalOutcomes();
+    }
+
+    @Override
+    public boolean resetSupported() {
+        for (DataSetIterator source : sources) {
+            if (!source.resetSupported())
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean asyncSupported() {
+        return false;
+    }
+
+    @Override
+    public int batch() {
+        return sources[0].batch();
+    }
+
+    @Override
+    public int cursor() {
+        int sum = 0;
+        for (DataSetIterator source : sources) {
+            sum += source.cursor();
+        }
+        return sum;
+    }
+
+    @Override
+    public int numExamples() {
+        int sum = 0;
+        for (DataSetIterator source : sources) {
+            sum += source.numExamples();
+        }
+        return sum;
+    }
+
+    /**
+     * Set the preprocessor, to be applied in the producer threads. Must be thread safe
+     */
+    @Override
+    public void setPreProcessor(DataSetPreProcessor preProcessor) {
+        this.preProcessor = preProcessor;
+    }
+
+    @Override
+    public DataSetPreProcessor getPreProcessor() {
+        return preProcessor;
+    }
+
+    @Override
+    public List<String> getLabels() {
+        return sources[0].getLabels();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Remove not supported for MultiProducerAsyncDataSetIterator");
+    }
+}
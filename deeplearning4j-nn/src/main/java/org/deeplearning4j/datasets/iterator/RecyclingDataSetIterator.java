@@ -0,0 +1,22 @@
+package org.deeplearning4j.datasets.iterator;
+
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+
+/**
+ * A DataSetIterator that can write the next DataSet directly into the arrays of a DataSet that is no longer required
+ * (a recycled buffer), instead of allocating new arrays. Used by {@link MultiProducerAsyncDataSetIterator} to reuse
+ * the DataSets handed back by the consumer.
+ */
+public interface RecyclingDataSetIterator extends DataSetIterator {
+
+    /**
+     * Get the next DataSet, reusing the arrays of the buffer where possible. Arrays of the buffer that don't have the
+     * required shape (for example: the last minibatch of an epoch) are not used, and new arrays are allocated instead.
+     * Apart from the arrays, the returned DataSet does not share any state (masks, metadata etc) with the buffer.
+     *
+     * @param buffer DataSet to reuse. May be null. Must not be used by the caller after this call
+     * @return The next DataSet
+     */
+    DataSet next(DataSet buffer);
+}
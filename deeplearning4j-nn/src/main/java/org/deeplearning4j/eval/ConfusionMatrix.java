@@ -18,25 +18,35 @@
 
 package org.deeplearning4j.eval;
 
-import com.google.common.collect.HashMultiset;
-import com.google.common.collect.Multiset;
-
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Confusion matrix. Counts are stored in an int[][] (indexed by the position of the classes in {@link #getClasses()},
+ * actual class first), so adding entries and merging matrices does not require boxing or any per-entry allocation.<br>
+ * Adding an entry for a class that is not yet in {@link #getClasses()} appends that class to the list of classes, and
+ * grows the matrix accordingly.
+ */
 public class ConfusionMatrix<T extends Comparable<? super T>> implements Serializable {
-    private Map<T, Multiset<T>> matrix;
+    private int[][] matrix;
     private List<T> classes;
+    private Map<T, Integer> classIndex;
+    private int total;
 
     /**
      * Creates an empty confusion Matrix
      */
     public ConfusionMatrix(List<T> classes) {
-        this.matrix = new HashMap<>();
-        this.classes = classes;
+        this.classes = new ArrayList<>(classes);
+        this.matrix = new int[classes.size()][classes.size()];
+        this.classIndex = new HashMap<>();
+        for (int i = 0; i < classes.size(); i++) {
+            classIndex.put(classes.get(i), i);
+        }
     }
 
     public ConfusionMatrix() {}
@@ -60,28 +70,105 @@ public class ConfusionMatrix<T extends Comparable<? super T>> implements Seriali
      * Increments the entry specified by actual and predicted by count.
      */
     public void add(T actual, T predicted, int count) {
-        if (matrix.containsKey(actual)) {
-            matrix.get(actual).add(predicted, count);
-        } else {
-            Multiset<T> counts = HashMultiset.create();
-            counts.add(predicted, count);
-            matrix.put(actual, counts);
-        }
+        int actualIdx = indexOrAdd(actual);
+        int predictedIdx = indexOrAdd(predicted);
+        addByIndex(actualIdx, predictedIdx, count);
     }
 
     /**
      * Adds the entries from another confusion matrix to this one.
      */
     public void add(ConfusionMatrix<T> other) {
-        for (T actual : other.matrix.keySet()) {
-            Multiset<T> counts = other.matrix.get(actual);
-            for (T predicted : counts.elementSet()) {
-                int count = counts.count(predicted);
-                this.add(actual, predicted, count);
+        if (classes.equals(other.classes)) {
+            for (int i = 0; i < matrix.length; i++) {
+                int[] row = matrix[i];
+                int[] otherRow = other.matrix[i];
+                for (int j = 0; j < row.length; j++) {
+                    row[j] += otherRow[j];
+                }
+            }
+            total += other.total;
+        } else {
+            for (int i = 0; i < other.matrix.length; i++) {
+                for (int j = 0; j < other.matrix[i].length; j++) {
+                    int count = other.matrix[i][j];
+                    if (count != 0) {
+                        this.add(other.classes.get(i), other.classes.get(j), count);
+                    }
+                }
             }
         }
     }
 
+    /**
+     * Increments the entry for the actual and predicted class indices (i.e., positions in {@link #getClasses()})
+     */
+    void addByIndex(int actualIdx, int predictedIdx, int count) {
+        matrix[actualIdx][predictedIdx] += count;
+        total += count;
+    }
+
+    /**
+     * Increments the entries for a set of examples: one entry for each (actualIdx[i], predictedIdx[i]) pair of class
+     * indices
+     */
+    void addAllByIndex(int[] actualIdx, int[] predictedIdx) {
+        for (int i = 0; i < actualIdx.length; i++) {
+            matrix[actualIdx[i]][predictedIdx[i]]++;
+        }
+        total += actualIdx.length;
+    }
+
+    int getCountByIndex(int actualIdx, int predictedIdx) {
+        return matrix[actualIdx][predictedIdx];
+    }
+
+    int getPredictedTotalByIndex(int predictedIdx) {
+        int sum = 0;
+        for (int[] row : matrix) {
+            sum += row[predictedIdx];
+        }
+        return sum;
+    }
+
+    int getActualTotalByIndex(int actualIdx) {
+        int sum = 0;
+        for (int count : matrix[actualIdx]) {
+            sum += count;
+        }
+        return sum;
+    }
+
+    /**
+     * @return The total of all entries in the confusion matrix (i.e., the number of examples)
+     */
+    int getTotal() {
+        return total;
+    }
+
+    /**
+     * Add the class to the end of the list of classes (with all counts 0), if it is not already present
+     */
+    void addClass(T clazz) {
+        indexOrAdd(clazz);
+    }
+
+    private int indexOrAdd(T clazz) {
+        Integer idx = classIndex.get(clazz);
+        if (idx != null)
+            return idx;
+
+        int n = classes.size();
+        int[][] newMatrix = new int[n + 1][n + 1];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(matrix[i], 0, newMatrix[i], 0, n);
+        }
+        matrix = newMatrix;
+        classes.add(clazz);
+        classIndex.put(clazz, n);
+        return n;
+    }
+
     /**
      * Gives the applyTransformToDestination of all classes in the confusion matrix.
      */
@@ -94,42 +181,39 @@ public class ConfusionMatrix<T extends Comparable<? super T>> implements Seriali
      * class.
      */
     public int getCount(T actual, T predicted) {
-        if (!matrix.containsKey(actual)) {
+        Integer a = classIndex.get(actual);
+        Integer p = classIndex.get(predicted);
+        if (a == null || p == null) {
             return 0;
-        } else {
-            return matrix.get(actual).count(predicted);
         }
+        return matrix[a][p];
     }
 
     /**
      * Computes the total number of times the class was predicted by the classifier.
      */
     public int getPredictedTotal(T predicted) {
-        int total = 0;
-        for (T actual : classes) {
-            total += getCount(actual, predicted);
-        }
-        return total;
+        Integer p = classIndex.get(predicted);
+        return p == null ? 0 : getPredictedTotalByIndex(p);
     }
 
     /**
      * Computes the total number of times the class actually appeared in the data.
      */
     public int getActualTotal(T actual) {
-        if (!matrix.containsKey(actual)) {
-            return 0;
-        } else {
-            int total = 0;
-            for (T elem : matrix.get(actual).elementSet()) {
-                total += matrix.get(actual).count(elem);
-            }
-            return total;
-        }
+        Integer a = classIndex.get(actual);
+        return a == null ? 0 : getActualTotalByIndex(a);
     }
 
     @Override
     public String toString() {
-        return matrix.toString();
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < matrix.length; i++) {
+            if (i > 0)
+                sb.append(", ");
+            sb.append(classes.get(i)).append("=").append(Arrays.toString(matrix[i]));
+        }
+        return sb.append("}").toString();
     }
 
     /**
@@ -244,13 +328,13 @@ public class ConfusionMatrix<T extends Comparable<? super T>> implements Seriali
     public boolean equals(Object o){
         if( !(o instanceof ConfusionMatrix) ) return false;
         ConfusionMatrix<?> c = (ConfusionMatrix<?>)o;
-        return matrix.equals(c.matrix) && classes.equals(c.classes);
+        return Arrays.deepEquals(matrix, c.matrix) && classes.equals(c.classes);
     }
 
     @Override
     public int hashCode() {
         int result = 17;
-        result = 31 * result + (matrix == null? 0 : matrix.hashCode());
+        result = 31 * result + (matrix == null? 0 : Arrays.deepHashCode(matrix));
         result = 31 * result + (classes == null? 0 : classes.hashCode());
         return result;
     }
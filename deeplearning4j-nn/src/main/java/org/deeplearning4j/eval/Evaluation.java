@@ -28,9 +28,7 @@ import org.deeplearning4j.nn.api.Layer;
 import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.api.ops.impl.accum.MatchCondition;
 import org.nd4j.linalg.factory.Nd4j;
-import org.nd4j.linalg.indexing.conditions.Conditions;
 
 import java.io.Serializable;
 import java.text.DecimalFormat;
@@ -48,11 +46,13 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
     protected final int topN;
     protected int topNCorrectCount = 0;
     protected int topNTotalCount = 0;      //Could use topNCountCorrect / (double)getNumRowCounter() - except for eval(int,int), hence separate counters
-    protected Counter<Integer> truePositives = new Counter<>();
-    protected Counter<Integer> falsePositives = new Counter<>();
-    protected Counter<Integer> trueNegatives = new Counter<>();
-    protected Counter<Integer> falseNegatives = new Counter<>();
+    //Counts, from which the true/false positives/negatives for each class are calculated
     protected ConfusionMatrix<Integer> confusion;
+    //Counts added via the deprecated increment methods, on top of those calculated from the confusion matrix
+    protected Counter<Integer> incrementedTruePositives = new Counter<>();
+    protected Counter<Integer> incrementedFalsePositives = new Counter<>();
+    protected Counter<Integer> incrementedTrueNegatives = new Counter<>();
+    protected Counter<Integer> incrementedFalseNegatives = new Counter<>();
     protected int numRowCounter = 0;
     @Getter
     @Setter
@@ -111,7 +111,8 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
     public Evaluation(List<String> labels, int topN) {
         this.labelsList = labels;
         if (labels != null) {
-            createConfusion(labels.size());
+            //A single label: binary (single output variable) case, which has 2 classes
+            createConfusion(labels.size() == 1 ? 2 : labels.size());
         }
         this.topN = topN;
     }
@@ -145,6 +146,20 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
         confusion = new ConfusionMatrix<>(classes);
     }
 
+    /**
+     * Ensure that the confusion matrix has (at least) classes 0 to nClasses-1, so that class indices are also positions
+     * in the confusion matrix
+     */
+    private void ensureNumClasses(int nClasses) {
+        if (confusion == null) {
+            createConfusion(nClasses);
+            return;
+        }
+        for (int i = confusion.getClasses().size(); i < nClasses; i++) {
+            confusion.addClass(i);
+        }
+    }
+
 
     /**
      * Evaluate the output
@@ -218,90 +233,65 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
         if (realOutcomes.length() != guesses.length())
             throw new IllegalArgumentException("Unable to evaluate. Outcome matrices not same length");
 
-        // For each row get the most probable label (column) from prediction and assign as guessMax
-        // For each row get the column of the true label and assign as currMax
-
         int nCols = realOutcomes.columns();
         int nRows = realOutcomes.rows();
 
         if (nCols == 1) {
+            ensureNumClasses(2);
             INDArray binaryGuesses = guesses.gt(0.5);
             int tp = binaryGuesses.mul(realOutcomes).sumNumber().intValue();
-            int fp = binaryGuesses.mul(-1.0).addi(1.0).muli(realOutcomes).sumNumber().intValue();
-            int fn = binaryGuesses.mul(realOutcomes.mul(-1.0).addi(1.0)).sumNumber().intValue();
+            int fn = binaryGuesses.mul(-1.0).addi(1.0).muli(realOutcomes).sumNumber().intValue();
+            int fp = binaryGuesses.mul(realOutcomes.mul(-1.0).addi(1.0)).sumNumber().intValue();
             int tn = nRows - tp - fp - fn;
 
-            confusion.add(1, 1, tp);
-            confusion.add(1, 0, fn);
-            confusion.add(0, 1, fp);
-            confusion.add(0, 0, tn);
-
-            truePositives.incrementCount(1, tp);
-            falsePositives.incrementCount(1, fp);
-            falseNegatives.incrementCount(1, fp);
-            trueNegatives.incrementCount(1, tp);
-
-            truePositives.incrementCount(0, tn);
-            falsePositives.incrementCount(0, fn);
-            falseNegatives.incrementCount(0, fn);
-            trueNegatives.incrementCount(0, tn);
+            confusion.addByIndex(1, 1, tp);
+            confusion.addByIndex(1, 0, fn);
+            confusion.addByIndex(0, 1, fp);
+            confusion.addByIndex(0, 0, tn);
 
             if(recordMetaData != null ){
                 for( int i=0; i<binaryGuesses.size(0); i++ ){
                     if(i >= recordMetaData.size()) break;
-                    int actual = realOutcomes.getDouble(0) == 0.0 ? 0 : 1;
-                    int predicted = binaryGuesses.getDouble(0) == 0.0 ? 0 : 1;
+                    int actual = realOutcomes.getDouble(i) == 0.0 ? 0 : 1;
+                    int predicted = binaryGuesses.getDouble(i) == 0.0 ? 0 : 1;
                     addToMetaConfusionMatrix(actual, predicted, recordMetaData.get(i));
                 }
             }
 
         } else {
-            INDArray guessIndex = Nd4j.argMax(guesses, 1);
-            INDArray realOutcomeIndex = Nd4j.argMax(realOutcomes, 1);
-
-            int nExamples = guessIndex.length();
-            for( int i=0; i<nExamples; i++ ){
-                int actual = (int)realOutcomeIndex.getDouble(i);
-                int predicted = (int)guessIndex.getDouble(i);
-                confusion.add(actual,predicted);
-
-                if(recordMetaData != null && recordMetaData.size() > i){
-                    Object m = recordMetaData.get(i);
-                    addToMetaConfusionMatrix(actual,predicted,m);
-                }
-            }
+            ensureNumClasses(nCols);
 
-            for (int col = 0; col < nCols; col++) {
-                INDArray colBinaryGuesses = guessIndex.eps(col);
-                INDArray colRealOutcomes = realOutcomes.getColumn(col);
+            // For each row get the most probable label (column) from prediction and the column of the true label,
+            // for the whole minibatch at once
+            int[] predictedIdx = Nd4j.argMax(guesses, 1).data().asInt();
+            int[] actualIdx = Nd4j.argMax(realOutcomes, 1).data().asInt();
 
-                int colTp = colBinaryGuesses.mul(colRealOutcomes).sumNumber().intValue();
-                int colFp = colBinaryGuesses.mul(colRealOutcomes.mul(-1.0).addi(1.0)).sumNumber().intValue();
-                int colFn = colBinaryGuesses.mul(-1.0).addi(1.0).muli(colRealOutcomes).sumNumber().intValue();
-                int colTn = nRows - colTp - colFp - colFn;
+            confusion.addAllByIndex(actualIdx, predictedIdx);
 
-                truePositives.incrementCount(col, colTp);
-                falsePositives.incrementCount(col, colFp);
-                falseNegatives.incrementCount(col, colFn);
-                trueNegatives.incrementCount(col, colTn);
+            if(recordMetaData != null){
+                int n = Math.min(actualIdx.length, recordMetaData.size());
+                for( int i=0; i<n; i++ ){
+                    addToMetaConfusionMatrix(actualIdx[i], predictedIdx[i], recordMetaData.get(i));
+                }
             }
-        }
 
-        if (nCols > 1 && topN > 1) {
-            //Calculate top N accuracy
-            //TODO: this could be more efficient
-            INDArray realOutcomeIndex = Nd4j.argMax(realOutcomes, 1);
-            int nExamples = realOutcomeIndex.length();
-            for (int i = 0; i < nExamples; i++) {
-                int labelIdx = (int) realOutcomeIndex.getDouble(i);
-                double prob = guesses.getDouble(i, labelIdx);
-                INDArray row = guesses.getRow(i);
-                int countGreaterThan = (int) Nd4j.getExecutioner().exec(new MatchCondition(row, Conditions.greaterThan(prob)), Integer.MAX_VALUE).getDouble(0);
-                if (countGreaterThan < topN) {
-                    //For example, for top 3 accuracy: can have at most 2 other probabilities larger
-                    topNCorrectCount++;
+            if (topN > 1) {
+                //Calculate top N accuracy: an example is correct if fewer than N probabilities are larger than the
+                //probability for the true class
+                double[] probs = Nd4j.toFlattened('c', guesses).data().asDouble();
+                for (int i = 0; i < actualIdx.length; i++) {
+                    int rowStart = i * nCols;
+                    double prob = probs[rowStart + actualIdx[i]];
+                    int countGreaterThan = 0;
+                    for (int j = rowStart; j < rowStart + nCols; j++) {
+                        if (probs[j] > prob) countGreaterThan++;
+                    }
+                    if (countGreaterThan < topN) {
+                        //For example, for top 3 accuracy: can have at most 2 other probabilities larger
+                        topNCorrectCount++;
+                    }
+                    topNTotalCount++;
                 }
-                topNTotalCount++;
             }
         }
     }
@@ -313,40 +303,11 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
      * @param actualIdx    Index of actual class
      */
     public void eval(int predictedIdx, int actualIdx) {
-        // Add the number of rows to numRowCounter
-        numRowCounter++;
-
-        // If confusion is null, then Evaluation is instantiated without providing the classes
-        if (confusion == null) {
-            throw new UnsupportedOperationException("Cannot evaluate single example without initializing confusion matrix first");
-        }
-
+        //Classes not seen so far (or not known when this Evaluation was created) are added to the confusion matrix
         addToConfusion(actualIdx, predictedIdx);
 
-        // If they are equal
-        if (predictedIdx == actualIdx) {
-            // Then add 1 to True Positive
-            // (For a particular label)
-            incrementTruePositives(predictedIdx);
-
-            // And add 1 for each negative class that is accurately predicted (True Negative)
-            //(For a particular label)
-            for (Integer clazz : confusion.getClasses()) {
-                if (clazz != predictedIdx)
-                    trueNegatives.incrementCount(clazz, 1.0);
-            }
-        } else {
-            // Otherwise the real label is predicted as negative (False Negative)
-            incrementFalseNegatives(actualIdx);
-            // Otherwise the prediction is predicted as falsely positive (False Positive)
-            incrementFalsePositives(predictedIdx);
-            // Otherwise true negatives
-            for (Integer clazz : confusion.getClasses()) {
-                if (clazz != predictedIdx && clazz != actualIdx)
-                    trueNegatives.incrementCount(clazz, 1.0);
-
-            }
-        }
+        // Add the number of rows to numRowCounter
+        numRowCounter++;
     }
 
     public String stats() {
@@ -376,11 +337,11 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
             }
 
             //Output possible warnings regarding precision/recall calculation
-            if (!suppressWarnings && truePositives.getCount(clazz) == 0) {
-                if (falsePositives.getCount(clazz) == 0) {
+            if (!suppressWarnings && truePositiveCount(clazz) == 0) {
+                if (falsePositiveCount(clazz) == 0) {
                     warnings.append(String.format("Warning: class %s was never predicted by the model. This class was excluded from the average precision%n", actual));
                 }
-                if (falseNegatives.getCount(clazz) == 0) {
+                if (falseNegativeCount(clazz) == 0) {
                     warnings.append(String.format("Warning: class %s has never appeared as a true label. This class was excluded from the average recall%n", actual));
                 }
             }
@@ -434,8 +395,8 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
      * @return the precision for the label
      */
     public double precision(Integer classLabel, double edgeCase) {
-        double tpCount = truePositives.getCount(classLabel);
-        double fpCount = falsePositives.getCount(classLabel);
+        double tpCount = truePositiveCount(classLabel);
+        double fpCount = falsePositiveCount(classLabel);
 
         //Edge case
         if (tpCount == 0 && fpCount == 0) {
@@ -482,8 +443,8 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
      * @return Recall rate as a double
      */
     public double recall(Integer classLabel, double edgeCase) {
-        double tpCount = truePositives.getCount(classLabel);
-        double fnCount = falseNegatives.getCount(classLabel);
+        double tpCount = truePositiveCount(classLabel);
+        double fnCount = falseNegativeCount(classLabel);
 
         //Edge case
         if (tpCount == 0 && fnCount == 0) {
@@ -531,8 +492,8 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
      * @return fpr as a double
      */
     public double falsePositiveRate(Integer classLabel, double edgeCase) {
-        double fpCount = falsePositives.getCount(classLabel);
-        double tnCount = trueNegatives.getCount(classLabel);
+        double fpCount = falsePositiveCount(classLabel);
+        double tnCount = trueNegativeCount(classLabel);
 
         //Edge case
         if (fpCount == 0 && tnCount == 0) {
@@ -580,8 +541,8 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
      * @return fnr as a double
      */
     public double falseNegativeRate(Integer classLabel, double edgeCase) {
-        double fnCount = falseNegatives.getCount(classLabel);
-        double tpCount = truePositives.getCount(classLabel);
+        double fnCount = falseNegativeCount(classLabel);
+        double tpCount = truePositiveCount(classLabel);
 
         //Edge case
         if (fnCount == 0 && tpCount == 0) {
@@ -661,7 +622,7 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
         int nClasses = confusion.getClasses().size();
         int countCorrect = 0;
         for (int i = 0; i < nClasses; i++) {
-            countCorrect += confusion.getCount(i, i);
+            countCorrect += confusion.getCountByIndex(i, i);
         }
 
         return countCorrect / (double)getNumRowCounter();
@@ -686,7 +647,11 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
      * @return the total true positives so far
      */
     public Map<Integer, Integer> truePositives() {
-        return convertToMap(truePositives, confusion.getClasses().size());
+        Map<Integer, Integer> map = new HashMap<>();
+        for (int i = 0; i < numClasses(); i++) {
+            map.put(i, truePositiveCount(i));
+        }
+        return map;
     }
 
     /**
@@ -695,7 +660,11 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
      * @return the total true negatives so far
      */
     public Map<Integer, Integer> trueNegatives() {
-        return convertToMap(trueNegatives, confusion.getClasses().size());
+        Map<Integer, Integer> map = new HashMap<>();
+        for (int i = 0; i < numClasses(); i++) {
+            map.put(i, trueNegativeCount(i));
+        }
+        return map;
     }
 
     /**
@@ -704,7 +673,11 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
      * @return the count of the false positives
      */
     public Map<Integer, Integer> falsePositives() {
-        return convertToMap(falsePositives, confusion.getClasses().size());
+        Map<Integer, Integer> map = new HashMap<>();
+        for (int i = 0; i < numClasses(); i++) {
+            map.put(i, falsePositiveCount(i));
+        }
+        return map;
     }
 
     /**
@@ -713,7 +686,11 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
      * @return the total false negatives so far
      */
     public Map<Integer, Integer> falseNegatives() {
-        return convertToMap(falseNegatives, confusion.getClasses().size());
+        Map<Integer, Integer> map = new HashMap<>();
+        for (int i = 0; i < numClasses(); i++) {
+            map.put(i, falseNegativeCount(i));
+        }
+        return map;
     }
 
     /**
@@ -733,12 +710,39 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
         return addMapsByKey(truePositives(), falseNegatives());
     }
 
-    private Map<Integer, Integer> convertToMap(Counter<Integer> counter, int maxCount) {
-        Map<Integer, Integer> map = new HashMap<>();
-        for (int i = 0; i < maxCount; i++) {
-            map.put(i, (int) counter.getCount(i));
-        }
-        return map;
+    private int numClasses() {
+        return confusion == null ? 0 : confusion.getClasses().size();
+    }
+
+    private boolean isValidClass(int classIdx) {
+        return classIdx >= 0 && classIdx < numClasses();
+    }
+
+    //The true/false positive/negative counts for each class are calculated from the confusion matrix (actual, predicted)
+    private int truePositiveCount(int classIdx) {
+        int increments = (int) incrementedTruePositives.getCount(classIdx);
+        if (!isValidClass(classIdx)) return increments;
+        return confusion.getCountByIndex(classIdx, classIdx) + increments;
+    }
+
+    private int falsePositiveCount(int classIdx) {
+        int increments = (int) incrementedFalsePositives.getCount(classIdx);
+        if (!isValidClass(classIdx)) return increments;
+        return confusion.getPredictedTotalByIndex(classIdx) - confusion.getCountByIndex(classIdx, classIdx) + increments;
+    }
+
+    private int falseNegativeCount(int classIdx) {
+        int increments = (int) incrementedFalseNegatives.getCount(classIdx);
+        if (!isValidClass(classIdx)) return increments;
+        return confusion.getActualTotalByIndex(classIdx) - confusion.getCountByIndex(classIdx, classIdx) + increments;
+    }
+
+    private int trueNegativeCount(int classIdx) {
+        int increments = (int) incrementedTrueNegatives.getCount(classIdx);
+        if (!isValidClass(classIdx)) return increments;
+        return confusion.getTotal() - confusion.getActualTotalByIndex(classIdx)
+                        - confusion.getPredictedTotalByIndex(classIdx) + confusion.getCountByIndex(classIdx, classIdx)
+                        + increments;
     }
 
     private Map<Integer, Integer> addMapsByKey(Map<Integer, Integer> first, Map<Integer, Integer> second) {
@@ -760,32 +764,56 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
 
 
     // Incrementing counters
+
+    /**
+     * @deprecated True positives are calculated from the confusion matrix: use {@link #eval(int, int)} instead. Counts
+     * added here are not reflected in the confusion matrix or the accuracy
+     */
+    @Deprecated
     public void incrementTruePositives(Integer classLabel) {
-        truePositives.incrementCount(classLabel, 1.0);
+        incrementedTruePositives.incrementCount(classLabel, 1.0);
     }
 
+    /**
+     * @deprecated True negatives are calculated from the confusion matrix: use {@link #eval(int, int)} instead. Counts
+     * added here are not reflected in the confusion matrix or the accuracy
+     */
+    @Deprecated
     public void incrementTrueNegatives(Integer classLabel) {
-        trueNegatives.incrementCount(classLabel, 1.0);
+        incrementedTrueNegatives.incrementCount(classLabel, 1.0);
     }
 
+    /**
+     * @deprecated False negatives are calculated from the confusion matrix: use {@link #eval(int, int)} instead. Counts
+     * added here are not reflected in the confusion matrix or the accuracy
+     */
+    @Deprecated
     public void incrementFalseNegatives(Integer classLabel) {
-        falseNegatives.incrementCount(classLabel, 1.0);
+        incrementedFalseNegatives.incrementCount(classLabel, 1.0);
     }
 
+    /**
+     * @deprecated False positives are calculated from the confusion matrix: use {@link #eval(int, int)} instead. Counts
+     * added here are not reflected in the confusion matrix or the accuracy
+     */
+    @Deprecated
     public void incrementFalsePositives(Integer classLabel) {
-        falsePositives.incrementCount(classLabel, 1.0);
+        incrementedFalsePositives.incrementCount(classLabel, 1.0);
     }
 
 
     // Other misc methods
 
     /**
-     * Adds to the confusion matrix
+     * Adds to the confusion matrix. Classes not already in the confusion matrix are added to it
      *
      * @param real  the actual guess
      * @param guess the system guess
      */
     public void addToConfusion(Integer real, Integer guess) {
+        if (real < 0 || guess < 0)
+            throw new IllegalArgumentException("Invalid class index: actual = " + real + ", predicted = " + guess);
+        ensureNumClasses(Math.max(real, guess) + 1);
         confusion.add(real, guess);
     }
 
@@ -815,7 +843,7 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
             int nClasses = confusion.getClasses().size();
             int countCorrect = 0;
             for (int i = 0; i < nClasses; i++) {
-                countCorrect += confusion.getCount(i, i);
+                countCorrect += confusion.getCountByIndex(i, i);
             }
             return countCorrect;
         }
@@ -858,18 +886,28 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
     public void merge(Evaluation other) {
         if (other == null) return;
 
-        truePositives.incrementAll(other.truePositives);
-        falsePositives.incrementAll(other.falsePositives);
-        trueNegatives.incrementAll(other.trueNegatives);
-        falseNegatives.incrementAll(other.falseNegatives);
-
         if (confusion == null) {
             if (other.confusion != null) confusion = new ConfusionMatrix<>(other.confusion);
-        } else {
-            if (other.confusion != null) confusion.add(other.confusion);
+        } else if (other.confusion != null) {
+            //Evaluations may have seen different numbers of classes: class indices must remain matrix positions
+            ensureNumClasses(other.confusion.getClasses().size());
+            confusion.add(other.confusion);
         }
+        incrementedTruePositives.incrementAll(other.incrementedTruePositives);
+        incrementedFalsePositives.incrementAll(other.incrementedFalsePositives);
+        incrementedTrueNegatives.incrementAll(other.incrementedTrueNegatives);
+        incrementedFalseNegatives.incrementAll(other.incrementedFalseNegatives);
         numRowCounter += other.numRowCounter;
-        if (labelsList.isEmpty()) labelsList.addAll(other.labelsList);
+        if ((labelsList == null || labelsList.isEmpty()) && other.labelsList != null)
+            labelsList = new ArrayList<>(other.labelsList);
+
+        if (other.confusionMatrixMetaData != null) {
+            for (Map.Entry<Pair<Integer, Integer>, List<Object>> entry : other.confusionMatrixMetaData.entrySet()) {
+                for (Object m : entry.getValue()) {
+                    addToMetaConfusionMatrix(entry.getKey().getFirst(), entry.getKey().getSecond(), m);
+                }
+            }
+        }
 
         if(topN != other.topN){
             log.warn("Different topN values ({} vs {}) detected during Evaluation merging. Top N accuracy may not be accurate.",topN,other.topN);
@@ -886,8 +924,8 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
 
         //First: work out the longest label size
         int maxLabelSize = 0;
-        for (String s : labelsList) {
-            maxLabelSize = Math.max(maxLabelSize, s.length());
+        for (int i = 0; i < nClasses; i++) {
+            maxLabelSize = Math.max(maxLabelSize, resolveLabelForClass(i).length());
         }
 
         //Build the formatting for the rows:
@@ -923,7 +961,7 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
 
             Object[] args = new Object[nClasses + 2];
             args[0] = i;
-            args[1] = labelsList.get(i);
+            args[1] = resolveLabelForClass(i);
             for (int j = 0; j < nClasses; j++) {
                 args[j + 2] = confusion.getCount(i, j);
             }
@@ -0,0 +1,102 @@
+package org.deeplearning4j.eval;
+
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs evaluation over a shared DataSetIterator with multiple workers in parallel. Each worker (usually: one model
+ * replica, with its own {@link IEvaluation} instance) is given minibatches from the iterator until it is exhausted;
+ * the results can then be merged via {@link IEvaluation#merge(IEvaluation)}.<br>
+ * The first worker is run on the calling thread; one new (daemon) thread is started for each of the others.
+ */
+public final class ParallelEvaluation {
+
+    /**
+     * A single worker: evaluates one minibatch. Each worker is only ever called from a single thread.
+     */
+    public interface MinibatchEvaluator {
+        void evaluate(DataSet minibatch);
+    }
+
+    private ParallelEvaluation() {
+    }
+
+    /**
+     * Evaluate all remaining minibatches from the iterator, using the given workers. Returns once the iterator is
+     * exhausted (or a DataSet without features or labels is returned) and all workers have finished. If a worker throws
+     * an exception, the other workers stop after their current minibatch, and the exception is rethrown.
+     *
+     * @param iterator Iterator to evaluate on. next() is only ever called by one worker at a time
+     * @param workers  Workers to evaluate with
+     */
+    public static void run(final DataSetIterator iterator, List<? extends MinibatchEvaluator> workers) {
+        if (workers.isEmpty())
+            throw new IllegalArgumentException("At least one worker is required");
+
+        final AtomicBoolean stop = new AtomicBoolean(false);
+        final AtomicReference<Throwable> firstException = new AtomicReference<>();
+
+        List<Thread> threads = new ArrayList<>(workers.size() - 1);
+        for (int i = 1; i < workers.size(); i++) {
+            final MinibatchEvaluator worker = workers.get(i);
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    runWorker(iterator, worker, stop, firstException);
+                }
+            }, "ParallelEvaluation worker " + i);
+            t.setDaemon(true);
+            t.start();
+            threads.add(t);
+        }
+
+        runWorker(iterator, workers.get(0), stop, firstException);
+
+        for (Thread t : threads) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                stop.set(true);
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for evaluation workers", e);
+            }
+        }
+
+        Throwable t = firstException.get();
+        if (t != null) {
+            if (t instanceof RuntimeException)
+                throw (RuntimeException) t;
+            if (t instanceof Error)
+                throw (Error) t;
+            throw new RuntimeException(t);
+        }
+    }
+
+    private static void runWorker(DataSetIterator iterator, MinibatchEvaluator worker, AtomicBoolean stop,
+                                  AtomicReference<Throwable> firstException) {
+        try {
+            while (!stop.get()) {
+                DataSet next;
+                synchronized (iterator) {
+                    if (!iterator.hasNext())
+                        return;
+                    next = iterator.next();
+                }
+                if (next.getFeatureMatrix() == null || next.getLabels() == null) {
+                    stop.set(true);
+                    return;
+                }
+
+                worker.evaluate(next);
+            }
+        } catch (Throwable t) {
+            stop.set(true);
+            firstException.compareAndSet(null, t);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.deeplearning4j.nn.api.layers;
+
+import org.deeplearning4j.nn.api.Layer;
+
+/**
+ * A layer where the gradients for some parameters may be row-sparse: i.e., for each minibatch, only a (usually small)
+ * subset of the rows of the gradient array are non-zero. The gradient arrays are still dense (the usual gradient views),
+ * but updaters may use the row indices to update only the affected rows of the parameters and updater state.
+ * For example, the weights in an {@link org.deeplearning4j.nn.layers.feedforward.embedding.EmbeddingLayer}.
+ */
+public interface SparseGradientLayer extends Layer {
+
+    /**
+     * @param paramName Name of the parameter
+     * @return True if the gradient for the specified parameter is row-sparse
+     */
+    boolean isRowSparseGradient(String paramName);
+
+    /**
+     * Get the indices of the rows of the specified parameter's gradient that may be non-zero, as of the last call to
+     * {@link #backpropGradient(org.nd4j.linalg.api.ndarray.INDArray)}. All other rows of the gradient are zero.
+     *
+     * @param paramName Name of the parameter. Should be a parameter for which {@link #isRowSparseGradient(String)} is true
+     * @return Row indices: distinct, in ascending order
+     */
+    int[] getGradientRows(String paramName);
+
+    /**
+     * Set the indices of the rows of the specified parameter's gradient that may be non-zero. Used when the gradient
+     * array has been modified outside of the layer: for example, when the gradients from multiple micro-batches are
+     * combined.
+     *
+     * @param paramName Name of the parameter. Should be a parameter for which {@link #isRowSparseGradient(String)} is true
+     * @param rows      Row indices: distinct, in ascending order
+     */
+    void setGradientRows(String paramName, int[] rows);
+}
@@ -74,6 +74,8 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
     protected BackpropType backpropType = BackpropType.Standard;
     protected int tbpttFwdLength = 20;
     protected int tbpttBackLength = 20;
+    //Number of micro-batches each minibatch is split into for gradient calculation (gradient accumulation)
+    protected int numMicroBatches = 1;
 
     protected NeuralNetConfiguration defaultConfiguration;
 
@@ -217,6 +219,7 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
         conf.backpropType = backpropType;
         conf.tbpttFwdLength = tbpttFwdLength;
         conf.tbpttBackLength = tbpttBackLength;
+        conf.numMicroBatches = numMicroBatches;
         conf.defaultConfiguration = defaultConfiguration.clone();
 
         return conf;
@@ -415,6 +418,7 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
         protected BackpropType backpropType = BackpropType.Standard;
         protected int tbpttFwdLength = 20;
         protected int tbpttBackLength = 20;
+        protected int numMicroBatches = 1;
 
         protected Map<String, InputPreProcessor> inputPreProcessors = new LinkedHashMap<>();
 
@@ -440,6 +444,7 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
             this.backpropType = clonedConf.getBackpropType();
             this.tbpttFwdLength = clonedConf.getTbpttFwdLength();
             this.tbpttBackLength = clonedConf.getTbpttBackLength();
+            this.numMicroBatches = clonedConf.getNumMicroBatches();
             this.globalConfiguration = globalConfiguration;
         }
 
@@ -518,6 +523,22 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
             return this;
         }
 
+        /**
+         * Gradient accumulation: split each minibatch into the specified number of micro-batches, calculate the
+         * gradients for each micro-batch separately, and apply the (summed) gradients once for the whole minibatch.
+         * This gives the same result as training on the full minibatch (except for batch normalization layers, which
+         * use the statistics of each micro-batch), but with peak activation memory that scales with the micro-batch
+         * size instead of the minibatch size.<br>
+         * Default: 1 (no micro-batching)
+         *
+         * @param numMicroBatches Number of micro-batches to split each minibatch into. Must be >= 1
+         */
+        public GraphBuilder numMicroBatches(int numMicroBatches) {
+            if (numMicroBatches < 1) throw new IllegalArgumentException("Number of micro-batches must be >= 1, got " + numMicroBatches);
+            this.numMicroBatches = numMicroBatches;
+            return this;
+        }
+
         /**
          * Add a layer, with no {@link InputPreProcessor}, with the specified name and specified inputs.
          *
@@ -665,6 +686,7 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
             conf.backpropType = backpropType;
             conf.tbpttBackLength = tbpttBackLength;
             conf.tbpttFwdLength = tbpttFwdLength;
+            conf.numMicroBatches = numMicroBatches;
 
             conf.networkInputs = networkInputs;
             conf.networkOutputs = networkOutputs;
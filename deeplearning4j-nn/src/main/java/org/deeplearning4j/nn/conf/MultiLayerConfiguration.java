@@ -66,6 +66,8 @@ public class MultiLayerConfiguration implements Serializable, Cloneable {
     protected BackpropType backpropType = BackpropType.Standard;
     protected int tbpttFwdLength = 20;
     protected int tbpttBackLength = 20;
+    //Number of micro-batches each minibatch is split into for gradient calculation (gradient accumulation)
+    protected int numMicroBatches = 1;
 
     //Counter for the number of parameter updates so far
     // This is important for learning rate schedules, for example, and is stored here to ensure it is persisted
@@ -295,6 +297,7 @@ public class MultiLayerConfiguration implements Serializable, Cloneable {
         protected BackpropType backpropType = BackpropType.Standard;
         protected int tbpttFwdLength = 20;
         protected int tbpttBackLength = 20;
+        protected int numMicroBatches = 1;
         protected InputType inputType;
         @Deprecated
         protected int[] cnnInputSize;
@@ -361,6 +364,20 @@ public class MultiLayerConfiguration implements Serializable, Cloneable {
             return this;
         }
 
+        /**Gradient accumulation: split each minibatch into the specified number of micro-batches, calculate the
+         * gradients for each micro-batch separately, and apply the (summed) gradients once for the whole minibatch.
+         * This gives the same result as training on the full minibatch (except for batch normalization layers, which
+         * use the statistics of each micro-batch), but with peak activation memory that scales with the micro-batch
+         * size instead of the minibatch size.<br>
+         * Default: 1 (no micro-batching)
+         * @param numMicroBatches Number of micro-batches to split each minibatch into. Must be >= 1
+         */
+        public Builder numMicroBatches(int numMicroBatches){
+            if(numMicroBatches < 1) throw new IllegalArgumentException("Number of micro-batches must be >= 1, got " + numMicroBatches);
+            this.numMicroBatches = numMicroBatches;
+            return this;
+        }
+
         /**
          * Whether to do pre train or not
          * @param pretrain whether to do pre train or not
@@ -487,6 +504,7 @@ public class MultiLayerConfiguration implements Serializable, Cloneable {
             conf.backpropType = backpropType;
             conf.tbpttFwdLength = tbpttFwdLength;
             conf.tbpttBackLength = tbpttBackLength;
+            conf.numMicroBatches = numMicroBatches;
             Nd4j.getRandom().setSeed(conf.getConf(0).getSeed());
             return conf;
 
@@ -31,6 +31,7 @@ public class BatchNormalization extends FeedForwardLayer {
     protected double gamma = 1.0;
     protected double beta = 0.0;
     protected boolean lockGammaBeta = false;
+    protected boolean cpuNormalizationHelper = false;
 
     private BatchNormalization(Builder builder) {
         super(builder);
@@ -40,6 +41,7 @@ public class BatchNormalization extends FeedForwardLayer {
         this.gamma = builder.gamma;
         this.beta = builder.beta;
         this.lockGammaBeta = builder.lockGammaBeta;
+        this.cpuNormalizationHelper = builder.cpuNormalizationHelper;
     }
 
     @Override
@@ -162,6 +164,7 @@ public class BatchNormalization extends FeedForwardLayer {
         protected boolean lockGammaBeta = false;
         protected double gamma = 1.0;
         protected double beta = 0.0;
+        protected boolean cpuNormalizationHelper = false;
 
         public Builder(double decay, boolean isMinibatch) {
             this.decay = decay;
@@ -258,6 +261,20 @@ public class BatchNormalization extends FeedForwardLayer {
             return this;
         }
 
+        /**
+         * Experimental: when cuDNN is not available, use {@link org.deeplearning4j.nn.layers.normalization.CpuBatchNormalizationHelper}
+         * for CNN (rank 4) activations, instead of the standard implementation. The helper computes in double precision
+         * on the heap, hence results differ slightly from the standard implementation for float data; whether it is
+         * faster depends on the layer size and backend (see NormalizationLayerBenchmark in deeplearning4j-benchmarks).
+         * Default: false
+         *
+         * @param cpuNormalizationHelper Whether to use the CPU helper
+         */
+        public Builder cpuNormalizationHelper(boolean cpuNormalizationHelper) {
+            this.cpuNormalizationHelper = cpuNormalizationHelper;
+            return this;
+        }
+
         @Override
         public BatchNormalization build() {
             return new BatchNormalization(this);
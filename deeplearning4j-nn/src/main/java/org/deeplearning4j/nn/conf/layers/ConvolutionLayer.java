@@ -36,6 +36,9 @@ public class ConvolutionLayer extends FeedForwardLayer {
     /** Defaults to "PREFER_FASTEST", but "NO_WORKSPACE" uses less memory. */
     protected AlgoMode cudnnAlgoMode = AlgoMode.PREFER_FASTEST;
 
+    /** If true: use the CPU 1x1/Winograd convolution helper when cuDNN is not available. Defaults to false. */
+    protected boolean cpuConvolutionHelper = false;
+
     /**
     * ConvolutionLayer
     * nIn in the input layer is the number of channels
@@ -57,6 +60,7 @@ public class ConvolutionLayer extends FeedForwardLayer {
             throw new IllegalArgumentException("Padding should include padding for rows and columns (a 2d array)");
         this.padding = builder.padding;
         this.cudnnAlgoMode = builder.cudnnAlgoMode;
+        this.cpuConvolutionHelper = builder.cpuConvolutionHelper;
     }
 
     @Override
@@ -167,7 +171,7 @@ public class ConvolutionLayer extends FeedForwardLayer {
         private int[] stride = new int[] {1,1};
         private int[] padding = new int[] {0, 0};
         private AlgoMode cudnnAlgoMode = AlgoMode.PREFER_FASTEST;
-
+        private boolean cpuConvolutionHelper = false;
 
         public Builder(int[] kernelSize, int[] stride, int[] padding) {
             this.kernelSize = kernelSize;
@@ -233,6 +237,20 @@ public class ConvolutionLayer extends FeedForwardLayer {
             return this;
         }
 
+        /**
+         * Experimental: when cuDNN is not available, use {@link org.deeplearning4j.nn.layers.convolution.CpuConvolutionHelper}
+         * for 1x1 (direct GEMM) and 3x3 stride 1 (Winograd) convolutions, instead of the standard im2col implementation.
+         * Note that Winograd convolution gives slightly different results to im2col (different rounding), and whether
+         * it is faster depends on the layer size and backend: see ConvolutionLayerBenchmark in deeplearning4j-benchmarks.
+         * Defaults to false.
+         *
+         * @param cpuConvolutionHelper Whether to use the CPU convolution helper
+         */
+        public Builder cpuConvolutionHelper(boolean cpuConvolutionHelper){
+            this.cpuConvolutionHelper = cpuConvolutionHelper;
+            return this;
+        }
+
         @Override
         @SuppressWarnings("unchecked")
         public ConvolutionLayer build() {
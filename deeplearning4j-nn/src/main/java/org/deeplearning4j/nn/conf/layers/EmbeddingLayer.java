@@ -27,8 +27,11 @@ import java.util.Map;
 @EqualsAndHashCode(callSuper = true)
 public class EmbeddingLayer extends FeedForwardLayer {
 
+    private boolean sparseGradients = false;
+
     private EmbeddingLayer(Builder builder){
         super(builder);
+        this.sparseGradients = builder.sparseGradients;
     }
 
     @Override
@@ -49,9 +52,28 @@ public class EmbeddingLayer extends FeedForwardLayer {
         return DefaultParamInitializer.getInstance();
     }
 
-    @AllArgsConstructor
+    @AllArgsConstructor @NoArgsConstructor
     public static class Builder extends FeedForwardLayer.Builder<Builder> {
 
+        private boolean sparseGradients = false;
+
+        /**
+         * If true: the weight gradients are treated as row-sparse. Only the rows of the weight matrix for the indices
+         * present in the minibatch are updated; i.e., updater state and regularization for the remaining rows is updated
+         * lazily, when they next appear in a minibatch. This reduces the cost of each update from O(numRows * nOut) to
+         * O(minibatchSize * nOut), which is significant for layers with a large number of rows (vocabulary size).<br>
+         * With the SGD, AdaGrad or no updater (and no l1/l2 regularization), the result is identical to standard (dense)
+         * updates. For updaters with decaying state (Adam, RmsProp, Nesterovs, AdaDelta), the state for a row is decayed
+         * to account for the iterations it was not present in; however, the parameter updates that would have resulted
+         * from that decaying state alone (with no gradient) are not applied. Not supported with custom updaters. Default: false.
+         *
+         * @param sparseGradients Whether to use row-sparse gradients and updates for the weights
+         */
+        public Builder sparseGradients(boolean sparseGradients){
+            this.sparseGradients = sparseGradients;
+            return this;
+        }
+
         @Override
         @SuppressWarnings("unchecked")
         public EmbeddingLayer build(){
@@ -1,6 +1,7 @@
 package org.deeplearning4j.nn.conf.layers;
 
 import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.exception.DL4JInvalidConfigException;
 import org.deeplearning4j.nn.conf.Updater;
 import org.deeplearning4j.nn.conf.distribution.Distribution;
 import org.deeplearning4j.nn.conf.distribution.NormalDistribution;
@@ -120,6 +121,22 @@ public class LayerValidation {
 
                 break;
         }
+
+        if (layer instanceof EmbeddingLayer && ((EmbeddingLayer) layer).isSparseGradients()) {
+            switch (layer.getUpdater()) {
+                case SGD:
+                case NONE:
+                case NESTEROVS:
+                case ADAGRAD:
+                case RMSPROP:
+                case ADAM:
+                case ADADELTA:
+                    break;
+                default:
+                    throw new DL4JInvalidConfigException("Layer \"" + layerName + "\": sparse gradients are not supported "
+                            + "with updater " + layer.getUpdater() + ". Use a different updater, or set sparseGradients(false)");
+            }
+        }
     }
 
     public static void generalValidation(String layerName, Layer layer, boolean useRegularization, boolean useDropConnect,
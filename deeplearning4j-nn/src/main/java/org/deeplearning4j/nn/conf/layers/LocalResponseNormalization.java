@@ -26,6 +26,7 @@ public class LocalResponseNormalization extends Layer {
     protected double k = 2; // constant (e.g. scale)
     protected double beta = 0.75; // decay rate
     protected double alpha = 1e-4; // decay rate
+    protected boolean cpuNormalizationHelper = false;
 
     private LocalResponseNormalization(Builder builder) {
         super(builder);
@@ -33,6 +34,7 @@ public class LocalResponseNormalization extends Layer {
         this.n = builder.n;
         this.alpha = builder.alpha;
         this.beta = builder.beta;
+        this.cpuNormalizationHelper = builder.cpuNormalizationHelper;
     }
 
     @Override
@@ -108,6 +110,7 @@ public class LocalResponseNormalization extends Layer {
         private double n = 5;
         private double alpha = 1e-4;
         private double beta = 0.75;
+        private boolean cpuNormalizationHelper = false;
 
         public Builder(double k, double alpha, double beta) {
             this.k = k;
@@ -158,6 +161,19 @@ public class LocalResponseNormalization extends Layer {
             return this;
         }
 
+        /**
+         * Experimental: when cuDNN is not available, use {@link org.deeplearning4j.nn.layers.normalization.CpuLocalResponseNormalizationHelper}
+         * instead of the standard implementation. The helper computes in double precision on the heap, hence results
+         * differ slightly from the standard implementation for float data; whether it is faster depends on the layer
+         * size and backend (see NormalizationLayerBenchmark in deeplearning4j-benchmarks). Default: false
+         *
+         * @param cpuNormalizationHelper Whether to use the CPU helper
+         */
+        public Builder cpuNormalizationHelper(boolean cpuNormalizationHelper) {
+            this.cpuNormalizationHelper = cpuNormalizationHelper;
+            return this;
+        }
+
         @Override
         public LocalResponseNormalization build() {
             return new LocalResponseNormalization(this);
@@ -0,0 +1,226 @@
+package org.deeplearning4j.nn.gradient;
+
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.api.layers.RecurrentLayer;
+import org.deeplearning4j.nn.api.layers.SparseGradientLayer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.INDArrayIndex;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.util.*;
+
+/**
+ * Helper for gradient accumulation (micro-batching) in MultiLayerNetwork and ComputationGraph: a minibatch is split
+ * into a number of smaller micro-batches (along dimension 0 of the features, labels and masks), and the gradients
+ * for each micro-batch are calculated separately and summed. The updater is then applied once, for the full minibatch.
+ * Thus peak memory use for activations scales with the micro-batch size, not the minibatch size.<br>
+ * The network is responsible for the forward/backward pass for each micro-batch; this class:<br>
+ * - accumulates the flattened gradients and the (minibatch-weighted) score, with regularization added once<br>
+ * - splits and recombines the stored RNN state, when truncated BPTT is used<br>
+ * - merges the gradient rows of {@link SparseGradientLayer}s<br>
+ * <br>
+ * Note that the loss function gradients in DL4J are summed (not averaged) over examples, with the division by minibatch
+ * size done in the updater. Hence the sum of the micro-batch gradients is equal to the full minibatch gradient.
+ * Batch normalization layers will use the statistics of each micro-batch, however.
+ */
+public class MicroBatchAccumulator {
+
+    private final Layer[] layers;
+    private final INDArray flattenedGradients;
+    private final int miniBatchSize;
+    private final int numMicroBatches;
+    private final boolean tbptt;
+
+    private INDArray accumulated;
+    private double scoreSum;
+    private final Map<Integer, Map<String, INDArray>> fullRnnState = new HashMap<>();
+    private final Map<Integer, Map<String, INDArray>> newTbpttState = new HashMap<>();
+    private final Map<Integer, Map<String, Set<Integer>>> sparseRows = new HashMap<>();
+
+    /**
+     * @param layers             Layers of the network
+     * @param flattenedGradients Flattened gradients view array of the network
+     * @param miniBatchSize      Size of the full minibatch
+     * @param numMicroBatches    Number of micro-batches to split the minibatch into. If larger than the minibatch size,
+     *                           micro-batches of size 1 are used
+     * @param tbptt              Whether truncated BPTT is used (in which case RNN state is split and recombined)
+     */
+    public MicroBatchAccumulator(Layer[] layers, INDArray flattenedGradients, int miniBatchSize, int numMicroBatches,
+                                 boolean tbptt) {
+        this.layers = layers;
+        this.flattenedGradients = flattenedGradients;
+        this.miniBatchSize = miniBatchSize;
+        this.numMicroBatches = Math.min(numMicroBatches, miniBatchSize);
+        this.tbptt = tbptt;
+
+        if (tbptt) {
+            for (int i = 0; i < layers.length; i++) {
+                if (layers[i] instanceof RecurrentLayer) {
+                    fullRnnState.put(i, ((RecurrentLayer) layers[i]).rnnGetPreviousState());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Number of micro-batches
+     */
+    public int numMicroBatches() {
+        return numMicroBatches;
+    }
+
+    /**
+     * @return First example (inclusive) of the specified micro-batch
+     */
+    public int start(int microBatch) {
+        return (int) ((long) microBatch * miniBatchSize / numMicroBatches);
+    }
+
+    /**
+     * @return Last example (exclusive) of the specified micro-batch
+     */
+    public int end(int microBatch) {
+        return start(microBatch + 1);
+    }
+
+    /**
+     * Get the specified examples (along dimension 0) of an array
+     *
+     * @param array Array to get the subset of. May be null
+     * @return View of the specified examples, or null if the array is null
+     */
+    public static INDArray getExamples(INDArray array, int start, int end) {
+        if (array == null) return null;
+        INDArrayIndex[] indexes = new INDArrayIndex[array.rank()];
+        indexes[0] = NDArrayIndex.interval(start, end);
+        for (int i = 1; i < indexes.length; i++) {
+            indexes[i] = NDArrayIndex.all();
+        }
+        return array.get(indexes);
+    }
+
+    /**
+     * As per {@link #getExamples(INDArray, int, int)}, for each array. Null arrays (and null elements) are allowed
+     */
+    public static INDArray[] getExamples(INDArray[] arrays, int start, int end) {
+        if (arrays == null) return null;
+        INDArray[] out = new INDArray[arrays.length];
+        for (int i = 0; i < arrays.length; i++) {
+            out[i] = getExamples(arrays[i], start, end);
+        }
+        return out;
+    }
+
+    /**
+     * Call before the forward/backward pass for the specified micro-batch: sets the RNN state (when using TBPTT)
+     */
+    public void beforeMicroBatch(int microBatch) {
+        if (!tbptt) return;
+        int start = start(microBatch);
+        int end = end(microBatch);
+        for (Map.Entry<Integer, Map<String, INDArray>> e : fullRnnState.entrySet()) {
+            Map<String, INDArray> state = new HashMap<>();
+            for (Map.Entry<String, INDArray> s : e.getValue().entrySet()) {
+                state.put(s.getKey(), getExamples(s.getValue(), start, end));
+            }
+            ((RecurrentLayer) layers[e.getKey()]).rnnSetPreviousState(state);
+        }
+    }
+
+    /**
+     * Call after the forward/backward pass for the specified micro-batch, to accumulate the gradients and score
+     *
+     * @param score Score for the micro-batch: average over the micro-batch examples, <i>excluding</i> any L1/L2
+     *              regularization terms (which are added once, in {@link #finish(double)})
+     */
+    public void afterMicroBatch(int microBatch, double score) {
+        int start = start(microBatch);
+        int end = end(microBatch);
+
+        if (accumulated == null) {
+            accumulated = flattenedGradients.dup();
+        } else {
+            accumulated.addi(flattenedGradients);
+        }
+        scoreSum += score * (end - start);
+
+        for (int i = 0; i < layers.length; i++) {
+            if (!(layers[i] instanceof SparseGradientLayer)) continue;
+            SparseGradientLayer l = (SparseGradientLayer) layers[i];
+            for (String param : l.paramTable().keySet()) {
+                if (!l.isRowSparseGradient(param)) continue;
+                Map<String, Set<Integer>> layerRows = sparseRows.get(i);
+                if (layerRows == null) {
+                    layerRows = new HashMap<>();
+                    sparseRows.put(i, layerRows);
+                }
+                Set<Integer> rows = layerRows.get(param);
+                if (rows == null) {
+                    rows = new TreeSet<>();
+                    layerRows.put(param, rows);
+                }
+                for (int r : l.getGradientRows(param)) {
+                    rows.add(r);
+                }
+            }
+        }
+
+        if (tbptt) {
+            for (Integer layerIdx : fullRnnState.keySet()) {
+                Map<String, INDArray> state = ((RecurrentLayer) layers[layerIdx]).rnnGetTBPTTState();
+                Map<String, INDArray> full = newTbpttState.get(layerIdx);
+                if (full == null) {
+                    full = new HashMap<>();
+                    newTbpttState.put(layerIdx, full);
+                }
+                for (Map.Entry<String, INDArray> s : state.entrySet()) {
+                    INDArray arr = full.get(s.getKey());
+                    if (arr == null) {
+                        int[] shape = s.getValue().shape().clone();
+                        shape[0] = miniBatchSize;
+                        arr = Nd4j.create(shape);
+                        full.put(s.getKey(), arr);
+                    }
+                    getExamples(arr, start, end).assign(s.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Call after all micro-batches have been processed: sets the accumulated gradients in the flattened gradients
+     * array, and the full minibatch RNN state (when using TBPTT)
+     *
+     * @param regularization Total L1 + L2 regularization term for the network (as passed to
+     *                       {@link org.deeplearning4j.nn.api.layers.IOutputLayer#computeScore(double, double, boolean)})
+     * @return Score for the full minibatch: the same as the score calculated without micro-batches
+     */
+    public double finish(double regularization) {
+        flattenedGradients.assign(accumulated);
+
+        for (Map.Entry<Integer, Map<String, Set<Integer>>> e : sparseRows.entrySet()) {
+            SparseGradientLayer l = (SparseGradientLayer) layers[e.getKey()];
+            for (Map.Entry<String, Set<Integer>> p : e.getValue().entrySet()) {
+                int[] rows = new int[p.getValue().size()];
+                int j = 0;
+                for (Integer r : p.getValue()) {
+                    rows[j++] = r;
+                }
+                l.setGradientRows(p.getKey(), rows);
+            }
+        }
+
+        if (tbptt) {
+            for (Map.Entry<Integer, Map<String, INDArray>> e : fullRnnState.entrySet()) {
+                RecurrentLayer l = (RecurrentLayer) layers[e.getKey()];
+                l.rnnSetPreviousState(e.getValue());
+                Map<String, INDArray> tbpttState = newTbpttState.get(e.getKey());
+                if (tbpttState != null) l.rnnSetTBPTTState(tbpttState);
+            }
+        }
+
+        //As per the output layers: (sum of example losses + regularization) / minibatch size
+        return (scoreSum + regularization) / miniBatchSize;
+    }
+}
@@ -27,6 +27,8 @@ import org.deeplearning4j.datasets.iterator.AsyncDataSetIterator;
 import org.deeplearning4j.datasets.iterator.AsyncMultiDataSetIterator;
 import org.deeplearning4j.datasets.iterator.impl.SingletonMultiDataSetIterator;
 import org.deeplearning4j.eval.Evaluation;
+import org.deeplearning4j.eval.IEvaluation;
+import org.deeplearning4j.eval.ParallelEvaluation;
 import org.deeplearning4j.nn.api.Layer;
 import org.deeplearning4j.nn.api.MaskState;
 import org.deeplearning4j.nn.api.Model;
@@ -38,19 +40,25 @@ import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.conf.layers.FeedForwardLayer;
 import org.deeplearning4j.nn.gradient.DefaultGradient;
 import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.nn.gradient.MicroBatchAccumulator;
 import org.deeplearning4j.nn.graph.util.ComputationGraphUtil;
 import org.deeplearning4j.nn.graph.vertex.GraphVertex;
 import org.deeplearning4j.nn.graph.vertex.VertexIndices;
 import org.deeplearning4j.nn.graph.vertex.impl.InputVertex;
 import org.deeplearning4j.nn.graph.vertex.impl.LayerVertex;
+import org.deeplearning4j.nn.layers.ActivationLayer;
 import org.deeplearning4j.nn.layers.FrozenLayer;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.params.BatchNormalizationParamInitializer;
 import org.deeplearning4j.nn.updater.graph.ComputationGraphUpdater;
 import org.deeplearning4j.optimize.Solver;
 import org.deeplearning4j.optimize.api.ConvexOptimizer;
 import org.deeplearning4j.optimize.api.IterationListener;
+import org.deeplearning4j.optimize.api.LayerTrainingListener;
 import org.deeplearning4j.optimize.api.TrainingListener;
+import org.deeplearning4j.util.Dropout;
 import org.deeplearning4j.util.ModelSerializer;
+import org.deeplearning4j.util.ParallelLoop;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.api.DataSet;
 import org.nd4j.linalg.dataset.api.MultiDataSet;
@@ -69,6 +77,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 /**
  * A ComputationGraph network is a neural network with arbitrary (directed acyclic graph) connection structure.
@@ -79,6 +88,8 @@ import java.util.*;
 public class ComputationGraph implements Serializable, Model {
 
     private static final Logger log = LoggerFactory.getLogger(ComputationGraph.class);
+    /** Size of the state buffer of the (native) dropout RNG used for activation checkpointing */
+    private static final long CHECKPOINT_RNG_SIZE = 1 << 20;
 
     protected ComputationGraphConfiguration configuration;
     protected boolean initCalled = false;
@@ -103,6 +114,11 @@ public class ComputationGraph implements Serializable, Model {
      * (and hence also backward pass, which is the opposite to this) is conducted in the network.
      */
     protected int[] topologicalOrder;
+    /**
+     * For each vertex (by vertex index): the position in the topological order of the last vertex that uses its
+     * activations as input. Used to release activations as early as possible in {@link #outputInference(INDArray...)}
+     */
+    protected transient int[] activationLastUse;
     /**
      * A list of layers. Each of these layers is present in a GraphVertex, but are here for easy reference.
      * This array also defines the order in which the getLayer(int) method returns layers.
@@ -130,6 +146,44 @@ public class ComputationGraph implements Serializable, Model {
     private Collection<IterationListener> listeners = new ArrayList<>();
     private Collection<TrainingListener> trainingListeners = new ArrayList<>();
 
+    /**
+     * If true: vertices that don't depend on each other are executed concurrently, see {@link #setConcurrentBranchExecution(boolean)}
+     */
+    private boolean concurrentBranchExecution = false;
+    /**
+     * Vertex indices grouped by dependency level: a vertex depends only on vertices from earlier levels.
+     * Within each level, vertices are in topological order
+     */
+    protected transient int[][] dependencyLevels;
+
+    /**
+     * Activation checkpointing: number of segments to split the topological order into, or alternatively the names of
+     * the last vertex in each segment. See {@link #setActivationCheckpointing(int)}
+     */
+    private int checkpointNumSegments = 0;
+    private String[] checkpointVertexNames;
+    /**
+     * Position in the topological order of the last vertex of each checkpointing segment
+     */
+    protected transient int[] checkpointSegmentEnds;
+    /**
+     * Position of each vertex (by vertex index) in the topological order
+     */
+    protected transient int[] topologicalPosition;
+    /**
+     * For each checkpointing segment that is recomputed during backprop: the segment inputs (by vertex index and input
+     * number) and the seed of the dropout RNG used for the forward pass of that segment. Only set between the forward
+     * and backward pass
+     */
+    private transient List<Map<Integer, INDArray[]>> checkpointInputs;
+    private transient long[] checkpointSeeds;
+    /**
+     * Dedicated RNG for dropout in the recomputed checkpointing segments (see {@link Dropout#setRandom}): the global RNG
+     * is neither reseeded nor used for these segments. Seeds for each segment are drawn from checkpointSeedSource
+     */
+    private transient org.nd4j.linalg.api.rng.Random checkpointRandom;
+    private transient Random checkpointSeedSource;
+
 
     public ComputationGraph(ComputationGraphConfiguration configuration) {
         this.configuration = configuration;
@@ -954,6 +1008,61 @@ public class ComputationGraph implements Serializable, Model {
 
     @Override
     public void computeGradientAndScore() {
+        int numMicroBatches = configuration.getNumMicroBatches();
+        if (numMicroBatches > 1 && inputs[0].size(0) > 1) {
+            computeGradientAndScoreMicroBatches(numMicroBatches);
+        } else {
+            computeGradientAndScoreSingleBatch();
+        }
+    }
+
+    /**
+     * Gradient accumulation: calculate the gradients and score for each micro-batch separately, and sum them.
+     * See {@link ComputationGraphConfiguration.GraphBuilder#numMicroBatches(int)}
+     */
+    protected void computeGradientAndScoreMicroBatches(int numMicroBatches) {
+        if (flattenedGradients == null) initGradientsView();
+        INDArray[] fullInputs = inputs;
+        INDArray[] fullLabels = labels;
+        INDArray[] fullFeatureMasks = inputMaskArrays;
+        INDArray[] fullLabelMasks = labelMaskArrays;
+        boolean hasMask = fullFeatureMasks != null || fullLabelMasks != null;
+
+        MicroBatchAccumulator accumulator = new MicroBatchAccumulator(layers, flattenedGradients, fullInputs[0].size(0),
+                numMicroBatches, configuration.getBackpropType() == BackpropType.TruncatedBPTT);
+        for (int i = 0; i < accumulator.numMicroBatches(); i++) {
+            int start = accumulator.start(i);
+            int end = accumulator.end(i);
+            setInputs(MicroBatchAccumulator.getExamples(fullInputs, start, end));
+            setLabels(MicroBatchAccumulator.getExamples(fullLabels, start, end));
+            if (hasMask) {
+                setLayerMaskArrays(MicroBatchAccumulator.getExamples(fullFeatureMasks, start, end),
+                        MicroBatchAccumulator.getExamples(fullLabelMasks, start, end));
+            }
+            accumulator.beforeMicroBatch(i);
+            //L1/L2 regularization is added once for the full minibatch, not once per micro-batch
+            computeGradientAndScoreSingleBatch(false);
+            accumulator.afterMicroBatch(i, score);
+        }
+
+        //Restore the full minibatch: the updater divides by the full minibatch size
+        setInputs(fullInputs);
+        setLabels(fullLabels);
+        if (hasMask) {
+            setLayerMaskArrays(fullFeatureMasks, fullLabelMasks);
+        }
+        score = accumulator.finish(calcL1() + calcL2());
+    }
+
+    protected void computeGradientAndScoreSingleBatch() {
+        computeGradientAndScoreSingleBatch(true);
+    }
+
+    /**
+     * @param includeRegularization If false: the score does not include the L1/L2 regularization terms. The gradients
+     *                              are the same in either case
+     */
+    protected void computeGradientAndScoreSingleBatch(boolean includeRegularization) {
         //Calculate activations (which are stored in each layer, and used in backprop)
         if (configuration.getBackpropType() == BackpropType.TruncatedBPTT) {
             Map<String,INDArray> activations = rnnActivateUsingStoredState(inputs, true, true);
@@ -964,18 +1073,24 @@ public class ComputationGraph implements Serializable, Model {
             }
             calcBackpropGradients(true);
         } else {
-            Map<String,INDArray> activations = feedForward(true, true);
-            if (trainingListeners.size() > 0) {
-                for (TrainingListener tl : trainingListeners) {
-                    tl.onForwardPass(this, activations);
+            try {
+                Map<String, INDArray> activations = (isActivationCheckpointing() ? feedForwardCheckpointed() : feedForward(true, true));
+                if (trainingListeners.size() > 0) {
+                    for (TrainingListener tl : trainingListeners) {
+                        tl.onForwardPass(this, activations);
+                    }
                 }
+                calcBackpropGradients(false);
+            } finally {
+                //Stored segment inputs must not outlive this iteration, even if the forward or backward pass failed
+                checkpointInputs = null;
+                checkpointSeeds = null;
             }
-            calcBackpropGradients(false);
         }
 
         //Score: sum of the scores for the various output layers...
-        double l1 = calcL1();
-        double l2 = calcL2();
+        double l1 = (includeRegularization ? calcL1() : 0.0);
+        double l2 = (includeRegularization ? calcL2() : 0.0);
 
         score = 0.0;
         for (String s : configuration.getNetworkOutputs()) {
@@ -1045,6 +1160,8 @@ public class ComputationGraph implements Serializable, Model {
     }
 
     private Map<String, INDArray> feedForward(boolean train, boolean excludeOutputLayers) {
+        if (concurrentBranchExecution) return feedForwardConcurrent(train, excludeOutputLayers);
+
         Map<String, INDArray> layerActivations = new HashMap<>();
 
         //Do forward pass according to the topological ordering of the network
@@ -1070,7 +1187,9 @@ public class ComputationGraph implements Serializable, Model {
                     // we only need to ensure the input to the output layers is set properly
                     continue;
                 }
+                if (train) fireLayerEvent(current, LayerTrainingListener.Phase.FORWARD, true);
                 INDArray out = current.doForward(train);
+                if (train) fireLayerEvent(current, LayerTrainingListener.Phase.FORWARD, false);
 
                 if (current.hasLayer()) {
                     layerActivations.put(current.getVertexName(), out);
@@ -1134,6 +1253,135 @@ public class ComputationGraph implements Serializable, Model {
         return outputs;
     }
 
+    /**
+     * Return an array of network outputs (predictions) at test time, given the specified network inputs, for
+     * inference only. Unlike {@link #output(boolean, INDArray...)}, intermediate activations are not retained: each
+     * activation is released as soon as the last vertex that uses it (according to the topological order) has done its
+     * forward pass, and network inputs are passed to their consumers without copying. Consequently, peak memory is
+     * determined by the largest set of activations alive at any point in the topological order, rather than by the sum
+     * of all activations in the network.<br>
+     * Note that the layer and vertex inputs are cleared by this method: they are not available after it returns, and
+     * methods that rely on them (such as backprop after a forward pass) can't be used until another forward pass has
+     * been done. Outputs are identical to those of {@link #output(boolean, INDArray...)} at test time.
+     * When concurrent branch execution is enabled, this is equivalent to {@link #output(boolean, INDArray...)} at test
+     * time.
+     *
+     * @param input Inputs to the network
+     * @return Output activations (order: same as defined in network configuration)
+     */
+    public INDArray[] outputInference(INDArray... input) {
+        if (concurrentBranchExecution) return output(false, input);
+        setInputs(input);
+        return outputReleasingActivations();
+    }
+
+    /**
+     * A convenience method that returns a single INDArray, instead of an INDArray[].
+     * Useful for ComputationGraphs that have only a single output.
+     * Otherwise identical to {@link #outputInference(INDArray...)}
+     *
+     * @param input Inputs to the network
+     * @return Output activations array
+     */
+    public INDArray outputSingleInference(INDArray... input) {
+        if (numOutputArrays != 1) {
+            throw new IllegalStateException("Cannot use outputSingleInference with ComputationGraph that does not have exactly 1 output. nOutputs: " + numOutputArrays);
+        }
+        return outputInference(input)[0];
+    }
+
+    /**
+     * Forward pass at test time for the current inputs, releasing activations and vertex/layer inputs as soon as they
+     * are no longer required. See {@link #outputInference(INDArray...)}
+     */
+    private INDArray[] outputReleasingActivations() {
+        int[] lastUse = activationLastUse();
+        INDArray[] activations = new INDArray[vertices.length];
+
+        for (int i = 0; i < topologicalOrder.length; i++) {
+            GraphVertex current = vertices[topologicalOrder[i]];
+            int vIdx = current.getVertexIndex();
+            if (current.isInputVertex()) {
+                activations[vIdx] = inputs[vIdx];
+                continue;
+            }
+
+            VertexIndices[] inputsFrom = current.getInputVertices();
+            for (int j = 0; j < inputsFrom.length; j++) {
+                int inIdx = inputsFrom[j].getVertexIndex();
+                INDArray in = activations[inIdx];
+                if (current.hasLayer() && current.getLayer() instanceof ActivationLayer
+                        && (vertices[inIdx].isInputVertex() || lastUse[inIdx] != i)) {
+                    //ActivationLayer modifies its input in-place at test time: copy if anything else still needs the input
+                    in = in.dup();
+                }
+                current.setInput(j, in);
+            }
+
+            activations[vIdx] = current.doForward(false);
+
+            //This vertex won't be used again in this forward pass: drop references to its inputs
+            current.clear();
+            if (current.hasLayer()) current.getLayer().setInput(null);
+
+            //Release any activations for which this vertex was the last consumer
+            for (VertexIndices v : inputsFrom) {
+                if (lastUse[v.getVertexIndex()] == i) activations[v.getVertexIndex()] = null;
+            }
+            if (lastUse[vIdx] == i) activations[vIdx] = null;
+        }
+
+        INDArray[] outputs = new INDArray[numOutputArrays];
+        int i = 0;
+        for (String s : configuration.getNetworkOutputs()) {
+            outputs[i++] = activations[verticesMap.get(s).getVertexIndex()];
+        }
+        return outputs;
+    }
+
+    /**
+     * Calculate, for each vertex, the position in the topological order of the last vertex that uses the activations of
+     * that vertex as input. Activations of vertices that are not used as input anywhere are marked with their own position;
+     * network outputs are never released, and are marked with Integer.MAX_VALUE
+     *
+     * @return Last use positions, indexed by vertex index
+     */
+    protected int[] activationLastUse() {
+        if (activationLastUse != null) return activationLastUse;
+
+        int[] positionOf = topologicalPositions();
+        int[] lastUse = new int[vertices.length];
+        for (GraphVertex gv : vertices) {
+            int vIdx = gv.getVertexIndex();
+            lastUse[vIdx] = positionOf[vIdx];
+            VertexIndices[] outputsTo = gv.getOutputVertices();
+            if (outputsTo == null) continue;
+            for (VertexIndices v : outputsTo) {
+                lastUse[vIdx] = Math.max(lastUse[vIdx], positionOf[v.getVertexIndex()]);
+            }
+        }
+        for (String s : configuration.getNetworkOutputs()) {
+            lastUse[verticesMap.get(s).getVertexIndex()] = Integer.MAX_VALUE;
+        }
+
+        activationLastUse = lastUse;
+        return lastUse;
+    }
+
+    /**
+     * @return Position of each vertex in the topological order, indexed by vertex index
+     */
+    protected int[] topologicalPositions() {
+        if (topologicalPosition != null) return topologicalPosition;
+
+        int[] positionOf = new int[topologicalOrder.length];
+        for (int i = 0; i < topologicalOrder.length; i++) {
+            positionOf[topologicalOrder[i]] = i;
+        }
+        topologicalPosition = positionOf;
+        return positionOf;
+    }
+
     /**
      * A convenience method that returns a single INDArray, instead of an INDArray[].
      * Useful for ComputationGraphs that have only a single output.
@@ -1177,12 +1425,25 @@ public class ComputationGraph implements Serializable, Model {
      */
     protected void calcBackpropGradients(boolean truncatedBPTT, INDArray... externalEpsilons) {
         if (flattenedGradients == null) initGradientsView();
+        boolean checkpointed = (checkpointInputs != null);
+        if (concurrentBranchExecution && !hasFrozenLayers() && !checkpointed) {
+            calcBackpropGradientsConcurrent(truncatedBPTT, externalEpsilons);
+            return;
+        }
 
         LinkedList<Triple<String, INDArray, Character>> gradients = new LinkedList<>();
 
         //Do backprop according to the reverse of the topological ordering of the network
         boolean[] setVertexEpsilon = new boolean[topologicalOrder.length];   //If true: already set epsilon for this vertex; later epsilons should be *added* to the existing one, not set
+        int segment = (checkpointed ? checkpointSegmentEnds.length - 1 : -1);
         for (int i = topologicalOrder.length - 1; i >= 0; i--) {
+            if (checkpointed && segment > 0 && i == checkpointSegmentEnds[segment - 1]) {
+                //Activation checkpointing: done with the later segment; recompute activations for this one
+                releaseCheckpointSegment(segment, true);
+                segment--;
+                recomputeCheckpointSegment(segment);
+            }
+
             GraphVertex current = vertices[topologicalOrder[i]];
 
             if (current.isInputVertex()) continue;   //No op
@@ -1206,7 +1467,9 @@ public class ComputationGraph implements Serializable, Model {
                 }
             }
 
+            fireLayerEvent(current, LayerTrainingListener.Phase.BACKWARD, true);
             Pair<Gradient, INDArray[]> pair = current.doBackward(truncatedBPTT);
+            fireLayerEvent(current, LayerTrainingListener.Phase.BACKWARD, false);
             INDArray[] epsilons = pair.getSecond();
 
             //Inputs to the current GraphVertex:
@@ -1242,6 +1505,12 @@ public class ComputationGraph implements Serializable, Model {
             }
         }
 
+        if (checkpointed) {
+            releaseCheckpointSegment(segment, true);
+            checkpointInputs = null;
+            checkpointSeeds = null;
+        }
+
         //Now, add the gradients in the order we need them in for flattening (same as params order)
         Gradient gradient = new DefaultGradient(flattenedGradients);
         for (Triple<String, INDArray, Character> t : gradients) {
@@ -1251,6 +1520,485 @@ public class ComputationGraph implements Serializable, Model {
         this.gradient = gradient;
     }
 
+    /**
+     * Notify any {@link LayerTrainingListener}s of the start or end of a phase for the specified vertex
+     */
+    protected void fireLayerEvent(GraphVertex vertex, LayerTrainingListener.Phase phase, boolean start) {
+        if (trainingListeners.isEmpty()) return;
+        for (TrainingListener tl : trainingListeners) {
+            if (!(tl instanceof LayerTrainingListener)) continue;
+            if (start) {
+                ((LayerTrainingListener) tl).onLayerStart(this, vertex.getVertexName(), phase);
+            } else {
+                ((LayerTrainingListener) tl).onLayerEnd(this, vertex.getVertexName(), phase);
+            }
+        }
+    }
+
+    /**
+     * Forward pass at training time with activation checkpointing (see {@link #setActivationCheckpointing(int)}).
+     * For all but the last segment, the inputs to the segment are stored, and all activations internal to the segment
+     * are released once the forward pass for that segment is complete. Output layers are excluded from the forward pass,
+     * as per {@link #feedForward(boolean, boolean)} with excludeOutputLayers = true.
+     *
+     * @return Activations for the layers of the last segment, and segment boundary activations of earlier segments
+     */
+    private Map<String, INDArray> feedForwardCheckpointed() {
+        int[] segmentEnds = checkpointSegmentEnds();
+        int[] positionOf = topologicalPositions();
+        Map<String, INDArray> layerActivations = new HashMap<>();
+
+        if (checkpointRandom == null) {
+            long seed = configuration.getDefaultConfiguration().getSeed();
+            checkpointSeedSource = new Random(seed);
+            checkpointRandom = Nd4j.getRandomFactory().getNewRandomInstance(seed, CHECKPOINT_RNG_SIZE);
+        }
+        checkpointInputs = new ArrayList<>();
+        checkpointSeeds = new long[segmentEnds.length - 1];
+        for (int s = 0; s < segmentEnds.length; s++) {
+            int start = checkpointSegmentStart(s);
+            int end = segmentEnds[s];
+            boolean lastSegment = (s == segmentEnds.length - 1);
+            if (!lastSegment) {
+                //Store the inputs to this segment: i.e., activations of earlier segments, and network inputs
+                Map<Integer, INDArray[]> segmentInputs = new HashMap<>();
+                for (int i = start; i <= end; i++) {
+                    GraphVertex current = vertices[topologicalOrder[i]];
+                    if (current.isInputVertex()) continue;
+                    VertexIndices[] inputsFrom = current.getInputVertices();
+                    INDArray[] in = new INDArray[inputsFrom.length];
+                    boolean any = false;
+                    for (int j = 0; j < inputsFrom.length; j++) {
+                        if (positionOf[inputsFrom[j].getVertexIndex()] < start) {
+                            in[j] = current.getInputs()[j];
+                            any = true;
+                        }
+                    }
+                    if (any) segmentInputs.put(current.getVertexIndex(), in);
+                }
+                checkpointInputs.add(segmentInputs);
+
+                //Use a known seed for the dropout RNG, so that the recomputed activations are identical
+                checkpointSeeds[s] = checkpointSeedSource.nextLong();
+                checkpointRandom.setSeed(checkpointSeeds[s]);
+                Dropout.setRandom(checkpointRandom);
+            }
+
+            try {
+                doForwardSegment(start, end, layerActivations, !lastSegment);
+            } finally {
+                Dropout.setRandom(null);
+            }
+
+            if (!lastSegment) releaseCheckpointSegment(s, false);
+        }
+
+        return layerActivations;
+    }
+
+    /**
+     * Recompute the activations for the specified checkpointing segment, at training time, from the stored segment inputs
+     */
+    private void recomputeCheckpointSegment(int segment) {
+        int start = checkpointSegmentStart(segment);
+        int end = checkpointSegmentEnds[segment];
+
+        for (Map.Entry<Integer, INDArray[]> entry : checkpointInputs.get(segment).entrySet()) {
+            INDArray[] in = entry.getValue();
+            for (int j = 0; j < in.length; j++) {
+                if (in[j] != null) vertices[entry.getKey()].setInput(j, in[j]);
+            }
+        }
+
+        //Global mean/variance for batch norm may be updated during the forward pass (when using cuDNN, for example)
+        //These should be updated only once: i.e., not by the recomputation
+        List<Pair<INDArray, INDArray>> state = new ArrayList<>();
+        for (int i = start; i <= end; i++) {
+            GraphVertex current = vertices[topologicalOrder[i]];
+            if (current.hasLayer() && current.getLayer() instanceof org.deeplearning4j.nn.layers.normalization.BatchNormalization) {
+                Layer l = current.getLayer();
+                for (String p : new String[]{BatchNormalizationParamInitializer.GLOBAL_MEAN, BatchNormalizationParamInitializer.GLOBAL_VAR}) {
+                    INDArray arr = l.getParam(p);
+                    state.add(new Pair<>(arr, arr.dup()));
+                }
+            }
+        }
+
+        checkpointRandom.setSeed(checkpointSeeds[segment]);
+        Dropout.setRandom(checkpointRandom);
+        try {
+            doForwardSegment(start, end, null, false);
+        } finally {
+            Dropout.setRandom(null);
+        }
+
+        for (Pair<INDArray, INDArray> p : state) {
+            p.getFirst().assign(p.getSecond());
+        }
+    }
+
+    /**
+     * Do the forward pass (at training time) for the vertices at positions start to end (inclusive) in the topological
+     * order. Output layers are skipped.
+     *
+     * @param layerActivations If not null: the layer activations are added to this map
+     * @param boundaryOnly     If true: only activations used after this segment are added to the layer activations
+     *                         map, and only vertices within the segment have their inputs set
+     */
+    private void doForwardSegment(int start, int end, Map<String, INDArray> layerActivations, boolean boundaryOnly) {
+        int[] positionOf = topologicalPositions();
+        int[] lastUse = activationLastUse();
+        boolean recompute = (layerActivations == null);
+        for (int i = start; i <= end; i++) {
+            GraphVertex current = vertices[topologicalOrder[i]];
+            int vIdx = current.getVertexIndex();
+            INDArray out;
+            if (current.isInputVertex()) {
+                out = inputs[vIdx];
+            } else if (current.isOutputVertex() && current.hasLayer() && current.getLayer() instanceof IOutputLayer) {
+                continue;
+            } else {
+                fireLayerEvent(current, LayerTrainingListener.Phase.FORWARD, true);
+                out = current.doForward(true);
+                fireLayerEvent(current, LayerTrainingListener.Phase.FORWARD, false);
+            }
+
+            if (layerActivations != null && (current.isInputVertex() || current.hasLayer())
+                    && (!boundaryOnly || lastUse[vIdx] > end)) {
+                layerActivations.put(current.getVertexName(), out);
+            }
+
+            VertexIndices[] outputsTo = current.getOutputVertices();
+            if (outputsTo == null) continue;
+            for (VertexIndices v : outputsTo) {
+                int outIdx = v.getVertexIndex();
+                //When recomputing: vertices in later segments already have their inputs set
+                if (recompute && positionOf[outIdx] > end) continue;
+                vertices[outIdx].setInput(v.getVertexEdgeNumber(), current.isInputVertex() ? out.dup() : out);
+            }
+        }
+    }
+
+    /**
+     * Release the activations stored in the vertices/layers of the specified checkpointing segment
+     *
+     * @param keepOutputLayerInputs If true: don't clear the input of output layers (needed for calculating the score)
+     */
+    private void releaseCheckpointSegment(int segment, boolean keepOutputLayerInputs) {
+        for (int i = checkpointSegmentStart(segment); i <= checkpointSegmentEnds[segment]; i++) {
+            GraphVertex current = vertices[topologicalOrder[i]];
+            if (current.isInputVertex()) continue;
+            if (keepOutputLayerInputs && current.hasLayer() && current.getLayer() instanceof IOutputLayer) continue;
+            current.clear();
+            if (current.hasLayer()) current.getLayer().setInput(null);
+        }
+    }
+
+    private int checkpointSegmentStart(int segment) {
+        return (segment == 0 ? 0 : checkpointSegmentEnds[segment - 1] + 1);
+    }
+
+    /**
+     * @return Position in the topological order of the last vertex of each checkpointing segment
+     */
+    protected int[] checkpointSegmentEnds() {
+        if (checkpointSegmentEnds != null) return checkpointSegmentEnds;
+
+        int n = topologicalOrder.length;
+        int[] ends;
+        if (checkpointVertexNames != null) {
+            int[] positionOf = topologicalPositions();
+            TreeSet<Integer> set = new TreeSet<>();
+            for (String s : checkpointVertexNames) {
+                if (!verticesMap.containsKey(s))
+                    throw new IllegalStateException("Invalid activation checkpoint: no vertex with name \"" + s + "\" exists");
+                set.add(positionOf[verticesMap.get(s).getVertexIndex()]);
+            }
+            set.add(n - 1);
+            ends = new int[set.size()];
+            int i = 0;
+            for (Integer pos : set) ends[i++] = pos;
+        } else {
+            int numSegments = Math.min(checkpointNumSegments, n);
+            ends = new int[numSegments];
+            for (int i = 0; i < numSegments; i++) {
+                ends[i] = (int) ((long) (i + 1) * n / numSegments) - 1;
+            }
+        }
+        checkpointSegmentEnds = ends;
+        return ends;
+    }
+
+    /**
+     * Enable or disable activation checkpointing (recomputation of activations during backprop), splitting the
+     * topological order of the graph into the specified number of (approximately equal sized) segments.<br>
+     * With activation checkpointing, only the activations at the boundaries of each segment (i.e., the inputs to each
+     * segment) are retained during the forward pass at training time. During backprop, the forward pass for each segment
+     * is recomputed from the stored segment inputs just before the gradients for that segment are calculated. The
+     * activations for the last segment are always retained.
+     * Peak memory for activations is thus (approximately) reduced from O(n) to O(n/s + s) for n vertices and s segments,
+     * at the cost of one additional forward pass (except for the last segment). A number of segments of about sqrt(n)
+     * minimizes the memory use.<br>
+     * Dropout in the recomputed segments uses a dedicated RNG (seeded from the configuration seed), reseeded identically
+     * for the original and the recomputed forward pass, hence dropout masks are identical. The global RNG
+     * ({@link Nd4j#getRandom()}) is not reseeded.
+     * Note that activation checkpointing is not used with truncated BPTT; when enabled, backprop is not executed
+     * concurrently (see {@link #setConcurrentBranchExecution(boolean)})
+     *
+     * @param numSegments Number of segments. 0 or 1: checkpointing disabled (default)
+     */
+    public void setActivationCheckpointing(int numSegments) {
+        if (numSegments < 0) throw new IllegalArgumentException("Number of segments must be >= 0: got " + numSegments);
+        this.checkpointNumSegments = numSegments;
+        this.checkpointVertexNames = null;
+        this.checkpointSegmentEnds = null;
+    }
+
+    /**
+     * Enable activation checkpointing (see {@link #setActivationCheckpointing(int)}), with segment boundaries
+     * specified by vertex name: each of the specified vertices is the last vertex (in topological order) of a segment.
+     * For example, for a ResNet-style architecture, the outputs of each residual block are good checkpoints.
+     *
+     * @param vertexNames Names of the vertices at the end of each segment. Null or empty: checkpointing disabled
+     */
+    public void setActivationCheckpoints(String... vertexNames) {
+        this.checkpointVertexNames = (vertexNames == null || vertexNames.length == 0 ? null : vertexNames);
+        this.checkpointNumSegments = 0;
+        this.checkpointSegmentEnds = null;
+    }
+
+    /**
+     * @return Whether activation checkpointing is enabled
+     * @see #setActivationCheckpointing(int)
+     */
+    public boolean isActivationCheckpointing() {
+        return checkpointVertexNames != null || checkpointNumSegments > 1;
+    }
+
+    /**
+     * Enable or disable concurrent execution of independent branches of the graph.<br>
+     * When enabled, vertices are grouped into dependency levels (a vertex depends only on vertices in earlier levels),
+     * and all vertices in the same level are executed concurrently on the shared {@link ParallelLoop} thread pool, for
+     * both the forward pass and backprop. Results are combined in topological order, hence are identical to those of sequential execution
+     * for deterministic layers. Layers that draw from the random number generator during training (dropout, dropconnect,
+     * variational layers etc) do so from the pool threads, in a non-deterministic order: their results are not
+     * reproducible, and will differ from sequential execution with the same seed.
+     * This is mainly useful for graphs with multiple parallel branches (such as Inception-style towers feeding a
+     * MergeVertex, or multi-input graphs), where each branch does relatively little work.<br>
+     * {@link LayerTrainingListener}s receive the same events as for sequential execution, but events for vertices in
+     * the same level may be delivered concurrently, from different threads (the start and end events of any one
+     * vertex and phase are delivered on the same thread).<br>
+     * Note that when enabled, {@link #outputInference(INDArray...)} uses the standard forward pass, hence
+     * intermediate activations are retained until the forward pass has completed.
+     *
+     * @param concurrentBranchExecution If true: execute independent vertices concurrently. Default: false
+     */
+    public void setConcurrentBranchExecution(boolean concurrentBranchExecution) {
+        this.concurrentBranchExecution = concurrentBranchExecution;
+    }
+
+    /**
+     * @return Whether independent branches of the graph are executed concurrently
+     * @see #setConcurrentBranchExecution(boolean)
+     */
+    public boolean isConcurrentBranchExecution() {
+        return concurrentBranchExecution;
+    }
+
+    /**
+     * Group the vertices of the graph by dependency level: network inputs are at level 0, and every other vertex is one
+     * level after the latest of its inputs. Hence vertices in the same level are independent of each other.
+     *
+     * @return Vertex indices for each level. Within each level, vertices are in topological order
+     */
+    protected int[][] dependencyLevels() {
+        if (dependencyLevels != null) return dependencyLevels;
+
+        int[] levelOf = new int[vertices.length];
+        int nLevels = 0;
+        for (int i = 0; i < topologicalOrder.length; i++) {
+            GraphVertex current = vertices[topologicalOrder[i]];
+            int level = 0;
+            VertexIndices[] inputsFrom = current.getInputVertices();
+            if (!current.isInputVertex() && inputsFrom != null) {
+                for (VertexIndices v : inputsFrom) {
+                    level = Math.max(level, levelOf[v.getVertexIndex()] + 1);
+                }
+            }
+            levelOf[current.getVertexIndex()] = level;
+            nLevels = Math.max(nLevels, level + 1);
+        }
+
+        List<List<Integer>> byLevel = new ArrayList<>(nLevels);
+        for (int i = 0; i < nLevels; i++) byLevel.add(new ArrayList<Integer>());
+        for (int i = 0; i < topologicalOrder.length; i++) {
+            byLevel.get(levelOf[topologicalOrder[i]]).add(topologicalOrder[i]);
+        }
+
+        int[][] levels = new int[nLevels][0];
+        for (int i = 0; i < nLevels; i++) {
+            List<Integer> list = byLevel.get(i);
+            levels[i] = new int[list.size()];
+            for (int j = 0; j < levels[i].length; j++) levels[i][j] = list.get(j);
+        }
+
+        dependencyLevels = levels;
+        return levels;
+    }
+
+    private boolean hasFrozenLayers() {
+        for (Layer l : layers) {
+            if (l instanceof FrozenLayer) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Execute the given tasks on the shared {@link ParallelLoop} pool: concurrently if there is more than one of them,
+     * in the calling thread otherwise. Results are returned in the same order as the tasks
+     */
+    private static <T> List<T> executeAll(List<Callable<T>> tasks) {
+        return ParallelLoop.invokeAll(tasks, tasks.size());
+    }
+
+    /**
+     * Forward pass equivalent to {@link #feedForward(boolean, boolean)}, but with the vertices in each dependency level
+     * executed concurrently. Activations are passed on to the next vertices sequentially, in topological order.
+     */
+    private Map<String, INDArray> feedForwardConcurrent(final boolean train, boolean excludeOutputLayers) {
+        Map<String, INDArray> layerActivations = new HashMap<>();
+
+        for (int[] level : dependencyLevels()) {
+            List<GraphVertex> toExecute = new ArrayList<>(level.length);
+            List<Callable<INDArray>> tasks = new ArrayList<>(level.length);
+            for (int vIdx : level) {
+                final GraphVertex current = vertices[vIdx];
+                if (current.isInputVertex()) {
+                    INDArray input = inputs[current.getVertexIndex()];
+                    layerActivations.put(current.getVertexName(), input);
+
+                    for (VertexIndices v : current.getOutputVertices()) {
+                        vertices[v.getVertexIndex()].setInput(v.getVertexEdgeNumber(), input.dup());
+                    }
+                    continue;
+                }
+                if (excludeOutputLayers && current.isOutputVertex() && current.hasLayer() && current.getLayer() instanceof IOutputLayer) {
+                    continue;
+                }
+
+                toExecute.add(current);
+                tasks.add(new Callable<INDArray>() {
+                    @Override
+                    public INDArray call() {
+                        if (train) fireLayerEvent(current, LayerTrainingListener.Phase.FORWARD, true);
+                        INDArray out = current.doForward(train);
+                        if (train) fireLayerEvent(current, LayerTrainingListener.Phase.FORWARD, false);
+                        return out;
+                    }
+                });
+            }
+            if (tasks.isEmpty()) continue;
+
+            List<INDArray> results = executeAll(tasks);
+            for (int i = 0; i < results.size(); i++) {
+                GraphVertex current = toExecute.get(i);
+                INDArray out = results.get(i);
+                if (current.hasLayer()) {
+                    layerActivations.put(current.getVertexName(), out);
+                }
+
+                VertexIndices[] outputsTo = current.getOutputVertices();
+                if (outputsTo != null) {
+                    for (VertexIndices v : outputsTo) {
+                        vertices[v.getVertexIndex()].setInput(v.getVertexEdgeNumber(), out);
+                    }
+                }
+            }
+        }
+
+        return layerActivations;
+    }
+
+    /**
+     * Backprop equivalent to {@link #calcBackpropGradients(boolean, INDArray...)}, but with the vertices in each
+     * dependency level executed concurrently (starting from the last level). Epsilons and gradients are combined
+     * sequentially in a fixed order, so results are deterministic (given deterministic forward pass activations).
+     */
+    private void calcBackpropGradientsConcurrent(final boolean truncatedBPTT, INDArray... externalEpsilons) {
+        Map<Integer, Gradient> vertexGradients = new HashMap<>();
+
+        boolean[] setVertexEpsilon = new boolean[topologicalOrder.length];
+        int[][] levels = dependencyLevels();
+        for (int l = levels.length - 1; l >= 0; l--) {
+            List<GraphVertex> toExecute = new ArrayList<>(levels[l].length);
+            List<Callable<Pair<Gradient, INDArray[]>>> tasks = new ArrayList<>(levels[l].length);
+            //Reverse topological order within the level, as per sequential backprop
+            for (int k = levels[l].length - 1; k >= 0; k--) {
+                final GraphVertex current = vertices[levels[l][k]];
+                if (current.isInputVertex()) continue;
+
+                if (current.isOutputVertex()) {
+                    int thisOutputNumber = configuration.getNetworkOutputs().indexOf(current.getVertexName());
+                    if (current.getLayer() instanceof IOutputLayer) {
+                        ((IOutputLayer) current.getLayer()).setLabels(labels[thisOutputNumber]);
+                    } else {
+                        current.setEpsilon(externalEpsilons[thisOutputNumber]);
+                        setVertexEpsilon[current.getVertexIndex()] = true;
+                    }
+                }
+
+                toExecute.add(current);
+                tasks.add(new Callable<Pair<Gradient, INDArray[]>>() {
+                    @Override
+                    public Pair<Gradient, INDArray[]> call() {
+                        fireLayerEvent(current, LayerTrainingListener.Phase.BACKWARD, true);
+                        Pair<Gradient, INDArray[]> pair = current.doBackward(truncatedBPTT);
+                        fireLayerEvent(current, LayerTrainingListener.Phase.BACKWARD, false);
+                        return pair;
+                    }
+                });
+            }
+            if (tasks.isEmpty()) continue;
+
+            List<Pair<Gradient, INDArray[]>> results = executeAll(tasks);
+            for (int i = 0; i < results.size(); i++) {
+                GraphVertex current = toExecute.get(i);
+                Pair<Gradient, INDArray[]> pair = results.get(i);
+                INDArray[] epsilons = pair.getSecond();
+
+                VertexIndices[] inputVertices = current.getInputVertices();
+                if (inputVertices != null) {
+                    int j = 0;
+                    for (VertexIndices v : inputVertices) {
+                        GraphVertex gv = vertices[v.getVertexIndex()];
+                        if (setVertexEpsilon[gv.getVertexIndex()]) {
+                            gv.setEpsilon(gv.getEpsilon().add(epsilons[j++]));
+                        } else {
+                            gv.setEpsilon(epsilons[j++]);
+                        }
+                        setVertexEpsilon[gv.getVertexIndex()] = true;
+                    }
+                }
+
+                if (pair.getFirst() != null) vertexGradients.put(current.getVertexIndex(), pair.getFirst());
+            }
+        }
+
+        //Add the gradients in topological order (same as params order), as per sequential backprop
+        Gradient gradient = new DefaultGradient(flattenedGradients);
+        for (int vIdx : topologicalOrder) {
+            Gradient g = vertexGradients.get(vIdx);
+            if (g == null) continue;
+            String vertexName = vertices[vIdx].getVertexName();
+            for (Map.Entry<String, INDArray> entry : g.gradientForVariable().entrySet()) {
+                String origName = entry.getKey();
+                gradient.setGradientFor(vertexName + "_" + origName, entry.getValue(), g.flatteningOrderForVariable(origName));
+            }
+        }
+
+        this.gradient = gradient;
+    }
+
     @Override
     public ComputationGraph clone() {
         ComputationGraph cg = new ComputationGraph(configuration.clone());
@@ -1261,6 +2009,7 @@ public class ComputationGraph implements Serializable, Model {
             INDArray updaterState = u.getStateViewArray();
             if (updaterState != null) {
                 cg.getUpdater().setStateViewArray(updaterState.dup());
+                cg.getUpdater().copyRowSparseStateFrom(u);
             }
         }
         cg.listeners = this.listeners;
@@ -1402,6 +2151,16 @@ public class ComputationGraph implements Serializable, Model {
         return Nd4j.toFlattened('f', list);
     }
 
+    /**
+     * Returns the flattened gradients array for the network: the backprop gradients for all layers are views of this
+     * array, in the same order as the parameters in {@link #params()} (i.e., topological order)
+     *
+     * @return the flattened gradients, or null if the gradients view has not yet been initialized
+     */
+    public INDArray getFlattenedGradients() {
+        return flattenedGradients;
+    }
+
     /**
      * Sets the input and labels and returns a score for the prediction with respect to the true labels<br>
      * This is equivalent to {@link #score(DataSet, boolean)} with training==true.<br>
@@ -2088,6 +2847,7 @@ public class ComputationGraph implements Serializable, Model {
 
             } else {
                 INDArray out;
+                if (training) fireLayerEvent(current, LayerTrainingListener.Phase.FORWARD, true);
                 if (current.hasLayer()) {
                     Layer l = current.getLayer();
                     if (l instanceof RecurrentLayer) {
@@ -2103,6 +2863,7 @@ public class ComputationGraph implements Serializable, Model {
                 } else {
                     out = current.doForward(training);
                 }
+                if (training) fireLayerEvent(current, LayerTrainingListener.Phase.FORWARD, false);
 
                 //Now, set the inputs for the next vertices:
                 VertexIndices[] outputsTo = current.getOutputVertices();
@@ -2267,21 +3028,105 @@ public class ComputationGraph implements Serializable, Model {
             labelsList = iterator.getLabels();
 
         Evaluation e = new Evaluation(labelsList, topN);
-        while(iterator.hasNext()){
-            org.nd4j.linalg.dataset.DataSet next = iterator.next();
+        doEvaluation(iterator, e);
 
-            if (next.getFeatureMatrix() == null || next.getLabels() == null)
-                break;
+        return e;
+    }
 
-            INDArray features = next.getFeatures();
-            INDArray labels = next.getLabels();
+    /**
+     * Evaluate the network (for classification) on the provided data set in parallel, using the specified number of
+     * model replicas. See {@link #doEvaluation(DataSetIterator, IEvaluation[])}
+     *
+     * @param iterator   Iterator (data) to evaluate on
+     * @param labelsList List of labels. May be null.
+     * @param topN       N value for top N accuracy evaluation
+     * @param numWorkers Number of workers (model replicas) to evaluate with
+     * @return Evaluation object, summarizing the results of the evaluation on the provided DataSetIterator
+     */
+    public Evaluation evaluate(DataSetIterator iterator, List<String> labelsList, int topN, int numWorkers) {
+        if(layers == null || !(getOutputLayer(0) instanceof IOutputLayer)){
+            throw new IllegalStateException("Cannot evaluate network with no output layer");
+        }
+        if(numWorkers < 1){
+            throw new IllegalArgumentException("Number of workers must be at least 1 (got: " + numWorkers + ")");
+        }
+        if (labelsList == null)
+            labelsList = iterator.getLabels();
 
-            INDArray[] out;
-            out = output(false, features);
-            if(labels.rank() == 3 ) e.evalTimeSeries(labels,out[0]);
-            else e.eval(labels,out[0]);
+        Evaluation[] evaluations = new Evaluation[numWorkers];
+        for( int i=0; i<numWorkers; i++ ){
+            evaluations[i] = new Evaluation(labelsList, topN);
         }
-        return e;
+        doEvaluation(iterator, evaluations);
+
+        return evaluations[0];
+    }
+
+    /**
+     * Perform evaluation on the first output of the network, using an arbitrary IEvaluation instance.
+     *
+     * @param iterator   data to evaluate on
+     * @param evaluation IEvaluation instance to perform evaluation with
+     */
+    public void doEvaluation(DataSetIterator iterator, IEvaluation evaluation){
+        doEvaluation(iterator, new IEvaluation[]{evaluation});
+    }
+
+    /**
+     * Perform evaluation on the first output of the network in parallel, using one network replica (and one
+     * IEvaluation instance) per worker. The workers share the iterator, and the results of all workers are merged
+     * into the first IEvaluation instance once the iterator is exhausted.<br>
+     * The first worker uses this network; a copy of the network (parameters etc) is created for each other worker.
+     *
+     * @param iterator    data to evaluate on
+     * @param evaluations IEvaluation instances to perform evaluation with: one for each worker. Should be empty (i.e.,
+     *                    not have been used for evaluation before), except for the first one
+     */
+    public void doEvaluation(DataSetIterator iterator, IEvaluation[] evaluations){
+        if(evaluations == null || evaluations.length == 0){
+            throw new IllegalArgumentException("At least one IEvaluation instance is required");
+        }
+        if(!iterator.hasNext() && iterator.resetSupported()){
+            iterator.reset();
+        }
+
+        if(evaluations.length == 1){
+            while(iterator.hasNext()){
+                org.nd4j.linalg.dataset.DataSet next = iterator.next();
+
+                if (next.getFeatureMatrix() == null || next.getLabels() == null)
+                    break;
+
+                evaluateMinibatch(next, evaluations[0]);
+            }
+            return;
+        }
+
+        List<ParallelEvaluation.MinibatchEvaluator> workers = new ArrayList<>(evaluations.length);
+        for( int i=0; i<evaluations.length; i++ ){
+            final ComputationGraph replica = (i == 0 ? this : clone());
+            final IEvaluation evaluation = evaluations[i];
+            workers.add(new ParallelEvaluation.MinibatchEvaluator() {
+                @Override
+                public void evaluate(org.nd4j.linalg.dataset.DataSet minibatch) {
+                    replica.evaluateMinibatch(minibatch, evaluation);
+                }
+            });
+        }
+        ParallelEvaluation.run(iterator, workers);
+
+        for( int i=1; i<evaluations.length; i++ ){
+            evaluations[0].merge(evaluations[i]);
+        }
+    }
+
+    private void evaluateMinibatch(org.nd4j.linalg.dataset.DataSet next, IEvaluation evaluation){
+        INDArray features = next.getFeatures();
+        INDArray labels = next.getLabels();
+
+        INDArray[] out = outputInference(features);
+        if(labels.rank() == 3 ) evaluation.evalTimeSeries(labels,out[0]);
+        else evaluation.eval(labels,out[0]);
     }
 
     /**
@@ -63,6 +63,7 @@ public abstract class BaseLayer<LayerConfT extends org.deeplearning4j.nn.conf.la
     protected INDArray maskArray;
     protected MaskState maskState;
     protected Solver solver;
+    protected transient LayerWorkspace workspace;
 
     public BaseLayer(NeuralNetConfiguration conf) {
         this.conf = conf;
@@ -165,11 +166,38 @@ public abstract class BaseLayer<LayerConfT extends org.deeplearning4j.nn.conf.la
         ret.gradientForVariable().put(DefaultParamInitializer.WEIGHT_KEY, weightGrad);
         ret.gradientForVariable().put(DefaultParamInitializer.BIAS_KEY, biasGrad);
         
-        INDArray epsilonNext = params.get(DefaultParamInitializer.WEIGHT_KEY).mmul(delta.transpose()).transpose();
+        INDArray epsilonNext;
+        if(workspace != null){
+            //epsilonNext = delta * W^T, calculated into a reused array
+            INDArray W = params.get(DefaultParamInitializer.WEIGHT_KEY);
+            epsilonNext = workspace.get("epsilonNext", 'f', delta.size(0), W.size(0));
+            Nd4j.gemm(delta, W, epsilonNext, false, true, 1.0, 0.0);
+        } else {
+            epsilonNext = params.get(DefaultParamInitializer.WEIGHT_KEY).mmul(delta.transpose()).transpose();
+        }
 
         return new Pair<>(ret,epsilonNext);
     }
 
+    /**
+     * Get the workspace used by this layer for reusable work arrays (im2col buffers, epsilons, etc), if any
+     *
+     * @return Workspace for this layer, or null if workspaces are not used (i.e., all arrays are allocated as required)
+     */
+    public LayerWorkspace getWorkspace() {
+        return workspace;
+    }
+
+    /**
+     * Set the workspace to use for reusable work arrays. Usually set via
+     * {@link org.deeplearning4j.nn.multilayer.MultiLayerNetwork#setLayerWorkspacesEnabled(boolean)}
+     *
+     * @param workspace Workspace to use. May be null: in which case, all work arrays are allocated as required
+     */
+    public void setWorkspace(LayerWorkspace workspace) {
+        this.workspace = workspace;
+    }
+
     public void fit() {
         fit(this.input);
     }
@@ -0,0 +1,85 @@
+package org.deeplearning4j.nn.layers;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A set of reusable work arrays for a single layer.<br>
+ * During training, the shapes of the temporary arrays a layer needs (im2col buffers, epsilons, LSTM gate activations, etc)
+ * are usually the same from one iteration to the next. Instead of allocating these arrays every iteration, a layer can
+ * borrow them from its workspace: arrays are allocated on first use, and reused as long as the requested shape and order
+ * don't change. If a different shape is requested (for example, a smaller final minibatch) the array for that key is
+ * replaced.<br>
+ * <br>
+ * <b>Note</b>: the contents of a workspace array are only valid until the next time the same key is requested. Thus
+ * arrays that are returned to the user (activations, output) should never be allocated from a workspace. Arrays passed
+ * from one layer to another during the same iteration (such as epsilons during backprop) are fine.<br>
+ * Workspaces are not thread safe, and should not be shared between layers.
+ */
+public class LayerWorkspace {
+
+    private final Map<String, INDArray> arrays = new HashMap<>();
+
+    /**
+     * Get the work array for the given key, with the specified order and shape. Contents of the returned array are
+     * undefined: it may contain data from the last time it was used.
+     *
+     * @param key   Key for the array. Must be unique within the layer, for arrays that are used at the same time
+     * @param order Order of the array ('c' or 'f')
+     * @param shape Shape of the array
+     */
+    public INDArray get(String key, char order, int... shape) {
+        INDArray arr = arrays.get(key);
+        if (arr == null || arr.ordering() != order || !Arrays.equals(arr.shape(), shape)) {
+            //First use, or shape changed (different minibatch size, sequence length, etc) -> (re)allocate
+            arr = Nd4j.createUninitialized(shape, order);
+            arrays.put(key, arr);
+        }
+        return arr;
+    }
+
+    /**
+     * As per {@link #get(String, char, int...)}, but the returned array is filled with zeros
+     */
+    public INDArray getZeros(String key, char order, int... shape) {
+        return get(key, order, shape).assign(0);
+    }
+
+    /**
+     * Remove all arrays from this workspace
+     */
+    public void invalidate() {
+        arrays.clear();
+    }
+
+    /**
+     * @return Number of arrays currently held by this workspace
+     */
+    public int size() {
+        return arrays.size();
+    }
+
+    /**
+     * Get an uninitialized array from the workspace, or allocate a new one if the workspace is null.
+     *
+     * @see Nd4j#createUninitialized(int[], char)
+     */
+    public static INDArray createUninitialized(LayerWorkspace workspace, String key, int[] shape, char order) {
+        if (workspace == null) return Nd4j.createUninitialized(shape, order);
+        return workspace.get(key, order, shape);
+    }
+
+    /**
+     * Get an array of zeros from the workspace, or allocate a new one if the workspace is null.
+     *
+     * @see Nd4j#create(int[], char)
+     */
+    public static INDArray create(LayerWorkspace workspace, String key, int[] shape, char order) {
+        if (workspace == null) return Nd4j.create(shape, order);
+        return workspace.getZeros(key, order, shape);
+    }
+}
@@ -0,0 +1,413 @@
+package org.deeplearning4j.nn.layers.convolution;
+
+import org.deeplearning4j.berkeley.Pair;
+import org.deeplearning4j.nn.conf.ConvolutionMode;
+import org.deeplearning4j.nn.conf.layers.ConvolutionLayer.AlgoMode;
+import org.deeplearning4j.nn.gradient.DefaultGradient;
+import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.nn.params.ConvolutionParamInitializer;
+import org.nd4j.linalg.activations.IActivation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.shape.Shape;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+/**
+ * Convolution helper for when cuDNN is not available. Selects an algorithm for each layer based on its configuration:<br>
+ * - 1x1 kernels with stride 1 and no padding: a single GEMM over the input, with no im2col<br>
+ * - 3x3 kernels with stride 1: Winograd F(2x2,3x3). Each 2x2 output tile is computed from a 4x4 input tile using
+ * 16 elementwise products in the transformed domain instead of 36, batched as 16 GEMMs over all tiles. The temporary
+ * memory required is 4x the input size, compared to 9x for im2col.<br>
+ * - All other configurations: null is returned, and the layer uses its standard im2col + GEMM implementation.<br>
+ * Both the forward pass and backprop are implemented for each algorithm.<br>
+ * Not used by default: see {@link org.deeplearning4j.nn.conf.layers.ConvolutionLayer.Builder#cpuConvolutionHelper(boolean)}
+ */
+public class CpuConvolutionHelper implements ConvolutionHelper {
+
+    public enum Algorithm {IM2COL, GEMM_1X1, WINOGRAD_2X2_3X3}
+
+    //Winograd F(2x2,3x3) transforms: Y = A^T [ (G g G^T) .* (B^T d B) ] A
+    private static final double[][] BT = {{1, 0, -1, 0}, {0, 1, 1, 0}, {0, -1, 1, 0}, {0, 1, 0, -1}};
+    private static final double[][] B = transpose(BT);
+    private static final double[][] G = {{1, 0, 0}, {0.5, 0.5, 0.5}, {0.5, -0.5, 0.5}, {0, 0, 1}};
+    private static final double[][] GT = transpose(G);
+    private static final double[][] AT = {{1, 1, 1, 0}, {0, 1, -1, -1}};
+    private static final double[][] A = transpose(AT);
+
+    //Winograd filter transform from the last forward pass, reused by the following backprop. As for other state cached
+    //by layers between the forward pass and backprop, the parameters are assumed not to change in between
+    private INDArray[][] cachedFilterTransform;
+    private INDArray cachedFilterWeights;
+
+    /**
+     * Select the convolution algorithm for the given layer configuration
+     *
+     * @param kernel  Kernel size
+     * @param strides Strides
+     * @param pad     Padding (top/left padding, for ConvolutionMode.Same)
+     * @return Algorithm used for the given configuration
+     */
+    public static Algorithm selectAlgorithm(int[] kernel, int[] strides, int[] pad) {
+        if (strides[0] != 1 || strides[1] != 1) {
+            return Algorithm.IM2COL;
+        }
+        if (kernel[0] == 1 && kernel[1] == 1 && pad[0] == 0 && pad[1] == 0) {
+            return Algorithm.GEMM_1X1;
+        }
+        if (kernel[0] == 3 && kernel[1] == 3) {
+            return Algorithm.WINOGRAD_2X2_3X3;
+        }
+        return Algorithm.IM2COL;
+    }
+
+    @Override
+    public Pair<Gradient, INDArray> backpropGradient(INDArray input, INDArray weights, INDArray delta, int[] kernel,
+                                                     int[] strides, int[] pad, INDArray biasGradView,
+                                                     INDArray weightGradView, IActivation afn, AlgoMode mode,
+                                                     ConvolutionMode convolutionMode) {
+        INDArray epsNext;
+        switch (selectAlgorithm(kernel, strides, pad)) {
+            case GEMM_1X1:
+                epsNext = backprop1x1(input, weights, delta, weightGradView);
+                break;
+            case WINOGRAD_2X2_3X3:
+                epsNext = backpropWinograd(input, weights, delta, pad, weightGradView);
+                break;
+            default:
+                return null;
+        }
+
+        INDArray biasGradTemp = delta.sum(0, 2, 3);
+        biasGradView.assign(biasGradTemp);
+
+        Gradient retGradient = new DefaultGradient();
+        retGradient.setGradientFor(ConvolutionParamInitializer.BIAS_KEY, biasGradView);
+        retGradient.setGradientFor(ConvolutionParamInitializer.WEIGHT_KEY, weightGradView, 'c');
+        return new Pair<>(retGradient, epsNext);
+    }
+
+    @Override
+    public INDArray preOutput(INDArray input, INDArray weights, INDArray bias, int[] kernel, int[] strides, int[] pad,
+                              AlgoMode mode, ConvolutionMode convolutionMode) {
+        switch (selectAlgorithm(kernel, strides, pad)) {
+            case GEMM_1X1:
+                return preOutput1x1(input, weights, bias);
+            case WINOGRAD_2X2_3X3:
+                return preOutputWinograd(input, weights, bias, pad, convolutionMode);
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public INDArray activate(INDArray z, IActivation afn) {
+        //Use the standard activation function implementation
+        return null;
+    }
+
+    /**
+     * 1x1 convolution, stride 1, no padding: z[outDepth, miniBatch*h*w] = W[outDepth,inDepth] * x[inDepth, miniBatch*h*w]
+     */
+    private INDArray preOutput1x1(INDArray input, INDArray weights, INDArray bias) {
+        int miniBatch = input.size(0);
+        int inDepth = input.size(1);
+        int h = input.size(2);
+        int w = input.size(3);
+        int outDepth = weights.size(0);
+
+        INDArray in2d = channelsFirst2d(input);
+        INDArray w2d = weights.reshape('c', outDepth, inDepth);
+
+        INDArray z = w2d.mmul(in2d);
+        z.addiColumnVector(bias.transpose());
+
+        //Reshape to [outDepth,miniBatch,h,w], and permute to give the expected order: [miniBatch,outDepth,h,w]
+        return z.reshape('c', outDepth, miniBatch, h, w).permute(1, 0, 2, 3);
+    }
+
+    private INDArray backprop1x1(INDArray input, INDArray weights, INDArray delta, INDArray weightGradView) {
+        int miniBatch = input.size(0);
+        int inDepth = input.size(1);
+        int h = input.size(2);
+        int w = input.size(3);
+        int outDepth = weights.size(0);
+
+        INDArray in2d = channelsFirst2d(input);
+        INDArray delta2d = channelsFirst2d(delta);
+
+        //Weight gradients: dL/dW = delta2d * in2d^T, with shape [outDepth,inDepth]
+        //As per ConvolutionLayer: compute the transpose (in2d * delta2d^T) into the f order transposed view
+        INDArray weightGradView2df = Shape.newShapeNoCopy(weightGradView, new int[]{outDepth, inDepth}, false).transpose();
+        Nd4j.gemm(in2d, delta2d, weightGradView2df, false, true, 1.0, 0.0);
+
+        INDArray w2d = weights.reshape('c', outDepth, inDepth);
+        INDArray epsNext2d = w2d.transpose().mmul(delta2d);
+        return epsNext2d.reshape('c', inDepth, miniBatch, h, w).permute(1, 0, 2, 3);
+    }
+
+    private INDArray preOutputWinograd(INDArray input, INDArray weights, INDArray bias, int[] pad,
+                                       ConvolutionMode convolutionMode) {
+        int miniBatch = input.size(0);
+        int inH = input.size(2);
+        int inW = input.size(3);
+        int outDepth = weights.size(0);
+
+        int outH;
+        int outW;
+        if (convolutionMode == ConvolutionMode.Same) {
+            outH = inH;
+            outW = inW;
+        } else {
+            outH = inH + 2 * pad[0] - 2;
+            outW = inW + 2 * pad[1] - 2;
+        }
+        int tilesH = (outH + 1) / 2;
+        int tilesW = (outW + 1) / 2;
+
+        INDArray[][] v = inputTransform(input, pad, tilesH, tilesW);
+        INDArray[][] u = filterTransform(weights);
+        cachedFilterTransform = u;
+        cachedFilterWeights = weights;
+
+        INDArray[][] m = new INDArray[4][4];
+        for (int k = 0; k < 4; k++) {
+            for (int l = 0; l < 4; l++) {
+                m[k][l] = u[k][l].mmul(v[k][l]);
+            }
+        }
+
+        //Output transform: y = A^T m A, giving the 4 output positions of each tile, each [outDepth, miniBatch*tilesH*tilesW]
+        INDArray biasCol = bias.transpose();
+        INDArray tiles = Nd4j.create(new int[]{2, 2, outDepth, miniBatch, tilesH, tilesW}, 'c');
+        for (int p = 0; p < 2; p++) {
+            INDArray[] r = new INDArray[4];
+            for (int l = 0; l < 4; l++) {
+                r[l] = combine(AT[p], m[0][l], m[1][l], m[2][l], m[3][l]);
+            }
+            for (int q = 0; q < 2; q++) {
+                INDArray y = combine(AT[q], r);
+                y.addiColumnVector(biasCol);
+                tiles.slice(p).slice(q).assign(y.reshape('c', outDepth, miniBatch, tilesH, tilesW));
+            }
+        }
+
+        //Interleave tiles: [p,q,outDepth,miniBatch,tileH,tileW] -> [outDepth,miniBatch,tileH,p,tileW,q] -> [outDepth,miniBatch,h,w]
+        INDArray z = tiles.permute(2, 3, 4, 0, 5, 1).dup('c').reshape('c', outDepth, miniBatch, 2 * tilesH, 2 * tilesW);
+        if (2 * tilesH != outH || 2 * tilesW != outW) {
+            z = z.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.interval(0, outH), NDArrayIndex.interval(0, outW));
+        }
+        return z.permute(1, 0, 2, 3);
+    }
+
+    private INDArray backpropWinograd(INDArray input, INDArray weights, INDArray delta, int[] pad,
+                                      INDArray weightGradView) {
+        int miniBatch = input.size(0);
+        int inDepth = input.size(1);
+        int inH = input.size(2);
+        int inW = input.size(3);
+        int outDepth = weights.size(0);
+        int outH = delta.size(2);
+        int outW = delta.size(3);
+        int tilesH = (outH + 1) / 2;
+        int tilesW = (outW + 1) / 2;
+        int nTiles = miniBatch * tilesH * tilesW;
+
+        //Split delta into the 4 output positions of each tile; positions beyond the output size have zero gradient
+        INDArray deltaPadded = Nd4j.create(new int[]{outDepth, miniBatch, 2 * tilesH, 2 * tilesW}, 'c');
+        deltaPadded.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.interval(0, outH), NDArrayIndex.interval(0, outW))
+                .assign(delta.permute(1, 0, 2, 3));
+        INDArray deltaTiles = deltaPadded.reshape('c', outDepth, miniBatch, tilesH, 2, tilesW, 2).permute(3, 5, 0, 1, 2, 4);
+        INDArray[][] dy = new INDArray[2][2];
+        for (int p = 0; p < 2; p++) {
+            for (int q = 0; q < 2; q++) {
+                dy[p][q] = deltaTiles.slice(p).slice(q).dup('c').reshape('c', outDepth, nTiles);
+            }
+        }
+
+        //Backprop through the output transform: dm = A dy A^T
+        INDArray[][] dm = new INDArray[4][4];
+        for (int k = 0; k < 4; k++) {
+            INDArray[] s = new INDArray[2];
+            for (int q = 0; q < 2; q++) {
+                s[q] = combine(A[k], dy[0][q], dy[1][q]);
+            }
+            for (int l = 0; l < 4; l++) {
+                dm[k][l] = combine(A[l], s);
+            }
+        }
+
+        INDArray[][] v = inputTransform(input, pad, tilesH, tilesW);
+        INDArray[][] u = (cachedFilterWeights == weights ? cachedFilterTransform : filterTransform(weights));
+        cachedFilterTransform = null;
+        cachedFilterWeights = null;
+
+        //Gradients in the transformed domain
+        INDArray[][] du = new INDArray[4][4];
+        INDArray[][] dv = new INDArray[4][4];
+        for (int k = 0; k < 4; k++) {
+            for (int l = 0; l < 4; l++) {
+                du[k][l] = dm[k][l].mmul(v[k][l].transpose());
+                dv[k][l] = u[k][l].transpose().mmul(dm[k][l]);
+            }
+        }
+
+        //Weight gradients: backprop through the filter transform, dg = G^T du G
+        INDArray wg2d = Shape.newShapeNoCopy(weightGradView, new int[]{outDepth * inDepth, 9}, false);
+        for (int a = 0; a < 3; a++) {
+            INDArray[] s = new INDArray[4];
+            for (int l = 0; l < 4; l++) {
+                s[l] = combine(GT[a], du[0][l], du[1][l], du[2][l], du[3][l]);
+            }
+            for (int b = 0; b < 3; b++) {
+                INDArray dg = combine(GT[b], s);
+                wg2d.getColumn(3 * a + b).assign(dg.reshape('c', outDepth * inDepth, 1));
+            }
+        }
+
+        //Input gradients: backprop through the input transform, dd = B dv B^T, then accumulate the (overlapping)
+        // 4x4 tiles into the padded input gradient
+        INDArray epsPadded = Nd4j.create(new int[]{miniBatch, inDepth, 2 * tilesH + 2, 2 * tilesW + 2}, 'c');
+        //Note: epsTiles must be a view of epsPadded, so that the tile gradients are accumulated in place
+        INDArray epsTiles = Shape.newShapeNoCopy(epsPadded, new int[]{miniBatch, inDepth, tilesH + 1, 2, tilesW + 1, 2}, false)
+                .permute(3, 5, 0, 1, 2, 4);
+        for (int i = 0; i < 4; i++) {
+            INDArray[] s = new INDArray[4];
+            for (int l = 0; l < 4; l++) {
+                s[l] = combine(B[i], dv[0][l], dv[1][l], dv[2][l], dv[3][l]);
+            }
+            for (int j = 0; j < 4; j++) {
+                INDArray dd = combine(B[j], s).reshape('c', inDepth, miniBatch, tilesH, tilesW).permute(1, 0, 2, 3);
+                tileView(epsTiles, i, j, tilesH, tilesW).addi(dd);
+            }
+        }
+
+        return epsPadded.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.interval(pad[0], pad[0] + inH),
+                NDArrayIndex.interval(pad[1], pad[1] + inW));
+    }
+
+    /**
+     * Winograd input transform v = B^T d B, for all 4x4 input tiles (with stride 2 between tiles).
+     *
+     * @return v[k][l] with shape [inDepth, miniBatch*tilesH*tilesW]
+     */
+    private static INDArray[][] inputTransform(INDArray input, int[] pad, int tilesH, int tilesW) {
+        int miniBatch = input.size(0);
+        int inDepth = input.size(1);
+        int inH = input.size(2);
+        int inW = input.size(3);
+
+        //Zero padded input, large enough for all tiles. Note that ConvolutionMode.Same bottom/right padding is implicit
+        INDArray padded = Nd4j.create(new int[]{miniBatch, inDepth, 2 * tilesH + 2, 2 * tilesW + 2}, 'c');
+        padded.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.interval(pad[0], pad[0] + inH),
+                NDArrayIndex.interval(pad[1], pad[1] + inW)).assign(input);
+
+        //Reshape so that element (i,j) of every tile can be selected with a single view:
+        //row 2*t + i == 2*(t + i/2) + i%2, for tile t and position i within the tile
+        INDArray tiles = padded.reshape('c', miniBatch, inDepth, tilesH + 1, 2, tilesW + 1, 2).permute(3, 5, 0, 1, 2, 4);
+        INDArray[][] d = new INDArray[4][4];
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                d[i][j] = tileView(tiles, i, j, tilesH, tilesW);
+            }
+        }
+
+        INDArray[][] v = new INDArray[4][4];
+        for (int k = 0; k < 4; k++) {
+            INDArray[] t = new INDArray[4];
+            for (int j = 0; j < 4; j++) {
+                t[j] = combine(BT[k], d[0][j], d[1][j], d[2][j], d[3][j]);
+            }
+            for (int l = 0; l < 4; l++) {
+                v[k][l] = channelsFirst2d(combine(BT[l], t));
+            }
+        }
+        return v;
+    }
+
+    /**
+     * Winograd filter transform u = G g G^T
+     *
+     * @return u[k][l] with shape [outDepth, inDepth]
+     */
+    private static INDArray[][] filterTransform(INDArray weights) {
+        int outDepth = weights.size(0);
+        int inDepth = weights.size(1);
+
+        INDArray w2d = weights.dup('c').reshape('c', outDepth * inDepth, 9);
+        INDArray[][] g = new INDArray[3][3];
+        for (int a = 0; a < 3; a++) {
+            for (int b = 0; b < 3; b++) {
+                g[a][b] = w2d.getColumn(3 * a + b).dup().reshape('c', outDepth, inDepth);
+            }
+        }
+
+        INDArray[][] u = new INDArray[4][4];
+        for (int k = 0; k < 4; k++) {
+            INDArray[] t = new INDArray[3];
+            for (int b = 0; b < 3; b++) {
+                t[b] = combine(G[k], g[0][b], g[1][b], g[2][b]);
+            }
+            for (int l = 0; l < 4; l++) {
+                u[k][l] = combine(G[l], t);
+            }
+        }
+        return u;
+    }
+
+    /**
+     * @param tiles Array with shape [2,2,miniBatch,depth,tilesH+1,tilesW+1], as created from the padded input
+     * @return View of element (i,j) of every 4x4 tile, with shape [miniBatch,depth,tilesH,tilesW]
+     */
+    private static INDArray tileView(INDArray tiles, int i, int j, int tilesH, int tilesW) {
+        return tiles.slice(i % 2).slice(j % 2).get(NDArrayIndex.all(), NDArrayIndex.all(),
+                NDArrayIndex.interval(i / 2, i / 2 + tilesH), NDArrayIndex.interval(j / 2, j / 2 + tilesW));
+    }
+
+    /**
+     * @param arr 4d array with shape [miniBatch,depth,h,w]
+     * @return c order 2d array with shape [depth,miniBatch*h*w]
+     */
+    private static INDArray channelsFirst2d(INDArray arr) {
+        int miniBatch = arr.size(0);
+        int depth = arr.size(1);
+        int h = arr.size(2);
+        int w = arr.size(3);
+        return arr.permute(1, 0, 2, 3).dup('c').reshape('c', depth, miniBatch * h * w);
+    }
+
+    /**
+     * @return sum_i coeff[i] * arrays[i], as a new array. Zero coefficients are skipped
+     */
+    private static INDArray combine(double[] coeff, INDArray... arrays) {
+        INDArray out = null;
+        for (int i = 0; i < coeff.length; i++) {
+            double c = coeff[i];
+            if (c == 0.0) {
+                continue;
+            }
+            if (out == null) {
+                out = arrays[i].dup('c');
+                if (c != 1.0) {
+                    out.muli(c);
+                }
+            } else if (c == 1.0) {
+                out.addi(arrays[i]);
+            } else if (c == -1.0) {
+                out.subi(arrays[i]);
+            } else {
+                out.addi(arrays[i].mul(c));
+            }
+        }
+        return out;
+    }
+
+    private static double[][] transpose(double[][] m) {
+        double[][] t = new double[m[0].length][m.length];
+        for (int i = 0; i < m.length; i++) {
+            for (int j = 0; j < m[0].length; j++) {
+                t[j][i] = m[i][j];
+            }
+        }
+        return t;
+    }
+}
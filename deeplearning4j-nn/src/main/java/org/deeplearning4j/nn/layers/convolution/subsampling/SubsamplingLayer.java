@@ -28,8 +28,11 @@ import org.deeplearning4j.nn.conf.layers.PoolingType;
 import org.deeplearning4j.nn.gradient.DefaultGradient;
 import org.deeplearning4j.nn.gradient.Gradient;
 import org.deeplearning4j.nn.layers.BaseLayer;
+import org.deeplearning4j.nn.layers.LayerWorkspace;
 import org.deeplearning4j.util.ConvolutionUtils;
+import org.deeplearning4j.util.DirectValues;
 import org.deeplearning4j.util.Dropout;
+import org.deeplearning4j.util.ParallelLoop;
 import org.nd4j.linalg.api.buffer.DataBuffer;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.api.ops.impl.transforms.Exp;
@@ -58,6 +61,10 @@ public class SubsamplingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layer
 
     protected SubsamplingHelper helper = null;
     protected ConvolutionMode convolutionMode;
+    //Max pooling only: index (within the kernel, as kh*kW+kw) of the max value for each output, from the last forward
+    // pass with training == true. Order: c order [miniBatch,depth,outH,outW]. Allows backprop without a second im2col.
+    // One int per output: released after backprop, when the input changes, or on clear()
+    protected int[] maxPoolArgMax;
 
     public SubsamplingLayer(NeuralNetConfiguration conf) {
         super(conf);
@@ -128,6 +135,13 @@ public class SubsamplingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layer
             }
         }
 
+        if(layerConf().getPoolingType() == PoolingType.MAX && maxPoolArgMax != null
+                && maxPoolArgMax.length == miniBatch*inDepth*outH*outW){
+            INDArray outEpsilon = maxPoolBackpropArgMax(epsilon, kernel, strides, pad, outH, outW);
+            return new Pair<Gradient,INDArray>(new DefaultGradient(), outEpsilon);
+        }
+        maxPoolArgMax = null;
+
         //subsampling doesn't have weights and thus gradients are not calculated for this layer
         //only scale and reshape epsilon
         int inputHeight = input().size(-2);
@@ -161,17 +175,21 @@ public class SubsamplingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layer
             cOrderStrides = true;
         }
 
+        //Max and pnorm pooling: col6d is fully overwritten by im2col. Avg pooling: epsilons are added to zeros
+        boolean zeroCol6d = layerConf().getPoolingType() == PoolingType.AVG;
         INDArray col6d;
         INDArray col6dPermuted;
         INDArray epsilon1d;
         if(cOrderStrides){
             //"Dense/Output layer above strides... i.e., standard c-order strides
-            col6d = Nd4j.create(new int[]{miniBatch,inDepth,outH,outW,kernel[0],kernel[1]},'c');
+            int[] col6dShape = new int[]{miniBatch,inDepth,outH,outW,kernel[0],kernel[1]};
+            col6d = (zeroCol6d ? LayerWorkspace.create(workspace, "col6d", col6dShape, 'c') : LayerWorkspace.createUninitialized(workspace, "col6d", col6dShape, 'c'));
             col6dPermuted = col6d.permute(0,1,4,5,2,3);
             epsilon1d = epsilon.reshape('c', ArrayUtil.prod(epsilon.length()), 1);  //zero copy reshape
         } else {
             //"CNN layer above" strides...
-            col6d = Nd4j.create(new int[]{inDepth,miniBatch,outH,outW,kernel[0],kernel[1]},'c');
+            int[] col6dShape = new int[]{inDepth,miniBatch,outH,outW,kernel[0],kernel[1]};
+            col6d = (zeroCol6d ? LayerWorkspace.create(workspace, "col6d", col6dShape, 'c') : LayerWorkspace.createUninitialized(workspace, "col6d", col6dShape, 'c'));
             col6dPermuted = col6d.permute(1,0,4,5,2,3);
 
             INDArray epsilonTemp = epsilon.permute(1,0,2,3);
@@ -228,7 +246,7 @@ public class SubsamplingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layer
         // c-order [depth*H*W, H*W, W, 1] strides
         //To achieve this: [depth, miniBatch, H, W] in c order, then permute to [miniBatch, depth, H, W]
         //This gives us proper strides of 1 on the muli...
-        INDArray tempEpsilon = Nd4j.create(new int[]{inDepth,miniBatch,inH, inW},'c');
+        INDArray tempEpsilon = LayerWorkspace.create(workspace, "epsilonNext", new int[]{inDepth,miniBatch,inH, inW},'c');
         INDArray outEpsilon = tempEpsilon.permute(1,0,2,3);
         Convolution.col2im(col6dPermuted, outEpsilon, strides[0], strides[1], pad[0], pad[1], inputHeight, inputWidth);
 
@@ -269,6 +287,7 @@ public class SubsamplingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layer
         int outH = outSize[0];
         int outW = outSize[1];
 
+        maxPoolArgMax = null;
         if (helper != null && Nd4j.dataType() != DataBuffer.Type.HALF) {
             INDArray ret = helper.activate(input, training, kernel, strides, pad, layerConf().getPoolingType(), convolutionMode);
             if (ret != null) {
@@ -278,7 +297,8 @@ public class SubsamplingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layer
 
         //Similar to convolution layer forward pass: do im2col, but permute so that pooling can be done with efficient strides...
         //Current im2col implementation expects input with shape [miniBatch,depth,kH,kW,outH,outW]
-        INDArray col = Nd4j.create(new int[]{miniBatch,inDepth,outH,outW,kernel[0],kernel[1]},'c');
+        //im2col array is only needed to calculate the pooled output, hence can be reused
+        INDArray col = LayerWorkspace.createUninitialized(workspace, "im2col", new int[]{miniBatch,inDepth,outH,outW,kernel[0],kernel[1]},'c');
         INDArray col2 = col.permute(0,1,4,5,2,3);
         Convolution.im2col(input, kernel[0], kernel[1], strides[0], strides[1], pad[0], pad[1], convolutionMode == ConvolutionMode.Same, col2);
 
@@ -291,7 +311,14 @@ public class SubsamplingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layer
                 reduced = col2d.mean(1);
                 break;
             case MAX:
-                reduced = col2d.max(1);
+                if(training && DirectValues.isSupported()){
+                    //Record the position of the max for each output, for use in backprop. The max values are then
+                    // gathered from the im2col array, rather than doing a second reduction
+                    maxPoolArgMax = Nd4j.argMax(col2d, 1).data().asInt();
+                    reduced = gatherMax(col, maxPoolArgMax, kernel[0]*kernel[1]);
+                } else {
+                    reduced = col2d.max(1);
+                }
                 break;
             case PNORM:
                 // pnorm pooling is used for signal loss recovery it is mixed with avg pooling,
@@ -311,6 +338,79 @@ public class SubsamplingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layer
         return reduced.reshape('c',miniBatch,inDepth,outH,outW);
     }
 
+    /**
+     * Max values for each row of the (c order, [rows, kernelLength]) im2col array, given the argmax of each row
+     */
+    private static INDArray gatherMax(INDArray col, int[] argMax, int kernelLength){
+        DirectValues values = DirectValues.read(col);
+        DirectValues max = DirectValues.create(new int[]{argMax.length, 1});
+        for( int r=0; r<argMax.length; r++ ){
+            max.set(r, values.get(r*kernelLength + argMax[r]));
+        }
+        return max.array();
+    }
+
+    /**
+     * Max pooling backprop using the argmax indices recorded in the forward pass: each epsilon is added directly to the
+     * input position of the corresponding max, in place in the output epsilon array. Positions in the padding (if any)
+     * receive no gradient. The indices are released once used.
+     */
+    protected INDArray maxPoolBackpropArgMax(INDArray epsilon, int[] kernel, final int[] strides, final int[] pad,
+                                             final int outH, final int outW){
+        final int miniBatch = input.size(0);
+        final int inDepth = input.size(1);
+        final int inH = input.size(2);
+        final int inW = input.size(3);
+        final int kW = kernel[1];
+        final int[] argMax = maxPoolArgMax;
+        maxPoolArgMax = null;
+
+        //Epsilons are read in c order [miniBatch,depth,outH,outW] (copied first only if not c order: output sized)
+        final DirectValues eps = DirectValues.read(epsilon);
+        //As per the im2col backprop: [depth,miniBatch,H,W] in c order, permuted to [miniBatch,depth,H,W]
+        INDArray tempEpsilon = LayerWorkspace.create(workspace, "epsilonNext", new int[]{inDepth,miniBatch,inH,inW},'c');
+        final DirectValues out = DirectValues.modify(tempEpsilon);
+
+        //Each (example, channel) pair writes a separate plane of the output: these can be processed in parallel
+        ParallelLoop.forRange(miniBatch*inDepth, ParallelLoop.parallelism((long) argMax.length), new ParallelLoop.Body() {
+            @Override
+            public void apply(int from, int to) {
+                for( int i=from; i<to; i++ ){
+                    int n = i / inDepth;
+                    int d = i % inDepth;
+                    int outBase = (d*miniBatch + n)*inH*inW;
+                    int r = i*outH*outW;
+                    for( int oh=0; oh<outH; oh++ ){
+                        for( int ow=0; ow<outW; ow++, r++ ){
+                            int idx = argMax[r];
+                            int h = oh*strides[0] - pad[0] + idx / kW;
+                            int w = ow*strides[1] - pad[1] + idx % kW;
+                            if(h >= 0 && h < inH && w >= 0 && w < inW){
+                                int pos = outBase + h*inW + w;
+                                out.set(pos, out.get(pos) + eps.get(r));
+                            }
+                        }
+                    }
+                }
+            }
+        });
+
+        return out.array().permute(1,0,2,3);
+    }
+
+    @Override
+    public void setInput(INDArray input) {
+        super.setInput(input);
+        //Recorded max positions are only valid for the input they were computed from
+        maxPoolArgMax = null;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        maxPoolArgMax = null;
+    }
+
     @Override
     public Gradient error(INDArray input) {
         throw new UnsupportedOperationException();
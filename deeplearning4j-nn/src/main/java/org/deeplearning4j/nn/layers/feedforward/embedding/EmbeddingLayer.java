@@ -20,14 +20,18 @@ package org.deeplearning4j.nn.layers.feedforward.embedding;
 
 import org.deeplearning4j.berkeley.Pair;
 import org.deeplearning4j.exception.DL4JInvalidInputException;
+import org.deeplearning4j.nn.api.layers.SparseGradientLayer;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.gradient.DefaultGradient;
 import org.deeplearning4j.nn.gradient.Gradient;
 import org.deeplearning4j.nn.layers.BaseLayer;
 import org.deeplearning4j.nn.params.DefaultParamInitializer;
+import org.deeplearning4j.util.DirectValues;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 
+import java.util.Arrays;
+
 /**Embedding layer: feed-forward layer that expects single integers per example as input (class numbers, in range 0 to numClass-1)
  * as input. This input has shape [numExamples,1] instead of [numExamples,numClasses] for the equivalent one-hot representation.
  * Mathematically, EmbeddingLayer is equivalent to using a DenseLayer with a one-hot representation for the input; however,
@@ -38,7 +42,11 @@ import org.nd4j.linalg.factory.Nd4j;
  * weight rows can be considered a vector/embedding for each example.
  * @author Alex Black
  */
-public class EmbeddingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.EmbeddingLayer> {
+public class EmbeddingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.EmbeddingLayer> implements SparseGradientLayer {
+
+    //Rows of the weight gradients set in the last backpropGradient call (sparse gradients only)
+    private int[] gradientRows;
+
     public EmbeddingLayer(NeuralNetConfiguration conf) {
         super(conf);
     }
@@ -57,16 +65,22 @@ public class EmbeddingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.
             delta.muliColumnVector(maskArray);
         }
 
-        INDArray weights = getParam(DefaultParamInitializer.WEIGHT_KEY);
         INDArray weightGradients = gradientViews.get(DefaultParamInitializer.WEIGHT_KEY);
-        weightGradients.assign(0);
+        boolean sparse = layerConf().isSparseGradients();
+        if(sparse && gradientRows != null){
+            //Only the rows from the last iteration can be non-zero: no need to zero the entire gradient array
+            DirectValues.zeroRows(weightGradients, gradientRows);
+        } else {
+            weightGradients.assign(0);
+        }
 
         int[] indexes = new int[input.length()];
         for( int i=0; i<indexes.length; i++ ){
             indexes[i] = input.getInt(i,0);
-
-            weightGradients.getRow(indexes[i]).addi(delta.getRow(i));
         }
+        //Scatter-add: an index occurring more than once in the minibatch accumulates the gradient of each occurrence
+        DirectValues.scatterRows(weightGradients, indexes, delta, true);
+        gradientRows = (sparse ? distinctSorted(indexes) : null);
 
         INDArray biasGradientsView = gradientViews.get(DefaultParamInitializer.BIAS_KEY);
         INDArray biasGradients = delta.sum(0);
@@ -79,6 +93,43 @@ public class EmbeddingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.
         return new Pair<>(ret,null);    //Don't bother returning epsilons: no layer below this one...
     }
 
+    @Override
+    public boolean isRowSparseGradient(String paramName) {
+        return layerConf().isSparseGradients() && DefaultParamInitializer.WEIGHT_KEY.equals(paramName);
+    }
+
+    @Override
+    public int[] getGradientRows(String paramName) {
+        if(!isRowSparseGradient(paramName)){
+            throw new IllegalArgumentException("Gradient for parameter \"" + paramName + "\" is not row-sparse");
+        }
+        return gradientRows;
+    }
+
+    @Override
+    public void setGradientRows(String paramName, int[] rows) {
+        if(!isRowSparseGradient(paramName)){
+            throw new IllegalArgumentException("Gradient for parameter \"" + paramName + "\" is not row-sparse");
+        }
+        gradientRows = rows;
+    }
+
+    @Override
+    public void setBackpropGradientsViewArray(INDArray gradients) {
+        super.setBackpropGradientsViewArray(gradients);
+        gradientRows = null;    //New gradient array: contents unknown
+    }
+
+    private static int[] distinctSorted(int[] indexes){
+        int[] sorted = Arrays.copyOf(indexes, indexes.length);
+        Arrays.sort(sorted);
+        int count = 0;
+        for( int i=0; i<sorted.length; i++ ){
+            if(i == 0 || sorted[i] != sorted[i-1]) sorted[count++] = sorted[i];
+        }
+        return Arrays.copyOf(sorted, count);
+    }
+
     @Override
     public INDArray preOutput(boolean training){
         if(input.columns() != 1){
@@ -44,6 +44,8 @@ public class BatchNormalization extends BaseLayer<org.deeplearning4j.nn.conf.lay
     protected INDArray std;
     protected INDArray xMu;
     protected INDArray xHat;
+    protected INDArray lockedGamma;
+    protected INDArray lockedBeta;
 
     public BatchNormalization(NeuralNetConfiguration conf) {
         super(conf);
@@ -60,6 +62,20 @@ public class BatchNormalization extends BaseLayer<org.deeplearning4j.nn.conf.lay
                 log.warn("Could not load CudnnBatchNormalizationHelper", t);
             }
         }
+        if (helper == null && layerConf().isCpuNormalizationHelper()) {
+            helper = new CpuBatchNormalizationHelper();
+        }
+    }
+
+    /**
+     * Fixed gamma/beta arrays (when gamma and beta are locked), as required by the helper: created once
+     */
+    private void initLockedGammaBeta() {
+        if (lockedGamma == null) {
+            int[] gammaBetaShape = new int[]{1, layerConf().getNOut()};
+            lockedGamma = Nd4j.valueArrayOf(gammaBetaShape, layerConf().getGamma());
+            lockedBeta = Nd4j.valueArrayOf(gammaBetaShape, layerConf().getBeta());
+        }
     }
 
     @Override
@@ -116,7 +132,8 @@ public class BatchNormalization extends BaseLayer<org.deeplearning4j.nn.conf.lay
         if (helper != null && epsilon.rank() == 4) {
             //Note that cudnn does not support dense (2d) batch norm case as of v5.1
             if(layerConf.isLockGammaBeta()){
-                gamma = Nd4j.valueArrayOf(new int[]{1,shape[1]},layerConf.getGamma());
+                initLockedGammaBeta();
+                gamma = lockedGamma;
             }
             Pair<Gradient, INDArray> ret = helper.backpropGradient(input, epsilon,
                     shape, gamma, dGammaView, dBetaView, layerConf.getEps());
@@ -246,6 +263,32 @@ public class BatchNormalization extends BaseLayer<org.deeplearning4j.nn.conf.lay
         org.deeplearning4j.nn.conf.layers.BatchNormalization layerConf = layerConf();
         int[] shape = getShape(x);
 
+        INDArray gamma = null;
+        INDArray beta = null;
+        INDArray globalMeanView = getParam(BatchNormalizationParamInitializer.GLOBAL_MEAN);
+        INDArray globalVarView = getParam(BatchNormalizationParamInitializer.GLOBAL_VAR);
+        if (layerConf.isLockGammaBeta()) {
+            if(helper != null && x.rank() == 4){
+                initLockedGammaBeta();
+                gamma = lockedGamma;
+                beta = lockedBeta;
+            }
+        } else {
+            gamma = getParam(BatchNormalizationParamInitializer.GAMMA);
+            beta = getParam(BatchNormalizationParamInitializer.BETA);
+        }
+
+        if (helper != null && x.rank() == 4) {
+            //Note that cudnn does not support dense (2d) batch norm case as of v5.1
+            //Helpers update the global mean/variance as: global = decay * global + (1-decay) * minibatch
+            double decay = layerConf.isMinibatch() ? layerConf.getDecay() : 0.0;
+            INDArray ret = helper.preOutput(x, training == TrainingMode.TRAIN,
+                    shape, gamma, beta, globalMeanView, globalVarView, decay, layerConf.getEps());
+            if (ret != null) {
+                return ret;
+            }
+        }
+
 
         // xHat = (x-xmean) / sqrt(var + epsilon)
         //Note that for CNNs, mean and variance are calculated per feature map (i.e., per activation) rather than per activation
@@ -279,32 +322,6 @@ public class BatchNormalization extends BaseLayer<org.deeplearning4j.nn.conf.lay
         }
         std = Transforms.sqrt(var,true);
 
-        INDArray gamma = null;
-        INDArray beta = null;
-        INDArray globalMeanView = getParam(BatchNormalizationParamInitializer.GLOBAL_MEAN);
-        INDArray globalVarView = getParam(BatchNormalizationParamInitializer.GLOBAL_VAR);
-        if (layerConf.isLockGammaBeta()) {
-            if(helper != null && input.rank() == 4){
-                //TODO: don't create these each iteration, when using cudnn
-                int[] gammaBetaShape = new int[]{1,layerConf().getNOut()};
-                gamma = Nd4j.valueArrayOf(gammaBetaShape, layerConf().getGamma());
-                beta = Nd4j.valueArrayOf(gammaBetaShape, layerConf().getBeta());
-            }
-        } else {
-            gamma = getParam(BatchNormalizationParamInitializer.GAMMA);
-            beta = getParam(BatchNormalizationParamInitializer.BETA);
-        }
-
-        if (helper != null && input.rank() != 4) {
-            //Note that cudnn does not support dense (2d) batch norm case as of v5.1
-            double decay = layerConf.getDecay();
-            INDArray ret = helper.preOutput(x, training == TrainingMode.TRAIN,
-                    shape, gamma, beta, globalMeanView, globalVarView, decay, layerConf.getEps());
-            if (ret != null) {
-                return ret;
-            }
-        }
-
         // BN(xk) = gamma*xˆ + β (applying gamma and beta for each activation)
         if (x.rank() == 2) {
             xMu = x.subRowVector(mean);
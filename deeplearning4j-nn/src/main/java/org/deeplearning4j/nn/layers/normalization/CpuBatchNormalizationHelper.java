@@ -0,0 +1,200 @@
+package org.deeplearning4j.nn.layers.normalization;
+
+import org.deeplearning4j.berkeley.Pair;
+import org.deeplearning4j.nn.gradient.DefaultGradient;
+import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.nn.params.BatchNormalizationParamInitializer;
+import org.deeplearning4j.util.DirectValues;
+import org.deeplearning4j.util.ParallelLoop;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Batch normalization helper for when cuDNN is not available, for CNN (rank 4, [minibatch, depth, height, width])
+ * activations.<br>
+ * The standard implementation in {@link BatchNormalization} performs a separate pass over the activations for each
+ * of the mean, variance, subtraction, division, scale and shift operations. Here, for each channel, the mean and
+ * variance are computed in a single pass (Welford's algorithm), and normalization plus scale/shift are fused into one
+ * more pass. Similarly, backprop requires two passes per channel: one to compute the gamma and beta gradients, and one
+ * for the epsilons. Channels are processed in parallel.<br>
+ * Activations and epsilons are read directly from their (host) buffers, and the output is written directly into the
+ * buffer of the returned array (see {@link DirectValues}): the activations are not copied. Only arrays that are not
+ * 'c' order, or are views, are first copied to a 'c' order array.<br>
+ * The minibatch mean and 1/sqrt(var + eps) from the forward pass are retained for use in backprop. If backprop is
+ * performed for a different input, they are recalculated.<br>
+ * Rank 2 activations are not supported: null is returned, and the layer uses its standard implementation.
+ */
+public class CpuBatchNormalizationHelper implements BatchNormalizationHelper {
+
+    private WeakReference<INDArray> cachedInput;
+    private double[] cachedMean;
+    private double[] cachedInvStd;
+
+    @Override
+    public Pair<Gradient, INDArray> backpropGradient(INDArray input, INDArray epsilon, int[] shape, INDArray gamma,
+                                                     INDArray dGammaView, INDArray dBetaView, double eps) {
+        if (input.rank() != 4 || epsilon.rank() != 4 || !DirectValues.isSupported()) {
+            return null;
+        }
+
+        final int miniBatch = input.size(0);
+        final int depth = input.size(1);
+        final int hw = input.size(2) * input.size(3);
+        final int m = miniBatch * hw;
+
+        final DirectValues x = DirectValues.read(input);
+        final DirectValues dy = DirectValues.read(epsilon);
+        final double[] g = gamma.dup('c').data().asDouble();
+
+        final double[] mean;
+        final double[] invStd;
+        if (cachedInput != null && cachedInput.get() == input) {
+            mean = cachedMean;
+            invStd = cachedInvStd;
+        } else {
+            mean = new double[depth];
+            invStd = new double[depth];
+            computeStats(x, miniBatch, depth, hw, eps, mean, invStd);
+        }
+
+        final double[] dGamma = new double[depth];
+        final double[] dBeta = new double[depth];
+        final DirectValues dx = DirectValues.create(input.shape());
+        ParallelLoop.forRange(depth, ParallelLoop.parallelism((long) depth * m), new ParallelLoop.Body() {
+            @Override
+            public void apply(int from, int to) {
+                for (int c = from; c < to; c++) {
+                    double mu = mean[c];
+                    double is = invStd[c];
+                    double sumDy = 0.0;
+                    double sumDyXHat = 0.0;
+                    for (int n = 0; n < miniBatch; n++) {
+                        int offset = (n * depth + c) * hw;
+                        for (int i = offset; i < offset + hw; i++) {
+                            double d = dy.get(i);
+                            sumDy += d;
+                            sumDyXHat += d * (x.get(i) - mu) * is;
+                        }
+                    }
+                    dGamma[c] = sumDyXHat;
+                    dBeta[c] = sumDy;
+
+                    //dL/dx = gamma / std * (dL/dy - mean(dL/dy) - xHat * mean(dL/dy .* xHat))
+                    double a = g[c] * is;
+                    double meanDy = sumDy / m;
+                    double meanDyXHat = sumDyXHat / m;
+                    for (int n = 0; n < miniBatch; n++) {
+                        int offset = (n * depth + c) * hw;
+                        for (int i = offset; i < offset + hw; i++) {
+                            double xHat = (x.get(i) - mu) * is;
+                            dx.set(i, a * (dy.get(i) - meanDy - xHat * meanDyXHat));
+                        }
+                    }
+                }
+            }
+        });
+
+        dGammaView.assign(Nd4j.create(dGamma));
+        dBetaView.assign(Nd4j.create(dBeta));
+
+        Gradient retGradient = new DefaultGradient();
+        retGradient.setGradientFor(BatchNormalizationParamInitializer.GAMMA, dGammaView);
+        retGradient.setGradientFor(BatchNormalizationParamInitializer.BETA, dBetaView);
+        return new Pair<>(retGradient, dx.array());
+    }
+
+    /**
+     * Note that when training, the mean and var arrays (global mean/variance estimates) are updated in-place
+     * as follows: global = decay * global + (1 - decay) * minibatch. The minibatch variance includes eps, as per
+     * the standard implementation. Use decay == 0 to replace the global estimates with the minibatch statistics.
+     * At test time, the variance array is assumed to already include eps.
+     */
+    @Override
+    public INDArray preOutput(INDArray input, boolean training, int[] shape, INDArray gamma, INDArray beta,
+                              INDArray mean, INDArray var, double decay, double eps) {
+        if (input.rank() != 4 || !DirectValues.isSupported()) {
+            return null;
+        }
+
+        final int miniBatch = input.size(0);
+        final int depth = input.size(1);
+        final int hw = input.size(2) * input.size(3);
+
+        final DirectValues x = DirectValues.read(input);
+        final double[] g = gamma.dup('c').data().asDouble();
+        final double[] b = beta.dup('c').data().asDouble();
+
+        final double[] mu = new double[depth];
+        final double[] invStd = new double[depth];
+        if (training) {
+            computeStats(x, miniBatch, depth, hw, eps, mu, invStd);
+            double[] batchVar = new double[depth];
+            for (int c = 0; c < depth; c++) {
+                batchVar[c] = 1.0 / (invStd[c] * invStd[c]);
+            }
+            mean.muli(decay).addi(Nd4j.create(mu).muli(1.0 - decay));
+            var.muli(decay).addi(Nd4j.create(batchVar).muli(1.0 - decay));
+            cachedInput = new WeakReference<>(input);
+            cachedMean = mu;
+            cachedInvStd = invStd;
+        } else {
+            double[] globalMean = mean.dup('c').data().asDouble();
+            double[] globalVar = var.dup('c').data().asDouble();
+            for (int c = 0; c < depth; c++) {
+                mu[c] = globalMean[c];
+                invStd[c] = 1.0 / Math.sqrt(globalVar[c]);
+            }
+        }
+
+        final DirectValues out = DirectValues.create(input.shape());
+        ParallelLoop.forRange(depth, ParallelLoop.parallelism((long) depth * miniBatch * hw), new ParallelLoop.Body() {
+            @Override
+            public void apply(int from, int to) {
+                for (int c = from; c < to; c++) {
+                    //y = gamma * (x - mean) / std + beta = x * scale + shift
+                    double scale = g[c] * invStd[c];
+                    double shift = b[c] - mu[c] * scale;
+                    for (int n = 0; n < miniBatch; n++) {
+                        int offset = (n * depth + c) * hw;
+                        for (int i = offset; i < offset + hw; i++) {
+                            out.set(i, x.get(i) * scale + shift);
+                        }
+                    }
+                }
+            }
+        });
+
+        return out.array();
+    }
+
+    /**
+     * Single pass (per channel) calculation of the mean and 1/sqrt(var + eps), using Welford's algorithm
+     */
+    private static void computeStats(final DirectValues x, final int miniBatch, final int depth, final int hw,
+                                     final double eps, final double[] meanOut, final double[] invStdOut) {
+        ParallelLoop.forRange(depth, ParallelLoop.parallelism((long) depth * miniBatch * hw), new ParallelLoop.Body() {
+            @Override
+            public void apply(int from, int to) {
+                for (int c = from; c < to; c++) {
+                    double mean = 0.0;
+                    double m2 = 0.0;
+                    long count = 0;
+                    for (int n = 0; n < miniBatch; n++) {
+                        int offset = (n * depth + c) * hw;
+                        for (int i = offset; i < offset + hw; i++) {
+                            count++;
+                            double v = x.get(i);
+                            double delta = v - mean;
+                            mean += delta / count;
+                            m2 += delta * (v - mean);
+                        }
+                    }
+                    meanOut[c] = mean;
+                    invStdOut[c] = 1.0 / Math.sqrt(m2 / count + eps);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,179 @@
+package org.deeplearning4j.nn.layers.normalization;
+
+import org.deeplearning4j.berkeley.Pair;
+import org.deeplearning4j.nn.gradient.DefaultGradient;
+import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.util.DirectValues;
+import org.deeplearning4j.util.ParallelLoop;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.Arrays;
+
+/**
+ * Local response normalization helper for when cuDNN is not available.<br>
+ * The standard implementation in {@link LocalResponseNormalization} computes the cross-channel sum of squares
+ * with 2 * n/2 separate get/add/put operations, each over the full activations array. Here, the sum for each channel
+ * is instead maintained as a sliding window over the channels (one addition and one subtraction per element), and
+ * the scaling is fused into the same pass. Backprop uses the same approach for the sum of activations .* epsilons.<br>
+ * As the channels are coupled via the normalization window, examples (rather than channels) are processed
+ * in parallel.<br>
+ * Activations and epsilons are read directly from their (host) buffers, and the output is written directly into the
+ * buffer of the returned array (see {@link DirectValues}); only per-thread scratch space of one example is allocated.
+ */
+public class CpuLocalResponseNormalizationHelper implements LocalResponseNormalizationHelper {
+
+    @Override
+    public Pair<Gradient, INDArray> backpropGradient(INDArray input, INDArray epsilon, final double k, double n,
+                                                     final double alpha, final double beta) {
+        if (input.rank() != 4 || epsilon.rank() != 4 || !DirectValues.isSupported()) {
+            return null;
+        }
+
+        final int miniBatch = input.size(0);
+        final int depth = input.size(1);
+        final int hw = input.size(2) * input.size(3);
+        final int halfN = (int) n / 2;
+
+        final DirectValues x = DirectValues.read(input);
+        final DirectValues dy = DirectValues.read(epsilon);
+        final DirectValues dx = DirectValues.create(input.shape());
+
+        ParallelLoop.forRange(miniBatch, ParallelLoop.parallelism((long) miniBatch * depth * hw), new ParallelLoop.Body() {
+            @Override
+            public void apply(int from, int to) {
+                double[] unitScale = new double[depth * hw];
+                double[] scale = new double[depth * hw];
+                double[] reverse = new double[depth * hw];
+                double[] sumPart = new double[depth * hw];
+                double[] window = new double[hw];
+                for (int e = from; e < to; e++) {
+                    int base = e * depth * hw;
+                    squareWindowSums(x, base, depth, hw, halfN, window, unitScale);
+                    for (int i = 0; i < depth * hw; i++) {
+                        unitScale[i] = k + alpha * unitScale[i];
+                        scale[i] = pow(unitScale[i], beta);
+                        //activations .* epsilon
+                        reverse[i] = x.get(base + i) * scale[i] * dy.get(base + i);
+                    }
+
+                    //gx = gy * unitScale**-beta - 2 * alpha * beta * sum(a .* gy) / unitScale * x
+                    windowSums(reverse, depth, hw, halfN, window, sumPart);
+                    for (int i = 0; i < depth * hw; i++) {
+                        dx.set(base + i, dy.get(base + i) * scale[i]
+                                - 2 * alpha * beta * sumPart[i] * x.get(base + i) / unitScale[i]);
+                    }
+                }
+            }
+        });
+
+        return new Pair<Gradient, INDArray>(new DefaultGradient(), dx.array());
+    }
+
+    @Override
+    public INDArray activate(INDArray x, boolean training, final double k, double n, final double alpha,
+                             final double beta) {
+        if (x.rank() != 4 || !DirectValues.isSupported()) {
+            return null;
+        }
+
+        final int miniBatch = x.size(0);
+        final int depth = x.size(1);
+        final int hw = x.size(2) * x.size(3);
+        final int halfN = (int) n / 2;
+
+        final DirectValues in = DirectValues.read(x);
+        final DirectValues out = DirectValues.create(x.shape());
+
+        ParallelLoop.forRange(miniBatch, ParallelLoop.parallelism((long) miniBatch * depth * hw), new ParallelLoop.Body() {
+            @Override
+            public void apply(int from, int to) {
+                double[] sumSq = new double[depth * hw];
+                double[] window = new double[hw];
+                for (int e = from; e < to; e++) {
+                    int base = e * depth * hw;
+                    squareWindowSums(in, base, depth, hw, halfN, window, sumSq);
+                    //y = x * (k + alpha * sum_j x_j^2)^-beta
+                    for (int i = 0; i < depth * hw; i++) {
+                        out.set(base + i, in.get(base + i) * pow(k + alpha * sumSq[i], beta));
+                    }
+                }
+            }
+        });
+
+        return out.array();
+    }
+
+    /**
+     * Sum over channels j = max(0, c - halfN) ... min(depth - 1, c + halfN) for each channel c and location, of
+     * values[j]^2, for one example. The window is updated incrementally as c increases.
+     *
+     * @param values Values, for the example starting at the given offset, in [depth, hw] order
+     * @param offset Offset of the example in the values
+     * @param window Temporary array, of length hw
+     * @param out    Output, of length depth * hw
+     */
+    private static void squareWindowSums(DirectValues values, int offset, int depth, int hw, int halfN,
+                                         double[] window, double[] out) {
+        Arrays.fill(window, 0.0);
+        for (int j = 0; j <= halfN && j < depth; j++) {
+            addSquaresToWindow(values, offset + j * hw, hw, 1.0, window);
+        }
+        for (int c = 0; c < depth; c++) {
+            System.arraycopy(window, 0, out, c * hw, hw);
+            int add = c + halfN + 1;
+            int remove = c - halfN;
+            if (add < depth) {
+                addSquaresToWindow(values, offset + add * hw, hw, 1.0, window);
+            }
+            if (remove >= 0) {
+                addSquaresToWindow(values, offset + remove * hw, hw, -1.0, window);
+            }
+        }
+    }
+
+    /**
+     * As per {@link #squareWindowSums(DirectValues, int, int, int, int, double[], double[])}, but for the sum of
+     * (unsquared) values of one example, in [depth, hw] order. Output must not be the same array as values
+     */
+    private static void windowSums(double[] values, int depth, int hw, int halfN, double[] window, double[] out) {
+        Arrays.fill(window, 0.0);
+        for (int j = 0; j <= halfN && j < depth; j++) {
+            addToWindow(values, j * hw, hw, 1.0, window);
+        }
+        for (int c = 0; c < depth; c++) {
+            System.arraycopy(window, 0, out, c * hw, hw);
+            int add = c + halfN + 1;
+            int remove = c - halfN;
+            if (add < depth) {
+                addToWindow(values, add * hw, hw, 1.0, window);
+            }
+            if (remove >= 0) {
+                addToWindow(values, remove * hw, hw, -1.0, window);
+            }
+        }
+    }
+
+    private static void addSquaresToWindow(DirectValues values, int offset, int hw, double sign, double[] window) {
+        for (int i = 0; i < hw; i++) {
+            double v = values.get(offset + i);
+            window[i] += sign * v * v;
+        }
+    }
+
+    private static void addToWindow(double[] values, int offset, int hw, double sign, double[] window) {
+        for (int i = 0; i < hw; i++) {
+            window[i] += sign * values[offset + i];
+        }
+    }
+
+    /**
+     * @return base^-beta, with a fast path for the default beta of 0.75
+     */
+    private static double pow(double base, double beta) {
+        if (beta == 0.75) {
+            double s = Math.sqrt(base);
+            return 1.0 / (s * Math.sqrt(s));
+        }
+        return Math.pow(base, -beta);
+    }
+}
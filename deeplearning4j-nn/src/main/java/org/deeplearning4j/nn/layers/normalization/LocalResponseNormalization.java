@@ -71,6 +71,9 @@ public class LocalResponseNormalization extends BaseLayer<org.deeplearning4j.nn.
                 log.warn("Could not load CudnnLocalResponseNormalizationHelper", t);
             }
         }
+        if (helper == null && layerConf().isCpuNormalizationHelper()) {
+            helper = new CpuLocalResponseNormalizationHelper();
+        }
     }
 
     @Override
@@ -102,7 +102,8 @@ public class GravesLSTM extends BaseRecurrentLayer<org.deeplearning4j.nn.conf.la
                 GravesLSTMParamInitializer.RECURRENT_WEIGHT_KEY,
                 GravesLSTMParamInitializer.BIAS_KEY,
                 gradientViews,
-                null);
+                null,
+                workspace);
     }
 
 
@@ -151,7 +152,7 @@ public class GravesLSTM extends BaseRecurrentLayer<org.deeplearning4j.nn.conf.la
 
         return LSTMHelpers.activateHelper(this, this.conf, this.layerConf().getGateActivationFn(), this.input,
                 recurrentWeights, inputWeights, biases, training, prevOutputActivations, prevMemCellState,
-                forBackprop, true, GravesLSTMParamInitializer.INPUT_WEIGHT_KEY, null);
+                forBackprop, true, GravesLSTMParamInitializer.INPUT_WEIGHT_KEY, null, workspace);
     }
 
     @Override
@@ -6,11 +6,13 @@ import org.deeplearning4j.nn.api.Layer;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.gradient.DefaultGradient;
 import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.nn.layers.LayerWorkspace;
 import org.deeplearning4j.util.Dropout;
 import org.nd4j.linalg.activations.IActivation;
 import org.nd4j.linalg.activations.impl.ActivationSigmoid;
 import org.nd4j.linalg.api.blas.Level1;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.impl.broadcast.BroadcastMulOp;
 import org.nd4j.linalg.api.ops.impl.transforms.TimesOneMinus;
 import org.nd4j.linalg.api.ops.impl.transforms.arithmetic.MulOp;
 import org.nd4j.linalg.api.shape.Shape;
@@ -55,6 +57,32 @@ public class LSTMHelpers {
      * Returns FwdPassReturn object with activations/INDArrays. Allows activateHelper to be used for forward pass, backward pass
      * and rnnTimeStep whilst being reasonably efficient for all
      */
+    static public FwdPassReturn activateHelper(final Layer layer,
+                                               final NeuralNetConfiguration conf,
+                                               final IActivation gateActivationFn,
+                                               final INDArray input,
+                                               final INDArray recurrentWeights,
+                                               final INDArray originalInputWeights,
+                                               final INDArray biases,
+                                               final boolean training,
+                                               final INDArray originalPrevOutputActivations,
+                                               final INDArray originalPrevMemCellState,
+                                               boolean forBackprop,
+                                               boolean forwards,
+                                               final String inputWeightKey,
+                                               INDArray maskArray) {
+        return activateHelper(layer, conf, gateActivationFn, input, recurrentWeights, originalInputWeights, biases, training,
+                originalPrevOutputActivations, originalPrevMemCellState, forBackprop, forwards, inputWeightKey, maskArray, null);
+    }
+
+    /**
+     * As per {@link #activateHelper(Layer, NeuralNetConfiguration, IActivation, INDArray, INDArray, INDArray, INDArray,
+     * boolean, INDArray, INDArray, boolean, boolean, String, INDArray)}, but with internal work arrays (and the arrays
+     * needed for backprop, if forBackprop == true) taken from the specified workspace. The output activations (when
+     * forBackprop == false) are never taken from the workspace.
+     *
+     * @param workspace Workspace for reusable work arrays. May be null.
+     */
     static public FwdPassReturn activateHelper(final Layer layer,
                                                final NeuralNetConfiguration conf,
                                                final IActivation gateActivationFn,        //Activation function for the gates - sigmoid or hard sigmoid (must be found in range 0 to 1)
@@ -68,7 +96,8 @@ public class LSTMHelpers {
                                                boolean forBackprop,
                                                boolean forwards,
                                                final String inputWeightKey,
-                                               INDArray maskArray                   //Input mask: should only be used with bidirectional RNNs + variable length
+                                               INDArray maskArray,                  //Input mask: should only be used with bidirectional RNNs + variable length
+                                               LayerWorkspace workspace
                                                ) {
 
         //Mini-batch data format: for mini-batch size m, nIn inputs, and T time series length
@@ -116,7 +145,31 @@ public class LSTMHelpers {
         IActivation afn = conf.getLayer().getActivationFn();
         INDArray outputActivations = null;
 
+        //Input validation: check input data matches nIn
+        if(input.size(1) != inputWeights.size(0)){
+            throw new DL4JInvalidInputException("Received input with size(1) = " + input.size(1) + " (input array shape = "
+                    + Arrays.toString(input.shape()) + "); input.size(1) must match layer nIn size (nIn = " + inputWeights.size(0) + ")");
+        }
+        //Input validation: check that if past state is provided, that it has same
+        //These can be different if user forgets to call rnnClearPreviousState() between calls of rnnTimeStep
+        if(prevOutputActivations != null && prevOutputActivations.size(0) != input.size(0)){
+            throw new DL4JInvalidInputException("Previous activations (stored state) number of examples = " + prevOutputActivations.size(0)
+                    + " but input array number of examples = " + input.size(0) + ". Possible cause: using rnnTimeStep() without calling"
+                    + " rnnClearPreviousState() between different sequences?");
+        }
+
+        //Network input + bias contributions to the IFOG gates, for all time steps at once. Each time step: [miniBatch,4*layerSize]
+        INDArray ifogAll = ifogInputContribution(input, inputWeights, biases, is2dInput, workspace);
+
         FwdPassReturn toReturn = new FwdPassReturn();
+        //Preallocated (f order, time steps together) storage for the values needed for backprop
+        INDArray izAll = null;
+        INDArray fzAll = null;
+        INDArray ozAll = null;
+        INDArray gzAll = null;
+        INDArray memCellStateAll = null;
+        INDArray memCellActivationsAll = null;
+        INDArray fwdPassOutputAll = null;
         if (forBackprop) {
             toReturn.fwdPassOutputAsArrays = new INDArray[timeSeriesLength];
             toReturn.memCellState = new INDArray[timeSeriesLength];
@@ -126,10 +179,19 @@ public class LSTMHelpers {
             toReturn.fa = new INDArray[timeSeriesLength];
             toReturn.oa = new INDArray[timeSeriesLength];
             toReturn.ga = new INDArray[timeSeriesLength];
+            int[] shape = new int[]{miniBatchSize, hiddenLayerSize, timeSeriesLength};
+            //All of these are fully overwritten in the loop below
+            izAll = LayerWorkspace.createUninitialized(workspace, "iz", shape, 'f');
+            memCellStateAll = LayerWorkspace.createUninitialized(workspace, "memCellState", shape, 'f');
+            memCellActivationsAll = LayerWorkspace.createUninitialized(workspace, "memCellActivations", shape, 'f');
+            fwdPassOutputAll = LayerWorkspace.createUninitialized(workspace, "fwdPassOutput", shape, 'f');
             if(!sigmoidGates){
                 toReturn.fz = new INDArray[timeSeriesLength];
                 toReturn.oz = new INDArray[timeSeriesLength];
                 toReturn.gz = new INDArray[timeSeriesLength];
+                fzAll = LayerWorkspace.createUninitialized(workspace, "fz", shape, 'f');
+                ozAll = LayerWorkspace.createUninitialized(workspace, "oz", shape, 'f');
+                gzAll = LayerWorkspace.createUninitialized(workspace, "gz", shape, 'f');
             }
         } else {
             outputActivations = Nd4j.create(new int[]{miniBatchSize, hiddenLayerSize, timeSeriesLength},'f');   //F order to keep time steps together
@@ -138,24 +200,14 @@ public class LSTMHelpers {
 
         Level1 l1BLAS = Nd4j.getBlasWrapper().level1();
 
-        //Input validation: check input data matches nIn
-        if(input.size(1) != inputWeights.size(0)){
-            throw new DL4JInvalidInputException("Received input with size(1) = " + input.size(1) + " (input array shape = "
-                    + Arrays.toString(input.shape()) + "); input.size(1) must match layer nIn size (nIn = " + inputWeights.size(0) + ")");
-        }
-        //Input validation: check that if past state is provided, that it has same
-        //These can be different if user forgets to call rnnClearPreviousState() between calls of rnnTimeStep
-        if(prevOutputActivations != null && prevOutputActivations.size(0) != input.size(0)){
-            throw new DL4JInvalidInputException("Previous activations (stored state) number of examples = " + prevOutputActivations.size(0)
-                    + " but input array number of examples = " + input.size(0) + ". Possible cause: using rnnTimeStep() without calling"
-                    + " rnnClearPreviousState() between different sequences?");
-        }
-
         //initialize prevOutputActivations to zeroes
         if (prevOutputActivations == null) {
             prevOutputActivations = Nd4j.zeros(new int[]{miniBatchSize, hiddenLayerSize});
         }
 
+        //Work array for the peephole connection terms (and other temporary products); reused for all time steps
+        INDArray temp = LayerWorkspace.createUninitialized(workspace, "temp", new int[]{miniBatchSize, hiddenLayerSize},'f');
+
         for (int iTimeIndex = 0; iTimeIndex < timeSeriesLength; iTimeIndex++) {
             int time = iTimeIndex;
 
@@ -164,26 +216,22 @@ public class LSTMHelpers {
             }
 
 
-            INDArray miniBatchData = (is2dInput ? input : input.tensorAlongDimension(time, 1, 0));    //[Expected shape: [m,nIn]. Also deals with edge case of T=1, with 'time series' data of shape [m,nIn], equiv. to [m,nIn,1]
-            miniBatchData = Shape.toMmulCompatible(miniBatchData);
-
-
-            //Calculate activations for: network input + forget, output, input modulation gates. Next 3 lines are first part of those
-            INDArray ifogActivations = miniBatchData.mmul(inputWeights);    //Shape: [miniBatch,4*layerSize]
+            //Calculate activations for: network input + forget, output, input modulation gates.
+            //Input and bias contributions are already present; add the recurrent contribution
+            INDArray ifogActivations = ifogAll.tensorAlongDimension(time, 1, 0);    //Shape: [miniBatch,4*layerSize]
             Nd4j.gemm(prevOutputActivations, recurrentWeightsIFOG, ifogActivations, false, false, 1.0, 1.0);
-            ifogActivations.addiRowVector(biases);
 
             INDArray inputActivations = ifogActivations.get(NDArrayIndex.all(), NDArrayIndex.interval(0,hiddenLayerSize));
-            if (forBackprop) toReturn.iz[time] = inputActivations.dup('f');
-            conf.getLayer().getActivationFn().getActivation(inputActivations, training);
+            if (forBackprop) toReturn.iz[time] = izAll.tensorAlongDimension(time, 1, 0).assign(inputActivations);
+            afn.getActivation(inputActivations, training);
             if (forBackprop) toReturn.ia[time] = inputActivations;
 
             INDArray forgetGateActivations = ifogActivations.get(NDArrayIndex.all(), NDArrayIndex.interval(hiddenLayerSize,2*hiddenLayerSize));
-            INDArray pmcellWFF = prevMemCellState.dup('f').muliRowVector(wFFTranspose);
-            l1BLAS.axpy(pmcellWFF.length(), 1.0, pmcellWFF, forgetGateActivations);   //y = a*x + y i.e., forgetGateActivations.addi(pmcellWFF)
-            //Above line: treats matrix as a vector. Can only do this because we're sure both pwcelWFF and forgetGateACtivations are f order, offset 0 and have same strides
+            Nd4j.getExecutioner().exec(new BroadcastMulOp(prevMemCellState, wFFTranspose, temp, 1));
+            l1BLAS.axpy(temp.length(), 1.0, temp, forgetGateActivations);   //y = a*x + y i.e., forgetGateActivations.addi(pmcellWFF)
+            //Above line: treats matrix as a vector. Can only do this because we're sure both temp and forgetGateACtivations are f order, and have same strides
             if(forBackprop && !sigmoidGates){
-                toReturn.fz[time] = forgetGateActivations.dup('f');     //Forget gate pre-out (z)
+                toReturn.fz[time] = fzAll.tensorAlongDimension(time, 1, 0).assign(forgetGateActivations);     //Forget gate pre-out (z)
             }
             gateActivationFn.getActivation(forgetGateActivations, training);
 
@@ -191,42 +239,49 @@ public class LSTMHelpers {
 
 
             INDArray inputModGateActivations = ifogActivations.get(NDArrayIndex.all(), NDArrayIndex.interval(3*hiddenLayerSize,4*hiddenLayerSize));
-            INDArray pmcellWGG = prevMemCellState.dup('f').muliRowVector(wGGTranspose);
-            l1BLAS.axpy(pmcellWGG.length(), 1.0, pmcellWGG, inputModGateActivations);   //inputModGateActivations.addi(pmcellWGG)
+            Nd4j.getExecutioner().exec(new BroadcastMulOp(prevMemCellState, wGGTranspose, temp, 1));
+            l1BLAS.axpy(temp.length(), 1.0, temp, inputModGateActivations);   //inputModGateActivations.addi(pmcellWGG)
             if(forBackprop && !sigmoidGates){
-                toReturn.gz[time] = inputModGateActivations.dup('f');   //Input modulation gate pre-out (z)
+                toReturn.gz[time] = gzAll.tensorAlongDimension(time, 1, 0).assign(inputModGateActivations);   //Input modulation gate pre-out (z)
             }
             gateActivationFn.getActivation(inputModGateActivations, training);
             if (forBackprop) toReturn.ga[time] = inputModGateActivations;
 
             //Memory cell state
             INDArray currentMemoryCellState;
-            INDArray inputModMulInput;
             if(forBackprop){
-                currentMemoryCellState = prevMemCellState.dup('f').muli(forgetGateActivations);
-                inputModMulInput = inputModGateActivations.dup('f').muli(inputActivations);
+                //Gate activations are needed for backprop: write results to separate arrays
+                currentMemoryCellState = memCellStateAll.tensorAlongDimension(time, 1, 0);
+                Nd4j.getExecutioner().exec(new MulOp(prevMemCellState, forgetGateActivations, currentMemoryCellState));
+                Nd4j.getExecutioner().exec(new MulOp(inputModGateActivations, inputActivations, temp));
             } else {
                 currentMemoryCellState = forgetGateActivations.muli(prevMemCellState);
-                inputModMulInput = inputModGateActivations.muli(inputActivations);
+                Nd4j.getExecutioner().exec(new MulOp(inputModGateActivations, inputActivations, temp));
             }
-            l1BLAS.axpy(currentMemoryCellState.length(), 1.0, inputModMulInput, currentMemoryCellState);   //currentMemoryCellState.addi(inputModMulInput)
+            l1BLAS.axpy(currentMemoryCellState.length(), 1.0, temp, currentMemoryCellState);   //currentMemoryCellState.addi(inputModMulInput)
 
             INDArray outputGateActivations = ifogActivations.get(NDArrayIndex.all(), NDArrayIndex.interval(2*hiddenLayerSize,3*hiddenLayerSize));
-            INDArray pmcellWOO = currentMemoryCellState.dup('f').muliRowVector(wOOTranspose);
-            l1BLAS.axpy(pmcellWOO.length(), 1.0, pmcellWOO, outputGateActivations);   //outputGateActivations.addi(pmcellWOO)
+            Nd4j.getExecutioner().exec(new BroadcastMulOp(currentMemoryCellState, wOOTranspose, temp, 1));
+            l1BLAS.axpy(temp.length(), 1.0, temp, outputGateActivations);   //outputGateActivations.addi(pmcellWOO)
             if(forBackprop && !sigmoidGates){
-                toReturn.oz[time] = outputGateActivations.dup('f');     //Output gate activations
+                toReturn.oz[time] = ozAll.tensorAlongDimension(time, 1, 0).assign(outputGateActivations);     //Output gate activations
             }
             gateActivationFn.getActivation(outputGateActivations, training);
             if (forBackprop) toReturn.oa[time] = outputGateActivations;
 
             //LSTM unit outputs:
-            INDArray currMemoryCellActivation = afn.getActivation(currentMemoryCellState.dup('f'), training);
+            INDArray currMemoryCellActivation = null;
             INDArray currHiddenUnitActivations;
             if(forBackprop){
-                currHiddenUnitActivations = currMemoryCellActivation.dup('f').muli(outputGateActivations);    //Expected shape: [m,hiddenLayerSize]
+                currMemoryCellActivation = memCellActivationsAll.tensorAlongDimension(time, 1, 0).assign(currentMemoryCellState);
+                afn.getActivation(currMemoryCellActivation, training);
+                currHiddenUnitActivations = fwdPassOutputAll.tensorAlongDimension(time, 1, 0);
+                Nd4j.getExecutioner().exec(new MulOp(currMemoryCellActivation, outputGateActivations, currHiddenUnitActivations));    //Expected shape: [m,hiddenLayerSize]
             } else {
-                currHiddenUnitActivations = currMemoryCellActivation.muli(outputGateActivations);    //Expected shape: [m,hiddenLayerSize]
+                //Calculate directly in the output array
+                currHiddenUnitActivations = outputActivations.tensorAlongDimension(time, 1, 0).assign(currentMemoryCellState);
+                afn.getActivation(currHiddenUnitActivations, training);
+                currHiddenUnitActivations.muli(outputGateActivations);    //Expected shape: [m,hiddenLayerSize]
             }
 
             if(maskArray != null){
@@ -243,20 +298,78 @@ public class LSTMHelpers {
                 toReturn.fwdPassOutputAsArrays[time] = currHiddenUnitActivations;
                 toReturn.memCellState[time] = currentMemoryCellState;
                 toReturn.memCellActivations[time] = currMemoryCellActivation;
-            } else {
-                outputActivations.tensorAlongDimension(time, 1, 0).assign(currHiddenUnitActivations);
             }
 
             prevOutputActivations = currHiddenUnitActivations;
             prevMemCellState = currentMemoryCellState;
-
-            toReturn.lastAct = currHiddenUnitActivations;
-            toReturn.lastMemCell = currentMemoryCellState;
         }
 
+        //Last activations and memory cell state are views of the arrays for all time steps: copy, so that stored
+        //state (rnnTimeStep, TBPTT) doesn't keep those arrays alive, and isn't affected by changes to the output array
+        toReturn.lastAct = prevOutputActivations.dup('f');
+        toReturn.lastMemCell = prevMemCellState.dup('f');
+
         return toReturn;
     }
 
+    /**
+     * Calculate the contribution of the network input (and biases) to the IFOG gate activations, for all time steps at
+     * once: i.e., a single [miniBatchSize*T, nIn] x [nIn, 4*hiddenLayerSize] matrix multiplication, instead of T
+     * separate [miniBatchSize, nIn] x [nIn, 4*hiddenLayerSize] matrix multiplications
+     *
+     * @return Array with shape [miniBatchSize, 4*hiddenLayerSize, T], in f order so that each time step is contiguous
+     */
+    private static INDArray ifogInputContribution(INDArray input, INDArray inputWeights, INDArray biases, boolean is2dInput,
+                                                  LayerWorkspace workspace) {
+        int miniBatchSize = input.size(0);
+        int timeSeriesLength = (is2dInput ? 1 : input.size(2));
+        int ifogSize = inputWeights.size(1);
+
+        INDArray ifog2d = LayerWorkspace.createUninitialized(workspace, "ifog2d", new int[]{miniBatchSize * timeSeriesLength, ifogSize}, 'f');
+        Nd4j.gemm(timeSeriesAs2d(input, is2dInput), Shape.toMmulCompatible(inputWeights), ifog2d, false, false, 1.0, 0.0);
+        ifog2d.addiRowVector(biases);
+
+        INDArray ifogAll = LayerWorkspace.createUninitialized(workspace, "ifog", new int[]{miniBatchSize, ifogSize, timeSeriesLength}, 'f');
+        ifogAll.assign(ifog2d.reshape('f', miniBatchSize, timeSeriesLength, ifogSize).permute(0, 2, 1));
+        return ifogAll;
+    }
+
+    /**
+     * Reshape time series data with shape [miniBatchSize, size, T] to a 2d array with shape [miniBatchSize*T, size], in
+     * f order. Row (t*miniBatchSize + i) of the returned array is example i at time step t.
+     */
+    private static INDArray timeSeriesAs2d(INDArray timeSeries, boolean is2d) {
+        if (is2d) return Shape.toMmulCompatible(timeSeries);
+        int[] shape = timeSeries.shape();
+        return timeSeries.permute(0, 2, 1).dup('f').reshape('f', shape[0] * shape[2], shape[1]);
+    }
+
+    static public Pair<Gradient, INDArray> backpropGradientHelper(final NeuralNetConfiguration conf,
+                                                                  final IActivation gateActivationFn,
+                                                                  final INDArray input,
+                                                                  final INDArray recurrentWeights,
+                                                                  final INDArray inputWeights,
+                                                                  final INDArray epsilon,
+                                                                  final boolean truncatedBPTT,
+                                                                  final int tbpttBackwardLength,
+                                                                  final FwdPassReturn fwdPass,
+                                                                  final boolean forwards,
+                                                                  final String inputWeightKey,
+                                                                  final String recurrentWeightKey,
+                                                                  final String biasWeightKey,
+                                                                  final Map<String,INDArray> gradientViews,
+                                                                  INDArray maskArray) {
+        return backpropGradientHelper(conf, gateActivationFn, input, recurrentWeights, inputWeights, epsilon, truncatedBPTT,
+                tbpttBackwardLength, fwdPass, forwards, inputWeightKey, recurrentWeightKey, biasWeightKey, gradientViews,
+                maskArray, null);
+    }
+
+    /**
+     * Calculate the gradients and epsilons for the LSTM layer, with internal work arrays (and the returned epsilons) taken
+     * from the specified workspace, if any
+     *
+     * @param workspace Workspace for reusable work arrays. May be null.
+     */
     static public Pair<Gradient, INDArray> backpropGradientHelper(final NeuralNetConfiguration conf,
                                                                   final IActivation gateActivationFn,
                                                                   final INDArray input,
@@ -271,7 +384,8 @@ public class LSTMHelpers {
                                                                   final String recurrentWeightKey,
                                                                   final String biasWeightKey,
                                                                   final Map<String,INDArray> gradientViews,
-                                                                  INDArray maskArray                   //Input mask: should only be used with bidirectional RNNs + variable length
+                                                                  INDArray maskArray,                  //Input mask: should only be used with bidirectional RNNs + variable length
+                                                                  LayerWorkspace workspace
                                                                   ) {
 
 
@@ -287,16 +401,23 @@ public class LSTMHelpers {
         INDArray wGGTranspose = recurrentWeights.get(NDArrayIndex.all(), point(4 * hiddenLayerSize+2)).transpose();
 
         INDArray wIFOG = recurrentWeights.get(NDArrayIndex.all(), NDArrayIndex.interval(0,4*hiddenLayerSize));
-        //F order here so that content for time steps are together
-        INDArray epsilonNext = Nd4j.create(new int[]{miniBatchSize, prevLayerSize, timeSeriesLength},'f');    //i.e., what would be W^L*(delta^L)^T. Shape: [m,n^(L-1),T]
 
-        INDArray nablaCellStateNext = null;
+        //Deltas for the IFOG gates, all time steps. F order here so that content for time steps are together
+        //Zero for time steps not included in backprop (TBPTT), and for the forget gate at t=0
+        INDArray deltaifogAll = LayerWorkspace.create(workspace, "deltaifog", new int[]{miniBatchSize, 4*hiddenLayerSize, timeSeriesLength},'f');
 
-        INDArray deltaifogNext = Nd4j.create(new int[]{miniBatchSize,4*hiddenLayerSize},'f');
-        INDArray deltaiNext = deltaifogNext.get(NDArrayIndex.all(), NDArrayIndex.interval(0,hiddenLayerSize));
-        INDArray deltafNext = deltaifogNext.get(NDArrayIndex.all(), NDArrayIndex.interval(hiddenLayerSize,2*hiddenLayerSize));
-        INDArray deltaoNext = deltaifogNext.get(NDArrayIndex.all(), NDArrayIndex.interval(2*hiddenLayerSize,3*hiddenLayerSize));
-        INDArray deltagNext = deltaifogNext.get(NDArrayIndex.all(), NDArrayIndex.interval(3*hiddenLayerSize,4*hiddenLayerSize));
+        INDArray nablaCellStateNext = null;
+        INDArray deltaifogNext = null;  //Deltas for the previously processed time step (i.e., t+1 for forward direction)
+        INDArray deltafNext = null;
+        INDArray deltagNext = null;
+
+        //Work arrays, reused for all time steps
+        int[] workShape = new int[]{miniBatchSize,hiddenLayerSize};
+        INDArray nablaOut = LayerWorkspace.createUninitialized(workspace, "nablaOut", workShape, 'f');
+        INDArray[] nablaCellStates = new INDArray[]{LayerWorkspace.createUninitialized(workspace, "nablaCellState0", workShape, 'f'),
+                LayerWorkspace.createUninitialized(workspace, "nablaCellState1", workShape, 'f')};
+        INDArray temp1 = LayerWorkspace.createUninitialized(workspace, "temp1", workShape, 'f');
+        INDArray temp2 = LayerWorkspace.createUninitialized(workspace, "temp2", workShape, 'f');
 
         Level1 l1BLAS = Nd4j.getBlasWrapper().level1();
         int endIdx = 0;
@@ -322,7 +443,6 @@ public class LSTMHelpers {
         boolean sigmoidGates = gateActivationFn instanceof ActivationSigmoid;
         IActivation afn = conf.getLayer().getActivationFn();
 
-        INDArray timeStepMaskColumn = null;
         for (int iTimeIndex = timeSeriesLength - 1; iTimeIndex >= endIdx; iTimeIndex--) {
             int time = iTimeIndex;
             int inext = 1;
@@ -332,14 +452,20 @@ public class LSTMHelpers {
                 inext = -1;
             }
 
+            INDArray deltaifog = deltaifogAll.tensorAlongDimension(time, 1, 0);   //Shape: [m,4*n^L], f order and contiguous
+            INDArray deltai = deltaifog.get(NDArrayIndex.all(), NDArrayIndex.interval(0,hiddenLayerSize));
+            INDArray deltaf = deltaifog.get(NDArrayIndex.all(), NDArrayIndex.interval(hiddenLayerSize,2*hiddenLayerSize));
+            INDArray deltao = deltaifog.get(NDArrayIndex.all(), NDArrayIndex.interval(2*hiddenLayerSize,3*hiddenLayerSize));
+            INDArray deltag = deltaifog.get(NDArrayIndex.all(), NDArrayIndex.interval(3*hiddenLayerSize,4*hiddenLayerSize));
 
-            //First: calclate the components of nablaCellState that relies on the next time step deltas, so we can overwrite the deltas
-            INDArray nablaCellState;
+            //First: calclate the components of nablaCellState that relies on the next time step deltas
+            INDArray nablaCellState = nablaCellStates[iTimeIndex % 2];
             if(iTimeIndex != timeSeriesLength -1){
-                nablaCellState = deltafNext.dup('f').muliRowVector(wFFTranspose);
-                l1BLAS.axpy(nablaCellState.length(), 1.0, deltagNext.dup('f').muliRowVector(wGGTranspose), nablaCellState);
+                Nd4j.getExecutioner().exec(new BroadcastMulOp(deltafNext, wFFTranspose, nablaCellState, 1));
+                Nd4j.getExecutioner().exec(new BroadcastMulOp(deltagNext, wGGTranspose, temp1, 1));
+                l1BLAS.axpy(nablaCellState.length(), 1.0, temp1, nablaCellState);
             } else {
-                nablaCellState = Nd4j.create(new int[]{miniBatchSize,hiddenLayerSize},'f');
+                nablaCellState.assign(0);
             }
 
             INDArray prevMemCellState = (iTimeIndex == 0 ? null : fwdPass.memCellState[time - inext]);
@@ -350,7 +476,7 @@ public class LSTMHelpers {
             //LSTM unit output errors (dL/d(a_out)); not to be confused with \delta=dL/d(z_out)
             INDArray epsilonSlice = (is2dInput ? epsilon : epsilon.tensorAlongDimension(time, 1, 0));        //(w^{L+1}*(delta^{(L+1)t})^T)^T or equiv.
 
-            INDArray nablaOut = Shape.toOffsetZeroCopy(epsilonSlice, 'f'); //Shape: [m,n^L]
+            nablaOut.assign(epsilonSlice); //Shape: [m,n^L]
             if (iTimeIndex != timeSeriesLength - 1) {
                 //if t == timeSeriesLength-1 then deltaiNext etc are zeros
                 Nd4j.gemm(deltaifogNext, wIFOG, nablaOut, false, true, 1.0, 1.0);
@@ -361,21 +487,21 @@ public class LSTMHelpers {
             INDArray ao = fwdPass.oa[time];
 
             //Normally would use zo.dup() in above line, but won't be using zo again (for this time step). Ditto for zf, zg, zi
-            INDArray deltao = deltaoNext;
             Nd4j.getExecutioner().exec(new MulOp(nablaOut,sigmahOfS,deltao));
             if(sigmoidGates){
-                INDArray sigmaoPrimeOfZo = Nd4j.getExecutioner().execAndReturn(new TimesOneMinus(ao.dup('f')));    //Equivalent to sigmoid deriv on zo
-                deltao.muli(sigmaoPrimeOfZo);
+                Nd4j.getExecutioner().exec(new TimesOneMinus(ao, temp1));    //Equivalent to sigmoid deriv on zo
+                deltao.muli(temp1);
             } else {
                 deltao.assign(gateActivationFn.backprop(fwdPass.oz[time], deltao).getFirst());      //Deltao needs to be modified in-place
                 //TODO: optimize (no assign)
             }
 
             //Memory cell error:
-            INDArray temp = afn.backprop(currMemCellState.dup('f'), ao.muli(nablaOut)).getFirst();      //TODO activation functions with params
+            temp1.assign(currMemCellState);
+            INDArray temp = afn.backprop(temp1, ao.muli(nablaOut)).getFirst();      //TODO activation functions with params
             l1BLAS.axpy(nablaCellState.length(), 1.0, temp, nablaCellState);
-            INDArray deltaMulRowWOO = deltao.dup('f').muliRowVector(wOOTranspose);
-            l1BLAS.axpy(nablaCellState.length(), 1.0, deltaMulRowWOO, nablaCellState); //nablaCellState.addi(deltao.mulRowVector(wOOTranspose));
+            Nd4j.getExecutioner().exec(new BroadcastMulOp(deltao, wOOTranspose, temp2, 1));
+            l1BLAS.axpy(nablaCellState.length(), 1.0, temp2, nablaCellState); //nablaCellState.addi(deltao.mulRowVector(wOOTranspose));
             if (iTimeIndex != timeSeriesLength - 1) {
                 INDArray nextForgetGateAs = fwdPass.fa[time + inext];
                 int length = nablaCellState.length();
@@ -383,18 +509,16 @@ public class LSTMHelpers {
             }
             nablaCellStateNext = nablaCellState;    //Store for use in next iteration
 
-            //Forget gate delta:
+            //Forget gate delta (remains zero at t=0: no contribution from forget gate):
             INDArray af = fwdPass.fa[time];
-            INDArray deltaf = null;
             if (iTimeIndex > 0) {
-                deltaf = deltafNext;
                 if( sigmoidGates ) {
                     Nd4j.getExecutioner().exec(new TimesOneMinus(af, deltaf));
                     deltaf.muli(nablaCellState);
                     deltaf.muli(prevMemCellState);
                 } else {
-                    INDArray temp2 = nablaCellState.mul(prevMemCellState);
-                    deltaf.assign(gateActivationFn.backprop(fwdPass.fz[time].dup('f'), temp2).getFirst());  //deltaf needs to be modified in-place
+                    Nd4j.getExecutioner().exec(new MulOp(nablaCellState, prevMemCellState, temp1));
+                    deltaf.assign(gateActivationFn.backprop(fwdPass.fz[time], temp1).getFirst());  //deltaf needs to be modified in-place
                     //TODO activation functions with params
                 }
             }
@@ -403,23 +527,21 @@ public class LSTMHelpers {
             //Input modulation gate delta:
             INDArray ag = fwdPass.ga[time];
             INDArray ai = fwdPass.ia[time];
-            INDArray deltag = deltagNext;
             if( sigmoidGates ){
                 Nd4j.getExecutioner().exec(new TimesOneMinus(ag,deltag));   //Equivalent to sigmoid deriv on zg
                 deltag.muli(ai);
                 deltag.muli(nablaCellState);
             } else {
-                INDArray temp2 = Nd4j.getExecutioner().execAndReturn(new MulOp(ai,nablaCellState,Nd4j.createUninitialized(ai.shape(), 'f')));
-                deltag.assign(gateActivationFn.backprop(fwdPass.gz[time],temp2).getFirst());
+                Nd4j.getExecutioner().exec(new MulOp(ai,nablaCellState,temp1));
+                deltag.assign(gateActivationFn.backprop(fwdPass.gz[time],temp1).getFirst());
                 //TODO activation functions with params; optimize (no assign)
             }
             //Shape: [m,n^L]
 
             //Network input delta:
             INDArray zi = fwdPass.iz[time];
-            INDArray deltai = deltaiNext;
-            temp = Nd4j.getExecutioner().execAndReturn(new MulOp(ag,nablaCellState,Nd4j.createUninitialized(deltai.shape(), 'f')));
-            deltai.assign(afn.backprop(zi, temp).getFirst());
+            Nd4j.getExecutioner().exec(new MulOp(ag,nablaCellState,temp1));
+            deltai.assign(afn.backprop(zi, temp1).getFirst());
             //TODO activation functions with params; also: optimize this (no assign)
             //Shape: [m,n^L]
 
@@ -428,69 +550,44 @@ public class LSTMHelpers {
             if (maskArray != null) {
                 //Mask array is present: bidirectional RNN -> need to zero out these errors to avoid using errors from a masked time step
                 // to calculate the parameter gradients.  Mask array has shape [minibatch, timeSeriesLength] -> get column(this time step)
-                timeStepMaskColumn = maskArray.getColumn(time);
-                deltaifogNext.muliColumnVector(timeStepMaskColumn);
-                //Later, the deltaifogNext is used to calculate: input weight gradients, recurrent weight gradients, bias gradients
-            }
-
-            INDArray prevLayerActivationSlice = Shape.toMmulCompatible(is2dInput ? input : input.tensorAlongDimension(time, 1, 0));
-            if(iTimeIndex > 0){
-                //Again, deltaifog_current == deltaifogNext at this point... same array
-                Nd4j.gemm(prevLayerActivationSlice, deltaifogNext, iwGradientsOut, true, false, 1.0, 1.0);
-            } else {
-                INDArray iwGradients_i = iwGradientsOut.get(NDArrayIndex.all(), NDArrayIndex.interval(0,hiddenLayerSize));
-                Nd4j.gemm(prevLayerActivationSlice, deltai, iwGradients_i, true, false, 1.0, 1.0);
-                INDArray iwGradients_og = iwGradientsOut.get(NDArrayIndex.all(), NDArrayIndex.interval(2*hiddenLayerSize, 4*hiddenLayerSize));
-                INDArray deltaog = deltaifogNext.get(NDArrayIndex.all(), NDArrayIndex.interval(2*hiddenLayerSize,4*hiddenLayerSize));
-                Nd4j.gemm(prevLayerActivationSlice, deltaog, iwGradients_og, true, false, 1.0, 1.0);
+                //As epsilonNext is calculated from these deltas, this also sends only 0s to the layer below at this time step
+                deltaifog.muliColumnVector(maskArray.getColumn(time));
             }
 
             if (iTimeIndex > 0) {
                 //If t==0, then prevHiddenUnitActivation==zeros(n^L,n^L), so dL/dW for recurrent weights will end up as 0 anyway
-                //At this point: deltaifog and deltaifogNext are the same thing...
                 //So what we are actually doing here is sum of (prevAct^transpose * deltaifog_current)
-                Nd4j.gemm(prevHiddenUnitActivation, deltaifogNext, rwGradientsIFOG, true, false, 1.0, 1.0);
+                Nd4j.gemm(prevHiddenUnitActivation, deltaifog, rwGradientsIFOG, true, false, 1.0, 1.0);
 
                 //Shape: [1,n^L]. sum(0) is sum over examples in mini-batch.
                 //Can use axpy here because result of sum and rwGradients[4 to 6] have order Nd4j.order(), via Nd4j.create()
-                INDArray dLdwFF = deltaf.dup('f').muli(prevMemCellState).sum(0);    //mul not mmul because these weights are from unit j->j only (whereas other recurrent weights are i->j for all i,j)
-                l1BLAS.axpy(hiddenLayerSize,1.0,dLdwFF,rwGradientsFF);     //rwGradients[4].addi(dLdwFF);    //dL/dw_{FF}
-                INDArray dLdwGG = deltag.dup('f').muli(prevMemCellState).sum(0);
-                l1BLAS.axpy(hiddenLayerSize,1.0,dLdwGG,rwGradientsGG);     //rwGradients[6].addi(dLdwGG);
+                Nd4j.getExecutioner().exec(new MulOp(deltaf, prevMemCellState, temp1));    //mul not mmul because these weights are from unit j->j only (whereas other recurrent weights are i->j for all i,j)
+                l1BLAS.axpy(hiddenLayerSize,1.0,temp1.sum(0),rwGradientsFF);     //rwGradients[4].addi(dLdwFF);    //dL/dw_{FF}
+                Nd4j.getExecutioner().exec(new MulOp(deltag, prevMemCellState, temp1));
+                l1BLAS.axpy(hiddenLayerSize,1.0,temp1.sum(0),rwGradientsGG);     //rwGradients[6].addi(dLdwGG);
             }
 
-            INDArray dLdwOO = deltao.dup('f').muli(currMemCellState).sum(0);    //Expected shape: [n^L,1]. sum(0) is sum over examples in mini-batch.
-            l1BLAS.axpy(hiddenLayerSize,1.0,dLdwOO,rwGradientsOO); //rwGradients[5].addi(dLdwOO);    //dL/dw_{OOxy}
+            Nd4j.getExecutioner().exec(new MulOp(deltao, currMemCellState, temp1));
+            l1BLAS.axpy(hiddenLayerSize,1.0,temp1.sum(0),rwGradientsOO); //rwGradients[5].addi(dLdwOO);    //dL/dw_{OOxy}
 
-            if(iTimeIndex > 0){
-                l1BLAS.axpy(4*hiddenLayerSize,1.0, deltaifogNext.sum(0), bGradientsOut);
-            } else {
-                l1BLAS.axpy(hiddenLayerSize,1.0,deltai.sum(0),bGradientsOut);    //Sneaky way to do bGradients_i += deltai.sum(0)
-                INDArray ogBiasToAdd = deltaifogNext.get(NDArrayIndex.all(), NDArrayIndex.interval(2*hiddenLayerSize,4*hiddenLayerSize)).sum(0);
-                INDArray ogBiasGrad = bGradientsOut.get(NDArrayIndex.point(0), NDArrayIndex.interval(2*hiddenLayerSize,4*hiddenLayerSize));
-                l1BLAS.axpy(2*hiddenLayerSize,1.0,ogBiasToAdd,ogBiasGrad);
-            }
+            deltaifogNext = deltaifog;
+            deltafNext = deltaf;
+            deltagNext = deltag;
+        }
 
-            //Calculate epsilonNext - i.e., equiv. to what would be (w^L*(d^(Lt))^T)^T in a normal network
-            //But here, need to add 4 weights * deltas for the IFOG gates
-            INDArray epsilonNextSlice = epsilonNext.tensorAlongDimension(time, 1, 0);   //This slice: f order and contiguous, due to epsilonNext being defined as f order.
-            if(iTimeIndex > 0){
-                Nd4j.gemm(deltaifogNext, inputWeights, epsilonNextSlice, false, true, 1.0, 1.0);
-            } else {
-                //No contribution from forget gate at t=0
-                INDArray wi = inputWeights.get(NDArrayIndex.all(), NDArrayIndex.interval(0,hiddenLayerSize));
-                Nd4j.gemm(deltai, wi, epsilonNextSlice, false, true, 1.0, 1.0);
-                INDArray deltaog = deltaifogNext.get(NDArrayIndex.all(), NDArrayIndex.interval(2*hiddenLayerSize,4*hiddenLayerSize));
-                INDArray wog = inputWeights.get(NDArrayIndex.all(), NDArrayIndex.interval(2*hiddenLayerSize,4*hiddenLayerSize));
-                Nd4j.gemm(deltaog, wog, epsilonNextSlice, false, true, 1.0, 1.0);   //epsilonNextSlice.addi(deltao.mmul(woTranspose)).addi(deltag.mmul(wgTranspose));
-            }
+        //Input weight gradients, bias gradients and epsilonNext don't depend on the recurrence: calculate them for all
+        //time steps at once, with a single [nIn,m*T] x [m*T,4*n^L] and a single [m*T,4*n^L] x [4*n^L,nIn] matrix multiply
+        INDArray deltaifog2d = timeSeriesAs2d(deltaifogAll, false);    //Shape: [m*T,4*n^L]
+        Nd4j.gemm(timeSeriesAs2d(input, input.rank() < 3), deltaifog2d, iwGradientsOut, true, false, 1.0, 1.0);
+        l1BLAS.axpy(4*hiddenLayerSize,1.0, deltaifog2d.sum(0), bGradientsOut);
 
-            if (maskArray != null) {
-                //Mask array is present: bidirectional RNN -> need to zero out these errors to avoid sending anything
-                // but 0s to the layer below at this time step (for the given example)
-                epsilonNextSlice.muliColumnVector(timeStepMaskColumn);
-            }
-        }
+        //Calculate epsilonNext - i.e., equiv. to what would be (w^L*(d^(Lt))^T)^T in a normal network
+        //But here, need to add 4 weights * deltas for the IFOG gates
+        INDArray epsilonNext2d = LayerWorkspace.createUninitialized(workspace, "epsilonNext2d", new int[]{miniBatchSize * timeSeriesLength, prevLayerSize},'f');
+        Nd4j.gemm(deltaifog2d, inputWeights, epsilonNext2d, false, true, 1.0, 0.0);
+        //F order here so that content for time steps are together
+        INDArray epsilonNext = LayerWorkspace.createUninitialized(workspace, "epsilonNext", new int[]{miniBatchSize, prevLayerSize, timeSeriesLength},'f');    //i.e., what would be W^L*(delta^L)^T. Shape: [m,n^(L-1),T]
+        epsilonNext.assign(epsilonNext2d.reshape('f', miniBatchSize, timeSeriesLength, prevLayerSize).permute(0, 2, 1));
 
         Gradient retGradient = new DefaultGradient();
         retGradient.gradientForVariable().put(inputWeightKey, iwGradientsOut);
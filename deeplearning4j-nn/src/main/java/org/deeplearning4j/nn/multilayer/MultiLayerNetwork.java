@@ -36,13 +36,17 @@ import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.conf.layers.FeedForwardLayer;
 import org.deeplearning4j.nn.gradient.DefaultGradient;
 import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.nn.gradient.MicroBatchAccumulator;
+import org.deeplearning4j.nn.layers.BaseLayer;
 import org.deeplearning4j.nn.layers.FrozenLayer;
+import org.deeplearning4j.nn.layers.LayerWorkspace;
 import org.deeplearning4j.nn.updater.MultiLayerUpdater;
 import org.deeplearning4j.nn.updater.UpdaterCreator;
 import org.deeplearning4j.nn.weights.WeightInit;
 import org.deeplearning4j.optimize.Solver;
 import org.deeplearning4j.optimize.api.ConvexOptimizer;
 import org.deeplearning4j.optimize.api.IterationListener;
+import org.deeplearning4j.optimize.api.LayerTrainingListener;
 import org.deeplearning4j.optimize.api.TrainingListener;
 import org.deeplearning4j.util.ModelSerializer;
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -104,6 +108,12 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
 
     protected transient Solver solver;	//Used to call optimizers during backprop
 
+    protected boolean layerWorkspacesEnabled = false;
+
+    //Mask arrays as last set via setLayerMaskArrays. Needed to split masks for gradient accumulation (micro-batching)
+    protected transient INDArray inputMaskArray;
+    protected transient INDArray labelMaskArray;
+
 
     public MultiLayerNetwork(MultiLayerConfiguration conf) {
         this.layerWiseConfigurations = conf;
@@ -446,6 +456,8 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
                 layerMap.put(conf.getLayer().getLayerName(), layers[i]);
             }
             initCalled = true;
+
+            if(layerWorkspacesEnabled) applyLayerWorkspaces();
         }
 
         //Set parameters in MultiLayerNetwork.defaultConfiguration for later use in BaseOptimizer.setupSearchState() etc
@@ -706,7 +718,9 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
         activations.add(currInput);
 
         for (int i = 0; i <= layerNum; i++) {
+            if (train) fireLayerEvent(i, LayerTrainingListener.Phase.FORWARD, true);
             currInput = activationFromPrevLayer(i, currInput,train);
+            if (train) fireLayerEvent(i, LayerTrainingListener.Phase.FORWARD, false);
             //applies drop connect to the activation
             activations.add(currInput);
         }
@@ -790,6 +804,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
             }
             ret.setLayers(clonedLayers);
         }
+        ret.setLayerWorkspacesEnabled(layerWorkspacesEnabled);
         return ret;
     }
 
@@ -833,6 +848,16 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
         return flattenedParams;
     }
 
+    /**
+     * Returns the flattened gradients array for the network: the backprop gradients for all layers are views of this
+     * array, in the same order as the parameters in {@link #params()}
+     *
+     * @return the flattened gradients, or null if the gradients view has not yet been initialized
+     */
+    public INDArray getFlattenedGradients() {
+        return flattenedGradients;
+    }
+
     /**
      * Set the parameters for this model.
      * This expects a linear ndarray
@@ -1034,7 +1059,9 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
             if (labels == null)
                 throw new IllegalStateException("No labels found");
             outputLayer.setLabels(labels);
+            fireLayerEvent(numLayers - 1, LayerTrainingListener.Phase.BACKWARD, true);
             currPair = outputLayer.backpropGradient(null);
+            fireLayerEvent(numLayers - 1, LayerTrainingListener.Phase.BACKWARD, false);
 
             for( Map.Entry<String, INDArray> entry : currPair.getFirst().gradientForVariable().entrySet()) {
                 String origName = entry.getKey();
@@ -1054,7 +1081,9 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
         for(int j = layerFrom; j >= 0; j--) {
             currLayer = getLayer(j);
             if (currLayer instanceof FrozenLayer) break;
+            fireLayerEvent(j, LayerTrainingListener.Phase.BACKWARD, true);
             currPair = currLayer.backpropGradient(currPair.getSecond());
+            fireLayerEvent(j, LayerTrainingListener.Phase.BACKWARD, false);
 
             LinkedList<Triple<String,INDArray,Character>> tempList = new LinkedList<>();
             for(Map.Entry<String, INDArray> entry : currPair.getFirst().gradientForVariable().entrySet()) {
@@ -1600,7 +1629,9 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
             //Network updater state: should be cloned over also
             INDArray updaterView = network.getUpdater().getStateViewArray();
             if(updaterView != null){
-                Updater newUpdater = new MultiLayerUpdater(this, updaterView.dup());
+                MultiLayerUpdater newUpdater = new MultiLayerUpdater(this, updaterView.dup());
+                if(network.getUpdater() instanceof MultiLayerUpdater)
+                    newUpdater.copyRowSparseStateFrom((MultiLayerUpdater) network.getUpdater());
                 this.setUpdater(newUpdater);
             }
         } else {
@@ -1743,6 +1774,61 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
 
     @Override
     public void computeGradientAndScore() {
+        int numMicroBatches = layerWiseConfigurations.getNumMicroBatches();
+        if (numMicroBatches > 1 && input.size(0) > 1) {
+            computeGradientAndScoreMicroBatches(numMicroBatches);
+        } else {
+            computeGradientAndScoreSingleBatch();
+        }
+    }
+
+    /**
+     * Gradient accumulation: calculate the gradients and score for each micro-batch separately, and sum them.
+     * See {@link MultiLayerConfiguration.Builder#numMicroBatches(int)}
+     */
+    protected void computeGradientAndScoreMicroBatches(int numMicroBatches) {
+        if (flattenedGradients == null) initGradientsView();
+        INDArray fullInput = input;
+        INDArray fullLabels = labels;
+        INDArray fullFeaturesMask = inputMaskArray;
+        INDArray fullLabelsMask = labelMaskArray;
+        boolean hasMask = fullFeaturesMask != null || fullLabelsMask != null;
+
+        MicroBatchAccumulator accumulator = new MicroBatchAccumulator(layers, flattenedGradients, fullInput.size(0),
+                numMicroBatches, layerWiseConfigurations.getBackpropType() == BackpropType.TruncatedBPTT);
+        for (int i = 0; i < accumulator.numMicroBatches(); i++) {
+            int start = accumulator.start(i);
+            int end = accumulator.end(i);
+            setInput(MicroBatchAccumulator.getExamples(fullInput, start, end));
+            setLabels(MicroBatchAccumulator.getExamples(fullLabels, start, end));
+            if (hasMask) {
+                setLayerMaskArrays(MicroBatchAccumulator.getExamples(fullFeaturesMask, start, end),
+                        MicroBatchAccumulator.getExamples(fullLabelsMask, start, end));
+            }
+            accumulator.beforeMicroBatch(i);
+            //L1/L2 regularization is added once for the full minibatch, not once per micro-batch
+            computeGradientAndScoreSingleBatch(false);
+            accumulator.afterMicroBatch(i, score);
+        }
+
+        //Restore the full minibatch: the updater divides by the full minibatch size
+        setInput(fullInput);
+        setLabels(fullLabels);
+        if (hasMask) {
+            setLayerMaskArrays(fullFeaturesMask, fullLabelsMask);
+        }
+        score = accumulator.finish(calcL1(true) + calcL2(true));
+    }
+
+    protected void computeGradientAndScoreSingleBatch() {
+        computeGradientAndScoreSingleBatch(true);
+    }
+
+    /**
+     * @param includeRegularization If false: the score does not include the L1/L2 regularization terms. The gradients
+     *                              are the same in either case
+     */
+    protected void computeGradientAndScoreSingleBatch(boolean includeRegularization) {
         //Calculate activations (which are stored in each layer, and used in backprop)
         if (layerWiseConfigurations.getBackpropType() == BackpropType.TruncatedBPTT) {
             List<INDArray> activations = rnnActivateUsingStoredState(getInput(), true, true);
@@ -1775,7 +1861,9 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
         if (!(getOutputLayer() instanceof IOutputLayer)) {
             throw new IllegalStateException("Cannot calculate gradient and score with respect to labels: final layer is not an IOutputLayer");
         }
-        score = ((IOutputLayer) getOutputLayer()).computeScore(calcL1(true), calcL2(true), true);
+        double l1 = (includeRegularization ? calcL1(true) : 0.0);
+        double l2 = (includeRegularization ? calcL2(true) : 0.0);
+        score = ((IOutputLayer) getOutputLayer()).computeScore(l1, l2, true);
 
         //Listeners
         if (trainingListeners.size() > 0) {
@@ -1942,6 +2030,45 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
 
     public void setLayers(Layer[] layers) {
         this.layers = layers;
+        if(layerWorkspacesEnabled) applyLayerWorkspaces();
+    }
+
+    /**
+     * Enable or disable reusable per-layer workspaces. When enabled, work arrays that are internal to a layer (im2col
+     * buffers, LSTM gate activations, epsilons passed between layers during backprop, etc) are allocated on the
+     * first iteration and then reused for subsequent iterations, as long as their shape doesn't change (i.e., same
+     * minibatch size, and same input size/sequence length). This reduces allocation and deallocation overhead when
+     * fitting with a stable minibatch shape.<br>
+     * Note that when enabled, the epsilons returned by {@link #backpropGradient(INDArray)} and by the backpropGradient
+     * methods of the individual layers are only valid until the next backprop call. Disabled by default.
+     *
+     * @param enabled If true: use workspaces for all layers that support them
+     * @see LayerWorkspace
+     */
+    public void setLayerWorkspacesEnabled(boolean enabled) {
+        this.layerWorkspacesEnabled = enabled;
+        if(layers != null) applyLayerWorkspaces();
+    }
+
+    /**
+     * @return Whether reusable per-layer workspaces are enabled
+     * @see #setLayerWorkspacesEnabled(boolean)
+     */
+    public boolean isLayerWorkspacesEnabled() {
+        return layerWorkspacesEnabled;
+    }
+
+    protected void applyLayerWorkspaces() {
+        for(Layer l : layers){
+            if(l instanceof FrozenLayer) l = ((FrozenLayer<?>)l).getInsideLayer();
+            if(!(l instanceof BaseLayer)) continue;
+            BaseLayer<?> bl = (BaseLayer<?>)l;
+            if(!layerWorkspacesEnabled){
+                bl.setWorkspace(null);
+            } else if(bl.getWorkspace() == null){
+                bl.setWorkspace(new LayerWorkspace());
+            }
+        }
     }
 
     public INDArray getMask() {
@@ -2235,6 +2362,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
         activations.add(currInput);
 
         for( int i=0; i<layers.length; i++ ){
+            if (training) fireLayerEvent(i, LayerTrainingListener.Phase.FORWARD, true);
             if(getLayerWiseConfigurations().getInputPreProcess(i) != null)
                 currInput = getLayerWiseConfigurations().getInputPreProcess(i).preProcess(currInput,input.size(0));
             if(layers[i] instanceof RecurrentLayer){
@@ -2245,11 +2373,27 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
             } else {
                 currInput = layers[i].activate(currInput, training);
             }
+            if (training) fireLayerEvent(i, LayerTrainingListener.Phase.FORWARD, false);
             activations.add(currInput);
         }
         return activations;
     }
 
+    /**
+     * Notify any {@link LayerTrainingListener}s of the start or end of a phase for the specified layer
+     */
+    protected void fireLayerEvent(int layerIdx, LayerTrainingListener.Phase phase, boolean start) {
+        if (trainingListeners.isEmpty()) return;
+        for (TrainingListener tl : trainingListeners) {
+            if (!(tl instanceof LayerTrainingListener)) continue;
+            if (start) {
+                ((LayerTrainingListener) tl).onLayerStart(this, String.valueOf(layerIdx), phase);
+            } else {
+                ((LayerTrainingListener) tl).onLayerEnd(this, String.valueOf(layerIdx), phase);
+            }
+        }
+    }
+
     /** Get the updater for this MultiLayerNetwork
      * @return Updater for MultiLayerNetwork
      */
@@ -2290,6 +2434,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
      */
     public void setLayerMaskArrays(INDArray featuresMaskArray, INDArray labelsMaskArray){
         if(featuresMaskArray != null){
+            this.inputMaskArray = featuresMaskArray;
 
             //New approach: use feedForwardMaskArray method
             feedForwardMaskArray(featuresMaskArray, MaskState.Active, featuresMaskArray.size(0));
@@ -2317,6 +2462,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
         }
         if(labelsMaskArray != null ){
             if(!(getOutputLayer() instanceof IOutputLayer) ) return;
+            this.labelMaskArray = labelsMaskArray;
             layers[layers.length-1].setMaskArray(labelsMaskArray);
         }
     }
@@ -2328,6 +2474,8 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
         for (Layer layer : layers) {
             layer.setMaskArray(null);
         }
+        this.inputMaskArray = null;
+        this.labelMaskArray = null;
     }
 
     /**
@@ -2385,34 +2533,75 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
      * @param evaluation IEvaluation instance to perform evaluation with
      */
     public void doEvaluation(DataSetIterator iterator, IEvaluation evaluation){
+        doEvaluation(iterator, new IEvaluation[]{evaluation});
+    }
+
+    /**
+     * Perform evaluation in parallel, using one model replica (and one IEvaluation instance) per worker. The workers
+     * share the iterator, and the results of all workers are merged into the first IEvaluation instance once the
+     * iterator is exhausted.<br>
+     * The first worker uses this network; a copy of the network (parameters etc) is created for each other worker.
+     *
+     * @param iterator    data to evaluate on
+     * @param evaluations IEvaluation instances to perform evaluation with: one for each worker. Should be empty (i.e.,
+     *                    not have been used for evaluation before), except for the first one
+     */
+    public void doEvaluation(DataSetIterator iterator, IEvaluation[] evaluations){
+        if(evaluations == null || evaluations.length == 0){
+            throw new IllegalArgumentException("At least one IEvaluation instance is required");
+        }
         if(!iterator.hasNext() && iterator.resetSupported()){
             iterator.reset();
         }
 
-        while(iterator.hasNext()){
-            DataSet next = iterator.next();
-
-            if (next.getFeatureMatrix() == null || next.getLabels() == null)
-                break;
+        if(evaluations.length == 1){
+            while(iterator.hasNext()){
+                DataSet next = iterator.next();
 
-            INDArray features = next.getFeatures();
-            INDArray labels = next.getLabels();
+                if (next.getFeatureMatrix() == null || next.getLabels() == null)
+                    break;
 
-            INDArray out;
-            if(next.hasMaskArrays()){
-                INDArray fMask = next.getFeaturesMaskArray();
-                INDArray lMask = next.getLabelsMaskArray();
-                out = this.output(features,false,fMask,lMask);
+                evaluateMinibatch(next, evaluations[0]);
+            }
+            return;
+        }
 
-                //Assume this is time series data. Not much point having a mask array for non TS data
-                evaluation.evalTimeSeries(labels,out,lMask);
-            } else {
-                out = this.output(features,false);
-                if(labels.rank() == 3 ) evaluation.evalTimeSeries(labels,out, null);
-                else{
-                    List<Serializable> meta = next.getExampleMetaData();
-                    evaluation.eval(labels,out, meta);
+        List<ParallelEvaluation.MinibatchEvaluator> workers = new ArrayList<>(evaluations.length);
+        for( int i=0; i<evaluations.length; i++ ){
+            final MultiLayerNetwork replica = (i == 0 ? this : clone());
+            final IEvaluation evaluation = evaluations[i];
+            workers.add(new ParallelEvaluation.MinibatchEvaluator() {
+                @Override
+                public void evaluate(DataSet minibatch) {
+                    replica.evaluateMinibatch(minibatch, evaluation);
                 }
+            });
+        }
+        ParallelEvaluation.run(iterator, workers);
+
+        for( int i=1; i<evaluations.length; i++ ){
+            evaluations[0].merge(evaluations[i]);
+        }
+    }
+
+    private void evaluateMinibatch(DataSet next, IEvaluation evaluation){
+        INDArray features = next.getFeatures();
+        INDArray labels = next.getLabels();
+
+        INDArray out;
+        if(next.hasMaskArrays()){
+            INDArray fMask = next.getFeaturesMaskArray();
+            INDArray lMask = next.getLabelsMaskArray();
+            out = this.output(features,false,fMask,lMask);
+
+            //Assume this is time series data. Not much point having a mask array for non TS data
+            evaluation.evalTimeSeries(labels,out,lMask);
+        } else {
+            out = this.output(features,false);
+            if(labels.rank() == 3 ) evaluation.evalTimeSeries(labels,out, null);
+            else{
+                List<Serializable> meta = next.getExampleMetaData();
+                evaluation.eval(labels,out, meta);
             }
         }
     }
@@ -2449,6 +2638,35 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer {
         return e;
     }
 
+    /**
+     * Evaluate the network (for classification) on the provided data set in parallel, using the specified number of
+     * model replicas. See {@link #doEvaluation(DataSetIterator, IEvaluation[])}
+     *
+     * @param iterator   Iterator (data) to evaluate on
+     * @param labelsList List of labels. May be null.
+     * @param topN       N value for top N accuracy evaluation
+     * @param numWorkers Number of workers (model replicas) to evaluate with
+     * @return Evaluation object, summarizing the results of the evaluation on the provided DataSetIterator
+     */
+    public Evaluation evaluate(DataSetIterator iterator, List<String> labelsList, int topN, int numWorkers) {
+        if(layers == null || !(getOutputLayer() instanceof IOutputLayer)){
+            throw new IllegalStateException("Cannot evaluate network with no output layer");
+        }
+        if(numWorkers < 1){
+            throw new IllegalArgumentException("Number of workers must be at least 1 (got: " + numWorkers + ")");
+        }
+        if (labelsList == null)
+            labelsList = iterator.getLabels();
+
+        Evaluation[] evaluations = new Evaluation[numWorkers];
+        for( int i=0; i<numWorkers; i++ ){
+            evaluations[i] = new Evaluation(labelsList, topN);
+        }
+        doEvaluation(iterator, evaluations);
+
+        return evaluations[0];
+    }
+
     private void update(Task task) {
         if (!initDone) {
             initDone = true;
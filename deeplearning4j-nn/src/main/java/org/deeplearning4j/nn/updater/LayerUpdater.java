@@ -4,14 +4,17 @@ import com.google.common.base.Preconditions;
 import org.apache.commons.math3.util.FastMath;
 import org.deeplearning4j.nn.api.Layer;
 import org.deeplearning4j.nn.api.Updater;
+import org.deeplearning4j.nn.api.layers.SparseGradientLayer;
 import org.deeplearning4j.nn.conf.GradientNormalization;
 import org.deeplearning4j.nn.conf.LearningRatePolicy;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.gradient.Gradient;
 import org.deeplearning4j.nn.layers.FrozenLayer;
 import org.deeplearning4j.nn.params.PretrainParamInitializer;
+import org.deeplearning4j.util.DirectValues;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.api.ops.impl.accum.Norm2;
+import org.nd4j.linalg.api.shape.Shape;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.indexing.BooleanIndexing;
 import org.nd4j.linalg.indexing.NDArrayIndex;
@@ -20,6 +23,7 @@ import org.nd4j.linalg.learning.*;
 import org.nd4j.linalg.learning.NoOpUpdater;
 import org.nd4j.linalg.ops.transforms.Transforms;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -30,6 +34,13 @@ import java.util.Map;
 public class LayerUpdater implements Updater {
     protected Map<String, GradientUpdater> updaterForVariable = new LinkedHashMap<>();
     protected INDArray viewArray;
+    //Updater state for each variable (only used for row-sparse updates)
+    protected Map<String, INDArray> stateViewForVariable = new HashMap<>();
+    //For row-sparse variables with updater state: the iteration each row was last updated (or -1 if never). Kept
+    //outside of the (floating point) updater state view, so that it is exact and isn't averaged (ParallelWrapper)
+    protected Map<String, int[]> lastRowUpdateForVariable = new HashMap<>();
+    //For row-sparse variables: the GradientUpdater applied to the compact state of the updated rows
+    protected Map<String, GradientUpdater> rowSparseUpdaterForVariable = new HashMap<>();
 
     @Override
     public void setStateViewArray(Layer layer, INDArray viewArray, boolean initialize) {
@@ -40,14 +51,34 @@ public class LayerUpdater implements Updater {
         for(Map.Entry<String,INDArray> entry : params.entrySet()){
             INDArray paramsArray = entry.getValue();
             GradientUpdater gu = init(entry.getKey(), layer);
-            int thisSize = gu.stateSizeForInputSize(entry.getValue().length());
+            int thisSize = stateSizeForVariable(layer, entry.getKey(), paramsArray);
             if(thisSize == 0) continue;
             INDArray subset = viewArray.get(NDArrayIndex.point(0), NDArrayIndex.interval(count, count+thisSize));
             gu.setStateViewArray(subset, paramsArray.shape(), paramsArray.ordering(), initialize);
+            stateViewForVariable.put(entry.getKey(), subset);
+            if(layer instanceof SparseGradientLayer && ((SparseGradientLayer)layer).isRowSparseGradient(entry.getKey())){
+                //Existing counters are retained when the state is replaced (for example: after averaging)
+                int[] lastRowUpdate = lastRowUpdateForVariable.get(entry.getKey());
+                if(initialize || lastRowUpdate == null || lastRowUpdate.length != paramsArray.size(0)){
+                    lastRowUpdate = new int[paramsArray.size(0)];
+                    Arrays.fill(lastRowUpdate, -1);
+                    lastRowUpdateForVariable.put(entry.getKey(), lastRowUpdate);
+                }
+            }
             count += thisSize;
         }
     }
 
+    /**
+     * Copy the iteration each row was last updated (for row-sparse updates) from another updater for the same layer.
+     * This is not part of the updater state view array, so must be copied separately when cloning a network
+     */
+    public void copyRowSparseStateFrom(LayerUpdater other){
+        for (Map.Entry<String, int[]> entry : other.lastRowUpdateForVariable.entrySet()) {
+            lastRowUpdateForVariable.put(entry.getKey(), entry.getValue().clone());
+        }
+    }
+
     public Map<String,GradientUpdater> getUpdaterForVariable(){
         return updaterForVariable;
     }
@@ -63,12 +94,22 @@ public class LayerUpdater implements Updater {
         Map<String,INDArray> params = layer.paramTable();
         int count = 0;
         for(Map.Entry<String,INDArray> entry : params.entrySet()){
-            GradientUpdater gu = init(entry.getKey(), layer);
-            count += gu.stateSizeForInputSize(entry.getValue().length());
+            count += stateSizeForVariable(layer, entry.getKey(), entry.getValue());
         }
         return count;
     }
 
+    /**
+     * Size of the updater state for the specified variable, i.e., the state of its {@link GradientUpdater}
+     *
+     * @param layer    Layer
+     * @param variable Variable (parameter) name
+     * @param param    Parameter array for the variable
+     */
+    public int stateSizeForVariable(Layer layer, String variable, INDArray param){
+        return init(variable, layer).stateSizeForInputSize(param.length());
+    }
+
     @Override
     public void update(Layer layer, Gradient gradient, int iteration, int miniBatchSize) {
         String paramName;
@@ -87,6 +128,12 @@ public class LayerUpdater implements Updater {
             if (decay != LearningRatePolicy.None || layer.conf().getLayer().getUpdater() == org.deeplearning4j.nn.conf.Updater.NESTEROVS)
                 applyLrDecayPolicy(decay, layer, iteration, paramName);
             updater = init(paramName, layer);
+            if(layer instanceof SparseGradientLayer && ((SparseGradientLayer)layer).isRowSparseGradient(paramName)){
+                //Only update the rows that are (potentially) non-zero. Updated in-place
+                int[] rows = ((SparseGradientLayer)layer).getGradientRows(paramName);
+                rowSparseUpdate(layer, paramName, gradientOrig, rows, iteration, miniBatchSize);
+                continue;
+            }
             gradient2 = updater.getGradient(gradientOrig, iteration);
             postApply(layer, gradient2, paramName, miniBatchSize);
             gradient.setGradientFor(paramName, gradient2);
@@ -112,6 +159,147 @@ public class LayerUpdater implements Updater {
 
     }
 
+    /**
+     * Apply the updater, regularization and minibatch division (as per {@link #postApply(Layer, INDArray, String, int)})
+     * to only the specified rows of a row-sparse gradient, in-place. All other rows of the gradient are assumed to be
+     * zero, and are not modified.<br>
+     * Updater state is updated lazily: when a row is updated, its state is first decayed to account for the iterations
+     * since it was last updated (i.e., as if it had a gradient of zero for those iterations). The parameter updates that
+     * would have resulted from that state alone during those iterations are not applied. The iteration each row was
+     * last updated is not part of the updater state array: after the model is saved and restored, rows are treated as
+     * not yet updated (i.e., no decay is applied to them for the iterations prior to this).
+     *
+     * @param layer         Layer
+     * @param paramName     Parameter name
+     * @param gradient      Gradient array for the parameter. Modified in-place
+     * @param rows          Indices of the non-zero rows of the gradient: distinct
+     * @param iteration     Current iteration
+     * @param miniBatchSize Minibatch size
+     */
+    public void rowSparseUpdate(Layer layer, String paramName, INDArray gradient, int[] rows, int iteration, int miniBatchSize) {
+        if(rows == null || rows.length == 0) return;
+        NeuralNetConfiguration conf = layer.conf();
+        INDArray params = layer.getParam(paramName);
+        INDArray g = Nd4j.pullRows(gradient, 1, rows);     //Shape: [rows.length, size(1)]
+
+        //A separate GradientUpdater (with the current hyperparameters) is applied to a compact copy of the state for these rows
+        GradientUpdater gu = rowSparseUpdater(conf, paramName);
+        int numStateArrays = gu.stateSizeForInputSize(g.length()) / g.length();
+        INDArray update;
+        if(numStateArrays == 0){
+            update = gu.getGradient(g, iteration);
+        } else {
+            double[] decays = stateDecays(conf.getLayer(), conf.getLayer().getUpdaterByParam(paramName));
+            if(decays.length != numStateArrays){
+                throw new IllegalStateException("Row-sparse updates are not supported for updater: "
+                        + conf.getLayer().getUpdaterByParam(paramName));
+            }
+
+            //Number of iterations since each row was last updated
+            int[] lastRowUpdate = lastRowUpdateForVariable.get(paramName);
+            if(lastRowUpdate == null){
+                throw new IllegalStateException("No updater state set for variable \"" + paramName + "\"");
+            }
+            int[] skipped = new int[rows.length];
+            for( int i=0; i<rows.length; i++ ){
+                int last = lastRowUpdate[rows[i]];
+                skipped[i] = (last < 0 ? 0 : Math.max(0, iteration - last - 1));
+                lastRowUpdate[rows[i]] = iteration;
+            }
+
+            INDArray[] stateArrays = splitState(stateViewForVariable.get(paramName), paramName, params.shape(), params.ordering(), numStateArrays);
+            INDArray compactState = Nd4j.create(1, numStateArrays * g.length());
+            INDArray[] compactArrays = splitState(compactState, paramName, g.shape(), g.ordering(), numStateArrays);
+            for( int i=0; i<numStateArrays; i++ ){
+                compactArrays[i].assign(Nd4j.pullRows(stateArrays[i], 1, rows));
+                if(decays[i] != 1.0) compactArrays[i].muliColumnVector(decayFactors(decays[i], skipped));
+            }
+
+            gu.setStateViewArray(compactState, g.shape(), g.ordering(), false);
+            update = gu.getGradient(g, iteration);
+
+            for( int i=0; i<numStateArrays; i++ ){
+                DirectValues.scatterRows(stateArrays[i], rows, compactArrays[i], false);
+            }
+        }
+
+        //Regularization and minibatch division, for these rows only
+        if(conf.isUseRegularization() && (conf.getL2ByParam(paramName) > 0 || conf.getL1ByParam(paramName) > 0)){
+            INDArray paramRows = Nd4j.pullRows(params, 1, rows);
+            if(conf.getL2ByParam(paramName) > 0)
+                update.addi(paramRows.mul(conf.getL2ByParam(paramName)));
+            if(conf.getL1ByParam(paramName) > 0)
+                update.addi(Transforms.sign(paramRows).muli(conf.getL1ByParam(paramName)));
+        }
+        if (conf.isMiniBatch())
+            update.divi(miniBatchSize);
+
+        DirectValues.scatterRows(gradient, rows, update, false);
+    }
+
+    /**
+     * The GradientUpdater for row-sparse updates of the specified variable: created once, and then updated with the
+     * current learning rate (and momentum) on each call
+     */
+    private GradientUpdater rowSparseUpdater(NeuralNetConfiguration conf, String paramName){
+        GradientUpdater gu = rowSparseUpdaterForVariable.get(paramName);
+        if(gu == null){
+            gu = createGradientUpdater(conf, paramName);
+            rowSparseUpdaterForVariable.put(paramName, gu);
+        } else if(conf.getLayer().getUpdaterByParam(paramName) == org.deeplearning4j.nn.conf.Updater.NESTEROVS){
+            gu.update(conf.getLearningRateByParam(paramName), conf.getLayer().getMomentum());
+        } else {
+            gu.update(conf.getLearningRateByParam(paramName));
+        }
+        return gu;
+    }
+
+    /**
+     * Per-iteration decay of each of the GradientUpdater's state arrays, when the gradient is zero
+     */
+    private static double[] stateDecays(org.deeplearning4j.nn.conf.layers.Layer layerConf, org.deeplearning4j.nn.conf.Updater u){
+        switch (u){
+            case NESTEROVS:
+                return new double[]{layerConf.getMomentum()};
+            case ADAGRAD:
+                return new double[]{1.0};
+            case RMSPROP:
+                return new double[]{layerConf.getRmsDecay()};
+            case ADAM:
+                return new double[]{layerConf.getAdamMeanDecay(), layerConf.getAdamVarDecay()};
+            case ADADELTA:
+                return new double[]{layerConf.getRho(), layerConf.getRho()};
+            default:
+                return new double[0];
+        }
+    }
+
+    private static INDArray decayFactors(double decay, int[] skipped){
+        double[] factors = new double[skipped.length];
+        for( int i=0; i<skipped.length; i++ ){
+            factors[i] = (skipped[i] == 0 ? 1.0 : FastMath.pow(decay, skipped[i]));
+        }
+        return Nd4j.create(factors, new int[]{skipped.length, 1});
+    }
+
+    /**
+     * Split an updater state view array into numStateArrays equal parts, each reshaped (without copying) to the
+     * specified shape, as per the GradientUpdater implementations
+     */
+    private static INDArray[] splitState(INDArray stateView, String paramName, int[] shape, char order, int numStateArrays){
+        if(stateView == null){
+            throw new IllegalStateException("No updater state set for variable \"" + paramName + "\"");
+        }
+        int length = stateView.length() / numStateArrays;
+        INDArray[] out = new INDArray[numStateArrays];
+        for( int i=0; i<numStateArrays; i++ ){
+            INDArray subset = stateView.get(NDArrayIndex.point(0), NDArrayIndex.interval(i * length, (i+1) * length));
+            out[i] = Shape.newShapeNoCopy(subset, shape, order == 'f');
+            if(out[i] == null) throw new IllegalStateException("Could not reshape updater state view for variable \"" + paramName + "\"");
+        }
+        return out;
+    }
+
     /**
      *  Update momentum if schedule exist
      */
@@ -243,45 +431,50 @@ public class LayerUpdater implements Updater {
     public GradientUpdater init(String variable, Layer layer){
         GradientUpdater updater = updaterForVariable.get(variable);
         if(updater == null){
-            org.deeplearning4j.nn.conf.Updater u = layer.conf().getLayer().getUpdaterByParam(variable);
-            switch (u){
-                case SGD:
-                    updater = new org.nd4j.linalg.learning.Sgd(layer.conf().getLearningRateByParam(variable));
-                    break;
-                case ADAM:
-                    updater = new Adam(layer.conf().getLearningRateByParam(variable),
-                            layer.conf().getLayer().getAdamMeanDecay(),
-                            layer.conf().getLayer().getAdamVarDecay(),
-                            layer.conf().getLayer().getEpsilon());
-                    break;
-                case ADADELTA:
-                    updater = new AdaDelta(layer.conf().getLayer().getRho(), layer.conf().getLayer().getEpsilon());
-                    break;
-                case NESTEROVS:
-                    updater = new Nesterovs(layer.conf().getLayer().getMomentum(), layer.conf().getLearningRateByParam(variable));
-                    break;
-                case ADAGRAD:
-                    updater = new AdaGrad(layer.conf().getLearningRateByParam(variable),
-                            layer.conf().getLayer().getEpsilon());
-                    break;
-                case RMSPROP:
-                    updater = new org.nd4j.linalg.learning.RmsProp(layer.conf().getLearningRateByParam(variable),
-                            layer.conf().getLayer().getRmsDecay(),
-                            layer.conf().getLayer().getEpsilon());
-                    break;
-                case NONE:
-                    updater = new NoOpUpdater();
-                    break;
-                case CUSTOM:
-                    throw new UnsupportedOperationException("Custom updaters: not yet implemented");
-                default:
-                    throw new IllegalArgumentException("Unknown updater: " + u);
-            }
+            updater = createGradientUpdater(layer.conf(), variable);
             updaterForVariable.put(variable, updater);
         }
         return updater;
     }
 
+    /**
+     * Create a new {@link GradientUpdater} for the specified variable, with the updater and hyperparameters (including
+     * the current learning rate) of the given configuration
+     *
+     * @param conf     Layer configuration
+     * @param variable Variable (parameter) name
+     */
+    public static GradientUpdater createGradientUpdater(NeuralNetConfiguration conf, String variable){
+        org.deeplearning4j.nn.conf.layers.Layer layerConf = conf.getLayer();
+        org.deeplearning4j.nn.conf.Updater u = layerConf.getUpdaterByParam(variable);
+        switch (u){
+            case SGD:
+                return new org.nd4j.linalg.learning.Sgd(conf.getLearningRateByParam(variable));
+            case ADAM:
+                return new Adam(conf.getLearningRateByParam(variable),
+                        layerConf.getAdamMeanDecay(),
+                        layerConf.getAdamVarDecay(),
+                        layerConf.getEpsilon());
+            case ADADELTA:
+                return new AdaDelta(layerConf.getRho(), layerConf.getEpsilon());
+            case NESTEROVS:
+                return new Nesterovs(layerConf.getMomentum(), conf.getLearningRateByParam(variable));
+            case ADAGRAD:
+                return new AdaGrad(conf.getLearningRateByParam(variable),
+                        layerConf.getEpsilon());
+            case RMSPROP:
+                return new org.nd4j.linalg.learning.RmsProp(conf.getLearningRateByParam(variable),
+                        layerConf.getRmsDecay(),
+                        layerConf.getEpsilon());
+            case NONE:
+                return new NoOpUpdater();
+            case CUSTOM:
+                throw new UnsupportedOperationException("Custom updaters: not yet implemented");
+            default:
+                throw new IllegalArgumentException("Unknown updater: " + u);
+        }
+    }
+
     @Override
     public boolean equals(Object other){
         if(!(other instanceof LayerUpdater)) return false;
@@ -309,6 +502,7 @@ public class LayerUpdater implements Updater {
             throw new RuntimeException(e);
         }
         updater.updaterForVariable = newMap;
+        updater.copyRowSparseStateFrom(this);
         return updater;
     }
 }
@@ -8,10 +8,16 @@ import org.deeplearning4j.nn.api.Updater;
 import org.deeplearning4j.nn.gradient.DefaultGradient;
 import org.deeplearning4j.nn.gradient.Gradient;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.optimize.api.IterationListener;
+import org.deeplearning4j.optimize.api.LayerTrainingListener;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.indexing.NDArrayIndex;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -19,10 +25,12 @@ import java.util.Map;
  * Expects backprop gradients for all layers to be in single Gradient object,
  * keyed by "0_b", "1_w" etc., as per MultiLayerNetwork.backward()
  */
-@EqualsAndHashCode @Getter
+@EqualsAndHashCode(exclude = {"flattenedUpdates", "updaterBlocks"}) @Getter
 public class MultiLayerUpdater implements Updater {
     private final Updater[] layerUpdaters;
     private INDArray viewArray;
+    private boolean flattenedUpdates = false;
+    private transient UpdaterBlocks updaterBlocks;
 
     public MultiLayerUpdater(MultiLayerNetwork network) {
         Layer[] layers = network.getLayers();
@@ -123,9 +131,67 @@ public class MultiLayerUpdater implements Updater {
             layerGradients[layerIdx].gradientForVariable().put(newKey, gradientPair.getValue());
         }
 
+        List<LayerTrainingListener> listeners = layerTrainingListeners(mln.getListeners());
+        //Per-layer updates are used if per-layer timing is required
+        if (flattenedUpdates && listeners.isEmpty() && mln.getFlattenedGradients() != null) {
+            updateFlattened(mln, layerGradients, iteration, batchSize);
+            return;
+        }
         for (int i = 0; i < layerUpdaters.length; i++) {
+            for (LayerTrainingListener l : listeners) l.onLayerStart(mln, String.valueOf(i), LayerTrainingListener.Phase.UPDATE);
             layerUpdaters[i].update(mln.getLayer(i), layerGradients[i], iteration, batchSize);
+            for (LayerTrainingListener l : listeners) l.onLayerEnd(mln, String.valueOf(i), LayerTrainingListener.Phase.UPDATE);
+        }
+    }
+
+    /**
+     * Apply the updaters to contiguous blocks of the flattened gradients that share the same updater configuration
+     * (see {@link UpdaterBlock}), rather than to each variable separately. Layers that aren't eligible for block
+     * updates are updated by their layer updater, as usual. The blocks are reused between iterations (see
+     * {@link UpdaterBlocks}).<br>
+     * Note that this relies on the gradients for each layer being views of the network's flattened gradients array,
+     * which is also required for the flattened gradients (as used by the step function) to reflect the updates.
+     */
+    protected void updateFlattened(MultiLayerNetwork mln, Gradient[] layerGradients, int iteration, int batchSize) {
+        if (updaterBlocks == null) {
+            updaterBlocks = new UpdaterBlocks();
+        }
+        updaterBlocks.update(mln.getLayers(), layerUpdaters, layerGradients, null, mln.params(),
+                mln.getFlattenedGradients(), viewArray, iteration, batchSize);
+    }
+
+    /**
+     * Set whether updates should be applied to blocks of the flattened gradients, rather than to each variable
+     * separately (see {@link UpdaterBlock}). Disabled by default (opt-in). Results are expected to be the same either
+     * way: per-layer updaters, learning rate/momentum schedules, gradient normalization and frozen layers are all
+     * supported, with layers that can't be updated as part of a block falling back to per-layer updates.
+     */
+    public void setFlattenedUpdates(boolean flattenedUpdates) {
+        this.flattenedUpdates = flattenedUpdates;
+    }
+
+    /**
+     * Copy the state that is not part of the updater state view array (see
+     * {@link LayerUpdater#copyRowSparseStateFrom(LayerUpdater)}) from another updater for the same network configuration
+     */
+    public void copyRowSparseStateFrom(MultiLayerUpdater other) {
+        for (int i = 0; i < layerUpdaters.length; i++) {
+            if (layerUpdaters[i] instanceof LayerUpdater && other.layerUpdaters[i] instanceof LayerUpdater) {
+                ((LayerUpdater) layerUpdaters[i]).copyRowSparseStateFrom((LayerUpdater) other.layerUpdaters[i]);
+            }
+        }
+    }
+
+    /**
+     * @return The {@link LayerTrainingListener}s in the given collection of listeners (may be null)
+     */
+    public static List<LayerTrainingListener> layerTrainingListeners(Collection<IterationListener> listeners) {
+        if (listeners == null || listeners.isEmpty()) return Collections.emptyList();
+        List<LayerTrainingListener> out = new ArrayList<>();
+        for (IterationListener l : listeners) {
+            if (l instanceof LayerTrainingListener) out.add((LayerTrainingListener) l);
         }
+        return out;
     }
 
     @Override
@@ -0,0 +1,306 @@
+package org.deeplearning4j.nn.updater;
+
+import lombok.Getter;
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.api.layers.SparseGradientLayer;
+import org.deeplearning4j.nn.conf.LearningRatePolicy;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.Updater;
+import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.nn.layers.FrozenLayer;
+import org.deeplearning4j.nn.params.PretrainParamInitializer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.nd4j.linalg.learning.GradientUpdater;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A contiguous block of variables (parameters) in a network's flattened parameter, gradient and updater state arrays,
+ * that all have the same updater configuration: updater type, learning rate, updater hyperparameters, L1/L2 and
+ * minibatch settings.<br>
+ * Applying the updater, regularization and minibatch division once to each block (instead of once to each variable)
+ * is equivalent to {@link LayerUpdater#update(Layer, Gradient, int, int)}, but requires far fewer ops when the network
+ * has many small parameter arrays.<br>
+ * <br>
+ * Only updaters with no state (SGD, NONE) or a single state array of the same size as the parameters (NESTEROVS,
+ * ADAGRAD, RMSPROP) can be applied to blocks of more than one variable: for these, the state for consecutive variables
+ * is itself contiguous. For updaters with multiple state arrays (ADAM, ADADELTA), the state for each variable is
+ * stored as [state0, state1], hence the state for consecutive variables is interleaved; each variable is a separate
+ * block for these updaters.<br>
+ * A block keeps views of the flattened arrays and its {@link GradientUpdater} between iterations: these are recreated
+ * only if the flattened arrays are replaced. Use {@link #isCurrent()} to check whether the configuration of the
+ * block's variables has changed since the block was created (in which case the blocks should be recreated).<br>
+ * <br>
+ * Layers are not eligible for block updates if they use a learning rate policy or momentum schedule (as these modify
+ * the configuration of each variable separately), are frozen, are pretraining, have row-sparse gradients, or if their
+ * gradient contains variables that are not parameters. These layers should be updated with their
+ * {@link LayerUpdater}, as usual.
+ */
+public class UpdaterBlock {
+
+    @Getter
+    private final Updater updaterType;
+    @Getter
+    private final NeuralNetConfiguration conf;
+    @Getter
+    private final String firstVariable;
+    @Getter
+    private final List<String> variables = new ArrayList<>();
+    @Getter
+    private final int paramOffsetStart;
+    @Getter
+    private int paramOffsetEnd;
+    @Getter
+    private final int stateOffsetStart;
+    @Getter
+    private int stateOffsetEnd;
+
+    private final double[] hyperparameters;
+    private final List<NeuralNetConfiguration> variableConfs = new ArrayList<>();
+    private final List<String> variableParams = new ArrayList<>();
+
+    //Views of the flattened arrays, and the updater (using a view of the flattened state): created on first update
+    private INDArray flatParams;
+    private INDArray flatGradients;
+    private INDArray flatState;
+    private INDArray paramsView;
+    private INDArray gradientView;
+    private GradientUpdater gradientUpdater;
+
+    private UpdaterBlock(Updater updaterType, NeuralNetConfiguration conf, String variable, String fullName,
+                         int paramOffset, int stateOffset) {
+        this.updaterType = updaterType;
+        this.conf = conf;
+        this.firstVariable = variable;
+        this.paramOffsetStart = paramOffset;
+        this.paramOffsetEnd = paramOffset;
+        this.stateOffsetStart = stateOffset;
+        this.stateOffsetEnd = stateOffset;
+        this.hyperparameters = hyperparameters(conf, variable);
+        addVariable(conf, variable, fullName);
+    }
+
+    private void addVariable(NeuralNetConfiguration conf, String variable, String fullName) {
+        variables.add(fullName);
+        variableConfs.add(conf);
+        variableParams.add(variable);
+    }
+
+    /**
+     * Is the given layer eligible for block updates? See class javadoc for details.
+     *
+     * @param layer    Layer to check
+     * @param updater  Updater for the layer
+     * @param gradient Gradient for the layer (keyed by parameter name, without layer prefix)
+     */
+    public static boolean isEligible(Layer layer, org.deeplearning4j.nn.api.Updater updater, Gradient gradient) {
+        if (!(updater instanceof LayerUpdater) || layer instanceof FrozenLayer || layer.conf().isPretrain()) {
+            return false;
+        }
+        NeuralNetConfiguration conf = layer.conf();
+        if (conf.getLearningRatePolicy() != LearningRatePolicy.None) {
+            return false;
+        }
+        Map<Integer, Double> momentumSchedule = conf.getLayer().getMomentumSchedule();
+        if (momentumSchedule != null && !momentumSchedule.isEmpty()) {
+            return false;
+        }
+        Map<String, INDArray> paramTable = layer.paramTable();
+        for (String var : gradient.gradientForVariable().keySet()) {
+            if (!paramTable.containsKey(var)) {
+                return false;
+            }
+            if (layer instanceof SparseGradientLayer && ((SparseGradientLayer) layer).isRowSparseGradient(var)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Split the variables of the given layers into blocks. The layers must be provided in the same order as their
+     * parameters appear in the flattened parameter, gradient and updater state arrays.
+     *
+     * @param layers    Layers, in order
+     * @param updaters  Updater for each layer
+     * @param gradients Gradient for each layer (keyed by parameter name, without layer prefix)
+     * @param eligible  Whether each layer is eligible for block updates (see {@link #isEligible(Layer, org.deeplearning4j.nn.api.Updater, Gradient)}).
+     *                  Variables of ineligible layers are not included in any block
+     * @return Blocks, in order
+     */
+    public static List<UpdaterBlock> createBlocks(Layer[] layers, org.deeplearning4j.nn.api.Updater[] updaters,
+                                                  Gradient[] gradients, boolean[] eligible) {
+        return createBlocks(layers, updaters, gradients, eligible, null);
+    }
+
+    /**
+     * Split the variables of the given layers into blocks. The layers must be provided in the same order as their
+     * parameters appear in the flattened parameter and gradient arrays. The updater state for the layers may be in
+     * a different order (as is the case for ComputationGraph), in which case the offset of each layer's state in the
+     * flattened updater state array must be provided. Variables are only added to the same block if both their
+     * parameters and their updater state are contiguous.
+     *
+     * @param layers       Layers, in order of their parameters
+     * @param updaters     Updater for each layer
+     * @param gradients    Gradient for each layer (keyed by parameter name, without layer prefix)
+     * @param eligible     Whether each layer is eligible for block updates. Variables of ineligible layers are not
+     *                     included in any block
+     * @param stateOffsets Offset of each layer's state in the flattened updater state array. May be null, if the
+     *                     state is in the same order as the parameters
+     * @return Blocks, in order
+     */
+    public static List<UpdaterBlock> createBlocks(Layer[] layers, org.deeplearning4j.nn.api.Updater[] updaters,
+                                                  Gradient[] gradients, boolean[] eligible, int[] stateOffsets) {
+        List<UpdaterBlock> blocks = new ArrayList<>();
+        UpdaterBlock current = null;
+        int paramOffset = 0;
+        int stateOffset = 0;
+        for (int i = 0; i < layers.length; i++) {
+            Layer layer = layers[i];
+            if (stateOffsets != null) {
+                stateOffset = stateOffsets[i];
+            }
+            for (Map.Entry<String, INDArray> entry : layer.paramTable().entrySet()) {
+                String var = entry.getKey();
+                int length = entry.getValue().length();
+                int stateSize = 0;
+                if (updaters[i] instanceof LayerUpdater) {
+                    stateSize = ((LayerUpdater) updaters[i]).stateSizeForVariable(layer, var, entry.getValue());
+                }
+
+                boolean include = eligible[i] && gradients[i].getGradientFor(var) != null
+                        && !PretrainParamInitializer.VISIBLE_BIAS_KEY.equals(var.split("_")[0]);
+                if (!include) {
+                    current = null;
+                } else {
+                    Updater u = layer.conf().getLayer().getUpdaterByParam(var);
+                    if (current == null || current.paramOffsetEnd != paramOffset || current.stateOffsetEnd != stateOffset
+                            || !current.canAppend(u, layer.conf(), var)) {
+                        current = new UpdaterBlock(u, layer.conf(), var, i + "_" + var, paramOffset, stateOffset);
+                        blocks.add(current);
+                    } else {
+                        current.addVariable(layer.conf(), var, i + "_" + var);
+                    }
+                    current.paramOffsetEnd = paramOffset + length;
+                    current.stateOffsetEnd = stateOffset + stateSize;
+                    if (!isSingleStateArray(u)) {
+                        //Next variable can't be appended to this block
+                        current = null;
+                    }
+                }
+
+                paramOffset += length;
+                stateOffset += stateSize;
+            }
+        }
+        return blocks;
+    }
+
+    private static boolean isSingleStateArray(Updater u) {
+        switch (u) {
+            case SGD:
+            case NONE:
+            case NESTEROVS:
+            case ADAGRAD:
+            case RMSPROP:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean canAppend(Updater u, NeuralNetConfiguration otherConf, String var) {
+        return u == updaterType && Arrays.equals(hyperparameters, hyperparameters(otherConf, var));
+    }
+
+    private static double[] hyperparameters(NeuralNetConfiguration conf, String var) {
+        org.deeplearning4j.nn.conf.layers.Layer l = conf.getLayer();
+        boolean reg = conf.isUseRegularization();
+        return new double[]{conf.getLearningRateByParam(var), reg ? conf.getL1ByParam(var) : 0.0,
+                reg ? conf.getL2ByParam(var) : 0.0, conf.isMiniBatch() ? 1.0 : 0.0, l.getMomentum(),
+                l.getRmsDecay(), l.getEpsilon(), l.getAdamMeanDecay(), l.getAdamVarDecay(), l.getRho()};
+    }
+
+    /**
+     * @return True if the updater and hyperparameters of all variables in this block are unchanged since the block
+     * was created. If not, the blocks should be recreated.
+     */
+    public boolean isCurrent() {
+        for (int i = 0; i < variableConfs.size(); i++) {
+            NeuralNetConfiguration c = variableConfs.get(i);
+            String var = variableParams.get(i);
+            if (c.getLayer().getUpdaterByParam(var) != updaterType
+                    || !Arrays.equals(hyperparameters, hyperparameters(c, var))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Total length of the parameters in this block
+     */
+    public int length() {
+        return paramOffsetEnd - paramOffsetStart;
+    }
+
+    /**
+     * Apply the updater, regularization and minibatch division to this block of the gradient array, in-place.
+     *
+     * @param flatParams    Flattened parameters for the network (row vector)
+     * @param flatGradients Flattened gradients for the network (row vector). Modified in-place
+     * @param flatState     Flattened updater state for the network (row vector). May be null if no state is required
+     * @param iteration     Current iteration
+     * @param miniBatchSize Minibatch size
+     */
+    public void update(INDArray flatParams, INDArray flatGradients, INDArray flatState, int iteration,
+                       int miniBatchSize) {
+        if (gradientUpdater == null || flatParams != this.flatParams || flatGradients != this.flatGradients
+                || flatState != this.flatState) {
+            initViews(flatParams, flatGradients, flatState);
+        }
+
+        INDArray gradient = gradientView;
+        INDArray out = gradientUpdater.getGradient(gradient, iteration);
+        if (out != gradient) {
+            gradient.assign(out);
+        }
+
+        //Regularization and minibatch division, as per LayerUpdater.postApply
+        double l2 = conf.getL2ByParam(firstVariable);
+        double l1 = conf.getL1ByParam(firstVariable);
+        if (conf.isUseRegularization() && (l2 > 0 || l1 > 0)) {
+            if (l2 > 0)
+                gradient.addi(paramsView.mul(l2));
+            if (l1 > 0)
+                gradient.addi(Transforms.sign(paramsView).muli(l1));
+        }
+        if (conf.isMiniBatch())
+            gradient.divi(miniBatchSize);
+    }
+
+    private void initViews(INDArray flatParams, INDArray flatGradients, INDArray flatState) {
+        this.flatParams = flatParams;
+        this.flatGradients = flatGradients;
+        this.flatState = flatState;
+        paramsView = flatParams.get(NDArrayIndex.point(0), NDArrayIndex.interval(paramOffsetStart, paramOffsetEnd));
+        gradientView = flatGradients.get(NDArrayIndex.point(0), NDArrayIndex.interval(paramOffsetStart, paramOffsetEnd));
+        gradientUpdater = LayerUpdater.createGradientUpdater(conf, firstVariable);
+        if (stateOffsetEnd > stateOffsetStart) {
+            INDArray state = flatState.get(NDArrayIndex.point(0),
+                    NDArrayIndex.interval(stateOffsetStart, stateOffsetEnd));
+            gradientUpdater.setStateViewArray(state, gradientView.shape(), gradientView.ordering(), false);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "UpdaterBlock(updater=" + updaterType + ", variables=" + variables + ", params=[" + paramOffsetStart
+                + "," + paramOffsetEnd + "), state=[" + stateOffsetStart + "," + stateOffsetEnd + "))";
+    }
+}
@@ -0,0 +1,102 @@
+package org.deeplearning4j.nn.updater;
+
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.api.Updater;
+import org.deeplearning4j.nn.gradient.Gradient;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Applies the updaters for a network (MultiLayerNetwork or ComputationGraph) to blocks of the flattened gradients
+ * (see {@link UpdaterBlock}). The blocks are created on the first update, and are reused for later updates; they are
+ * only recreated if the eligibility of any layer, the set of variables in any layer's gradient, or the updater
+ * configuration of any variable in a block has changed.
+ */
+public class UpdaterBlocks {
+
+    private List<UpdaterBlock> blocks;
+    private boolean[] eligible;
+    private List<Set<String>> gradientVariables;
+
+    /**
+     * Apply the updaters. Gradient normalization is applied per layer first (for eligible layers); layers that are not
+     * eligible for block updates are updated by their layer updater, as usual. Layers with an empty gradient are skipped.
+     *
+     * @param layers        Layers, in the order their parameters appear in the flattened parameters/gradients
+     * @param updaters      Updater for each layer
+     * @param gradients     Gradient for each layer (keyed by parameter name, without layer prefix). These must be
+     *                      views of the flattened gradients array
+     * @param stateOffsets  Offset of each layer's state in the flattened updater state array. May be null, if the
+     *                      state is in the same order as the parameters
+     * @param flatParams    Flattened parameters for the network
+     * @param flatGradients Flattened gradients for the network. Modified in-place
+     * @param flatState     Flattened updater state for the network. May be null if no state is required
+     * @param iteration     Current iteration
+     * @param batchSize     Minibatch size
+     */
+    public void update(Layer[] layers, Updater[] updaters, Gradient[] gradients, int[] stateOffsets,
+                       INDArray flatParams, INDArray flatGradients, INDArray flatState, int iteration, int batchSize) {
+        boolean[] eligibleNow = new boolean[layers.length];
+        for (int i = 0; i < layers.length; i++) {
+            if (gradients[i].gradientForVariable().isEmpty()) {
+                continue;
+            }
+            eligibleNow[i] = UpdaterBlock.isEligible(layers[i], updaters[i], gradients[i]);
+            if (eligibleNow[i]) {
+                //Gradient normalization is per layer (or per parameter type): apply it before the block updates
+                ((LayerUpdater) updaters[i]).preApply(layers[i], gradients[i], iteration);
+            } else {
+                updaters[i].update(layers[i], gradients[i], iteration, batchSize);
+            }
+        }
+
+        if (!isValid(eligibleNow, gradients)) {
+            blocks = UpdaterBlock.createBlocks(layers, updaters, gradients, eligibleNow, stateOffsets);
+            eligible = eligibleNow;
+            gradientVariables = new ArrayList<>(gradients.length);
+            for (Gradient g : gradients) {
+                gradientVariables.add(new HashSet<>(g.gradientForVariable().keySet()));
+            }
+        }
+
+        for (UpdaterBlock block : blocks) {
+            block.update(flatParams, flatGradients, flatState, iteration, batchSize);
+        }
+    }
+
+    private boolean isValid(boolean[] eligibleNow, Gradient[] gradients) {
+        if (blocks == null || !Arrays.equals(eligible, eligibleNow)) {
+            return false;
+        }
+        for (int i = 0; i < gradients.length; i++) {
+            if (!gradientVariables.get(i).equals(gradients[i].gradientForVariable().keySet())) {
+                return false;
+            }
+        }
+        for (UpdaterBlock block : blocks) {
+            if (!block.isCurrent()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Discard the current blocks: they will be recreated on the next update
+     */
+    public void invalidate() {
+        blocks = null;
+    }
+
+    /**
+     * @return The current blocks (null before the first update, or after {@link #invalidate()})
+     */
+    public List<UpdaterBlock> getBlocks() {
+        return blocks;
+    }
+}
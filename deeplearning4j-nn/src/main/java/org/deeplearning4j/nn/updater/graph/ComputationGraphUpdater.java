@@ -5,13 +5,20 @@ import org.deeplearning4j.nn.api.Updater;
 import org.deeplearning4j.nn.gradient.DefaultGradient;
 import org.deeplearning4j.nn.gradient.Gradient;
 import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.graph.vertex.GraphVertex;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.updater.LayerUpdater;
+import org.deeplearning4j.nn.updater.MultiLayerUpdater;
+import org.deeplearning4j.nn.updater.UpdaterBlocks;
 import org.deeplearning4j.nn.updater.UpdaterCreator;
+import org.deeplearning4j.optimize.api.LayerTrainingListener;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.indexing.NDArrayIndex;
 
 import java.io.Serializable;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -26,6 +33,11 @@ public class ComputationGraphUpdater implements Serializable, Cloneable {
     private final Updater[] layerUpdaters;
     private final Map<String, Integer> layerUpdatersMap;
     private INDArray viewArray;
+    private transient boolean flattenedUpdates;
+    private transient UpdaterBlocks updaterBlocks;
+    //Updater indices of the layers, in the order of the flattened parameters; updater state offset for each of these
+    private transient int[] paramOrder;
+    private transient int[] stateOffsets;
 
     public ComputationGraphUpdater(ComputationGraph graph) {
         layerUpdaters = new Updater[graph.getNumLayers()];
@@ -101,6 +113,7 @@ public class ComputationGraphUpdater implements Serializable, Cloneable {
         layerUpdaters = new Updater[updater.layerUpdaters.length];
         for (int i = 0; i < layerUpdaters.length; i++) layerUpdaters[i] = updater.layerUpdaters[i].clone();
         layerUpdatersMap = new HashMap<>(updater.layerUpdatersMap);
+        flattenedUpdates = updater.flattenedUpdates;
     }
 
     @Override
@@ -132,19 +145,109 @@ public class ComputationGraphUpdater implements Serializable, Cloneable {
             g.setGradientFor(newKey, gradientPair.getValue());
         }
 
-        for (Map.Entry<String, Gradient> entry : layerGradients.entrySet()) {
-            String layerName = entry.getKey();
-            int updaterIdx = layerUpdatersMap.get(layerName);
-            layerUpdaters[updaterIdx].update(graph.getLayer(layerName), entry.getValue(), iteration, batchSize);
-
+        List<LayerTrainingListener> listeners = MultiLayerUpdater.layerTrainingListeners(graph.getListeners());
+        //Per-layer updates are used if per-layer timing is required
+        if (flattenedUpdates && listeners.isEmpty() && graph.getFlattenedGradients() != null) {
+            updateFlattened(graph, layerGradients, iteration, batchSize);
+        } else {
+            for (Map.Entry<String, Gradient> entry : layerGradients.entrySet()) {
+                String layerName = entry.getKey();
+                int updaterIdx = layerUpdatersMap.get(layerName);
+                for (LayerTrainingListener l : listeners) l.onLayerStart(graph, layerName, LayerTrainingListener.Phase.UPDATE);
+                layerUpdaters[updaterIdx].update(graph.getLayer(layerName), entry.getValue(), iteration, batchSize);
+                for (LayerTrainingListener l : listeners) l.onLayerEnd(graph, layerName, LayerTrainingListener.Phase.UPDATE);
+            }
+        }
 
+        for (Map.Entry<String, Gradient> entry : layerGradients.entrySet()) {
             //Gradients may be replaced by BaseUpdater.update()
-            for (Map.Entry<String, INDArray> entry2 : layerGradients.get(layerName).gradientForVariable().entrySet()) {
+            for (Map.Entry<String, INDArray> entry2 : entry.getValue().gradientForVariable().entrySet()) {
                 gradient.setGradientFor(entry.getKey() + "_" + entry2.getKey(), entry2.getValue());
             }
         }
     }
 
+    /**
+     * Apply the updaters to contiguous blocks of the flattened gradients that share the same updater configuration,
+     * rather than to each variable separately: see {@link MultiLayerUpdater#updateFlattened(MultiLayerNetwork, Gradient[], int, int)}.
+     * Note that the parameters and gradients are in topological order, whereas the updater state is in the order of
+     * {@link ComputationGraph#getLayers()}.
+     */
+    protected void updateFlattened(ComputationGraph graph, Map<String, Gradient> layerGradients, int iteration,
+                                   int batchSize) {
+        Layer[] graphLayers = graph.getLayers();
+        if (paramOrder == null) {
+            initParamOrder(graph);
+        }
+        if (updaterBlocks == null) {
+            updaterBlocks = new UpdaterBlocks();
+        }
+
+        Layer[] layers = new Layer[paramOrder.length];
+        Updater[] updaters = new Updater[paramOrder.length];
+        Gradient[] gradients = new Gradient[paramOrder.length];
+        for (int i = 0; i < paramOrder.length; i++) {
+            layers[i] = graphLayers[paramOrder[i]];
+            updaters[i] = layerUpdaters[paramOrder[i]];
+            gradients[i] = layerGradients.get(layers[i].conf().getLayer().getLayerName());
+            if (gradients[i] == null) {
+                gradients[i] = new DefaultGradient();
+            }
+        }
+        updaterBlocks.update(layers, updaters, gradients, stateOffsets, graph.params(), graph.getFlattenedGradients(),
+                viewArray, iteration, batchSize);
+    }
+
+    private void initParamOrder(ComputationGraph graph) {
+        Layer[] graphLayers = graph.getLayers();
+        int[] stateOffsetForUpdater = new int[layerUpdaters.length];
+        int soFar = 0;
+        for (int i = 0; i < layerUpdaters.length; i++) {
+            stateOffsetForUpdater[i] = soFar;
+            soFar += layerUpdaters[i].stateSizeForLayer(graphLayers[i]);
+        }
+
+        GraphVertex[] vertices = graph.getVertices();
+        int[] order = new int[layerUpdaters.length];
+        int[] offsets = new int[layerUpdaters.length];
+        int n = 0;
+        for (int vertexIdx : graph.topologicalSortOrder()) {
+            GraphVertex gv = vertices[vertexIdx];
+            if (!gv.hasLayer()) continue;
+            int updaterIdx = layerUpdatersMap.get(gv.getVertexName());
+            order[n] = updaterIdx;
+            offsets[n] = stateOffsetForUpdater[updaterIdx];
+            n++;
+        }
+        paramOrder = order;
+        stateOffsets = offsets;
+    }
+
+    /**
+     * Set whether updates should be applied to blocks of the flattened gradients, rather than to each variable
+     * separately (see {@link org.deeplearning4j.nn.updater.UpdaterBlock}). Disabled by default (opt-in); see
+     * {@link MultiLayerUpdater#setFlattenedUpdates(boolean)}
+     */
+    public void setFlattenedUpdates(boolean flattenedUpdates) {
+        this.flattenedUpdates = flattenedUpdates;
+    }
+
+    public boolean isFlattenedUpdates() {
+        return flattenedUpdates;
+    }
+
+    /**
+     * Copy the state that is not part of the updater state view array (see
+     * {@link LayerUpdater#copyRowSparseStateFrom(LayerUpdater)}) from another updater for the same graph configuration
+     */
+    public void copyRowSparseStateFrom(ComputationGraphUpdater other) {
+        for (int i = 0; i < layerUpdaters.length; i++) {
+            if (layerUpdaters[i] instanceof LayerUpdater && other.layerUpdaters[i] instanceof LayerUpdater) {
+                ((LayerUpdater) layerUpdaters[i]).copyRowSparseStateFrom((LayerUpdater) other.layerUpdaters[i]);
+            }
+        }
+    }
+
 
     public void setStateViewArray(INDArray viewArray) {
         if (this.viewArray.length() != viewArray.length())
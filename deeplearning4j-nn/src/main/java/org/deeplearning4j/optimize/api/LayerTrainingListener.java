@@ -0,0 +1,39 @@
+package org.deeplearning4j.optimize.api;
+
+import org.deeplearning4j.nn.api.Model;
+
+/**
+ * LayerTrainingListener: an extension of {@link TrainingListener} that is notified at the start and end of the
+ * per-layer (or per-vertex, for ComputationGraph) steps of each training iteration: the forward pass, backprop and the
+ * updater. Intended for profiling, such as measuring the time spent in each layer.<br>
+ * Layers are identified by their index as a String (MultiLayerNetwork), or by vertex name (ComputationGraph).
+ * Note that the forward pass of output layers is done as part of backprop at training time, and that these methods
+ * are called once per layer per phase. Implementations should therefore be cheap, especially on iterations that are
+ * not being profiled.<br>
+ * These methods are called from the training thread, except when a ComputationGraph executes independent vertices
+ * concurrently ({@code ComputationGraph.setConcurrentBranchExecution(boolean)}): events for different vertices may then
+ * be delivered concurrently, from different threads. The start and end events for any one layer and phase are always
+ * delivered on the same thread.
+ */
+public interface LayerTrainingListener extends TrainingListener {
+
+    enum Phase {FORWARD, BACKWARD, UPDATE}
+
+    /**
+     * Called immediately before the specified layer starts the given phase
+     *
+     * @param model     Model
+     * @param layerName Name of the layer or vertex
+     * @param phase     Phase that is starting
+     */
+    void onLayerStart(Model model, String layerName, Phase phase);
+
+    /**
+     * Called immediately after the specified layer completes the given phase
+     *
+     * @param model     Model
+     * @param layerName Name of the layer or vertex
+     * @param phase     Phase that has completed
+     */
+    void onLayerEnd(Model model, String layerName, Phase phase);
+}
@@ -0,0 +1,195 @@
+package org.deeplearning4j.util;
+
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.concurrency.AffinityManager;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.executioner.GridExecutioner;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.util.ArrayUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Element access directly on the (host) data buffer of a 'c' order INDArray (or a row/column vector), for example by
+ * the CPU normalization helpers and the threshold encoded gradient sharing. Values are read and written in place,
+ * without first being copied to/from a Java double[].<br>
+ * Only absolute get/set are used, hence one instance may be used concurrently by multiple threads, provided they
+ * write disjoint elements.<br>
+ * Also provides row scatter for matrices of any order and stride (including views of the flattened parameters and
+ * gradients), as the counterpart of {@link Nd4j#pullRows(INDArray, int, int[])} (gather).
+ */
+public class DirectValues {
+
+    //Retained so that the underlying (off-heap) buffer can't be deallocated while in use
+    private final INDArray array;
+    private final DoubleBuffer doubles;
+    private final FloatBuffer floats;
+    //Offset of element 0 of the array in its buffer: non-zero only for the strided access used by the row scatter
+    private final int offset;
+
+    private DirectValues(INDArray array) {
+        this(array, 0);
+    }
+
+    private DirectValues(INDArray array, int offset) {
+        this.array = array;
+        this.offset = offset;
+        ByteBuffer bb = array.data().asNio().duplicate().order(ByteOrder.nativeOrder());
+        bb.position(0);
+        if (array.data().dataType() == DataBuffer.Type.DOUBLE) {
+            doubles = bb.asDoubleBuffer();
+            floats = null;
+        } else {
+            doubles = null;
+            floats = bb.asFloatBuffer();
+        }
+    }
+
+    /**
+     * @return True if direct access is supported for the current data type (float and double, but not half precision)
+     */
+    public static boolean isSupported() {
+        DataBuffer.Type type = Nd4j.dataType();
+        return type == DataBuffer.Type.FLOAT || type == DataBuffer.Type.DOUBLE;
+    }
+
+    /**
+     * Access an array for reading. If the array is a 'c' order array using its entire buffer (the usual case for
+     * activations and epsilons) it is accessed in place; otherwise, a single 'c' order copy is made.
+     */
+    public static DirectValues read(INDArray arr) {
+        return access(isDenseC(arr) ? arr : arr.dup('c'));
+    }
+
+    /**
+     * Access an array for reading and writing in place. Call {@link #array()} once all values are written.
+     *
+     * @return Values of the array, or null if the array is not a 'c' order array (or vector) using its entire buffer,
+     * or the data type is not supported
+     */
+    public static DirectValues modify(INDArray arr) {
+        return isSupported() && isDenseC(arr) ? access(arr) : null;
+    }
+
+    private static DirectValues access(INDArray arr) {
+        if (Nd4j.getExecutioner() instanceof GridExecutioner)
+            ((GridExecutioner) Nd4j.getExecutioner()).flushQueueBlocking();
+        Nd4j.getAffinityManager().ensureLocation(arr, AffinityManager.Location.HOST);
+        return new DirectValues(arr);
+    }
+
+    /**
+     * Create a new (uninitialized) 'c' order array for writing. Call {@link #array()} once all values are written.
+     */
+    public static DirectValues create(int[] shape) {
+        return new DirectValues(Nd4j.createUninitialized(shape, 'c'));
+    }
+
+    private static boolean isDenseC(INDArray arr) {
+        if (arr.offset() != 0 || arr.data().length() != arr.length())
+            return false;
+        //For vectors, the linear index is the same for both orders
+        if (arr.isVector())
+            return arr.elementWiseStride() == 1;
+        return arr.ordering() == 'c' && Arrays.equals(arr.stride(), ArrayUtil.calcStrides(arr.shape()));
+    }
+
+    /**
+     * Row scatter: set target[rows[i], :] = values[i, :], or add values[i, :] to target[rows[i], :] if add is true.
+     * With add, rows may contain duplicates (all are accumulated); otherwise, rows should be distinct.
+     *
+     * @param target Matrix to modify in place. May be a view, of any order/stride
+     * @param rows   Rows of the target
+     * @param values Matrix with rows.length rows, and the same number of columns as the target
+     * @param add    If true: add to the target rows. If false: replace the target rows
+     */
+    public static void scatterRows(INDArray target, int[] rows, INDArray values, boolean add) {
+        DirectValues t = strided(target);
+        if (t == null) {
+            //Half precision, or a target not backed by its buffer in the usual way: one row at a time
+            for (int i = 0; i < rows.length; i++) {
+                if (add) {
+                    target.getRow(rows[i]).addi(values.getRow(i));
+                } else {
+                    target.getRow(rows[i]).assign(values.getRow(i));
+                }
+            }
+            return;
+        }
+        DirectValues v = read(values);
+        int columns = target.columns();
+        int rowStride = target.stride(0);
+        int columnStride = target.stride(1);
+        for (int i = 0; i < rows.length; i++) {
+            int rowStart = rows[i] * rowStride;
+            int valuesStart = i * columns;
+            for (int j = 0; j < columns; j++) {
+                int idx = rowStart + j * columnStride;
+                double value = v.get(valuesStart + j);
+                t.set(idx, add ? t.get(idx) + value : value);
+            }
+        }
+        t.array();
+    }
+
+    /**
+     * Set the specified rows of the target matrix (of any order/stride, including views) to zero, in place
+     */
+    public static void zeroRows(INDArray target, int[] rows) {
+        DirectValues t = strided(target);
+        if (t == null) {
+            for (int row : rows)
+                target.getRow(row).assign(0);
+            return;
+        }
+        int columns = target.columns();
+        int rowStride = target.stride(0);
+        int columnStride = target.stride(1);
+        for (int row : rows) {
+            for (int j = 0; j < columns; j++)
+                t.set(row * rowStride + j * columnStride, 0.0);
+        }
+        t.array();
+    }
+
+    /**
+     * Access a matrix via its buffer, with get/set indexes relative to the array's offset (i.e., index
+     * row * stride(0) + column * stride(1)). Returns null if not supported
+     */
+    private static DirectValues strided(INDArray arr) {
+        if (!isSupported() || arr.rank() != 2 || arr.length() == 0)
+            return null;
+        long last = arr.offset() + (long) (arr.rows() - 1) * arr.stride(0) + (long) (arr.columns() - 1) * arr.stride(1);
+        if (arr.offset() < 0 || arr.stride(0) < 0 || arr.stride(1) < 0 || last >= arr.data().length())
+            return null;
+        if (Nd4j.getExecutioner() instanceof GridExecutioner)
+            ((GridExecutioner) Nd4j.getExecutioner()).flushQueueBlocking();
+        Nd4j.getAffinityManager().ensureLocation(arr, AffinityManager.Location.HOST);
+        return new DirectValues(arr, (int) arr.offset());
+    }
+
+    public double get(int i) {
+        return doubles != null ? doubles.get(offset + i) : floats.get(offset + i);
+    }
+
+    public void set(int i, double value) {
+        if (doubles != null) {
+            doubles.put(offset + i, value);
+        } else {
+            floats.put(offset + i, (float) value);
+        }
+    }
+
+    /**
+     * @return The underlying array, after marking its host copy as the current one (values written via
+     * {@link #set(int, double)} are on the host)
+     */
+    public INDArray array() {
+        Nd4j.getAffinityManager().tagLocation(array, AffinityManager.Location.HOST);
+        return array;
+    }
+}
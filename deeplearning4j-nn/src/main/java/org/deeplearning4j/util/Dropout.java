@@ -6,6 +6,7 @@ import org.nd4j.linalg.api.ops.impl.transforms.LegacyDropOut;
 import org.nd4j.linalg.api.ops.impl.transforms.LegacyDropOutInverted;
 import org.nd4j.linalg.api.ops.random.impl.DropOut;
 import org.nd4j.linalg.api.ops.random.impl.DropOutInverted;
+import org.nd4j.linalg.api.rng.Random;
 import org.nd4j.linalg.factory.Nd4j;
 
 
@@ -14,9 +15,26 @@ import org.nd4j.linalg.factory.Nd4j;
  */
 public class Dropout {
 
+    private static final ThreadLocal<Random> RANDOM = new ThreadLocal<>();
+
     private Dropout() {
     }
 
+    /**
+     * Use the specified RNG (instead of {@link Nd4j#getRandom()}) for dropout and drop connect on the current thread.
+     * Used for example to reproduce the dropout masks when recomputing activations, without reseeding the global RNG.
+     * Only native RNGs (i.e., with a state pointer) are supported; otherwise, the global RNG is used.
+     *
+     * @param rng RNG to use. Null: use {@link Nd4j#getRandom()} (default)
+     */
+    public static void setRandom(Random rng) {
+        if (rng == null) {
+            RANDOM.remove();
+        } else {
+            RANDOM.set(rng);
+        }
+    }
+
     /**
      * Apply drop connect to the given variable
      * @param layer the layer with the variables
@@ -25,7 +43,10 @@ public class Dropout {
      */
     public static INDArray applyDropConnect(Layer layer,String variable) {
         INDArray result = layer.getParam(variable).dup();
-        if (Nd4j.getRandom().getStatePointer() != null) {
+        Random rng = RANDOM.get();
+        if (rng != null && rng.getStatePointer() != null) {
+            Nd4j.getExecutioner().exec(new DropOut(result, result, layer.conf().getLayer().getDropOut()), rng);
+        } else if (Nd4j.getRandom().getStatePointer() != null) {
             Nd4j.getExecutioner().exec(new DropOut(result, result, layer.conf().getLayer().getDropOut()));
         } else {
             Nd4j.getExecutioner().exec(new LegacyDropOut(result, result, layer.conf().getLayer().getDropOut()));
@@ -40,7 +61,10 @@ public class Dropout {
      * @param dropout the drop out probability
      */
     public static void applyDropout(INDArray input,double dropout) {
-        if (Nd4j.getRandom().getStatePointer() != null) {
+        Random rng = RANDOM.get();
+        if (rng != null && rng.getStatePointer() != null) {
+            Nd4j.getExecutioner().exec(new DropOutInverted(input, dropout), rng);
+        } else if (Nd4j.getRandom().getStatePointer() != null) {
             Nd4j.getExecutioner().exec(new DropOutInverted(input, dropout));
         } else {
             Nd4j.getExecutioner().exec(new LegacyDropOutInverted(input, dropout));
@@ -0,0 +1,281 @@
+package org.deeplearning4j.util;
+
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.InputPreProcessor;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.graph.GraphVertex;
+import org.deeplearning4j.nn.conf.graph.LayerVertex;
+import org.deeplearning4j.nn.conf.layers.ActivationLayer;
+import org.deeplearning4j.nn.conf.layers.BatchNormalization;
+import org.deeplearning4j.nn.conf.layers.ConvolutionLayer;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.DropoutLayer;
+import org.deeplearning4j.nn.conf.layers.Layer;
+import org.deeplearning4j.nn.conf.preprocessor.ComposableInputPreProcessor;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.params.BatchNormalizationParamInitializer;
+import org.deeplearning4j.nn.params.DefaultParamInitializer;
+import org.nd4j.linalg.activations.impl.ActivationIdentity;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.impl.broadcast.BroadcastMulOp;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+import java.util.*;
+
+/**
+ * Produces inference-only copies of trained networks, with the same output as {@code output(input, false)} on the
+ * original network (up to floating point rounding), but fewer layers to execute. Specifically:<br>
+ * - {@link BatchNormalization} layers directly following a {@link DenseLayer} or {@link ConvolutionLayer} with identity
+ * activation function are folded into the weights and biases of that layer<br>
+ * - {@link DropoutLayer}s are removed, and dropout/DropConnect is disabled on all other layers<br>
+ * - {@link ActivationLayer}s directly following a {@link DenseLayer}, {@link ConvolutionLayer} or {@link ActivationLayer}
+ * with identity activation function are merged into that layer<br>
+ * <br>
+ * The original network is not modified. The returned network is a standard MultiLayerNetwork or ComputationGraph, and
+ * can be saved using {@link ModelSerializer}. It is not intended to be trained further: the folded layers no longer
+ * have batch normalization parameters, and the updater state is not copied.<br>
+ * For a ComputationGraph, a layer is only folded into the previous layer if it is the only consumer of that layer's
+ * activations. Removed vertices are replaced by their input vertex in the inputs of other vertices and in the
+ * network outputs.
+ */
+public class InferenceOptimizer {
+
+    private InferenceOptimizer() {
+    }
+
+    /**
+     * Create an inference-optimized copy of the specified network
+     *
+     * @param network Network to optimize. Not modified.
+     * @return New network with batch normalization folded, and dropout and redundant activation layers removed
+     */
+    public static MultiLayerNetwork optimize(MultiLayerNetwork network) {
+        MultiLayerConfiguration origConf = network.getLayerWiseConfigurations();
+        int nLayers = network.getnLayers();
+
+        List<NeuralNetConfiguration> confs = new ArrayList<>();
+        List<Map<String, INDArray>> params = new ArrayList<>();
+        Map<Integer, InputPreProcessor> preProcessors = new HashMap<>();
+        InputPreProcessor pending = null; //Preprocessor of a removed layer: needs to be applied before the next layer
+
+        for (int i = 0; i < nLayers; i++) {
+            NeuralNetConfiguration conf = origConf.getConf(i).clone();
+            disableDropout(conf);
+            Layer layerConf = conf.getLayer();
+            InputPreProcessor preProcessor = origConf.getInputPreProcess(i);
+            if (preProcessor != null) preProcessor = preProcessor.clone();
+
+            if (layerConf instanceof DropoutLayer && i < nLayers - 1) {
+                //No op at inference time (other than the preprocessor, if any)
+                pending = compose(pending, preProcessor);
+                continue;
+            }
+
+            int prev = confs.size() - 1;
+            if (prev >= 0 && preProcessor == null && pending == null) {
+                Layer prevLayerConf = confs.get(prev).getLayer();
+                if (layerConf instanceof BatchNormalization && canFoldBatchNorm(prevLayerConf)) {
+                    foldBatchNorm(prevLayerConf, params.get(prev), (BatchNormalization) layerConf,
+                            network.getLayer(i).paramTable());
+                    continue;
+                }
+                if (layerConf instanceof ActivationLayer && canMergeActivation(prevLayerConf)) {
+                    prevLayerConf.setActivationFn(layerConf.getActivationFn());
+                    continue;
+                }
+            }
+
+            preProcessor = compose(pending, preProcessor);
+            pending = null;
+            if (preProcessor != null) preProcessors.put(confs.size(), preProcessor);
+            confs.add(conf);
+            params.add(copyParams(network.getLayer(i).paramTable()));
+        }
+
+        MultiLayerConfiguration conf = origConf.clone();
+        conf.setConfs(confs);
+        conf.setInputPreProcessors(preProcessors);
+
+        MultiLayerNetwork ret = new MultiLayerNetwork(conf);
+        ret.init();
+        for (int i = 0; i < params.size(); i++) {
+            for (Map.Entry<String, INDArray> entry : params.get(i).entrySet()) {
+                ret.getLayer(i).getParam(entry.getKey()).assign(entry.getValue());
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Create an inference-optimized copy of the specified computation graph
+     *
+     * @param graph Graph to optimize. Not modified.
+     * @return New graph with batch normalization folded, and dropout and redundant activation layers removed
+     */
+    public static ComputationGraph optimize(ComputationGraph graph) {
+        ComputationGraphConfiguration conf = graph.getConfiguration().clone();
+
+        Map<String, Map<String, INDArray>> params = new HashMap<>();
+        for (org.deeplearning4j.nn.graph.vertex.GraphVertex vertex : graph.getVertices()) {
+            if (vertex.hasLayer()) {
+                params.put(vertex.getVertexName(), copyParams(vertex.getLayer().paramTable()));
+            }
+        }
+
+        for (GraphVertex vertex : conf.getVertices().values()) {
+            if (vertex instanceof LayerVertex) {
+                disableDropout(((LayerVertex) vertex).getLayerConf());
+            }
+        }
+
+        //Repeat until nothing changes: for example, dense -> batch norm -> activation layer needs 2 passes
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (String name : new ArrayList<>(conf.getVertices().keySet())) {
+                GraphVertex vertex = conf.getVertices().get(name);
+                if (!(vertex instanceof LayerVertex)) continue;  //Not a layer, or already removed
+                LayerVertex layerVertex = (LayerVertex) vertex;
+                List<String> inputs = conf.getVertexInputs().get(name);
+                if (layerVertex.getPreProcessor() != null || inputs.size() != 1) continue;
+
+                String inputName = inputs.get(0);
+                if (conf.getNetworkOutputs().contains(name)
+                        && (conf.getNetworkInputs().contains(inputName) || conf.getNetworkOutputs().contains(inputName))) {
+                    //Can't replace the network output by a network input, or by another output
+                    continue;
+                }
+
+                Layer layerConf = layerVertex.getLayerConf().getLayer();
+                if (layerConf instanceof DropoutLayer) {
+                    removeVertex(conf, params, name, inputName);
+                    changed = true;
+                    continue;
+                }
+
+                GraphVertex inputVertex = conf.getVertices().get(inputName);
+                if (!(inputVertex instanceof LayerVertex) || conf.getNetworkOutputs().contains(inputName)
+                        || numConsumers(conf, inputName) != 1) {
+                    continue;
+                }
+                Layer inputLayerConf = ((LayerVertex) inputVertex).getLayerConf().getLayer();
+                if (layerConf instanceof BatchNormalization && canFoldBatchNorm(inputLayerConf)) {
+                    foldBatchNorm(inputLayerConf, params.get(inputName), (BatchNormalization) layerConf, params.get(name));
+                } else if (layerConf instanceof ActivationLayer && canMergeActivation(inputLayerConf)) {
+                    inputLayerConf.setActivationFn(layerConf.getActivationFn());
+                } else {
+                    continue;
+                }
+                removeVertex(conf, params, name, inputName);
+                changed = true;
+            }
+        }
+        conf.validate();
+
+        ComputationGraph ret = new ComputationGraph(conf);
+        ret.init();
+        for (Map.Entry<String, Map<String, INDArray>> layerParams : params.entrySet()) {
+            org.deeplearning4j.nn.api.Layer layer = ret.getLayer(layerParams.getKey());
+            for (Map.Entry<String, INDArray> entry : layerParams.getValue().entrySet()) {
+                layer.getParam(entry.getKey()).assign(entry.getValue());
+            }
+        }
+        return ret;
+    }
+
+    private static void disableDropout(NeuralNetConfiguration conf) {
+        conf.setUseDropConnect(false);
+        conf.getLayer().setDropOut(0.0);
+    }
+
+    private static boolean isIdentity(Layer layerConf) {
+        return layerConf.getActivationFn() instanceof ActivationIdentity;
+    }
+
+    private static boolean canFoldBatchNorm(Layer prevLayerConf) {
+        //Exact class checks: output layers etc are DenseLayer-like, but we can't modify what comes after them
+        return (prevLayerConf.getClass() == DenseLayer.class || prevLayerConf.getClass() == ConvolutionLayer.class)
+                && isIdentity(prevLayerConf);
+    }
+
+    private static boolean canMergeActivation(Layer prevLayerConf) {
+        //Note: batch norm layers don't apply their activation function, so activation layers can't be merged into them
+        return (prevLayerConf.getClass() == DenseLayer.class || prevLayerConf.getClass() == ConvolutionLayer.class
+                || prevLayerConf.getClass() == ActivationLayer.class) && isIdentity(prevLayerConf);
+    }
+
+    /**
+     * Fold the batch normalization layer (inference mode) into the weights and biases of the previous layer:<br>
+     * out = gamma * (x*W + b - mean) / std + beta = x*(W*scale) + (b-mean)*scale + beta, with scale = gamma/std,
+     * applied per output (dense) or per output channel (convolution)
+     */
+    private static void foldBatchNorm(Layer prevLayerConf, Map<String, INDArray> prevParams, BatchNormalization bn,
+                                      Map<String, INDArray> bnParams) {
+        INDArray mean = bnParams.get(BatchNormalizationParamInitializer.GLOBAL_MEAN);
+        //Note: the global variance estimate already includes eps (added to the minibatch variance during training),
+        // hence BatchNormalization uses sqrt(var) at test time, and so do we
+        INDArray std = Transforms.sqrt(bnParams.get(BatchNormalizationParamInitializer.GLOBAL_VAR), true);
+
+        INDArray gamma;
+        INDArray beta;
+        if (bn.isLockGammaBeta()) {
+            //Match BatchNormalization.preOutput: fixed gamma/beta are only applied if both differ from 1.0/0.0
+            boolean apply = bn.getGamma() != 1.0 && bn.getBeta() != 0.0;
+            gamma = Nd4j.valueArrayOf(mean.shape(), apply ? bn.getGamma() : 1.0);
+            beta = Nd4j.valueArrayOf(mean.shape(), apply ? bn.getBeta() : 0.0);
+        } else {
+            gamma = bnParams.get(BatchNormalizationParamInitializer.GAMMA);
+            beta = bnParams.get(BatchNormalizationParamInitializer.BETA);
+        }
+
+        INDArray scale = gamma.div(std);
+        INDArray shift = beta.sub(mean.mul(scale));
+
+        INDArray W = prevParams.get(DefaultParamInitializer.WEIGHT_KEY);
+        INDArray b = prevParams.get(DefaultParamInitializer.BIAS_KEY);
+        if (prevLayerConf instanceof ConvolutionLayer) {
+            //Weights shape: [depthOut, depthIn, kH, kW]
+            Nd4j.getExecutioner().execAndReturn(new BroadcastMulOp(W, scale, W, 0));
+        } else {
+            //Weights shape: [nIn, nOut]
+            W.muliRowVector(scale);
+        }
+        b.muli(scale).addi(shift);
+    }
+
+    private static InputPreProcessor compose(InputPreProcessor first, InputPreProcessor second) {
+        if (first == null) return second;
+        if (second == null) return first;
+        return new ComposableInputPreProcessor(first, second);
+    }
+
+    private static Map<String, INDArray> copyParams(Map<String, INDArray> paramTable) {
+        Map<String, INDArray> copy = new LinkedHashMap<>();
+        for (Map.Entry<String, INDArray> entry : paramTable.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().dup());
+        }
+        return copy;
+    }
+
+    private static int numConsumers(ComputationGraphConfiguration conf, String vertexName) {
+        int count = 0;
+        for (List<String> inputs : conf.getVertexInputs().values()) {
+            count += Collections.frequency(inputs, vertexName);
+        }
+        return count;
+    }
+
+    private static void removeVertex(ComputationGraphConfiguration conf, Map<String, Map<String, INDArray>> params,
+                                     String name, String replacement) {
+        conf.getVertices().remove(name);
+        conf.getVertexInputs().remove(name);
+        params.remove(name);
+        for (List<String> inputs : conf.getVertexInputs().values()) {
+            Collections.replaceAll(inputs, name, replacement);
+        }
+        Collections.replaceAll(conf.getNetworkOutputs(), name, replacement);
+    }
+}
@@ -42,6 +42,7 @@ public class ModelSerializer {
     public static final String OLD_UPDATER_BIN = "updater.bin";
     public static final String UPDATER_BIN = "updaterState.bin";
     public static final String NORMALIZER_BIN = "normalizer.bin";
+    public static final String QUANTIZED_COEFFICIENTS_BIN = "quantizedCoefficients.bin";
 
     private ModelSerializer() {
     }
@@ -149,6 +150,68 @@ public class ModelSerializer {
     }
 
 
+    /**
+     * Write a model to a file, with quantized parameters. The updater state is not saved.
+     * Quantized models can be restored using the standard restoreMultiLayerNetwork/restoreComputationGraph methods,
+     * which will dequantize the parameters
+     *
+     * @param model       the model to write
+     * @param file        the file to write to
+     * @param type        type of quantization (int8 or fp16)
+     * @param granularity granularity of the int8 quantization scales: per layer (parameter array) or per output channel
+     * @throws IOException
+     * @see QuantizedParameters
+     */
+    public static void writeQuantizedModel(@NonNull Model model, @NonNull File file, @NonNull QuantizedParameters.Type type,
+                                           @NonNull QuantizedParameters.Granularity granularity) throws IOException {
+        try(BufferedOutputStream stream = new BufferedOutputStream(new FileOutputStream(file))){
+            writeQuantizedModel(model, stream, type, granularity);
+        }
+    }
+
+    /**
+     * Write a model to an output stream, with quantized parameters. The updater state is not saved.
+     *
+     * @param model       the model to write
+     * @param stream      the output stream to write to
+     * @param type        type of quantization (int8 or fp16)
+     * @param granularity granularity of the int8 quantization scales: per layer (parameter array) or per output channel
+     * @throws IOException
+     * @see #writeQuantizedModel(Model, File, QuantizedParameters.Type, QuantizedParameters.Granularity)
+     */
+    public static void writeQuantizedModel(@NonNull Model model, @NonNull OutputStream stream, @NonNull QuantizedParameters.Type type,
+                                           @NonNull QuantizedParameters.Granularity granularity) throws IOException {
+        ZipOutputStream zipfile = new ZipOutputStream(new CloseShieldOutputStream(stream));
+
+        String json = "";
+        if (model instanceof MultiLayerNetwork) {
+            json = ((MultiLayerNetwork) model).getLayerWiseConfigurations().toJson();
+        } else if (model instanceof ComputationGraph) {
+            json = ((ComputationGraph) model).getConfiguration().toJson();
+        }
+
+        ZipEntry config = new ZipEntry("configuration.json");
+        zipfile.putNextEntry(config);
+        writeEntry(new ByteArrayInputStream(json.getBytes()), zipfile);
+
+        ZipEntry coefficients = new ZipEntry(QUANTIZED_COEFFICIENTS_BIN);
+        zipfile.putNextEntry(coefficients);
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new CloseShieldOutputStream(zipfile)));
+        QuantizedParameters.quantize(model, type, granularity).write(dos);
+        dos.close();
+
+        zipfile.flush();
+        zipfile.close();
+    }
+
+    private static QuantizedParameters readQuantizedParameters(ZipFile zipFile) throws IOException {
+        ZipEntry entry = zipFile.getEntry(QUANTIZED_COEFFICIENTS_BIN);
+        if (entry == null) return null;
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(zipFile.getInputStream(entry)))) {
+            return QuantizedParameters.read(dis);
+        }
+    }
+
     private static void writeEntry(InputStream inputStream, ZipOutputStream zipStream) throws IOException {
         byte[] bytes = new byte[1024];
         int bytesRead;
@@ -220,6 +283,12 @@ public class ModelSerializer {
             gotCoefficients = true;
         }
 
+        QuantizedParameters quantizedParams = null;
+        if (!gotCoefficients) {
+            quantizedParams = readQuantizedParameters(zipFile);
+            gotCoefficients = quantizedParams != null;
+        }
+
         if (loadUpdater) {
             //This can be removed a few releases after 0.4.1...
             ZipEntry oldUpdaters = zipFile.getEntry(OLD_UPDATER_BIN);
@@ -267,7 +336,12 @@ public class ModelSerializer {
         if (gotConfig && gotCoefficients) {
             MultiLayerConfiguration confFromJson = MultiLayerConfiguration.fromJson(json);
             MultiLayerNetwork network = new MultiLayerNetwork(confFromJson);
-            network.init(params, false);
+            if (quantizedParams != null) {
+                network.init();
+                quantizedParams.dequantizeInto(network);
+            } else {
+                network.init(params, false);
+            }
 
             if(gotUpdaterState && updaterState != null){
                 network.getUpdater().setStateViewArray(network, updaterState, false);
@@ -433,6 +507,12 @@ public class ModelSerializer {
             gotCoefficients = true;
         }
 
+        QuantizedParameters quantizedParams = null;
+        if (!gotCoefficients) {
+            quantizedParams = readQuantizedParameters(zipFile);
+            gotCoefficients = quantizedParams != null;
+        }
+
 
         if (loadUpdater) {
             ZipEntry oldUpdaters = zipFile.getEntry(OLD_UPDATER_BIN);
@@ -480,7 +560,12 @@ public class ModelSerializer {
         if (gotConfig && gotCoefficients) {
             ComputationGraphConfiguration confFromJson = ComputationGraphConfiguration.fromJson(json);
             ComputationGraph cg = new ComputationGraph(confFromJson);
-            cg.init(params, false);
+            if (quantizedParams != null) {
+                cg.init();
+                quantizedParams.dequantizeInto(cg);
+            } else {
+                cg.init(params, false);
+            }
 
 
             if(gotUpdaterState && updaterState != null){
@@ -0,0 +1,156 @@
+package org.deeplearning4j.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Simple parallel loop utilities, used for example by the CPU normalization helpers and the record reader iterators.
+ * Tasks are executed on a shared daemon thread pool (one thread per available processor), with the first task always
+ * executed on the calling thread. Calls made from within a task (i.e., from a pool thread) are executed sequentially
+ * on that thread, hence nested use cannot deadlock the pool.
+ */
+public final class ParallelLoop {
+
+    /** Loops processing fewer elements than this in total are not worth parallelizing: see {@link #parallelism(long)} */
+    public static final long MIN_PARALLEL_ELEMENTS = 32768;
+
+    private static final int NUM_THREADS = Runtime.getRuntime().availableProcessors();
+    private static volatile ExecutorService executor;
+
+    public interface Body {
+        /**
+         * @param from First index to process (inclusive)
+         * @param to   Last index to process (exclusive)
+         */
+        void apply(int from, int to);
+    }
+
+    private ParallelLoop() {
+    }
+
+    /**
+     * Parallelism to use for a loop processing the given total number of array elements: 1 (i.e., execute on the
+     * calling thread) for small loops, as the overhead of dispatching would dominate; otherwise, the number of
+     * available processors
+     *
+     * @param totalElements Total number of array elements processed by the loop
+     */
+    public static int parallelism(long totalElements) {
+        return totalElements < MIN_PARALLEL_ELEMENTS ? 1 : NUM_THREADS;
+    }
+
+    /**
+     * Split the range [0, n) into (at most) parallelism contiguous chunks, and execute them in parallel.
+     * Returns once all chunks have completed.
+     */
+    public static void forRange(int n, int parallelism, final Body body) {
+        int nChunks = Math.min(n, Math.min(parallelism, NUM_THREADS));
+        if (nChunks <= 1 || Thread.currentThread() instanceof LoopThread) {
+            body.apply(0, n);
+            return;
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>(nChunks);
+        int chunkSize = (n + nChunks - 1) / nChunks;
+        for (int from = 0; from < n; from += chunkSize) {
+            final int f = from;
+            final int t = Math.min(n, from + chunkSize);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    body.apply(f, t);
+                    return null;
+                }
+            });
+        }
+        invokeAll(tasks, nChunks);
+    }
+
+    /**
+     * Execute the tasks, returning the results in the same order as the tasks. If parallelism > 1, all tasks are
+     * executed in parallel; otherwise, they are executed sequentially on the calling thread.<br>
+     * Always waits for all tasks to complete (even if one fails), then rethrows the first exception, if any.
+     */
+    public static <T> List<T> invokeAll(List<? extends Callable<T>> tasks, int parallelism) {
+        List<T> out = new ArrayList<>(tasks.size());
+        if (parallelism <= 1 || tasks.size() <= 1 || NUM_THREADS <= 1 || Thread.currentThread() instanceof LoopThread) {
+            for (Callable<T> c : tasks) {
+                out.add(call(c));
+            }
+            return out;
+        }
+
+        ExecutorService exec = getExecutor();
+        List<Future<T>> futures = new ArrayList<>(tasks.size() - 1);
+        for (int i = 1; i < tasks.size(); i++) {
+            futures.add(exec.submit(tasks.get(i)));
+        }
+        //First task: executed on the calling thread
+        RuntimeException first = null;
+        try {
+            out.add(call(tasks.get(0)));
+        } catch (RuntimeException e) {
+            first = e;
+        }
+
+        //Always wait for all tasks, so that none are still running (and modifying state) after we return
+        boolean interrupted = false;
+        for (Future<T> future : futures) {
+            while (true) {
+                try {
+                    out.add(future.get());
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (first == null) {
+                        Throwable cause = e.getCause();
+                        first = (cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause));
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (first != null)
+            throw first;
+        return out;
+    }
+
+    private static <T> T call(Callable<T> c) {
+        try {
+            return c.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static ExecutorService getExecutor() {
+        if (executor == null) {
+            synchronized (ParallelLoop.class) {
+                if (executor == null) {
+                    executor = Executors.newFixedThreadPool(NUM_THREADS, new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread t = new LoopThread(r);
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+                }
+            }
+        }
+        return executor;
+    }
+
+    private static class LoopThread extends Thread {
+        private LoopThread(Runnable r) {
+            super(r, "ParallelLoop");
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package org.deeplearning4j.util;
+
+import lombok.NonNull;
+import org.deeplearning4j.nn.api.Model;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Post-training quantized copy of the parameters of a {@link org.deeplearning4j.nn.multilayer.MultiLayerNetwork} or
+ * {@link org.deeplearning4j.nn.graph.ComputationGraph}, for compact storage and distribution of trained models.<br>
+ * Weight arrays (rank 2 arrays with more than one row and column, and rank 4 convolution weights) are quantized either to:<br>
+ * - {@link Type#INT8}: 8 bit integers with a scale and zero point (asymmetric/affine quantization), so that
+ * value = scale * (q - zeroPoint). The range always includes 0.0, so that zero weights are exactly representable.
+ * With {@link Granularity#CHANNEL}, each output (column of a dense weight matrix, output channel/depth of a convolution
+ * weight array) has its own scale and zero point; with {@link Granularity#LAYER} a single scale and zero point is used
+ * for the entire weight array.<br>
+ * - {@link Type#FP16}: IEEE 754 half precision values (round to nearest even).<br>
+ * All other parameters (biases, batch norm parameters, etc) are small, and are stored in full (32 bit) precision.<br>
+ * <br>
+ * Quantized parameters are dequantized to the network's standard (full precision) parameters with
+ * {@link #dequantizeInto(Model)}; {@link ModelSerializer#writeQuantizedModel(Model, java.io.File, Type, Granularity)}
+ * stores quantized parameters in the model zip file, and the ModelSerializer restore methods dequantize them automatically.
+ */
+public class QuantizedParameters implements Serializable {
+
+    private static final int FORMAT_VERSION = 1;
+
+    //Encoding of each parameter array
+    private static final byte ENC_FLOAT = 0;
+    private static final byte ENC_INT8 = 1;
+    private static final byte ENC_FP16 = 2;
+
+    public enum Type {INT8, FP16}
+
+    public enum Granularity {LAYER, CHANNEL}
+
+    private final List<Entry> entries;
+
+    private QuantizedParameters(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Quantize the parameters of the given network, using per-channel quantization for {@link Type#INT8}
+     *
+     * @param model Network (MultiLayerNetwork or ComputationGraph) to quantize the parameters of. Not modified
+     * @param type  Type of quantization
+     */
+    public static QuantizedParameters quantize(@NonNull Model model, @NonNull Type type) {
+        return quantize(model, type, Granularity.CHANNEL);
+    }
+
+    /**
+     * Quantize the parameters of the given network
+     *
+     * @param model       Network (MultiLayerNetwork or ComputationGraph) to quantize the parameters of. Not modified
+     * @param type        Type of quantization
+     * @param granularity Granularity for scales/zero points, when using {@link Type#INT8}. Not used for FP16
+     */
+    public static QuantizedParameters quantize(@NonNull Model model, @NonNull Type type, @NonNull Granularity granularity) {
+        List<Entry> entries = new ArrayList<>();
+        for (Map.Entry<String, INDArray> e : model.paramTable().entrySet()) {
+            INDArray param = e.getValue();
+            int rank = param.rank();
+            boolean isWeight = rank == 4 || (rank == 2 && param.rows() > 1 && param.columns() > 1);
+
+            //Order the values so that each output channel is a contiguous block:
+            // dense weights [nIn,nOut] -> 'f' order (columns); convolution weights [depthOut,depthIn,kH,kW] -> 'c' order
+            char order = (rank == 2 ? 'f' : 'c');
+            float[] values = param.dup(order).data().asFloat();
+
+            Entry entry = new Entry();
+            entry.name = e.getKey();
+            entry.order = order;
+            entry.shape = param.shape();
+            if (!isWeight) {
+                entry.encoding = ENC_FLOAT;
+                entry.floats = values;
+            } else if (type == Type.FP16) {
+                entry.encoding = ENC_FP16;
+                entry.halfs = new short[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    entry.halfs[i] = toHalf(values[i]);
+                }
+            } else {
+                int nChannels = (granularity == Granularity.CHANNEL ? (rank == 2 ? param.columns() : param.size(0)) : 1);
+                quantizeInt8(entry, values, nChannels);
+            }
+            entries.add(entry);
+        }
+        return new QuantizedParameters(entries);
+    }
+
+    private static void quantizeInt8(Entry entry, float[] values, int nChannels) {
+        int channelLength = values.length / nChannels;
+        entry.encoding = ENC_INT8;
+        entry.scales = new float[nChannels];
+        entry.zeroPoints = new byte[nChannels];
+        entry.bytes = new byte[values.length];
+        for (int c = 0; c < nChannels; c++) {
+            int start = c * channelLength;
+            int end = start + channelLength;
+            float min = 0.0f;
+            float max = 0.0f;
+            for (int i = start; i < end; i++) {
+                min = Math.min(min, values[i]);
+                max = Math.max(max, values[i]);
+            }
+            float scale = (max - min) / 255.0f;
+            if (scale == 0.0f) scale = 1.0f; //All zeros
+            //Map [min,max] to [-128,127]
+            int zeroPoint = clampToByte(Math.round(-128.0f - min / scale));
+
+            entry.scales[c] = scale;
+            entry.zeroPoints[c] = (byte) zeroPoint;
+            for (int i = start; i < end; i++) {
+                entry.bytes[i] = (byte) clampToByte(Math.round(values[i] / scale) + zeroPoint);
+            }
+        }
+    }
+
+    private static int clampToByte(int value) {
+        return Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, value));
+    }
+
+    /**
+     * Dequantize the parameters, and set them as the parameters of the specified network. The network must have the
+     * same configuration as the network the parameters were quantized from, and must be initialized.
+     *
+     * @param model Network to set the dequantized parameters on
+     */
+    public void dequantizeInto(@NonNull Model model) {
+        Map<String, INDArray> paramTable = model.paramTable();
+        if (paramTable.size() != entries.size()) {
+            throw new IllegalStateException("Cannot set quantized parameters: model has " + paramTable.size()
+                    + " parameter arrays, quantized parameters have " + entries.size());
+        }
+        for (Entry entry : entries) {
+            INDArray param = paramTable.get(entry.name);
+            if (param == null) {
+                throw new IllegalStateException("Cannot set quantized parameters: model has no parameter \"" + entry.name + "\"");
+            }
+            param.assign(entry.dequantize());
+        }
+    }
+
+    /**
+     * @return Names of the parameter arrays (as per {@link Model#paramTable()})
+     */
+    public List<String> getParamNames() {
+        List<String> names = new ArrayList<>(entries.size());
+        for (Entry e : entries) {
+            names.add(e.name);
+        }
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Dequantize a single parameter array
+     *
+     * @param paramName Name of the parameter, as per {@link Model#paramTable()}
+     * @return Dequantized parameter, or null if no parameter with that name exists
+     */
+    public INDArray dequantize(String paramName) {
+        for (Entry e : entries) {
+            if (e.name.equals(paramName)) return e.dequantize();
+        }
+        return null;
+    }
+
+    /**
+     * Write the quantized parameters to the specified output stream
+     */
+    public void write(DataOutputStream dos) throws IOException {
+        dos.writeInt(FORMAT_VERSION);
+        dos.writeInt(entries.size());
+        for (Entry e : entries) {
+            dos.writeUTF(e.name);
+            dos.writeChar(e.order);
+            dos.writeInt(e.shape.length);
+            for (int s : e.shape) {
+                dos.writeInt(s);
+            }
+            dos.writeByte(e.encoding);
+            switch (e.encoding) {
+                case ENC_FLOAT:
+                    dos.writeInt(e.floats.length);
+                    for (float f : e.floats) {
+                        dos.writeFloat(f);
+                    }
+                    break;
+                case ENC_FP16:
+                    dos.writeInt(e.halfs.length);
+                    for (short h : e.halfs) {
+                        dos.writeShort(h);
+                    }
+                    break;
+                case ENC_INT8:
+                    dos.writeInt(e.scales.length);
+                    for (float f : e.scales) {
+                        dos.writeFloat(f);
+                    }
+                    dos.write(e.zeroPoints);
+                    dos.writeInt(e.bytes.length);
+                    dos.write(e.bytes);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Read quantized parameters, as written by {@link #write(DataOutputStream)}
+     */
+    public static QuantizedParameters read(DataInputStream dis) throws IOException {
+        int version = dis.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported quantized parameters format version: " + version);
+        }
+        int nEntries = dis.readInt();
+        List<Entry> entries = new ArrayList<>(nEntries);
+        for (int i = 0; i < nEntries; i++) {
+            Entry e = new Entry();
+            e.name = dis.readUTF();
+            e.order = dis.readChar();
+            e.shape = new int[dis.readInt()];
+            for (int j = 0; j < e.shape.length; j++) {
+                e.shape[j] = dis.readInt();
+            }
+            e.encoding = dis.readByte();
+            switch (e.encoding) {
+                case ENC_FLOAT:
+                    e.floats = new float[dis.readInt()];
+                    for (int j = 0; j < e.floats.length; j++) {
+                        e.floats[j] = dis.readFloat();
+                    }
+                    break;
+                case ENC_FP16:
+                    e.halfs = new short[dis.readInt()];
+                    for (int j = 0; j < e.halfs.length; j++) {
+                        e.halfs[j] = dis.readShort();
+                    }
+                    break;
+                case ENC_INT8:
+                    int nChannels = dis.readInt();
+                    e.scales = new float[nChannels];
+                    for (int j = 0; j < nChannels; j++) {
+                        e.scales[j] = dis.readFloat();
+                    }
+                    e.zeroPoints = new byte[nChannels];
+                    dis.readFully(e.zeroPoints);
+                    e.bytes = new byte[dis.readInt()];
+                    dis.readFully(e.bytes);
+                    break;
+                default:
+                    throw new IOException("Invalid encoding for parameter \"" + e.name + "\": " + e.encoding);
+            }
+            entries.add(e);
+        }
+        return new QuantizedParameters(entries);
+    }
+
+    /**
+     * Convert a float to IEEE 754 half precision (binary16), rounding to nearest even
+     */
+    static short toHalf(float value) {
+        int bits = Float.floatToIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exp = (bits >>> 23) & 0xff;
+        int mantissa = bits & 0x7fffff;
+
+        if (exp == 0xff) {
+            //Infinity or NaN
+            return (short) (sign | 0x7c00 | (mantissa != 0 ? 0x200 : 0));
+        }
+        int halfExp = exp - 127 + 15;
+        if (halfExp >= 0x1f) {
+            //Overflow -> infinity
+            return (short) (sign | 0x7c00);
+        }
+        if (halfExp <= 0) {
+            //Subnormal half, or underflow to zero
+            if (halfExp < -10) return (short) sign;
+            mantissa |= 0x800000;   //Implicit leading 1
+            int shift = 14 - halfExp;
+            int half = mantissa >> shift;
+            int remainder = mantissa & ((1 << shift) - 1);
+            int halfway = 1 << (shift - 1);
+            if (remainder > halfway || (remainder == halfway && (half & 1) != 0)) half++;
+            return (short) (sign | half);
+        }
+        int half = (halfExp << 10) | (mantissa >> 13);
+        int remainder = mantissa & 0x1fff;
+        //Note: rounding up may carry into the exponent, which is the correct result (including overflow to infinity)
+        if (remainder > 0x1000 || (remainder == 0x1000 && (half & 1) != 0)) half++;
+        return (short) (sign | half);
+    }
+
+    /**
+     * Convert an IEEE 754 half precision (binary16) value to a float
+     */
+    static float fromHalf(short value) {
+        int bits = value & 0xffff;
+        int sign = (bits & 0x8000) << 16;
+        int exp = (bits >>> 10) & 0x1f;
+        int mantissa = bits & 0x3ff;
+
+        if (exp == 0x1f) {
+            //Infinity or NaN
+            return Float.intBitsToFloat(sign | 0x7f800000 | (mantissa << 13));
+        }
+        if (exp == 0) {
+            //Zero or subnormal: mantissa * 2^-24
+            float f = mantissa / 16777216.0f;
+            return (sign != 0 ? -f : f);
+        }
+        return Float.intBitsToFloat(sign | ((exp - 15 + 127) << 23) | (mantissa << 13));
+    }
+
+    private static class Entry implements Serializable {
+        private String name;
+        private char order;
+        private int[] shape;
+        private byte encoding;
+        private float[] floats;
+        private short[] halfs;
+        private float[] scales;
+        private byte[] zeroPoints;
+        private byte[] bytes;
+
+        private INDArray dequantize() {
+            float[] values;
+            switch (encoding) {
+                case ENC_FLOAT:
+                    values = floats;
+                    break;
+                case ENC_FP16:
+                    values = new float[halfs.length];
+                    for (int i = 0; i < halfs.length; i++) {
+                        values[i] = fromHalf(halfs[i]);
+                    }
+                    break;
+                case ENC_INT8:
+                    values = new float[bytes.length];
+                    int channelLength = bytes.length / scales.length;
+                    for (int i = 0; i < bytes.length; i++) {
+                        int c = i / channelLength;
+                        values[i] = scales[c] * (bytes[i] - zeroPoints[c]);
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Invalid encoding: " + encoding);
+            }
+            return Nd4j.create(values, shape, order);
+        }
+    }
+}
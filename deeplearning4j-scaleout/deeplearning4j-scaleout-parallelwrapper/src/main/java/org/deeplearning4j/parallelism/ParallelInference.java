@@ -0,0 +1,470 @@
+package org.deeplearning4j.parallelism;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.executioner.GridExecutioner;
+import org.nd4j.linalg.exception.ND4JIllegalStateException;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.INDArrayIndex;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This is simple inference server, suitable for serving single model from many concurrent request threads.
+ *
+ * Requests are put into shared queue, and N worker threads pull them from that queue, merge them into minibatches
+ * of up to batchLimit examples (waiting at most maxLatency after the first request of the batch was taken), and
+ * run one forward pass per minibatch. Each worker holds its own replica of the model, but all replicas share
+ * the same parameters array of the original model, so parameters must be treated as read-only while
+ * ParallelInference is in use.
+ */
+@Slf4j
+public class ParallelInference implements AutoCloseable {
+    private Model model;
+    private int workers = 2;
+    private int batchLimit = 32;
+    private long maxLatency = 5;
+    private int queueLimit = 64;
+    private BlockingQueue<InferenceRequest> queue;
+    private InferenceWorker zoo[];
+    private AtomicBoolean shouldStop = new AtomicBoolean(false);
+    // requests are enqueued under read lock, shutdown flag is set under write lock: no request can get into queue after shutdown
+    private final ReadWriteLock stateLock = new ReentrantReadWriteLock();
+
+    // log uncaught exceptions
+    Thread.UncaughtExceptionHandler handler = new Thread.UncaughtExceptionHandler() {
+        public void uncaughtException(Thread th, Throwable ex) {
+            log.error("Uncaught exception: " + ex);
+        }
+    };
+
+    protected ParallelInference(@NonNull Model model, int workers, int batchLimit, long maxLatency, int queueLimit) {
+        if (!(model instanceof MultiLayerNetwork) && !(model instanceof ComputationGraph))
+            throw new ND4JIllegalStateException("ParallelInference supports only MultiLayerNetwork and ComputationGraph models");
+
+        this.model = model;
+        this.workers = workers;
+        this.batchLimit = batchLimit;
+        this.maxLatency = maxLatency;
+        this.queueLimit = queueLimit;
+    }
+
+    protected void init() {
+        queue = new LinkedBlockingQueue<>(queueLimit);
+        zoo = new InferenceWorker[workers];
+        for (int cnt = 0; cnt < workers; cnt++) {
+            zoo[cnt] = new InferenceWorker(cnt, model);
+            zoo[cnt].setUncaughtExceptionHandler(handler);
+            zoo[cnt].start();
+        }
+    }
+
+    /**
+     * This method submits input for inference, and returns Future for network output.
+     * Input is expected to have examples along dimension 0, usually it's single example, i.e. [1, nIn] array.
+     *
+     * PLEASE NOTE: This method can be used only with models that have single input and single output
+     *
+     * @param input
+     * @return
+     */
+    public Future<INDArray> output(@NonNull INDArray input) {
+        final Future<INDArray[]> future = output(new INDArray[] {input});
+
+        return new Future<INDArray>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                return future.cancel(mayInterruptIfRunning);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return future.isCancelled();
+            }
+
+            @Override
+            public boolean isDone() {
+                return future.isDone();
+            }
+
+            @Override
+            public INDArray get() throws InterruptedException, ExecutionException {
+                return future.get()[0];
+            }
+
+            @Override
+            public INDArray get(long timeout, @NonNull TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+                return future.get(timeout, unit)[0];
+            }
+        };
+    }
+
+    /**
+     * This method submits inputs for inference, and returns Future for network outputs.
+     * Each input is expected to have examples along dimension 0, and all inputs should have equal number of examples.
+     *
+     * @param input
+     * @return
+     */
+    public Future<INDArray[]> output(@NonNull INDArray... input) {
+        if (input.length == 0)
+            throw new ND4JIllegalStateException("You can't submit empty inputs array");
+
+        if (model instanceof MultiLayerNetwork && input.length != 1)
+            throw new ND4JIllegalStateException("MultiLayerNetwork accepts single input only, but got " + input.length + " inputs");
+
+        InferenceRequest request = new InferenceRequest(input);
+        try {
+            // queue might be full: we don't block on it while holding the lock, so shutdown can't be stalled by producers
+            while (true) {
+                stateLock.readLock().lock();
+                try {
+                    if (shouldStop.get())
+                        throw new ND4JIllegalStateException("ParallelInference.shutdown() has been called already");
+
+                    if (queue.offer(request, 10, TimeUnit.MILLISECONDS))
+                        return request.future;
+                } finally {
+                    stateLock.readLock().unlock();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * This method submits input for inference, and blocks until network output is available.
+     *
+     * @param input
+     * @return
+     */
+    public INDArray outputBlocking(@NonNull INDArray input) {
+        try {
+            return output(input).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    @Override
+    public synchronized void close() throws Exception {
+        stateLock.writeLock().lock();
+        try {
+            shouldStop.set(true);
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+
+        if (zoo != null) {
+            for (int i = 0; i < zoo.length; i++) {
+                if (zoo[i] != null)
+                    zoo[i].join();
+            }
+            zoo = null;
+        }
+
+        // whatever is left in queue won't be ever processed
+        List<InferenceRequest> leftovers = new ArrayList<>();
+        queue.drainTo(leftovers);
+        for (InferenceRequest request : leftovers)
+            request.future.completeExceptionally(new ND4JIllegalStateException("ParallelInference was shut down"));
+    }
+
+    /**
+     * This method causes all threads used for parallel inference to stop
+     */
+    public synchronized void shutdown() {
+        try {
+            close();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static class Builder {
+        private Model model;
+        private int workers = 2;
+        private int batchLimit = 32;
+        private long maxLatency = 5;
+        private int queueLimit = 64;
+
+        /**
+         * Build ParallelInference for MultiLayerNetwork or ComputationGraph
+         *
+         * @param model
+         */
+        public Builder(@NonNull Model model) {
+            this.model = model;
+        }
+
+        /**
+         * This method allows to configure number of workers (model replicas) that'll be used for parallel inference
+         *
+         * Default value: 2
+         *
+         * @param num
+         * @return
+         */
+        public Builder workers(int num) {
+            if (num < 1)
+                throw new ND4JIllegalStateException("Number of workers can't be lower then 1!");
+
+            this.workers = num;
+            return this;
+        }
+
+        /**
+         * This method defines max number of examples that will be merged into single minibatch
+         *
+         * Default value: 32
+         *
+         * @param limit
+         * @return
+         */
+        public Builder batchLimit(int limit) {
+            if (limit < 1)
+                throw new ND4JIllegalStateException("Batch limit can't be lower then 1!");
+
+            this.batchLimit = limit;
+            return this;
+        }
+
+        /**
+         * This method defines max time in milliseconds worker will wait for more requests, after the first request of minibatch was taken from queue.
+         * 0 means that worker never waits, and just merges whatever is already in queue.
+         *
+         * Default value: 5
+         *
+         * @param millis
+         * @return
+         */
+        public Builder maxLatency(long millis) {
+            if (millis < 0)
+                millis = 0;
+
+            this.maxLatency = millis;
+            return this;
+        }
+
+        /**
+         * This method defines max number of pending requests. If queue is full, output() calls will block.
+         *
+         * Default value: 64
+         *
+         * @param limit
+         * @return
+         */
+        public Builder queueLimit(int limit) {
+            if (limit < 1)
+                throw new ND4JIllegalStateException("Queue limit can't be lower then 1!");
+
+            this.queueLimit = limit;
+            return this;
+        }
+
+        /**
+         * This method returns ParallelInference instance
+         *
+         * @return
+         */
+        public ParallelInference build() {
+            ParallelInference inference = new ParallelInference(model, workers, batchLimit, maxLatency, queueLimit);
+            inference.init();
+            return inference;
+        }
+    }
+
+    /**
+     * Single pending inference request
+     */
+    private static class InferenceRequest {
+        private final INDArray[] input;
+        private final CompletableFuture<INDArray[]> future = new CompletableFuture<>();
+
+        private InferenceRequest(INDArray[] input) {
+            this.input = input;
+        }
+
+        private int size() {
+            return input[0].size(0);
+        }
+
+        /**
+         * Requests can be merged only if all their inputs have equal shapes, except for dimension 0
+         */
+        private boolean isCompatible(InferenceRequest other) {
+            if (other.input.length != input.length)
+                return false;
+
+            for (int i = 0; i < input.length; i++) {
+                int[] shapeA = input[i].shape();
+                int[] shapeB = other.input[i].shape();
+                if (shapeA.length != shapeB.length)
+                    return false;
+
+                for (int e = 1; e < shapeA.length; e++)
+                    if (shapeA[e] != shapeB[e])
+                        return false;
+            }
+
+            return true;
+        }
+    }
+
+    private class InferenceWorker extends Thread implements Runnable {
+        private Model replicatedModel;
+        private InferenceRequest carried;
+
+        public InferenceWorker(int threadId, @NonNull Model model) {
+            this.setDaemon(true);
+            this.setName("ParallelInference worker " + threadId);
+
+            // replicas share params array with original model, so no memory is wasted on params copies
+            if (model instanceof MultiLayerNetwork) {
+                MultiLayerNetwork network = new MultiLayerNetwork(((MultiLayerNetwork) model).getLayerWiseConfigurations().clone());
+                network.init(model.params(), false);
+                this.replicatedModel = network;
+            } else if (model instanceof ComputationGraph) {
+                ComputationGraph graph = new ComputationGraph(((ComputationGraph) model).getConfiguration().clone());
+                graph.init(model.params(), false);
+                this.replicatedModel = graph;
+            }
+        }
+
+        /**
+         * This method takes requests from queue, until batchLimit examples gathered, or maxLatency passed
+         */
+        protected List<InferenceRequest> gather() throws InterruptedException {
+            List<InferenceRequest> batch = new ArrayList<>();
+
+            InferenceRequest first = carried;
+            carried = null;
+            if (first == null)
+                first = queue.poll(100, TimeUnit.MILLISECONDS);
+
+            if (first == null)
+                return batch;
+
+            batch.add(first);
+            int examples = first.size();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxLatency);
+
+            while (examples < batchLimit) {
+                long left = deadline - System.nanoTime();
+                InferenceRequest request = left > 0 ? queue.poll(left, TimeUnit.NANOSECONDS) : queue.poll();
+                if (request == null)
+                    break;
+
+                // request with different shape, or request that overflows batchLimit goes into next minibatch
+                if (!first.isCompatible(request) || examples + request.size() > batchLimit) {
+                    carried = request;
+                    break;
+                }
+
+                batch.add(request);
+                examples += request.size();
+            }
+
+            return batch;
+        }
+
+        protected INDArray[] merge(List<InferenceRequest> batch) {
+            int numInputs = batch.get(0).input.length;
+            INDArray[] merged = new INDArray[numInputs];
+
+            for (int i = 0; i < numInputs; i++) {
+                if (batch.size() == 1) {
+                    merged[i] = batch.get(0).input[i];
+                } else {
+                    INDArray[] arrays = new INDArray[batch.size()];
+                    for (int e = 0; e < arrays.length; e++)
+                        arrays[e] = batch.get(e).input[i];
+
+                    merged[i] = Nd4j.concat(0, arrays);
+                }
+            }
+
+            return merged;
+        }
+
+        protected INDArray[] forward(INDArray[] input) {
+            if (replicatedModel instanceof MultiLayerNetwork) {
+                return new INDArray[] {((MultiLayerNetwork) replicatedModel).output(input[0], false)};
+            } else {
+                return ((ComputationGraph) replicatedModel).output(false, input);
+            }
+        }
+
+        protected void split(List<InferenceRequest> batch, INDArray[] output) {
+            if (batch.size() == 1) {
+                batch.get(0).future.complete(output);
+                return;
+            }
+
+            int position = 0;
+            for (InferenceRequest request : batch) {
+                int size = request.size();
+                INDArray[] result = new INDArray[output.length];
+                for (int i = 0; i < output.length; i++) {
+                    INDArrayIndex[] indices = new INDArrayIndex[output[i].rank()];
+                    indices[0] = NDArrayIndex.interval(position, position + size);
+                    for (int e = 1; e < indices.length; e++)
+                        indices[e] = NDArrayIndex.all();
+
+                    result[i] = output[i].get(indices).dup();
+                }
+
+                request.future.complete(result);
+                position += size;
+            }
+        }
+
+        @Override
+        public void run() {
+            while (!shouldStop.get() || carried != null) {
+                List<InferenceRequest> batch;
+                try {
+                    batch = gather();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+
+                if (batch.isEmpty())
+                    continue;
+
+                try {
+                    INDArray[] output = forward(merge(batch));
+
+                    if (Nd4j.getExecutioner() instanceof GridExecutioner)
+                        ((GridExecutioner) Nd4j.getExecutioner()).flushQueueBlocking();
+
+                    split(batch, output);
+                } catch (Exception e) {
+                    log.error("Inference failed for minibatch of {} requests", batch.size(), e);
+                    for (InferenceRequest request : batch)
+                        request.future.completeExceptionally(e);
+                }
+            }
+
+            // carried request can't be left behind
+            if (carried != null)
+                carried.future.completeExceptionally(new ND4JIllegalStateException("ParallelInference was shut down"));
+        }
+    }
+}
@@ -12,10 +12,12 @@ import org.deeplearning4j.datasets.iterator.AsyncMultiDataSetIterator;
 import org.deeplearning4j.nn.api.Model;
 import org.deeplearning4j.nn.api.Updater;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.gradient.Gradient;
 import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.nn.updater.graph.ComputationGraphUpdater;
 import org.deeplearning4j.optimize.api.IterationListener;
+import org.deeplearning4j.optimize.solvers.BaseOptimizer;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.api.ops.executioner.GridExecutioner;
 import org.nd4j.linalg.dataset.api.DataSet;
@@ -42,6 +44,21 @@ import java.util.concurrent.atomic.AtomicLong;
  */
 @Slf4j
 public class ParallelWrapper implements AutoCloseable {
+
+    /**
+     * How the copies of the model used by the workers are kept in sync:<br>
+     * AVERAGING: each worker fits its own minibatches, and parameters (and optionally updater state) are averaged
+     * every averagingFrequency iterations<br>
+     * SYNCHRONOUS_GRADIENTS: each minibatch is split between the workers, the gradients are summed (all-reduce) and
+     * one identical update is applied to all copies of the model. This is equivalent to fitting the model on the full
+     * minibatch. See {@link SynchronousGradientTrainer} for details<br>
+     * SHARED_GRADIENTS: each worker fits its own minibatches, and shares its updates with the other workers
+     * asynchronously (no barriers), using threshold encoding. See {@link ThresholdEncodedGradients} for details
+     */
+    public enum TrainingMode {
+        AVERAGING, SYNCHRONOUS_GRADIENTS, SHARED_GRADIENTS
+    }
+
     private Model model;
     private int workers = 2;
     private int prefetchSize = 2;
@@ -55,6 +72,16 @@ public class ParallelWrapper implements AutoCloseable {
     private AtomicBoolean stopFit = new AtomicBoolean(false);
     private List<IterationListener> listeners = new ArrayList<>();
     private StatsStorageRouter storageRouter;
+    private TrainingMode trainingMode = TrainingMode.AVERAGING;
+    private SynchronousGradientTrainer synchronousTrainer;
+    private double gradientThreshold = 1e-3;
+    private ThresholdEncodedGradients gradientSharing;
+    private boolean workStealing = false;
+    private LinkedBlockingQueue<DataSet> sharedQueue;
+    private LinkedBlockingQueue<MultiDataSet> sharedQueueMDS;
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    private volatile long fitStartTime;
+    private volatile long fitEndTime;
     // log uncaught exceptions
     Thread.UncaughtExceptionHandler handler = new Thread.UncaughtExceptionHandler() {
         public void uncaughtException(Thread th, Throwable ex) {
@@ -66,6 +93,8 @@ public class ParallelWrapper implements AutoCloseable {
         this.model = model;
         this.workers = workers;
         this.prefetchSize = prefetchSize;
+        this.sharedQueue = new LinkedBlockingQueue<>(workers);
+        this.sharedQueueMDS = new LinkedBlockingQueue<>(workers);
 
         if (this.model instanceof MultiLayerNetwork) {
             ((MultiLayerNetwork) this.model).getUpdater();
@@ -92,6 +121,10 @@ public class ParallelWrapper implements AutoCloseable {
             }
             zoo = null;
         }
+        if (synchronousTrainer != null) {
+            synchronousTrainer.close();
+            synchronousTrainer = null;
+        }
     }
 
     /**
@@ -116,6 +149,24 @@ public class ParallelWrapper implements AutoCloseable {
      */
     public synchronized void fit(@NonNull MultiDataSetIterator source) {
         stopFit.set(false);
+        resetWorkerStats();
+        try {
+            if (trainingMode == TrainingMode.SYNCHRONOUS_GRADIENTS) {
+                fitSynchronous(source);
+            } else if (trainingMode == TrainingMode.SHARED_GRADIENTS) {
+                fitShared(source);
+            } else if (workStealing) {
+                fitWorkStealing(source);
+            } else {
+                fitAveraging(source);
+            }
+        } finally {
+            fitEndTime = System.nanoTime();
+            log.debug("Worker stats: {}", getWorkerStats());
+        }
+    }
+
+    private void fitAveraging(MultiDataSetIterator source) {
         if (zoo == null) {
             zoo = new Trainer[workers];
             for (int cnt = 0; cnt < workers; cnt++) {
@@ -321,6 +372,24 @@ public class ParallelWrapper implements AutoCloseable {
      */
     public synchronized void fit(@NonNull DataSetIterator source) {
         stopFit.set(false);
+        resetWorkerStats();
+        try {
+            if (trainingMode == TrainingMode.SYNCHRONOUS_GRADIENTS) {
+                fitSynchronous(source);
+            } else if (trainingMode == TrainingMode.SHARED_GRADIENTS) {
+                fitShared(source);
+            } else if (workStealing) {
+                fitWorkStealing(source);
+            } else {
+                fitAveraging(source);
+            }
+        } finally {
+            fitEndTime = System.nanoTime();
+            log.debug("Worker stats: {}", getWorkerStats());
+        }
+    }
+
+    private void fitAveraging(DataSetIterator source) {
         if (zoo == null) {
             zoo = new Trainer[workers];
             for (int cnt = 0; cnt < workers; cnt++) {
@@ -476,6 +545,390 @@ public class ParallelWrapper implements AutoCloseable {
 //        iterationsCounter.set(0);
     }
 
+    private void fitSynchronous(DataSetIterator source) {
+        if (synchronousTrainer == null)
+            synchronousTrainer = new SynchronousGradientTrainer(model, workers);
+        source.reset();
+
+        DataSetIterator iterator;
+        if (prefetchSize > 0 && source.asyncSupported()) {
+            iterator = new AsyncDataSetIterator(source, prefetchSize);
+        } else iterator = source;
+
+        while (iterator.hasNext() && !stopFit.get()) {
+            DataSet dataSet = iterator.next();
+            if (dataSet == null)
+                throw new ND4JIllegalStateException("You can't have NULL as DataSet");
+
+            synchronousTrainer.fit(dataSet);
+            iterationsCounter.incrementAndGet();
+
+            if (reportScore)
+                log.info("Score: " + model.score());
+        }
+
+        log.debug("Iterations passed: {}", iterationsCounter.get());
+    }
+
+    private void fitSynchronous(MultiDataSetIterator source) {
+        if (synchronousTrainer == null)
+            synchronousTrainer = new SynchronousGradientTrainer(model, workers);
+        source.reset();
+
+        MultiDataSetIterator iterator;
+        if (prefetchSize > 0 && source.asyncSupported()) {
+            iterator = new AsyncMultiDataSetIterator(source, prefetchSize);
+        } else iterator = source;
+
+        while (iterator.hasNext() && !stopFit.get()) {
+            MultiDataSet dataSet = iterator.next();
+            if (dataSet == null)
+                throw new ND4JIllegalStateException("You can't have NULL as MultiDataSet");
+
+            synchronousTrainer.fit(dataSet);
+            iterationsCounter.incrementAndGet();
+
+            if (reportScore)
+                log.info("Score: " + model.score());
+        }
+
+        log.debug("Iterations passed: {}", iterationsCounter.get());
+    }
+
+    private void initSharedGradients() {
+        if (gradientSharing == null) {
+            SynchronousGradientTrainer.validate(model);
+            gradientSharing = new ThresholdEncodedGradients(workers, model.numParams(), gradientThreshold);
+        }
+    }
+
+    private void initTrainers(boolean useMDS) {
+        if (zoo == null) {
+            zoo = new Trainer[workers];
+            for (int cnt = 0; cnt < workers; cnt++) {
+                zoo[cnt] = new Trainer(cnt, model, useMDS);
+                zoo[cnt].setUncaughtExceptionHandler(handler);
+                zoo[cnt].start();
+            }
+        } else {
+            for (int cnt = 0; cnt < workers; cnt++) {
+                zoo[cnt].useMDS = useMDS;
+            }
+        }
+    }
+
+    private void fitShared(DataSetIterator source) {
+        initSharedGradients();
+        initTrainers(false);
+        source.reset();
+
+        DataSetIterator iterator;
+        if (prefetchSize > 0 && source.asyncSupported()) {
+            iterator = new AsyncDataSetIterator(source, prefetchSize);
+        } else iterator = source;
+
+        int pos = 0;
+        while (iterator.hasNext() && !stopFit.get()) {
+            DataSet dataSet = iterator.next();
+            if (dataSet == null)
+                throw new ND4JIllegalStateException("You can't have NULL as DataSet");
+
+            if (workStealing) {
+                feedShared(dataSet);
+            } else {
+                // no barrier here: we only wait if this worker still has a backlog
+                zoo[pos].waitTillPending(1);
+                zoo[pos].feedDataSet(dataSet);
+                pos = (pos + 1) % workers;
+            }
+            iterationsCounter.incrementAndGet();
+        }
+
+        finishShared();
+    }
+
+    private void fitShared(MultiDataSetIterator source) {
+        if (!(model instanceof ComputationGraph))
+            throw new RuntimeException("MultiDataSet must only be used with ComputationGraph model");
+        initSharedGradients();
+        initTrainers(true);
+        source.reset();
+
+        MultiDataSetIterator iterator;
+        if (prefetchSize > 0 && source.asyncSupported()) {
+            iterator = new AsyncMultiDataSetIterator(source, prefetchSize);
+        } else iterator = source;
+
+        int pos = 0;
+        while (iterator.hasNext() && !stopFit.get()) {
+            MultiDataSet dataSet = iterator.next();
+            if (dataSet == null)
+                throw new ND4JIllegalStateException("You can't have NULL as MultiDataSet");
+
+            if (workStealing) {
+                feedShared(dataSet);
+            } else {
+                zoo[pos].waitTillPending(1);
+                zoo[pos].feedMultiDataSet(dataSet);
+                pos = (pos + 1) % workers;
+            }
+            iterationsCounter.incrementAndGet();
+        }
+
+        finishShared();
+    }
+
+    /**
+     * Wait until all workers are done and all updates have been applied by all workers, then copy the (now identical)
+     * parameters back to the original model
+     */
+    private void finishShared() {
+        waitTillIdle();
+        while (!gradientSharing.isDelivered()) {
+            checkWorkers();
+            sleep(1);
+        }
+
+        Model replica = zoo[0].getModel();
+        model.params().assign(replica.params());
+
+        double score = 0.0;
+        for (int cnt = 0; cnt < workers; cnt++) {
+            score += zoo[cnt].getModel().score();
+        }
+        score /= workers;
+
+        if (model instanceof MultiLayerNetwork) {
+            INDArray state = ((MultiLayerNetwork) model).getUpdater().getStateViewArray();
+            if (state != null)
+                state.assign(((MultiLayerNetwork) replica).getUpdater().getStateViewArray());
+            ((MultiLayerNetwork) model).setScore(score);
+        } else if (model instanceof ComputationGraph) {
+            INDArray state = ((ComputationGraph) model).getUpdater().getStateViewArray();
+            if (state != null)
+                state.assign(((ComputationGraph) replica).getUpdater().getStateViewArray());
+            ((ComputationGraph) model).setScore(score);
+        }
+
+        if (reportScore)
+            log.info("Score: " + score);
+
+        log.debug("Iterations passed: {}, average update density: {}", iterationsCounter.get(),
+                        gradientSharing.getAverageDensity());
+    }
+
+    private void fitWorkStealing(DataSetIterator source) {
+        initTrainers(false);
+        source.reset();
+
+        DataSetIterator iterator;
+        if (prefetchSize > 0 && source.asyncSupported()) {
+            iterator = new AsyncDataSetIterator(source, prefetchSize);
+        } else iterator = source;
+
+        long dispatched = 0;
+        while (iterator.hasNext() && !stopFit.get()) {
+            DataSet dataSet = iterator.next();
+            if (dataSet == null)
+                throw new ND4JIllegalStateException("You can't have NULL as DataSet");
+
+            feedShared(dataSet);
+            if (++dispatched % workers == 0)
+                onRoundDispatched();
+        }
+
+        waitTillIdle();
+        averageWorkers();
+        log.debug("Iterations passed: {}", iterationsCounter.get());
+    }
+
+    private void fitWorkStealing(MultiDataSetIterator source) {
+        if (!(model instanceof ComputationGraph))
+            throw new RuntimeException("MultiDataSet must only be used with ComputationGraph model");
+        initTrainers(true);
+        source.reset();
+
+        MultiDataSetIterator iterator;
+        if (prefetchSize > 0 && source.asyncSupported()) {
+            iterator = new AsyncMultiDataSetIterator(source, prefetchSize);
+        } else iterator = source;
+
+        long dispatched = 0;
+        while (iterator.hasNext() && !stopFit.get()) {
+            MultiDataSet dataSet = iterator.next();
+            if (dataSet == null)
+                throw new ND4JIllegalStateException("You can't have NULL as MultiDataSet");
+
+            feedShared(dataSet);
+            if (++dispatched % workers == 0)
+                onRoundDispatched();
+        }
+
+        waitTillIdle();
+        averageWorkers();
+        log.debug("Iterations passed: {}", iterationsCounter.get());
+    }
+
+    /**
+     * Work stealing: the global iteration counter counts groups of (number of workers) minibatches, no matter which
+     * workers fit them. Workers are only synchronized for averaging, every averagingFrequency such iterations
+     */
+    private void onRoundDispatched() {
+        if (iterationsCounter.incrementAndGet() % averagingFrequency == 0) {
+            waitTillIdle();
+            averageWorkers();
+        }
+    }
+
+    private void feedShared(DataSet dataSet) {
+        inFlight.incrementAndGet();
+        try {
+            while (!sharedQueue.offer(dataSet, 10, TimeUnit.MILLISECONDS))
+                checkWorkers();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void feedShared(MultiDataSet dataSet) {
+        inFlight.incrementAndGet();
+        try {
+            while (!sharedQueueMDS.offer(dataSet, 10, TimeUnit.MILLISECONDS))
+                checkWorkers();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Block until all DataSets, dispatched either to a specific worker or via the shared queue, have been fit
+     */
+    private void waitTillIdle() {
+        for (int cnt = 0; cnt < workers; cnt++) {
+            zoo[cnt].waitTillRunning();
+        }
+        while (inFlight.get() > 0) {
+            checkWorkers();
+            sleep(1);
+        }
+    }
+
+    private void checkWorkers() {
+        for (int cnt = 0; cnt < workers; cnt++) {
+            // rethrows worker exceptions, if any
+            zoo[cnt].isRunning();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Average the parameters (and updater state, if enabled) of the workers that have fit at least one minibatch
+     * since the last averaging, and propagate the result to all workers. Workers must be idle.
+     */
+    private void averageWorkers() {
+        List<Trainer> participants = new ArrayList<>();
+        for (int cnt = 0; cnt < workers; cnt++) {
+            if (zoo[cnt].sinceAveraging.getAndSet(0) > 0)
+                participants.add(zoo[cnt]);
+        }
+        if (participants.isEmpty())
+            return;
+        wasAveraged = true;
+
+        boolean legacy = legacyAveraging && Nd4j.getAffinityManager().getNumberOfDevices() > 1;
+        double score = 0.0;
+        List<INDArray> params = new ArrayList<>();
+        List<INDArray> states = new ArrayList<>();
+        for (Trainer t : participants) {
+            params.add(t.getModel().params());
+            states.add(updaterState(t.getModel()));
+            score += t.getModel().score();
+        }
+        score /= participants.size();
+        average(model.params(), params, legacy);
+
+        INDArray state = updaterState(model);
+        if (averageUpdaters && state != null)
+            average(state, states, legacy);
+
+        if (model instanceof MultiLayerNetwork) {
+            ((MultiLayerNetwork) model).setScore(score);
+        } else if (model instanceof ComputationGraph) {
+            ((ComputationGraph) model).setScore(score);
+        }
+        if (reportScore)
+            log.info("Averaged score: " + score);
+
+        for (int cnt = 0; cnt < workers; cnt++) {
+            if (legacy || !participants.contains(zoo[cnt]))
+                zoo[cnt].updateModel(model);
+        }
+    }
+
+    private static void average(INDArray target, List<INDArray> arrays, boolean legacy) {
+        if (!legacy) {
+            Nd4j.averageAndPropagate(target, arrays);
+        } else {
+            INDArray sum = Nd4j.zeros(target.shape());
+            for (INDArray arr : arrays) {
+                sum.addi(arr);
+            }
+            target.assign(sum.divi(arrays.size()));
+        }
+    }
+
+    private static INDArray updaterState(Model model) {
+        if (model instanceof MultiLayerNetwork) {
+            return ((MultiLayerNetwork) model).getUpdater().getStateViewArray();
+        } else if (model instanceof ComputationGraph) {
+            return ((ComputationGraph) model).getUpdater().getStateViewArray();
+        }
+        return null;
+    }
+
+    private void resetWorkerStats() {
+        fitStartTime = System.nanoTime();
+        fitEndTime = 0;
+        if (zoo != null) {
+            for (Trainer t : zoo) {
+                t.busyNanos.set(0);
+                t.minibatches.set(0);
+            }
+        }
+    }
+
+    /**
+     * Statistics for each worker, for the current fit() call (if one is in progress), or the last one.
+     * Not available in SYNCHRONOUS_GRADIENTS mode, where all workers process (part of) every minibatch.
+     *
+     * @return Stats for each worker, or an empty list if the workers have not been started yet
+     */
+    public List<WorkerStats> getWorkerStats() {
+        Trainer[] trainers = zoo;
+        if (trainers == null)
+            return Collections.emptyList();
+
+        long end = fitEndTime == 0 ? System.nanoTime() : fitEndTime;
+        double elapsed = Math.max(1, end - fitStartTime);
+        List<WorkerStats> stats = new ArrayList<>();
+        for (Trainer t : trainers) {
+            long busy = t.busyNanos.get();
+            stats.add(new WorkerStats(t.threadId, t.minibatches.get(), TimeUnit.NANOSECONDS.toMillis(busy),
+                            Math.min(1.0, busy / elapsed)));
+        }
+        return stats;
+    }
+
     public static class Builder<T extends Model> {
         private T model;
         private int workers = 2;
@@ -484,6 +937,9 @@ public class ParallelWrapper implements AutoCloseable {
         private boolean reportScore = false;
         private boolean averageUpdaters = true;
         private boolean legacyAveraging = true;
+        private TrainingMode trainingMode = TrainingMode.AVERAGING;
+        private double gradientThreshold = 1e-3;
+        private boolean workStealing = false;
 
         /**
          * Build ParallelWrapper for MultiLayerNetwork
@@ -578,6 +1034,55 @@ public class ParallelWrapper implements AutoCloseable {
             return this;
         }
 
+        /**
+         * Training mode: parameter averaging, or synchronous gradient sharing. See {@link TrainingMode}.
+         * Note that averagingFrequency, averageUpdaters and useLegacyAveraging only apply to AVERAGING mode.
+         *
+         * Default value: AVERAGING
+         *
+         * @param mode
+         * @return
+         */
+        public Builder trainingMode(@NonNull TrainingMode mode) {
+            this.trainingMode = mode;
+            return this;
+        }
+
+        /**
+         * Encoding threshold for {@link TrainingMode#SHARED_GRADIENTS} mode: updates are shared between workers in
+         * steps of +/- this value. Smaller values mean more frequent (and larger) messages; this value should be
+         * smaller than the typical magnitude of the per-iteration update of the larger parameters.
+         *
+         * Default value: 1e-3
+         *
+         * @param threshold
+         * @return
+         */
+        public Builder gradientThreshold(double threshold) {
+            if (threshold <= 0.0)
+                throw new IllegalArgumentException("Threshold must be positive, got " + threshold);
+            this.gradientThreshold = threshold;
+            return this;
+        }
+
+        /**
+         * If set to true, all workers take DataSets from a single shared queue, instead of each worker being assigned
+         * DataSets in turn. Thus an idle worker takes the next DataSet, and one slow worker (long sequences, GC
+         * pauses etc) doesn't stall the others.
+         * In AVERAGING mode, averaging is then performed every averagingFrequency * workers DataSets (no matter which
+         * workers fit them), instead of after each worker has fit averagingFrequency DataSets. Workers that haven't
+         * fit any DataSets since the last averaging don't take part in the averaging.
+         *
+         * Default value: false
+         *
+         * @param reallyUse
+         * @return
+         */
+        public Builder workStealing(boolean reallyUse) {
+            this.workStealing = reallyUse;
+            return this;
+        }
+
         /**
          * This method returns ParallelWrapper instance
          *
@@ -589,6 +1094,9 @@ public class ParallelWrapper implements AutoCloseable {
             wrapper.reportScore = this.reportScore;
             wrapper.averageUpdaters = this.averageUpdaters;
             wrapper.legacyAveraging = this.legacyAveraging;
+            wrapper.trainingMode = this.trainingMode;
+            wrapper.gradientThreshold = this.gradientThreshold;
+            wrapper.workStealing = this.workStealing;
 
             return wrapper;
         }
@@ -606,6 +1114,10 @@ public class ParallelWrapper implements AutoCloseable {
         private Exception thrownException;
         private volatile boolean useMDS = false;
         private final String uuid = UUID.randomUUID().toString();
+        // utilization stats, and number of DataSets fit since the last averaging (work stealing mode)
+        private final AtomicLong busyNanos = new AtomicLong(0);
+        private final AtomicLong minibatches = new AtomicLong(0);
+        private final AtomicInteger sinceAveraging = new AtomicInteger(0);
 
 
         public Trainer(int threadId, Model model, boolean useMDS) {
@@ -741,11 +1253,25 @@ public class ParallelWrapper implements AutoCloseable {
                     ((ComputationGraph)this.replicatedModel).setListeners(replicatedListeners);
                 }
 
+                boolean shared = trainingMode == TrainingMode.SHARED_GRADIENTS;
+                // with shared gradients or work stealing, all workers must start from the original model's parameters
+                // and updater state, as they aren't (all) averaged in lockstep
+                if (shared || workStealing)
+                    updateModel(originalModel);
+                long pollTimeout = shared ? 10 : 100;
+
                 if (!useMDS) {
                     while (!shouldStop.get()) {
-                        DataSet dataSet = queue.poll(100, TimeUnit.MILLISECONDS);
+                        DataSet dataSet = (workStealing ? sharedQueue : queue).poll(pollTimeout, TimeUnit.MILLISECONDS);
+                        if (shared)
+                            gradientSharing.applyPending(threadId, replicatedModel.params());
                         if (dataSet != null) {
-                            if (replicatedModel instanceof MultiLayerNetwork) {
+                            long start = System.nanoTime();
+                            if (shared) {
+                                fitShared(new INDArray[] {dataSet.getFeatures()}, new INDArray[] {dataSet.getLabels()},
+                                                SynchronousGradientTrainer.maskArray(dataSet.getFeaturesMaskArray()),
+                                                SynchronousGradientTrainer.maskArray(dataSet.getLabelsMaskArray()));
+                            } else if (replicatedModel instanceof MultiLayerNetwork) {
                                 ((MultiLayerNetwork) replicatedModel).fit(dataSet);
                             } else if (replicatedModel instanceof ComputationGraph) {
                                 ((ComputationGraph) replicatedModel).fit(dataSet);
@@ -754,22 +1280,28 @@ public class ParallelWrapper implements AutoCloseable {
                             if (Nd4j.getExecutioner() instanceof GridExecutioner)
                                 ((GridExecutioner) Nd4j.getExecutioner()).flushQueueBlocking();
 
-                            running.decrementAndGet();
+                            onDataSetDone(start);
                         }
                     }
                 } else {
                     // loop for MultiDataSet
                     while (!shouldStop.get()) {
-                        MultiDataSet dataSet = queueMDS.poll(100, TimeUnit.MILLISECONDS);
+                        MultiDataSet dataSet = (workStealing ? sharedQueueMDS : queueMDS).poll(pollTimeout, TimeUnit.MILLISECONDS);
+                        if (shared)
+                            gradientSharing.applyPending(threadId, replicatedModel.params());
                         if (dataSet != null) {
-                            if (replicatedModel instanceof ComputationGraph) {
+                            long start = System.nanoTime();
+                            if (shared) {
+                                fitShared(dataSet.getFeatures(), dataSet.getLabels(),
+                                                dataSet.getFeaturesMaskArrays(), dataSet.getLabelsMaskArrays());
+                            } else if (replicatedModel instanceof ComputationGraph) {
                                 ((ComputationGraph) replicatedModel).fit(dataSet);
                             } else throw new RuntimeException("MultiDataSet can be fit into ComputationGraph only");
 
                             if (Nd4j.getExecutioner() instanceof GridExecutioner)
                                 ((GridExecutioner) Nd4j.getExecutioner()).flushQueueBlocking();
 
-                            running.decrementAndGet();
+                            onDataSetDone(start);
                         }
                     }
                 }
@@ -778,8 +1310,67 @@ public class ParallelWrapper implements AutoCloseable {
             }
         }
 
+        private void onDataSetDone(long startNanos) {
+            busyNanos.addAndGet(System.nanoTime() - startNanos);
+            minibatches.incrementAndGet();
+            sinceAveraging.incrementAndGet();
+            if (workStealing)
+                inFlight.decrementAndGet();
+            else
+                running.decrementAndGet();
+        }
+
+        /**
+         * Calculate the gradient, apply the updater, then encode the update and share it with the other workers.
+         * The encoded update (not the full update) is applied locally: the remainder is kept in the residual.
+         * As per fit(DataSet), this is repeated {@code conf.getNumIterations()} times on the same minibatch, applying
+         * the updates received from other workers between iterations
+         */
+        private void fitShared(INDArray[] features, INDArray[] labels, INDArray[] featuresMasks,
+                        INDArray[] labelsMasks) {
+            int numIterations = replicatedModel.conf().getNumIterations();
+            for (int iter = 0; iter < numIterations; iter++) {
+                if (iter > 0)
+                    gradientSharing.applyPending(threadId, replicatedModel.params());
+
+                SynchronousGradientTrainer.computeGradientAndScore(replicatedModel, features, labels, featuresMasks,
+                                labelsMasks);
+
+                int iteration = BaseOptimizer.getIterationCount(replicatedModel);
+                Gradient gradient = replicatedModel.gradient();
+                Collection<IterationListener> listeners;
+                if (replicatedModel instanceof MultiLayerNetwork) {
+                    MultiLayerNetwork net = (MultiLayerNetwork) replicatedModel;
+                    net.getUpdater().update(net, gradient, iteration, features[0].size(0));
+                    listeners = net.getListeners();
+                } else {
+                    ComputationGraph graph = (ComputationGraph) replicatedModel;
+                    graph.getUpdater().update(graph, gradient, iteration, features[0].size(0));
+                    listeners = graph.getListeners();
+                }
+
+                int[] message = gradientSharing.encode(threadId, gradient.gradient());
+                gradientSharing.publish(threadId, message);
+                gradientSharing.apply(message, replicatedModel.params());
+
+                if (listeners != null) {
+                    for (IterationListener listener : listeners) {
+                        listener.iterationDone(replicatedModel, iteration);
+                    }
+                }
+                BaseOptimizer.incrementIterationCount(replicatedModel, 1);
+            }
+        }
+
         public void waitTillRunning() {
-            while (running.get() != 0) {
+            waitTillPending(0);
+        }
+
+        /**
+         * Block until this worker has at most the specified number of DataSets waiting or in progress
+         */
+        public void waitTillPending(int max) {
+            while (running.get() > max) {
 
                 // if Trainer thread got exception during training - rethrow it here
                 if (thrownException != null)
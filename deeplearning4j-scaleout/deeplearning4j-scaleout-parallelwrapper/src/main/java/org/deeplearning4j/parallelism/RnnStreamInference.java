@@ -0,0 +1,667 @@
+package org.deeplearning4j.parallelism;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.nn.api.layers.RecurrentLayer;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.executioner.GridExecutioner;
+import org.nd4j.linalg.exception.ND4JIllegalStateException;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.INDArrayIndex;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Stateful RNN inference for many concurrent streams (for example: one stream per user session), built on rnnTimeStep.
+ *
+ * The network layers hold only a single rnnTimeStep state, so serving many streams one at a time would mean swapping
+ * state in and out for every batch-1 call. Instead, the hidden state of each stream is kept in one row of a pooled
+ * state array (one pool per RNN layer and state key, preallocated for maxStreams streams). On each tick, the states of
+ * all streams with a pending step are gathered into a single batched state, one rnnTimeStep call is done for the
+ * whole batch, and the new states are scattered back to the pool.
+ *
+ * Streams are created on their first step, with the default (usually zero) initial state. When the pool is full,
+ * the least recently used stream is evicted; streams that have not been stepped for longer than the state TTL (if
+ * set) are evicted too. A step for an evicted stream starts again from the initial state.
+ *
+ * Steps can be submitted either asynchronously (single stream, batched by a background thread, as per
+ * {@link ParallelInference}), or synchronously for a set of streams at once. Steps for the same stream are always
+ * executed in submission order.
+ *
+ * PLEASE NOTE: only networks with a single input and a single output are supported. The model is replicated
+ * (sharing the parameters array of the original model), so parameters must be treated as read-only while
+ * RnnStreamInference is in use.
+ */
+@Slf4j
+public class RnnStreamInference implements AutoCloseable {
+    private Model model;
+    private int maxStreams = 1024;
+    private long stateTtl = 0;
+    private int batchLimit = 64;
+    private long maxLatency = 5;
+    private int queueLimit = 1024;
+
+    // RNN layers: layer index (as string) for MultiLayerNetwork, layer name for ComputationGraph
+    private List<String> rnnLayers = new ArrayList<>();
+    // Key: layer. Value: map of state key to pooled state array with shape [maxStreams, stateSize]
+    private Map<String, Map<String, INDArray>> statePool;
+    // Access ordered: iteration order is least recently used first
+    private final LinkedHashMap<String, StreamState> streams = new LinkedHashMap<>(16, 0.75f, true);
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+
+    private BlockingQueue<StepRequest> queue;
+    private StreamWorker worker;
+    private AtomicBoolean shouldStop = new AtomicBoolean(false);
+    // steps are enqueued under read lock, shutdown flag is set under write lock: no step can get into queue after shutdown
+    private final ReadWriteLock stateLock = new ReentrantReadWriteLock();
+
+    protected RnnStreamInference(@NonNull Model model, int maxStreams, long stateTtl, int batchLimit, long maxLatency,
+                                 int queueLimit) {
+        if (model instanceof MultiLayerNetwork) {
+            MultiLayerNetwork network = new MultiLayerNetwork(((MultiLayerNetwork) model).getLayerWiseConfigurations().clone());
+            network.init(model.params(), false);
+            Layer[] layers = network.getLayers();
+            for (int i = 0; i < layers.length; i++) {
+                if (layers[i] instanceof RecurrentLayer)
+                    rnnLayers.add(String.valueOf(i));
+            }
+            this.model = network;
+        } else if (model instanceof ComputationGraph) {
+            ComputationGraph graph = new ComputationGraph(((ComputationGraph) model).getConfiguration().clone());
+            graph.init(model.params(), false);
+            if (graph.getNumInputArrays() != 1 || graph.getNumOutputArrays() != 1)
+                throw new ND4JIllegalStateException("RnnStreamInference supports only ComputationGraphs with a single input and single output");
+            for (Layer l : graph.getLayers()) {
+                if (l instanceof RecurrentLayer)
+                    rnnLayers.add(l.conf().getLayer().getLayerName());
+            }
+            this.model = graph;
+        } else {
+            throw new ND4JIllegalStateException("RnnStreamInference supports only MultiLayerNetwork and ComputationGraph models");
+        }
+
+        if (rnnLayers.isEmpty())
+            throw new ND4JIllegalStateException("Model has no recurrent layers");
+
+        this.maxStreams = maxStreams;
+        this.stateTtl = stateTtl;
+        this.batchLimit = batchLimit;
+        this.maxLatency = maxLatency;
+        this.queueLimit = queueLimit;
+
+        for (int i = 0; i < maxStreams; i++)
+            freeSlots.add(i);
+    }
+
+    protected void init() {
+        queue = new LinkedBlockingQueue<>(queueLimit);
+        worker = new StreamWorker();
+        worker.start();
+    }
+
+    /**
+     * This method submits a single step for the specified stream, and returns Future for the network output.
+     * Input is expected to have a single example along dimension 0: i.e., [1, nIn] for one time step, or
+     * [1, nIn, timeSeriesLength] for multiple time steps.
+     *
+     * @param streamId ID of the stream. The stream is created if it does not exist
+     * @param input    Input for the stream
+     * @return Future for the output of the network, for this stream
+     */
+    public Future<INDArray> timeStep(@NonNull String streamId, @NonNull INDArray input) {
+        if (input.size(0) != 1)
+            throw new ND4JIllegalStateException("Expected input with a single example (size 1 along dimension 0), got input with shape "
+                    + Arrays.toString(input.shape()));
+
+        StepRequest request = new StepRequest(streamId, input);
+        try {
+            // the lock isn't held while blocked on a full queue, so shutdown can't be blocked by a waiting caller
+            while (true) {
+                stateLock.readLock().lock();
+                try {
+                    if (shouldStop.get())
+                        throw new ND4JIllegalStateException("RnnStreamInference.shutdown() has been called already");
+
+                    if (queue.offer(request, 10, TimeUnit.MILLISECONDS))
+                        return request.future;
+                } finally {
+                    stateLock.readLock().unlock();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * This method submits a single step for the specified stream, and blocks until the network output is available.
+     *
+     * @param streamId ID of the stream
+     * @param input    Input for the stream
+     * @return Output of the network, for this stream
+     */
+    public INDArray timeStepBlocking(@NonNull String streamId, @NonNull INDArray input) {
+        try {
+            return timeStep(streamId, input).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * This method does one step for each of the specified streams, as a single batched rnnTimeStep call.
+     * All inputs should have a single example along dimension 0, and equal shapes.
+     *
+     * @param inputs Inputs, keyed by stream ID. At most maxStreams streams.
+     * @return Outputs, keyed by stream ID
+     */
+    public synchronized Map<String, INDArray> timeStep(@NonNull Map<String, INDArray> inputs) {
+        Map<String, INDArray> result = new LinkedHashMap<>();
+        if (inputs.isEmpty())
+            return result;
+
+        if (inputs.size() > maxStreams)
+            throw new ND4JIllegalStateException("Cannot step " + inputs.size() + " streams at once: maxStreams is " + maxStreams);
+
+        int n = inputs.size();
+        String[] ids = new String[n];
+        INDArray[] features = new INDArray[n];
+        int[] slots = new int[n];
+        int[] shape = null;
+        int i = 0;
+        for (Map.Entry<String, INDArray> e : inputs.entrySet()) {
+            INDArray in = e.getValue();
+            if (in.size(0) != 1)
+                throw new ND4JIllegalStateException("Input for stream \"" + e.getKey() + "\" does not have a single example: shape "
+                        + Arrays.toString(in.shape()));
+            if (shape == null) {
+                shape = in.shape();
+            } else if (!Arrays.equals(shape, in.shape())) {
+                throw new ND4JIllegalStateException("Inputs for all streams must have equal shapes: got " + Arrays.toString(shape)
+                        + " and " + Arrays.toString(in.shape()));
+            }
+            ids[i] = e.getKey();
+            features[i] = in;
+            i++;
+        }
+
+        long now = System.currentTimeMillis();
+        evictExpired(now);
+        // existing streams in this batch are touched first, so none of them can be evicted to make room for new ones
+        for (i = 0; i < n; i++) {
+            StreamState s = streams.get(ids[i]);
+            if (s != null) {
+                s.lastAccess = now;
+                slots[i] = s.slot;
+            } else {
+                slots[i] = -1;
+            }
+        }
+        for (i = 0; i < n; i++) {
+            if (slots[i] < 0)
+                slots[i] = allocateSlot(ids[i], now);
+        }
+
+        gatherState(slots);
+        INDArray out = forward(n == 1 ? features[0] : Nd4j.concat(0, features));
+        scatterState(slots);
+
+        if (Nd4j.getExecutioner() instanceof GridExecutioner)
+            ((GridExecutioner) Nd4j.getExecutioner()).flushQueueBlocking();
+
+        for (i = 0; i < n; i++) {
+            if (n == 1) {
+                result.put(ids[i], out);
+            } else {
+                INDArrayIndex[] indices = new INDArrayIndex[out.rank()];
+                indices[0] = NDArrayIndex.interval(i, i + 1);
+                for (int e = 1; e < indices.length; e++)
+                    indices[e] = NDArrayIndex.all();
+                result.put(ids[i], out.get(indices).dup());
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Remove the specified stream, releasing its state. A later step for this stream will start from the initial state.
+     *
+     * @param streamId ID of the stream to remove
+     * @return True if the stream existed
+     */
+    public synchronized boolean removeStream(@NonNull String streamId) {
+        StreamState s = streams.remove(streamId);
+        if (s == null)
+            return false;
+        freeSlots.add(s.slot);
+        return true;
+    }
+
+    /**
+     * @return True if state is currently held for the specified stream
+     */
+    public synchronized boolean hasStream(@NonNull String streamId) {
+        return streams.containsKey(streamId);
+    }
+
+    /**
+     * @return Number of streams for which state is currently held
+     */
+    public synchronized int numStreams() {
+        return streams.size();
+    }
+
+    /**
+     * Remove all streams
+     */
+    public synchronized void clearStreams() {
+        for (StreamState s : streams.values())
+            freeSlots.add(s.slot);
+        streams.clear();
+    }
+
+    private void evictExpired(long now) {
+        if (stateTtl <= 0)
+            return;
+
+        Iterator<Map.Entry<String, StreamState>> iter = streams.entrySet().iterator();
+        while (iter.hasNext()) {
+            StreamState s = iter.next().getValue();
+            // access order == last step order, so there are no more expired streams after the first one that is not
+            if (now - s.lastAccess <= stateTtl)
+                break;
+            iter.remove();
+            freeSlots.add(s.slot);
+        }
+    }
+
+    /**
+     * Allocate a slot for a new stream. All other streams in the current batch must have been accessed already: as the
+     * batch holds at most maxStreams streams, the least recently used stream is then never part of the current batch
+     */
+    private int allocateSlot(String streamId, long now) {
+        if (freeSlots.isEmpty()) {
+            // evict least recently used stream
+            Iterator<Map.Entry<String, StreamState>> iter = streams.entrySet().iterator();
+            Map.Entry<String, StreamState> lru = iter.next();
+            log.debug("Evicting state for stream \"{}\": maxStreams ({}) reached", lru.getKey(), maxStreams);
+            iter.remove();
+            freeSlots.add(lru.getValue().slot);
+        }
+
+        int slot = freeSlots.poll();
+        if (statePool != null) {
+            for (Map<String, INDArray> layerPool : statePool.values()) {
+                for (INDArray pool : layerPool.values())
+                    pool.getRow(slot).assign(0);
+            }
+        }
+        streams.put(streamId, new StreamState(slot, now));
+        return slot;
+    }
+
+    /**
+     * Set the state of the RNN layers to the pooled state of the specified slots
+     */
+    private void gatherState(int[] slots) {
+        if (statePool == null) {
+            // no steps done yet: all streams are new, and start from the default initial state
+            rnnClearPreviousState();
+            return;
+        }
+
+        for (String layer : rnnLayers) {
+            Map<String, INDArray> state = new HashMap<>();
+            for (Map.Entry<String, INDArray> e : statePool.get(layer).entrySet())
+                state.put(e.getKey(), e.getValue().getRows(slots));
+            rnnSetPreviousState(layer, state);
+        }
+    }
+
+    /**
+     * Copy the state of the RNN layers back to the pooled state of the specified slots
+     */
+    private void scatterState(int[] slots) {
+        if (statePool == null) {
+            statePool = new HashMap<>();
+            for (String layer : rnnLayers) {
+                Map<String, INDArray> layerPool = new HashMap<>();
+                for (Map.Entry<String, INDArray> e : rnnGetPreviousState(layer).entrySet()) {
+                    if (e.getValue().rank() != 2)
+                        throw new UnsupportedOperationException("Only 2d RNN layer states are supported: layer \"" + layer
+                                + "\" state \"" + e.getKey() + "\" has shape " + Arrays.toString(e.getValue().shape()));
+                    layerPool.put(e.getKey(), Nd4j.zeros(maxStreams, e.getValue().size(1)));
+                }
+                statePool.put(layer, layerPool);
+            }
+        }
+
+        for (String layer : rnnLayers) {
+            Map<String, INDArray> layerPool = statePool.get(layer);
+            for (Map.Entry<String, INDArray> e : rnnGetPreviousState(layer).entrySet()) {
+                INDArray pool = layerPool.get(e.getKey());
+                INDArray state = e.getValue();
+                for (int i = 0; i < slots.length; i++)
+                    pool.putRow(slots[i], state.getRow(i));
+            }
+        }
+    }
+
+    private INDArray forward(INDArray input) {
+        if (model instanceof MultiLayerNetwork) {
+            return ((MultiLayerNetwork) model).rnnTimeStep(input);
+        } else {
+            return ((ComputationGraph) model).rnnTimeStep(input)[0];
+        }
+    }
+
+    private Map<String, INDArray> rnnGetPreviousState(String layer) {
+        if (model instanceof MultiLayerNetwork) {
+            return ((MultiLayerNetwork) model).rnnGetPreviousState(Integer.parseInt(layer));
+        } else {
+            return ((ComputationGraph) model).rnnGetPreviousState(layer);
+        }
+    }
+
+    private void rnnSetPreviousState(String layer, Map<String, INDArray> state) {
+        if (model instanceof MultiLayerNetwork) {
+            ((MultiLayerNetwork) model).rnnSetPreviousState(Integer.parseInt(layer), state);
+        } else {
+            ((ComputationGraph) model).rnnSetPreviousState(layer, state);
+        }
+    }
+
+    private void rnnClearPreviousState() {
+        if (model instanceof MultiLayerNetwork) {
+            ((MultiLayerNetwork) model).rnnClearPreviousState();
+        } else {
+            ((ComputationGraph) model).rnnClearPreviousState();
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        stateLock.writeLock().lock();
+        try {
+            shouldStop.set(true);
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+
+        if (worker != null)
+            worker.join();
+
+        // whatever is left in queue won't be ever processed
+        List<StepRequest> leftovers = new ArrayList<>();
+        queue.drainTo(leftovers);
+        for (StepRequest request : leftovers)
+            request.future.completeExceptionally(new ND4JIllegalStateException("RnnStreamInference was shut down"));
+    }
+
+    /**
+     * This method stops the background thread used for asynchronous steps
+     */
+    public void shutdown() {
+        try {
+            close();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static class Builder {
+        private Model model;
+        private int maxStreams = 1024;
+        private long stateTtl = 0;
+        private int batchLimit = 64;
+        private long maxLatency = 5;
+        private int queueLimit = 1024;
+
+        /**
+         * Build RnnStreamInference for MultiLayerNetwork or ComputationGraph with at least one recurrent layer
+         *
+         * @param model
+         */
+        public Builder(@NonNull Model model) {
+            this.model = model;
+        }
+
+        /**
+         * This method defines the max number of streams for which state is held. When this limit is reached, the
+         * state of the least recently used stream is evicted.
+         *
+         * Default value: 1024
+         *
+         * @param maxStreams
+         * @return
+         */
+        public Builder maxStreams(int maxStreams) {
+            if (maxStreams < 1)
+                throw new ND4JIllegalStateException("Max streams can't be lower then 1!");
+
+            this.maxStreams = maxStreams;
+            return this;
+        }
+
+        /**
+         * This method defines the time after the last step of a stream, after which the stream state is evicted.
+         * 0 means that state is only evicted when maxStreams is reached.
+         *
+         * Default value: 0
+         *
+         * @param ttl
+         * @param unit
+         * @return
+         */
+        public Builder stateTtl(long ttl, @NonNull TimeUnit unit) {
+            if (ttl < 0)
+                ttl = 0;
+
+            this.stateTtl = unit.toMillis(ttl);
+            return this;
+        }
+
+        /**
+         * This method defines max number of streams that will be stepped in a single batched rnnTimeStep call, for
+         * asynchronous steps
+         *
+         * Default value: 64
+         *
+         * @param limit
+         * @return
+         */
+        public Builder batchLimit(int limit) {
+            if (limit < 1)
+                throw new ND4JIllegalStateException("Batch limit can't be lower then 1!");
+
+            this.batchLimit = limit;
+            return this;
+        }
+
+        /**
+         * This method defines max time in milliseconds the background thread will wait for more steps, after the first
+         * step of a batch was taken from queue. 0 means that it never waits, and just batches whatever is already in queue.
+         *
+         * Default value: 5
+         *
+         * @param millis
+         * @return
+         */
+        public Builder maxLatency(long millis) {
+            if (millis < 0)
+                millis = 0;
+
+            this.maxLatency = millis;
+            return this;
+        }
+
+        /**
+         * This method defines max number of pending asynchronous steps. If queue is full, timeStep() calls will block.
+         *
+         * Default value: 1024
+         *
+         * @param limit
+         * @return
+         */
+        public Builder queueLimit(int limit) {
+            if (limit < 1)
+                throw new ND4JIllegalStateException("Queue limit can't be lower then 1!");
+
+            this.queueLimit = limit;
+            return this;
+        }
+
+        /**
+         * This method returns RnnStreamInference instance
+         *
+         * @return
+         */
+        public RnnStreamInference build() {
+            RnnStreamInference inference = new RnnStreamInference(model, maxStreams, stateTtl,
+                    Math.min(batchLimit, maxStreams), maxLatency, queueLimit);
+            inference.init();
+            return inference;
+        }
+    }
+
+    /**
+     * Pooled state slot and last step time of a single stream
+     */
+    private static class StreamState {
+        private final int slot;
+        private long lastAccess;
+
+        private StreamState(int slot, long lastAccess) {
+            this.slot = slot;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    /**
+     * Single pending step
+     */
+    private static class StepRequest {
+        private final String streamId;
+        private final INDArray input;
+        private final CompletableFuture<INDArray> future = new CompletableFuture<>();
+
+        private StepRequest(String streamId, INDArray input) {
+            this.streamId = streamId;
+            this.input = input;
+        }
+
+        private boolean isCompatible(StepRequest other) {
+            return Arrays.equals(input.shape(), other.input.shape());
+        }
+    }
+
+    private class StreamWorker extends Thread implements Runnable {
+        // steps that could not be added to the previous batch: a step for a stream already in that batch, or
+        // a step with a different input shape. Kept in submission order
+        private final Deque<StepRequest> carried = new ArrayDeque<>();
+
+        public StreamWorker() {
+            this.setDaemon(true);
+            this.setName("RnnStreamInference worker");
+        }
+
+        /**
+         * This method takes steps from carried steps and queue, until batchLimit streams gathered, or maxLatency passed.
+         * Each stream appears at most once in a batch.
+         */
+        protected Map<String, StepRequest> gather() throws InterruptedException {
+            Map<String, StepRequest> batch = new LinkedHashMap<>();
+            StepRequest first = null;
+
+            Set<String> deferred = new HashSet<>();
+            Iterator<StepRequest> iter = carried.iterator();
+            while (iter.hasNext() && batch.size() < batchLimit) {
+                StepRequest r = iter.next();
+                if (first == null)
+                    first = r;
+                if (batch.containsKey(r.streamId) || deferred.contains(r.streamId) || !first.isCompatible(r)) {
+                    deferred.add(r.streamId);
+                    continue;
+                }
+                batch.put(r.streamId, r);
+                iter.remove();
+            }
+
+            if (first == null) {
+                first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    return batch;
+                batch.put(first.streamId, first);
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxLatency);
+            while (batch.size() < batchLimit) {
+                long left = deadline - System.nanoTime();
+                StepRequest request = left > 0 ? queue.poll(left, TimeUnit.NANOSECONDS) : queue.poll();
+                if (request == null)
+                    break;
+
+                // steps for a stream that is already in this batch (or has a carried step), or with a different
+                // shape, go into a later batch
+                if (batch.containsKey(request.streamId) || deferred.contains(request.streamId)
+                        || !first.isCompatible(request)) {
+                    carried.add(request);
+                    deferred.add(request.streamId);
+                    continue;
+                }
+
+                batch.put(request.streamId, request);
+            }
+
+            return batch;
+        }
+
+        @Override
+        public void run() {
+            while (!shouldStop.get() || !carried.isEmpty()) {
+                Map<String, StepRequest> batch;
+                try {
+                    batch = gather();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+
+                if (batch.isEmpty())
+                    continue;
+
+                try {
+                    Map<String, INDArray> inputs = new LinkedHashMap<>();
+                    for (StepRequest r : batch.values())
+                        inputs.put(r.streamId, r.input);
+
+                    Map<String, INDArray> outputs = timeStep(inputs);
+                    for (StepRequest r : batch.values())
+                        r.future.complete(outputs.get(r.streamId));
+                } catch (Exception e) {
+                    log.error("Time step failed for batch of {} streams", batch.size(), e);
+                    for (StepRequest r : batch.values())
+                        r.future.completeExceptionally(e);
+                }
+            }
+
+            // carried steps can't be left behind
+            for (StepRequest r : carried)
+                r.future.completeExceptionally(new ND4JIllegalStateException("RnnStreamInference was shut down"));
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package org.deeplearning4j.parallelism;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.nn.api.OptimizationAlgorithm;
+import org.deeplearning4j.nn.api.layers.SparseGradientLayer;
+import org.deeplearning4j.nn.conf.BackpropType;
+import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.nn.gradient.MicroBatchAccumulator;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.optimize.api.IterationListener;
+import org.deeplearning4j.optimize.solvers.BaseOptimizer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.executioner.GridExecutioner;
+import org.nd4j.linalg.dataset.api.DataSet;
+import org.nd4j.linalg.dataset.api.MultiDataSet;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Synchronous data-parallel training with gradient all-reduce, as used by {@link ParallelWrapper} in
+ * {@link ParallelWrapper.TrainingMode#SYNCHRONOUS_GRADIENTS} mode.<br>
+ * Each minibatch is split into one shard per worker (along dimension 0 of the features, labels and masks). Every
+ * worker calculates the gradient for its shard using its own copy of the model, and the flattened gradients are summed
+ * using a tree reduction: log2(workers) rounds, with the additions in each round performed in parallel. The updater
+ * is then applied once, for the full minibatch, to the original model (which is also the model used by worker 0),
+ * and the updated parameters are copied to the other workers' models. Thus all copies of the model stay identical,
+ * and there is a single updater state.<br>
+ * <br>
+ * As the loss function gradients in DL4J are summed (not averaged) over examples, with the division by minibatch size
+ * done in the updater, the sum of the shard gradients is equal to the full minibatch gradient. Hence training is
+ * equivalent to fitting the original model on the full minibatch, with the exception of batch normalization layers
+ * (which use the statistics of each shard; global mean/variance estimates are those of the first shard) and random
+ * operations such as dropout.<br>
+ * <br>
+ * Only backprop with {@link OptimizationAlgorithm#STOCHASTIC_GRADIENT_DESCENT} is supported; truncated BPTT
+ * is not supported.
+ */
+@Slf4j
+class SynchronousGradientTrainer implements AutoCloseable {
+
+    private final Model model;
+    private final Model[] replicas;
+    private final ExecutorService executor;
+
+    SynchronousGradientTrainer(@NonNull Model model, int workers) {
+        validate(model);
+
+        this.model = model;
+        this.replicas = new Model[workers];
+        replicas[0] = model;
+        if (model instanceof MultiLayerNetwork) {
+            MultiLayerNetwork net = (MultiLayerNetwork) model;
+            //Force updater initialization, so the original model's updater is the one used by fit() later
+            net.getUpdater();
+            for (int i = 1; i < workers; i++) {
+                MultiLayerNetwork replica = net.clone();
+                replica.setListeners(new ArrayList<IterationListener>());
+                replicas[i] = replica;
+            }
+        } else if (model instanceof ComputationGraph) {
+            ComputationGraph graph = (ComputationGraph) model;
+            graph.getUpdater();
+            for (int i = 1; i < workers; i++) {
+                ComputationGraph replica = graph.clone();
+                replica.setListeners(new ArrayList<IterationListener>());
+                replicas[i] = replica;
+            }
+        }
+
+        this.executor = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+            private int count = 0;
+
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "ParallelWrapper gradient worker " + (count++));
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Check that the model can be trained by calculating gradients and applying the updater separately (i.e., outside
+     * of the model's own fit methods): only MultiLayerNetwork and ComputationGraph, using
+     * {@link OptimizationAlgorithm#STOCHASTIC_GRADIENT_DESCENT} and standard backprop, are supported
+     */
+    static void validate(Model model) {
+        if (!(model instanceof MultiLayerNetwork) && !(model instanceof ComputationGraph))
+            throw new UnsupportedOperationException("Unsupported model type: " + model.getClass());
+        if (model.conf().getOptimizationAlgo() != OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT) {
+            throw new UnsupportedOperationException("Gradient sharing is only supported with "
+                    + OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT + ", got "
+                    + model.conf().getOptimizationAlgo());
+        }
+        BackpropType backpropType = model instanceof MultiLayerNetwork
+                        ? ((MultiLayerNetwork) model).getLayerWiseConfigurations().getBackpropType()
+                        : ((ComputationGraph) model).getConfiguration().getBackpropType();
+        if (backpropType == BackpropType.TruncatedBPTT)
+            throw new UnsupportedOperationException("Truncated BPTT is not supported with gradient sharing");
+    }
+
+    /**
+     * Perform one training step (or {@code conf.getNumIterations()} steps) on the given minibatch
+     */
+    void fit(@NonNull DataSet dataSet) {
+        if (model instanceof ComputationGraph) {
+            ComputationGraph graph = (ComputationGraph) model;
+            if (graph.getNumInputArrays() != 1 || graph.getNumOutputArrays() != 1)
+                throw new UnsupportedOperationException("Cannot train ComputationGraph network with "
+                        + " multiple inputs or outputs using a DataSet");
+        }
+        fit(new INDArray[] {dataSet.getFeatures()}, new INDArray[] {dataSet.getLabels()},
+                        maskArray(dataSet.getFeaturesMaskArray()), maskArray(dataSet.getLabelsMaskArray()));
+    }
+
+    /**
+     * Perform one training step (or {@code conf.getNumIterations()} steps) on the given minibatch
+     */
+    void fit(@NonNull MultiDataSet dataSet) {
+        if (!(model instanceof ComputationGraph))
+            throw new RuntimeException("MultiDataSet must only be used with ComputationGraph model");
+        fit(dataSet.getFeatures(), dataSet.getLabels(), dataSet.getFeaturesMaskArrays(),
+                        dataSet.getLabelsMaskArrays());
+    }
+
+    static INDArray[] maskArray(INDArray mask) {
+        return mask == null ? null : new INDArray[] {mask};
+    }
+
+    private void fit(final INDArray[] features, final INDArray[] labels, final INDArray[] featuresMasks,
+                    final INDArray[] labelsMasks) {
+        final int miniBatchSize = features[0].size(0);
+        final int numShards = Math.min(replicas.length, miniBatchSize);
+
+        for (int iter = 0; iter < model.conf().getNumIterations(); iter++) {
+            //Each shard's score is (sum of the shard's example losses + L1 + L2) / shard size. The regularization term
+            //is removed from each shard's score, and added once for the full minibatch
+            final double regularization = regularization(model);
+
+            //Gradient for each shard
+            final double[] scores = new double[numShards];
+            invokeAll(numShards, i -> {
+                int start = shardStart(i, miniBatchSize, numShards);
+                int end = shardStart(i + 1, miniBatchSize, numShards);
+                computeGradientAndScore(replicas[i], MicroBatchAccumulator.getExamples(features, start, end),
+                                MicroBatchAccumulator.getExamples(labels, start, end),
+                                MicroBatchAccumulator.getExamples(featuresMasks, start, end),
+                                MicroBatchAccumulator.getExamples(labelsMasks, start, end));
+                scores[i] = replicas[i].score() * (end - start) - regularization;
+            });
+
+            //Tree reduction: in round r, shard i (for i a multiple of 2^(r+1)) adds the gradient of shard i + 2^r
+            final INDArray[] gradients = new INDArray[numShards];
+            for (int i = 0; i < numShards; i++) {
+                gradients[i] = replicas[i].gradient().gradient();
+            }
+            for (int stride = 1; stride < numShards; stride *= 2) {
+                final int s = stride;
+                final int numPairs = (numShards - 1 - s) / (2 * s) + 1;
+                invokeAll(numPairs, p -> gradients[2 * s * p].addi(gradients[2 * s * p + s]));
+            }
+            mergeGradientRows(numShards);
+
+            //Apply the update once, to the original model
+            double score = 0.0;
+            for (double d : scores) {
+                score += d;
+            }
+            update((score + regularization) / miniBatchSize, miniBatchSize);
+
+            //Broadcast the updated parameters
+            final INDArray params = model.params();
+            invokeAll(replicas.length - 1, i -> replicas[i + 1].params().assign(params));
+        }
+    }
+
+    /**
+     * @return L1 + L2 regularization term for the model, as included in the score
+     */
+    private static double regularization(Model model) {
+        if (model instanceof MultiLayerNetwork) {
+            MultiLayerNetwork net = (MultiLayerNetwork) model;
+            return net.calcL1(true) + net.calcL2(true);
+        }
+        ComputationGraph graph = (ComputationGraph) model;
+        return graph.calcL1() + graph.calcL2();
+    }
+
+    private static int shardStart(int shard, int miniBatchSize, int numShards) {
+        return (int) ((long) shard * miniBatchSize / numShards);
+    }
+
+    /**
+     * Set the features, labels and masks, and calculate the gradient and score, without updating the parameters
+     */
+    static void computeGradientAndScore(Model replica, INDArray[] features, INDArray[] labels,
+                    INDArray[] featuresMasks, INDArray[] labelsMasks) {
+        boolean hasMasks = featuresMasks != null || labelsMasks != null;
+        if (replica instanceof MultiLayerNetwork) {
+            MultiLayerNetwork net = (MultiLayerNetwork) replica;
+            net.setInput(features[0]);
+            net.setLabels(labels[0]);
+            if (hasMasks)
+                net.setLayerMaskArrays(featuresMasks == null ? null : featuresMasks[0],
+                                labelsMasks == null ? null : labelsMasks[0]);
+            net.computeGradientAndScore();
+            if (hasMasks)
+                net.clearLayerMaskArrays();
+        } else {
+            ComputationGraph graph = (ComputationGraph) replica;
+            graph.setInputs(features);
+            graph.setLabels(labels);
+            if (hasMasks)
+                graph.setLayerMaskArrays(featuresMasks, labelsMasks);
+            graph.computeGradientAndScore();
+            if (hasMasks)
+                graph.clearLayerMaskArrays();
+        }
+
+        if (Nd4j.getExecutioner() instanceof GridExecutioner)
+            ((GridExecutioner) Nd4j.getExecutioner()).flushQueueBlocking();
+    }
+
+    /**
+     * Row-sparse gradients (see {@link SparseGradientLayer}): the summed gradient may be non-zero in any of the rows
+     * of any of the shards
+     */
+    private void mergeGradientRows(int numShards) {
+        Layer[] layers = layers(model);
+        for (int l = 0; l < layers.length; l++) {
+            if (!(layers[l] instanceof SparseGradientLayer))
+                continue;
+            SparseGradientLayer layer = (SparseGradientLayer) layers[l];
+            for (String param : layer.paramTable().keySet()) {
+                if (!layer.isRowSparseGradient(param))
+                    continue;
+                Set<Integer> rows = new TreeSet<>();
+                for (int i = 0; i < numShards; i++) {
+                    for (int r : ((SparseGradientLayer) layers(replicas[i])[l]).getGradientRows(param)) {
+                        rows.add(r);
+                    }
+                }
+                int[] merged = new int[rows.size()];
+                int j = 0;
+                for (Integer r : rows) {
+                    merged[j++] = r;
+                }
+                layer.setGradientRows(param, merged);
+            }
+        }
+    }
+
+    private static Layer[] layers(Model model) {
+        return model instanceof MultiLayerNetwork ? ((MultiLayerNetwork) model).getLayers()
+                        : ((ComputationGraph) model).getLayers();
+    }
+
+    /**
+     * As per StochasticGradientDescent: updater, step (params -= update), listeners, then iteration count
+     */
+    private void update(double score, int miniBatchSize) {
+        int iteration = BaseOptimizer.getIterationCount(model);
+        Gradient gradient = model.gradient();
+        Collection<IterationListener> listeners;
+        if (model instanceof MultiLayerNetwork) {
+            MultiLayerNetwork net = (MultiLayerNetwork) model;
+            net.setScore(score);
+            net.getUpdater().update(net, gradient, iteration, miniBatchSize);
+            listeners = net.getListeners();
+        } else {
+            ComputationGraph graph = (ComputationGraph) model;
+            graph.setScore(score);
+            graph.getUpdater().update(graph, gradient, iteration, miniBatchSize);
+            listeners = graph.getListeners();
+        }
+
+        model.params().subi(gradient.gradient());
+
+        if (listeners != null) {
+            for (IterationListener listener : listeners) {
+                listener.iterationDone(model, iteration);
+            }
+        }
+        BaseOptimizer.incrementIterationCount(model, 1);
+    }
+
+    private interface Task {
+        void apply(int i);
+    }
+
+    /**
+     * Run task(0) ... task(n-1) on the worker threads, and wait for all of them to complete
+     */
+    private void invokeAll(int n, Task task) {
+        if (n == 1) {
+            task.apply(0);
+            return;
+        }
+        List<Future<?>> futures = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            final int idx = i;
+            futures.add(executor.submit(() -> task.apply(idx)));
+        }
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,193 @@
+package org.deeplearning4j.parallelism;
+
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.util.DirectValues;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous gradient sharing between workers, using threshold encoding with residual accumulation
+ * (Strom, 2015: "Scalable Distributed DNN Training Using Commodity GPU Cloud Computing"), as used by
+ * {@link ParallelWrapper} in {@link ParallelWrapper.TrainingMode#SHARED_GRADIENTS} mode.<br>
+ * After each iteration, a worker adds its update (i.e., the gradient after the updater has been applied) to its
+ * residual vector. Each element of the residual with an absolute value of at least the threshold is then encoded in
+ * the message as +/- threshold, and subtracted from the residual; all other elements are retained in the residual for
+ * later iterations. Thus, no part of the update is lost, only delayed.<br>
+ * Messages are compact: an int[] with one entry per encoded element, (index + 1) for +threshold and -(index + 1) for
+ * -threshold. Encoding is a single pass over the residual (after adding the update), performed directly on the
+ * residual's buffer; decoding touches only the encoded elements of the parameters.<br>
+ * Each worker has a lock-free inbox (queue) of messages. Publishing a message adds a reference to the same
+ * (immutable) message to the inbox of each other worker: no locks are held and no dense arrays are touched. As the
+ * messages are additive, applying them in any order gives the same result; all copies of the parameters are
+ * identical once all messages have been applied. No barriers are required: workers apply their inbox between their
+ * own iterations. Note that the inbox of a worker that falls behind grows by one (sparse) message per iteration of
+ * each other worker.
+ */
+@Slf4j
+class ThresholdEncodedGradients {
+
+    private final double threshold;
+    private final int numParams;
+    private final INDArray[] residuals;
+    private final int[][] encodeBuffers;
+    private final Queue<int[]>[] inboxes;
+    private final AtomicInteger[] outstanding;
+    private final AtomicLong messageCount = new AtomicLong();
+    private final AtomicLong encodedElements = new AtomicLong();
+
+    /**
+     * @param workers   Number of workers
+     * @param numParams Number of parameters in the model
+     * @param threshold Encoding threshold. Must be positive
+     */
+    @SuppressWarnings("unchecked")
+    ThresholdEncodedGradients(int workers, int numParams, double threshold) {
+        if (threshold <= 0.0)
+            throw new IllegalArgumentException("Threshold must be positive, got " + threshold);
+        this.threshold = threshold;
+        this.numParams = numParams;
+        this.residuals = new INDArray[workers];
+        this.encodeBuffers = new int[workers][];
+        this.inboxes = new Queue[workers];
+        this.outstanding = new AtomicInteger[workers];
+        for (int i = 0; i < workers; i++) {
+            residuals[i] = Nd4j.zeros(new int[] {1, numParams}, 'c');
+            encodeBuffers[i] = new int[16];
+            inboxes[i] = new ConcurrentLinkedQueue<>();
+            outstanding[i] = new AtomicInteger();
+        }
+    }
+
+    /**
+     * Add the update to the specified worker's residual, and encode the elements of the residual that exceed the
+     * threshold. Must only be called by the specified worker.
+     *
+     * @param worker Worker index
+     * @param update Update (flattened, as subtracted from the parameters) for the last iteration
+     * @return Encoded message (see class javadoc). Messages are never modified once returned
+     */
+    int[] encode(int worker, INDArray update) {
+        if (update.length() != numParams)
+            throw new IllegalArgumentException("Expected update of length " + numParams + ", got " + update.length());
+        INDArray r = residuals[worker];
+        r.addi(update);
+
+        //Single pass: encode, and subtract the encoded values from the residual, in place
+        //(Values are accessed via get/putScalar only for data types without direct access, i.e., half precision)
+        DirectValues values = DirectValues.modify(r);
+        int[] buffer = encodeBuffers[worker];
+        int count = 0;
+        for (int i = 0; i < numParams; i++) {
+            double v = values != null ? values.get(i) : r.getDouble(i);
+            int encoded;
+            if (v >= threshold) {
+                v -= threshold;
+                encoded = i + 1;
+            } else if (v <= -threshold) {
+                v += threshold;
+                encoded = -(i + 1);
+            } else {
+                continue;
+            }
+            if (values != null) {
+                values.set(i, v);
+            } else {
+                r.putScalar(i, v);
+            }
+            if (count == buffer.length)
+                buffer = Arrays.copyOf(buffer, Math.min(numParams, 2 * buffer.length));
+            buffer[count++] = encoded;
+        }
+        if (values != null)
+            values.array();
+        encodeBuffers[worker] = buffer;
+
+        messageCount.incrementAndGet();
+        encodedElements.addAndGet(count);
+        return Arrays.copyOf(buffer, count);
+    }
+
+    /**
+     * Send the sender's encoded message to all workers other than the sender, by adding it to their inboxes.
+     * Must only be called by the sender. The sender should apply the message to its own parameters directly, using
+     * {@link #apply(int[], INDArray)}
+     */
+    void publish(int sender, int[] message) {
+        if (message.length == 0)
+            return;
+        for (int i = 0; i < inboxes.length; i++) {
+            if (i == sender)
+                continue;
+            //Counted before being queued, so that isDelivered() can't miss a message that is queued but not applied
+            outstanding[i].incrementAndGet();
+            inboxes[i].offer(message);
+        }
+    }
+
+    /**
+     * Apply all messages received by the specified worker to its parameters. Must only be called by the specified
+     * worker.
+     *
+     * @return Number of messages applied
+     */
+    int applyPending(int worker, INDArray params) {
+        int count = 0;
+        int[] message;
+        while ((message = inboxes[worker].poll()) != null) {
+            apply(message, params);
+            outstanding[worker].decrementAndGet();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Apply (subtract) the decoded message to the parameters, in-place
+     */
+    void apply(int[] message, INDArray params) {
+        if (message.length == 0)
+            return;
+        DirectValues values = DirectValues.modify(params);
+        if (values == null) {
+            //Parameters are not directly accessible (view, or half precision): apply one element at a time
+            for (int encoded : message) {
+                int i = Math.abs(encoded) - 1;
+                params.putScalar(i, params.getDouble(i) - Math.signum(encoded) * threshold);
+            }
+            return;
+        }
+        for (int encoded : message) {
+            if (encoded > 0) {
+                values.set(encoded - 1, values.get(encoded - 1) - threshold);
+            } else {
+                values.set(-encoded - 1, values.get(-encoded - 1) + threshold);
+            }
+        }
+        values.array();
+    }
+
+    /**
+     * @return True if every published message has been applied by all of its recipients
+     */
+    boolean isDelivered() {
+        for (AtomicInteger o : outstanding) {
+            if (o.get() != 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return Average fraction of the parameters encoded per message so far
+     */
+    double getAverageDensity() {
+        long m = messageCount.get();
+        return m == 0 ? 0.0 : encodedElements.get() / ((double) m * numParams);
+    }
+}
@@ -0,0 +1,23 @@
+package org.deeplearning4j.parallelism;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * Utilization statistics for one {@link ParallelWrapper} worker, for one fit() call.
+ * See {@link ParallelWrapper#getWorkerStats()}
+ */
+@Data
+@AllArgsConstructor
+public class WorkerStats implements Serializable {
+    /** Index of the worker */
+    private int workerId;
+    /** Number of DataSets/MultiDataSets fit by this worker */
+    private long minibatches;
+    /** Total time spent fitting, in milliseconds */
+    private long busyTimeMs;
+    /** Fraction of the fit() call's duration that this worker was busy, between 0 and 1 */
+    private double utilization;
+}
@@ -0,0 +1,157 @@
+package org.deeplearning4j.parallelism;
+
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.junit.Test;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.exception.ND4JIllegalStateException;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ParallelInferenceTest {
+
+    @Test
+    public void testMultiLayerNetworkInference() throws Exception {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .weightInit(WeightInit.XAVIER)
+                .list()
+                .layer(0, new DenseLayer.Builder().nIn(10).nOut(20).activation(Activation.TANH).build())
+                .layer(1, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(20).nOut(5).activation(Activation.SOFTMAX).build())
+                .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        ParallelInference inference = new ParallelInference.Builder(net)
+                .workers(2)
+                .batchLimit(8)
+                .maxLatency(10)
+                .build();
+
+        INDArray input = Nd4j.rand(50, 10);
+        INDArray expected = net.output(input, false);
+
+        List<Future<INDArray>> futures = new ArrayList<>();
+        for (int i = 0; i < input.rows(); i++)
+            futures.add(inference.output(input.getRow(i).dup()));
+
+        for (int i = 0; i < futures.size(); i++) {
+            INDArray out = futures.get(i).get();
+            assertEquals(expected.getRow(i), out);
+        }
+
+        inference.shutdown();
+    }
+
+    @Test
+    public void testComputationGraphInference() throws Exception {
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .weightInit(WeightInit.XAVIER)
+                .graphBuilder()
+                .addInputs("in")
+                .addLayer("dense", new DenseLayer.Builder().nIn(10).nOut(20).activation(Activation.TANH).build(), "in")
+                .addLayer("out", new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(20).nOut(5).activation(Activation.SOFTMAX).build(), "dense")
+                .setOutputs("out")
+                .build();
+
+        ComputationGraph graph = new ComputationGraph(conf);
+        graph.init();
+
+        ParallelInference inference = new ParallelInference.Builder(graph)
+                .workers(3)
+                .batchLimit(16)
+                .build();
+
+        INDArray input = Nd4j.rand(40, 10);
+        INDArray expected = graph.outputSingle(input);
+
+        List<Future<INDArray[]>> futures = new ArrayList<>();
+        for (int i = 0; i < input.rows(); i += 2)
+            futures.add(inference.output(input.getRows(i, i + 1).dup()));
+
+        for (int i = 0; i < futures.size(); i++) {
+            INDArray out = futures.get(i).get()[0];
+            assertEquals(expected.getRows(2 * i, 2 * i + 1), out);
+        }
+
+        inference.shutdown();
+    }
+
+    @Test
+    public void testShutdownCompletesAllRequests() throws Exception {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .weightInit(WeightInit.XAVIER)
+                .list()
+                .layer(0, new DenseLayer.Builder().nIn(10).nOut(20).activation(Activation.TANH).build())
+                .layer(1, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(20).nOut(5).activation(Activation.SOFTMAX).build())
+                .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        final ParallelInference inference = new ParallelInference.Builder(net)
+                .workers(2)
+                .batchLimit(4)
+                .queueLimit(2)
+                .build();
+
+        final List<Future<INDArray>> futures = Collections.synchronizedList(new ArrayList<Future<INDArray>>());
+        final AtomicInteger rejected = new AtomicInteger();
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread producer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 200; i++) {
+                        try {
+                            futures.add(inference.output(Nd4j.rand(1, 10)));
+                        } catch (ND4JIllegalStateException e) {
+                            rejected.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+
+        Thread.sleep(20);
+        inference.shutdown();
+
+        // producers must not get stuck on full queue after shutdown
+        for (Thread producer : producers) {
+            producer.join(10000);
+            assertFalse(producer.isAlive());
+        }
+
+        // every accepted request is either processed, or failed on shutdown
+        for (Future<INDArray> future : futures) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof ND4JIllegalStateException);
+            }
+        }
+        assertEquals(800, futures.size() + rejected.get());
+    }
+}
@@ -0,0 +1,287 @@
+package org.deeplearning4j.parallelism;
+
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.GravesLSTM;
+import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.junit.Test;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.exception.ND4JIllegalStateException;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RnnStreamInferenceTest {
+
+    private static MultiLayerNetwork getNetwork() {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .weightInit(WeightInit.XAVIER)
+                .list()
+                .layer(0, new GravesLSTM.Builder().nIn(3).nOut(6).activation(Activation.TANH).build())
+                .layer(1, new GravesLSTM.Builder().nIn(6).nOut(5).activation(Activation.TANH).build())
+                .layer(2, new RnnOutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(5).nOut(4).activation(Activation.SOFTMAX).build())
+                .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        return net;
+    }
+
+    /**
+     * Expected output for each step of each stream, with each stream processed separately
+     */
+    private static List<INDArray> expectedOutputs(MultiLayerNetwork net, INDArray[] steps) {
+        net.rnnClearPreviousState();
+        List<INDArray> out = new ArrayList<>();
+        for (INDArray step : steps)
+            out.add(net.rnnTimeStep(step).dup());
+        net.rnnClearPreviousState();
+        return out;
+    }
+
+    private static INDArray[] randomSteps(int nSteps) {
+        INDArray[] steps = new INDArray[nSteps];
+        for (int i = 0; i < nSteps; i++)
+            steps[i] = Nd4j.rand(1, 3);
+        return steps;
+    }
+
+    @Test
+    public void testSynchronousBatchedSteps() {
+        Nd4j.getRandom().setSeed(12345);
+        MultiLayerNetwork net = getNetwork();
+
+        int nStreams = 5;
+        int nSteps = 6;
+        Map<String, INDArray[]> inputs = new LinkedHashMap<>();
+        Map<String, List<INDArray>> expected = new HashMap<>();
+        for (int i = 0; i < nStreams; i++) {
+            INDArray[] steps = randomSteps(nSteps);
+            inputs.put("stream" + i, steps);
+            expected.put("stream" + i, expectedOutputs(net, steps));
+        }
+
+        RnnStreamInference inference = new RnnStreamInference.Builder(net).maxStreams(8).build();
+
+        //Each tick: step a different subset of the streams, so that the gathered state comes from different slots
+        int[] position = new int[nStreams];
+        for (int tick = 0; position[nStreams - 1] < nSteps; tick++) {
+            Map<String, INDArray> batch = new LinkedHashMap<>();
+            for (int i = 0; i < nStreams; i++) {
+                if ((tick + i) % 3 == 0 || tick >= 3 * nSteps) {
+                    if (position[i] < nSteps)
+                        batch.put("stream" + i, inputs.get("stream" + i)[position[i]]);
+                }
+            }
+
+            Map<String, INDArray> out = inference.timeStep(batch);
+            assertEquals(batch.size(), out.size());
+            for (String id : batch.keySet()) {
+                int i = Integer.parseInt(id.substring(6));
+                assertEquals(expected.get(id).get(position[i]), out.get(id));
+                position[i]++;
+            }
+        }
+
+        assertEquals(nStreams, inference.numStreams());
+        inference.shutdown();
+    }
+
+    @Test
+    public void testEviction() {
+        Nd4j.getRandom().setSeed(12345);
+        MultiLayerNetwork net = getNetwork();
+
+        INDArray[] a = randomSteps(2);
+        INDArray[] b = randomSteps(1);
+        INDArray[] c = randomSteps(1);
+        List<INDArray> expA = expectedOutputs(net, a);
+
+        RnnStreamInference inference = new RnnStreamInference.Builder(net).maxStreams(2).build();
+        inference.timeStep(Collections.singletonMap("a", a[0]));
+        inference.timeStep(Collections.singletonMap("b", b[0]));
+        //"a" is least recently used, and is evicted when "c" is added
+        inference.timeStep(Collections.singletonMap("c", c[0]));
+        assertFalse(inference.hasStream("a"));
+        assertTrue(inference.hasStream("b"));
+        assertEquals(2, inference.numStreams());
+
+        //Evicted stream starts again from the initial state
+        INDArray out = inference.timeStep(Collections.singletonMap("a", a[1])).get("a");
+        assertEquals(expectedOutputs(net, new INDArray[]{a[1]}).get(0), out);
+        assertNotEquals(expA.get(1), out);
+
+        assertTrue(inference.removeStream("a"));
+        assertEquals(1, inference.numStreams());
+        inference.shutdown();
+    }
+
+    @Test
+    public void testEvictionMixedBatch() {
+        Nd4j.getRandom().setSeed(12345);
+        MultiLayerNetwork net = getNetwork();
+
+        INDArray[] a = randomSteps(2);
+        INDArray[] b = randomSteps(1);
+        INDArray[] c = randomSteps(1);
+        List<INDArray> expA = expectedOutputs(net, a);
+        List<INDArray> expC = expectedOutputs(net, c);
+
+        RnnStreamInference inference = new RnnStreamInference.Builder(net).maxStreams(2).build();
+        inference.timeStep(Collections.singletonMap("a", a[0]));
+        inference.timeStep(Collections.singletonMap("b", b[0]));
+
+        //"a" is least recently used, but is part of the batch: "b" must be evicted for the new stream "c" instead,
+        //regardless of the order of the streams within the batch
+        Map<String, INDArray> batch = new LinkedHashMap<>();
+        batch.put("c", c[0]);
+        batch.put("a", a[1]);
+        Map<String, INDArray> out = inference.timeStep(batch);
+
+        assertTrue(inference.hasStream("a"));
+        assertTrue(inference.hasStream("c"));
+        assertFalse(inference.hasStream("b"));
+        assertEquals(expA.get(1), out.get("a"));
+        assertEquals(expC.get(0), out.get("c"));
+        inference.shutdown();
+    }
+
+    @Test
+    public void testShutdownCompletesAllSteps() throws Exception {
+        Nd4j.getRandom().setSeed(12345);
+        MultiLayerNetwork net = getNetwork();
+        final RnnStreamInference inference = new RnnStreamInference.Builder(net).maxStreams(8).build();
+
+        //Steps submitted concurrently with shutdown: each must either be rejected, or get a future that completes
+        final INDArray[] steps = randomSteps(1);
+        final List<Future<INDArray>> futures = Collections.synchronizedList(new ArrayList<Future<INDArray>>());
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int thread = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        try {
+                            futures.add(inference.timeStep("stream" + thread, steps[0]));
+                        } catch (ND4JIllegalStateException e) {
+                            //Already shut down
+                            return;
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+
+        Thread.sleep(20);
+        inference.shutdown();
+        for (Thread t : threads)
+            t.join();
+
+        synchronized (futures) {
+            for (Future<INDArray> f : futures) {
+                try {
+                    f.get(10, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    //Expected for steps that were pending at shutdown
+                }
+            }
+        }
+
+        try {
+            inference.timeStep("stream0", steps[0]);
+            fail("Expected exception after shutdown");
+        } catch (ND4JIllegalStateException e) {
+            //OK
+        }
+    }
+
+    @Test
+    public void testAsyncSteps() throws Exception {
+        Nd4j.getRandom().setSeed(12345);
+        MultiLayerNetwork net = getNetwork();
+
+        int nStreams = 20;
+        int nSteps = 5;
+        List<INDArray[]> inputs = new ArrayList<>();
+        List<List<INDArray>> expected = new ArrayList<>();
+        for (int i = 0; i < nStreams; i++) {
+            INDArray[] steps = randomSteps(nSteps);
+            inputs.add(steps);
+            expected.add(expectedOutputs(net, steps));
+        }
+
+        RnnStreamInference inference = new RnnStreamInference.Builder(net)
+                .maxStreams(nStreams)
+                .batchLimit(8)
+                .maxLatency(10)
+                .build();
+
+        //Submit all steps up front: steps for the same stream must still be done in order, one per batch
+        List<List<Future<INDArray>>> futures = new ArrayList<>();
+        for (int i = 0; i < nStreams; i++)
+            futures.add(new ArrayList<Future<INDArray>>());
+        for (int s = 0; s < nSteps; s++) {
+            for (int i = 0; i < nStreams; i++)
+                futures.get(i).add(inference.timeStep("stream" + i, inputs.get(i)[s]));
+        }
+
+        for (int i = 0; i < nStreams; i++) {
+            for (int s = 0; s < nSteps; s++)
+                assertEquals(expected.get(i).get(s), futures.get(i).get(s).get());
+        }
+
+        inference.shutdown();
+    }
+
+    @Test
+    public void testComputationGraph() throws Exception {
+        Nd4j.getRandom().setSeed(12345);
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .weightInit(WeightInit.XAVIER)
+                .graphBuilder()
+                .addInputs("in")
+                .addLayer("lstm", new GravesLSTM.Builder().nIn(3).nOut(6).activation(Activation.TANH).build(), "in")
+                .addLayer("out", new RnnOutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(6).nOut(4).activation(Activation.SOFTMAX).build(), "lstm")
+                .setOutputs("out")
+                .build();
+
+        ComputationGraph graph = new ComputationGraph(conf);
+        graph.init();
+
+        INDArray[] a = randomSteps(3);
+        INDArray[] b = randomSteps(3);
+        List<INDArray> expA = new ArrayList<>();
+        List<INDArray> expB = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+            expA.add(graph.rnnTimeStep(a[i])[0].dup());
+        graph.rnnClearPreviousState();
+        for (int i = 0; i < 3; i++)
+            expB.add(graph.rnnTimeStep(b[i])[0].dup());
+        graph.rnnClearPreviousState();
+
+        RnnStreamInference inference = new RnnStreamInference.Builder(graph).build();
+        for (int i = 0; i < 3; i++) {
+            Future<INDArray> fa = inference.timeStep("a", a[i]);
+            Future<INDArray> fb = inference.timeStep("b", b[i]);
+            assertEquals(expA.get(i), fa.get());
+            assertEquals(expB.get(i), fb.get());
+        }
+
+        inference.shutdown();
+    }
+}
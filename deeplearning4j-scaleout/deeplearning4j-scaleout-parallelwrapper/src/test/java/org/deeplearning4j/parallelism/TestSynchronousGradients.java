@@ -0,0 +1,171 @@
+package org.deeplearning4j.parallelism;
+
+import org.deeplearning4j.datasets.iterator.ExistingDataSetIterator;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.Updater;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.junit.Before;
+import org.junit.Test;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.buffer.util.DataTypeUtil;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Synchronous gradient sharing in ParallelWrapper should be equivalent to fitting a single model on the full minibatch
+ */
+public class TestSynchronousGradients {
+
+    @Before
+    public void before() {
+        DataTypeUtil.setDTypeForContext(DataBuffer.Type.DOUBLE);
+        Nd4j.factory().setDType(DataBuffer.Type.DOUBLE);
+    }
+
+    private static List<DataSet> getData() {
+        Nd4j.getRandom().setSeed(12345);
+        List<DataSet> list = new ArrayList<>();
+        //Minibatch sizes that are not a multiple of the number of workers, and one smaller than the number of workers
+        for (int mb : new int[] {10, 7, 10, 2, 9}) {
+            INDArray f = Nd4j.rand(mb, 4);
+            INDArray l = Nd4j.zeros(mb, 3);
+            for (int i = 0; i < mb; i++) {
+                l.putScalar(i, Nd4j.getRandom().nextInt(3), 1.0);
+            }
+            list.add(new DataSet(f, l));
+        }
+        return list;
+    }
+
+    @Test
+    public void testMultiLayerNetwork() {
+        for (Updater u : new Updater[] {Updater.SGD, Updater.NESTEROVS, Updater.ADAM}) {
+            MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345).learningRate(0.1)
+                            .updater(u).regularization(true).l2(1e-3).weightInit(WeightInit.XAVIER)
+                            .activation(Activation.TANH).list()
+                            .layer(0, new DenseLayer.Builder().nIn(4).nOut(5).build())
+                            .layer(1, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(5).nOut(3)
+                                            .activation(Activation.SOFTMAX).build())
+                            .build();
+
+            MultiLayerNetwork single = new MultiLayerNetwork(conf);
+            single.init();
+            MultiLayerNetwork parallel = new MultiLayerNetwork(conf.clone());
+            parallel.init(single.params().dup(), false);
+
+            List<DataSet> data = getData();
+            for (DataSet ds : data) {
+                single.fit(ds);
+            }
+
+            ParallelWrapper wrapper = new ParallelWrapper.Builder<>(parallel).workers(4).prefetchBuffer(0)
+                            .trainingMode(ParallelWrapper.TrainingMode.SYNCHRONOUS_GRADIENTS).build();
+            wrapper.fit(new ExistingDataSetIterator(data));
+            wrapper.shutdown();
+
+            assertEquals(u.toString(), single.params(), parallel.params());
+            assertEquals(u.toString(), single.getUpdater().getStateViewArray(),
+                            parallel.getUpdater().getStateViewArray());
+            assertEquals(u.toString(), single.score(), parallel.score(), 1e-6);
+            assertEquals(data.size(), parallel.getLayerWiseConfigurations().getIterationCount());
+        }
+    }
+
+    @Test
+    public void testComputationGraph() {
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345).learningRate(0.1)
+                        .updater(Updater.RMSPROP).weightInit(WeightInit.XAVIER).activation(Activation.TANH)
+                        .graphBuilder().addInputs("in")
+                        .addLayer("0", new DenseLayer.Builder().nIn(4).nOut(5).build(), "in")
+                        .addLayer("1", new DenseLayer.Builder().nIn(4).nOut(5).build(), "in")
+                        .addLayer("out", new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(10).nOut(3)
+                                        .activation(Activation.SOFTMAX).build(), "0", "1")
+                        .setOutputs("out").build();
+
+        ComputationGraph single = new ComputationGraph(conf);
+        single.init();
+        ComputationGraph parallel = new ComputationGraph(conf.clone());
+        parallel.init(single.params().dup(), false);
+
+        List<DataSet> data = getData();
+        for (DataSet ds : data) {
+            single.fit(ds);
+        }
+
+        ParallelWrapper wrapper = new ParallelWrapper.Builder<>(parallel).workers(3).prefetchBuffer(0)
+                        .trainingMode(ParallelWrapper.TrainingMode.SYNCHRONOUS_GRADIENTS).build();
+        wrapper.fit(new ExistingDataSetIterator(data));
+        wrapper.shutdown();
+
+        assertEquals(single.params(), parallel.params());
+        assertEquals(single.getUpdater().getStateViewArray(), parallel.getUpdater().getStateViewArray());
+    }
+
+    @Test
+    public void testScoreWithRegularization() {
+        //L1/L2 regularization must be included once in the reported score, not once per shard
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345).learningRate(0.1)
+                        .updater(Updater.SGD).regularization(true).l1(0.01).l2(0.02).weightInit(WeightInit.XAVIER)
+                        .activation(Activation.TANH).list()
+                        .layer(0, new DenseLayer.Builder().nIn(4).nOut(5).build())
+                        .layer(1, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(5).nOut(3)
+                                        .activation(Activation.SOFTMAX).build())
+                        .build();
+        MultiLayerNetwork single = new MultiLayerNetwork(conf);
+        single.init();
+        MultiLayerNetwork parallel = new MultiLayerNetwork(conf.clone());
+        parallel.init(single.params().dup(), false);
+
+        ComputationGraphConfiguration graphConf = new NeuralNetConfiguration.Builder().seed(12345).learningRate(0.1)
+                        .updater(Updater.SGD).regularization(true).l1(0.01).l2(0.02).weightInit(WeightInit.XAVIER)
+                        .activation(Activation.TANH).graphBuilder().addInputs("in")
+                        .addLayer("0", new DenseLayer.Builder().nIn(4).nOut(5).build(), "in")
+                        .addLayer("out", new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(5).nOut(3)
+                                        .activation(Activation.SOFTMAX).build(), "0")
+                        .setOutputs("out").build();
+        ComputationGraph singleGraph = new ComputationGraph(graphConf);
+        singleGraph.init();
+        ComputationGraph parallelGraph = new ComputationGraph(graphConf.clone());
+        parallelGraph.init(singleGraph.params().dup(), false);
+
+        assertTrue(single.calcL1(true) + single.calcL2(true) > 0.0);
+        assertTrue(singleGraph.calcL1() + singleGraph.calcL2() > 0.0);
+
+        ParallelWrapper wrapper = new ParallelWrapper.Builder<>(parallel).workers(4).prefetchBuffer(0)
+                        .trainingMode(ParallelWrapper.TrainingMode.SYNCHRONOUS_GRADIENTS).build();
+        ParallelWrapper graphWrapper = new ParallelWrapper.Builder<>(parallelGraph).workers(4).prefetchBuffer(0)
+                        .trainingMode(ParallelWrapper.TrainingMode.SYNCHRONOUS_GRADIENTS).build();
+        for (DataSet ds : getData()) {
+            //Score reported by fit is calculated before the update: the same as the single model's score() beforehand
+            double expected = single.score(ds, true);
+            double expectedGraph = singleGraph.score(ds, true);
+
+            single.fit(ds);
+            wrapper.fit(new ExistingDataSetIterator(Collections.singletonList(ds)));
+            assertEquals(expected, single.score(), 1e-6);
+            assertEquals(single.score(), parallel.score(), 1e-6);
+
+            singleGraph.fit(ds);
+            graphWrapper.fit(new ExistingDataSetIterator(Collections.singletonList(ds)));
+            assertEquals(expectedGraph, singleGraph.score(), 1e-6);
+            assertEquals(singleGraph.score(), parallelGraph.score(), 1e-6);
+        }
+        wrapper.shutdown();
+        graphWrapper.shutdown();
+    }
+}
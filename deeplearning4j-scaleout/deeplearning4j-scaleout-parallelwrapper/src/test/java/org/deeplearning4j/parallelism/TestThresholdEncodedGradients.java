@@ -0,0 +1,192 @@
+package org.deeplearning4j.parallelism;
+
+import org.deeplearning4j.datasets.iterator.ExistingDataSetIterator;
+import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.Updater;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.deeplearning4j.optimize.api.IterationListener;
+import org.junit.Before;
+import org.junit.Test;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.buffer.util.DataTypeUtil;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TestThresholdEncodedGradients {
+
+    @Before
+    public void before() {
+        DataTypeUtil.setDTypeForContext(DataBuffer.Type.DOUBLE);
+        Nd4j.factory().setDType(DataBuffer.Type.DOUBLE);
+    }
+
+    @Test
+    public void testEncodeApply() {
+        Nd4j.getRandom().setSeed(12345);
+        int numParams = 100;
+        double threshold = 0.05;
+        ThresholdEncodedGradients sharing = new ThresholdEncodedGradients(3, numParams, threshold);
+
+        INDArray[] params = new INDArray[3];
+        for (int i = 0; i < 3; i++) {
+            params[i] = Nd4j.zeros(1, numParams);
+        }
+        INDArray totalUpdate = Nd4j.zeros(1, numParams);
+
+        for (int iter = 0; iter < 20; iter++) {
+            for (int w = 0; w < 3; w++) {
+                //Mix of small and large update values: small updates are mostly retained in the residual
+                INDArray update = Nd4j.rand(1, numParams).subi(0.5).muli(iter % 2 == 0 ? 0.02 : 0.5);
+                totalUpdate.addi(update);
+
+                //Compact message: +/-(index + 1) per encoded element, each index at most once
+                int[] message = sharing.encode(w, update);
+                assertTrue(message.length <= numParams);
+                Set<Integer> indices = new HashSet<>();
+                for (int e : message) {
+                    assertTrue(e != 0 && Math.abs(e) <= numParams);
+                    assertTrue(indices.add(Math.abs(e)));
+                }
+                sharing.publish(w, message);
+                sharing.apply(message, params[w]);
+            }
+            for (int w = 0; w < 3; w++) {
+                sharing.applyPending(w, params[w]);
+            }
+            assertTrue(sharing.isDelivered());
+
+            //All workers have identical parameters, and the part of the update not yet applied (the sum of the
+            //residuals) is less than the threshold, per worker
+            assertEquals(params[0], params[1]);
+            assertEquals(params[0], params[2]);
+            INDArray notApplied = Transforms.abs(totalUpdate.neg().sub(params[0]));
+            assertTrue(notApplied.maxNumber().doubleValue() < 3 * threshold);
+        }
+
+        assertTrue(sharing.getAverageDensity() > 0.0 && sharing.getAverageDensity() < 1.0);
+    }
+
+    @Test
+    public void testEncodeDecode() {
+        double threshold = 0.1;
+        ThresholdEncodedGradients sharing = new ThresholdEncodedGradients(2, 6, threshold);
+        INDArray update = Nd4j.create(new double[] {0.05, 0.1, -0.25, 0.0, 0.3, -0.1});
+
+        int[] message = sharing.encode(0, update);
+        assertArrayEquals(new int[] {2, -3, 5, -6}, message);
+
+        INDArray params = Nd4j.zeros(1, 6);
+        sharing.apply(message, params);
+        assertEquals(Nd4j.create(new double[] {0.0, -0.1, 0.1, 0.0, -0.1, 0.1}), params);
+
+        //Residual (0.05, 0, -0.15, 0, 0.2, 0) plus the same update: at most one threshold per element is encoded
+        message = sharing.encode(0, update);
+        assertArrayEquals(new int[] {1, 2, -3, 5, -6}, message);
+
+        //Messages are queued for the other worker until applied
+        sharing.publish(0, message);
+        assertFalse(sharing.isDelivered());
+        INDArray other = Nd4j.zeros(1, 6);
+        assertEquals(1, sharing.applyPending(1, other));
+        assertTrue(sharing.isDelivered());
+        assertEquals(Nd4j.create(new double[] {-0.1, -0.1, 0.1, 0.0, -0.1, 0.1}), other);
+    }
+
+    @Test
+    public void testSharedGradientsTraining() {
+        Nd4j.getRandom().setSeed(12345);
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345).learningRate(0.1)
+                        .updater(Updater.NESTEROVS).momentum(0.9).weightInit(WeightInit.XAVIER)
+                        .activation(Activation.TANH).list()
+                        .layer(0, new DenseLayer.Builder().nIn(4).nOut(10).build())
+                        .layer(1, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(10).nOut(3)
+                                        .activation(Activation.SOFTMAX).build())
+                        .build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        //Simple, learnable problem: class is determined by the largest of the first 3 features
+        List<DataSet> data = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            INDArray f = Nd4j.rand(16, 4);
+            INDArray l = Nd4j.zeros(16, 3);
+            for (int j = 0; j < 16; j++) {
+                l.putScalar(j, Nd4j.argMax(f.get(NDArrayIndex.point(j), NDArrayIndex.interval(0, 3)), 1).getInt(0),
+                                1.0);
+            }
+            data.add(new DataSet(f, l));
+        }
+        DataSet all = DataSet.merge(data);
+        double scoreBefore = net.score(all);
+        INDArray paramsBefore = net.params().dup();
+
+        ParallelWrapper wrapper = new ParallelWrapper.Builder<>(net).workers(3).prefetchBuffer(0)
+                        .trainingMode(ParallelWrapper.TrainingMode.SHARED_GRADIENTS).gradientThreshold(1e-3).build();
+        for (int epoch = 0; epoch < 5; epoch++) {
+            wrapper.fit(new ExistingDataSetIterator(data));
+        }
+        wrapper.shutdown();
+
+        assertNotEquals(paramsBefore, net.params());
+        double scoreAfter = net.score(all);
+        assertTrue("Score before: " + scoreBefore + ", after: " + scoreAfter, scoreAfter < scoreBefore);
+    }
+
+    @Test
+    public void testSharedGradientsNumIterations() {
+        //Each minibatch should be fit conf.getNumIterations() times, as per MultiLayerNetwork.fit(DataSet)
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345).learningRate(0.1)
+                        .iterations(3).updater(Updater.SGD).weightInit(WeightInit.XAVIER).list()
+                        .layer(0, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(4).nOut(3)
+                                        .activation(Activation.SOFTMAX).build())
+                        .build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        final AtomicInteger count = new AtomicInteger();
+        net.setListeners(new IterationListener() {
+            @Override
+            public boolean invoked() {
+                return false;
+            }
+
+            @Override
+            public void invoke() {}
+
+            @Override
+            public void iterationDone(Model model, int iteration) {
+                count.incrementAndGet();
+            }
+        });
+
+        List<DataSet> data = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            data.add(new DataSet(Nd4j.rand(4, 4), Nd4j.create(new double[][] {{1, 0, 0}, {0, 1, 0}, {0, 0, 1},
+                            {1, 0, 0}})));
+        }
+
+        ParallelWrapper wrapper = new ParallelWrapper.Builder<>(net).workers(2).prefetchBuffer(0)
+                        .trainingMode(ParallelWrapper.TrainingMode.SHARED_GRADIENTS).gradientThreshold(1e-3).build();
+        wrapper.fit(new ExistingDataSetIterator(data));
+        wrapper.shutdown();
+
+        assertEquals(8 * 3, count.get());
+    }
+}
@@ -0,0 +1,110 @@
+package org.deeplearning4j.parallelism;
+
+import org.deeplearning4j.datasets.iterator.ExistingDataSetIterator;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.Updater;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.junit.Test;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestWorkStealing {
+
+    private static MultiLayerNetwork getNetwork() {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345).learningRate(0.1)
+                        .updater(Updater.NESTEROVS).momentum(0.9).weightInit(WeightInit.XAVIER)
+                        .activation(Activation.TANH).list()
+                        .layer(0, new DenseLayer.Builder().nIn(4).nOut(10).build())
+                        .layer(1, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(10).nOut(3)
+                                        .activation(Activation.SOFTMAX).build())
+                        .build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        return net;
+    }
+
+    private static List<DataSet> getData(int numMinibatches) {
+        Nd4j.getRandom().setSeed(12345);
+        List<DataSet> data = new ArrayList<>();
+        for (int i = 0; i < numMinibatches; i++) {
+            //Variable minibatch sizes, so workers take different amounts of time
+            int mb = 4 + 8 * (i % 4);
+            INDArray f = Nd4j.rand(mb, 4);
+            INDArray l = Nd4j.zeros(mb, 3);
+            for (int j = 0; j < mb; j++) {
+                l.putScalar(j, Nd4j.argMax(f.get(NDArrayIndex.point(j), NDArrayIndex.interval(0, 3)), 1).getInt(0),
+                                1.0);
+            }
+            data.add(new DataSet(f, l));
+        }
+        return data;
+    }
+
+    @Test
+    public void testWorkStealingAveraging() {
+        MultiLayerNetwork net = getNetwork();
+        //Number of minibatches is not a multiple of workers * averagingFrequency: final averaging still happens
+        List<DataSet> data = getData(23);
+        DataSet all = DataSet.merge(data);
+        double scoreBefore = net.score(all);
+
+        int workers = 3;
+        ParallelWrapper wrapper = new ParallelWrapper.Builder<>(net).workers(workers).averagingFrequency(2)
+                        .prefetchBuffer(0).workStealing(true).build();
+        assertTrue(wrapper.getWorkerStats().isEmpty());
+
+        for (int epoch = 0; epoch < 5; epoch++) {
+            wrapper.fit(new ExistingDataSetIterator(data));
+
+            List<WorkerStats> stats = wrapper.getWorkerStats();
+            assertEquals(workers, stats.size());
+            long total = 0;
+            for (WorkerStats s : stats) {
+                total += s.getMinibatches();
+                assertTrue(s.toString(), s.getUtilization() >= 0.0 && s.getUtilization() <= 1.0);
+            }
+            assertEquals(data.size(), total);
+        }
+        wrapper.shutdown();
+
+        double scoreAfter = net.score(all);
+        assertTrue("Score before: " + scoreBefore + ", after: " + scoreAfter, scoreAfter < scoreBefore);
+    }
+
+    @Test
+    public void testWorkStealingSharedGradients() {
+        MultiLayerNetwork net = getNetwork();
+        List<DataSet> data = getData(20);
+        DataSet all = DataSet.merge(data);
+        double scoreBefore = net.score(all);
+
+        ParallelWrapper wrapper = new ParallelWrapper.Builder<>(net).workers(4).prefetchBuffer(0).workStealing(true)
+                        .trainingMode(ParallelWrapper.TrainingMode.SHARED_GRADIENTS).build();
+        for (int epoch = 0; epoch < 5; epoch++) {
+            wrapper.fit(new ExistingDataSetIterator(data));
+        }
+
+        long total = 0;
+        for (WorkerStats s : wrapper.getWorkerStats()) {
+            total += s.getMinibatches();
+        }
+        assertEquals(data.size(), total);
+        wrapper.shutdown();
+
+        double scoreAfter = net.score(all);
+        assertTrue("Score before: " + scoreBefore + ", after: " + scoreAfter, scoreAfter < scoreBefore);
+    }
+}
@@ -0,0 +1,109 @@
+package org.deeplearning4j.ui.module.profiling;
+
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.api.storage.Persistable;
+import org.deeplearning4j.api.storage.StatsStorage;
+import org.deeplearning4j.api.storage.StatsStorageEvent;
+import org.deeplearning4j.ui.api.FunctionType;
+import org.deeplearning4j.ui.api.HttpMethod;
+import org.deeplearning4j.ui.api.Route;
+import org.deeplearning4j.ui.api.UIModule;
+import org.deeplearning4j.ui.profiling.LayerProfilingPersistable;
+import play.libs.Json;
+import play.mvc.Result;
+
+import java.util.*;
+
+import static play.mvc.Results.ok;
+
+/**
+ * Module for LayerProfilingListener. Provides a page (/profiling) showing the latest per-layer time and heap results,
+ * and the process-global off-heap deltas (bytes and allocation counts) for each layer's steps, for each worker of a
+ * session, plus JSON routes for the latest results and the full history of profiled iterations.<br>
+ * Note that the off-heap values are not per layer: see {@link org.deeplearning4j.ui.profiling.LayerProfilingListener}
+ */
+@Slf4j
+public class LayerProfilingModule implements UIModule {
+
+    private static final String TYPE_ID = LayerProfilingPersistable.TYPE_ID;
+
+    private Map<String, StatsStorage> knownSessionIDs = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    @Override
+    public List<String> getCallbackTypeIDs() {
+        return Collections.singletonList(TYPE_ID);
+    }
+
+    @Override
+    public List<Route> getRoutes() {
+        Route r0 = new Route("/profiling", HttpMethod.GET, FunctionType.Supplier,
+                () -> ok(org.deeplearning4j.ui.views.html.profiling.LayerProfiling.apply()));
+        Route r1 = new Route("/profiling/listSessions", HttpMethod.GET, FunctionType.Supplier, this::listSessions);
+        Route r2 = new Route("/profiling/latest/:id", HttpMethod.GET, FunctionType.Function, this::getLatest);
+        Route r3 = new Route("/profiling/all/:id", HttpMethod.GET, FunctionType.Function, this::getAll);
+
+        return Arrays.asList(r0, r1, r2, r3);
+    }
+
+    @Override
+    public void reportStorageEvents(Collection<StatsStorageEvent> events) {
+        for (StatsStorageEvent sse : events) {
+            if (!knownSessionIDs.containsKey(sse.getSessionID())) {
+                knownSessionIDs.put(sse.getSessionID(), sse.getStatsStorage());
+            }
+        }
+    }
+
+    @Override
+    public void onAttach(StatsStorage statsStorage) {
+        for (String sessionID : statsStorage.listSessionIDs()) {
+            for (String typeID : statsStorage.listTypeIDsForSession(sessionID)) {
+                if (!TYPE_ID.equals(typeID)) continue;
+                knownSessionIDs.put(sessionID, statsStorage);
+            }
+        }
+    }
+
+    @Override
+    public void onDetach(StatsStorage statsStorage) {
+        for (String s : new ArrayList<>(knownSessionIDs.keySet())) {
+            if (statsStorage == knownSessionIDs.get(s)) {
+                knownSessionIDs.remove(s);
+            }
+        }
+    }
+
+    private Result listSessions() {
+        return ok(Json.toJson(knownSessionIDs.keySet()));
+    }
+
+    private Result getLatest(String sessionID) {
+        if (!knownSessionIDs.containsKey(sessionID)) return ok("Unknown session ID");
+        StatsStorage ss = knownSessionIDs.get(sessionID);
+
+        List<Persistable> list = ss.getLatestUpdateAllWorkers(sessionID, TYPE_ID);
+        return ok(Json.toJson(filter(list)));
+    }
+
+    private Result getAll(String sessionID) {
+        if (!knownSessionIDs.containsKey(sessionID)) return ok("Unknown session ID");
+        StatsStorage ss = knownSessionIDs.get(sessionID);
+
+        List<LayerProfilingPersistable> out = new ArrayList<>();
+        for (String workerID : ss.listWorkerIDsForSessionAndType(sessionID, TYPE_ID)) {
+            out.addAll(filter(ss.getAllUpdatesAfter(sessionID, TYPE_ID, workerID, 0)));
+        }
+        return ok(Json.toJson(out));
+    }
+
+    private static List<LayerProfilingPersistable> filter(List<Persistable> list) {
+        List<LayerProfilingPersistable> out = new ArrayList<>();
+        if (list == null) return out;
+        for (Persistable p : list) {
+            if (p instanceof LayerProfilingPersistable) {
+                out.add((LayerProfilingPersistable) p);
+            }
+        }
+        return out;
+    }
+}
@@ -15,6 +15,7 @@ import org.deeplearning4j.ui.i18n.I18NProvider;
 import org.deeplearning4j.ui.module.convolutional.ConvolutionalListenerModule;
 import org.deeplearning4j.ui.module.defaultModule.DefaultModule;
 import org.deeplearning4j.ui.module.flow.FlowListenerModule;
+import org.deeplearning4j.ui.module.profiling.LayerProfilingModule;
 import org.deeplearning4j.ui.module.remote.RemoteReceiverModule;
 import org.deeplearning4j.ui.module.train.TrainModule;
 import org.deeplearning4j.ui.module.histogram.HistogramModule;
@@ -126,6 +127,7 @@ public class PlayUIServer extends UIServer {
         uiModules.add(new TrainModule());
         uiModules.add(new ConvolutionalListenerModule());
         uiModules.add(new FlowListenerModule());
+        uiModules.add(new LayerProfilingModule());
         uiModules.add(new TsneModule());
         remoteReceiverModule = new RemoteReceiverModule();
         uiModules.add(remoteReceiverModule);
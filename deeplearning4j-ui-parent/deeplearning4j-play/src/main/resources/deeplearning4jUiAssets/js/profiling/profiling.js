@@ -0,0 +1,104 @@
+/*
+ * Layer profiling page (LayerProfilingModule): shows the latest LayerProfilingListener results for each worker of the
+ * selected session, one table row per layer/vertex. Phase order matches LayerTrainingListener.Phase
+ */
+
+var profilingPhases = ["Forward", "Backward", "Update"];
+
+$(document).ready(function () {
+    $("#profilingSession").change(function () {
+        updateProfilingTables();
+    });
+    updateProfilingSessions();
+    setInterval(function () {
+        updateProfilingSessions();
+    }, 3000);
+});
+
+function updateProfilingSessions() {
+    $.ajax({
+        url: "/profiling/listSessions",
+        async: true,
+        error: function (query, status, error) {
+            $("#profilingStatus").text("Error getting sessions: " + error);
+        },
+        success: function (sessions) {
+            var select = $("#profilingSession");
+            var current = select.val();
+            select.empty();
+            for (var i = 0; i < sessions.length; i++) {
+                select.append($("<option></option>").attr("value", sessions[i]).text(sessions[i]));
+            }
+            if (current && sessions.indexOf(current) >= 0) {
+                select.val(current);
+            }
+            if (sessions.length == 0) {
+                $("#profilingStatus").text("No profiling sessions");
+                $("#profilingTables").empty();
+            } else {
+                updateProfilingTables();
+            }
+        }
+    });
+}
+
+function updateProfilingTables() {
+    var session = $("#profilingSession").val();
+    if (!session) return;
+    $.ajax({
+        url: "/profiling/latest/" + encodeURIComponent(session),
+        async: true,
+        error: function (query, status, error) {
+            $("#profilingStatus").text("Error getting profiling results: " + error);
+        },
+        success: function (results) {
+            var div = $("#profilingTables");
+            div.empty();
+            if (!$.isArray(results)) {
+                $("#profilingStatus").text(results);
+                return;
+            }
+            $("#profilingStatus").text("");
+            for (var i = 0; i < results.length; i++) {
+                div.append(renderProfilingTable(results[i]));
+            }
+        }
+    });
+}
+
+function renderProfilingTable(p) {
+    var table = $("<table class='table table-condensed table-striped'></table>");
+
+    var header = $("<tr></tr>").append($("<th></th>").text("Layer"));
+    //Off-heap values are deltas of process-global counters (all threads) over each layer's step, not per layer
+    var groups = ["Time (ms)", "Heap (bytes)", "Global off-heap delta (bytes)", "Global off-heap delta (allocations)"];
+    for (var g = 0; g < groups.length; g++) {
+        for (var j = 0; j < profilingPhases.length; j++) {
+            header.append($("<th></th>").text(groups[g] + ": " + profilingPhases[j]));
+        }
+    }
+    table.append($("<thead></thead>").append(header));
+
+    var body = $("<tbody></tbody>");
+    for (var i = 0; i < p.layerNames.length; i++) {
+        var row = $("<tr></tr>").append($("<td></td>").text(p.layerNames[i]));
+        for (var j = 0; j < profilingPhases.length; j++) {
+            row.append($("<td></td>").text((p.durationNanos[i][j] / 1e6).toFixed(3)));
+        }
+        for (var j = 0; j < profilingPhases.length; j++) {
+            row.append($("<td></td>").text(p.heapBytes[i][j]));
+        }
+        for (var j = 0; j < profilingPhases.length; j++) {
+            row.append($("<td></td>").text(p.offHeapBytes[i][j]));
+        }
+        for (var j = 0; j < profilingPhases.length; j++) {
+            row.append($("<td></td>").text(p.offHeapCounts ? p.offHeapCounts[i][j] : "n/a"));
+        }
+        body.append(row);
+    }
+    table.append(body);
+
+    var title = $("<h4></h4>").text("Worker " + p.workerID + " - iteration " + p.iteration + " ("
+        + new Date(p.timestamp).toLocaleString() + ")");
+    return $("<div></div>").append(title).append(table);
+}
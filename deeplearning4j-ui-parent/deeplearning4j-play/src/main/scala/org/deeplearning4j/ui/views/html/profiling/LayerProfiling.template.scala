@@ -0,0 +1,100 @@
+package org.deeplearning4j.ui.views.html.profiling
+
+import play.twirl.api._
+import play.twirl.api.TemplateMagic._
+
+
+     object LayerProfiling_Scope0 {
+import models._
+import controllers._
+import play.api.i18n._
+import views.html._
+import play.api.templates.PlayMagic._
+import play.api.mvc._
+import play.api.data._
+
+class LayerProfiling extends BaseScalaTemplate[play.twirl.api.HtmlFormat.Appendable,Format[play.twirl.api.HtmlFormat.Appendable]](play.twirl.api.HtmlFormat) with play.twirl.api.Template0[play.twirl.api.HtmlFormat.Appendable] {
+
+  /**/
+  def apply():play.twirl.api.HtmlFormat.Appendable = {
+    _display_ {
+      {
+
+
+Seq[Any](format.raw/*1.1*/("""<!DOCTYPE html>
+<html lang="en">
+    <head>
+        <meta charset="utf-8" />
+        <title>Layer profiling</title>
+            <!-- jQuery -->
+        <script src="/assets/legacy/jquery-2.2.0.min.js"></script>
+
+            <!-- Latest compiled and minified CSS -->
+        <link rel="stylesheet" href="/assets/legacy/bootstrap.min.css" />
+
+            <!-- Optional theme -->
+        <link rel="stylesheet" href="/assets/legacy/bootstrap-theme.min.css" />
+
+            <!-- Latest compiled and minified JavaScript -->
+        <script src="/assets/legacy/bootstrap.min.js" ></script>
+
+        <link href='/assets/legacy/roboto.css' rel='stylesheet' type='text/css'>
+
+            <!-- Page rendering: polls /profiling/latest/:sessionID -->
+        <script src="/assets/js/profiling/profiling.js"></script>
+    </head>
+
+    <body style="font-family: 'Roboto', sans-serif; color: #333; font-weight: 300; font-size: 16px;">
+        <table style="width: 100%; padding: 5px; background-color: #000000; font-size: 18px; color: #FFFFFF;">
+            <tbody>
+                <tr>
+                    <td style="width: 48px;"><a href="/"><img src="/assets/legacy/deeplearning4j.img" border="0"/></a></td>
+                    <td>DeepLearning4j UI</td>
+                    <td style="width: 128px;">&nbsp; <!-- placeholder for future use --></td>
+                </tr>
+            </tbody>
+        </table>
+        <div class="container-fluid" style="padding: 16px;">
+            <div class="form-inline">
+                <label for="profilingSession">Session:</label>
+                <select id="profilingSession" class="form-control"></select>
+                <span id="profilingStatus" style="margin-left: 16px;"></span>
+            </div>
+            <p style="margin-top: 8px; font-size: 13px;">
+                Latest profiled iteration for each worker. Heap: bytes allocated on the JVM heap by the thread executing the layer.
+                Global off-heap delta: net change in the process-wide off-heap memory (bytes) and number of off-heap allocations
+                over the layer's step, including all other threads - not a per-layer value. Allocation counts require
+                JavaCPP 1.4+ (otherwise n/a).
+            </p>
+            <div id="profilingTables"></div>
+        </div>
+    </body>
+
+</html>"""))
+      }
+    }
+  }
+
+  def render(): play.twirl.api.HtmlFormat.Appendable = apply()
+
+  def f:(() => play.twirl.api.HtmlFormat.Appendable) = () => apply()
+
+  def ref: this.type = this
+
+}
+
+
+}
+
+/**/
+object LayerProfiling extends LayerProfiling_Scope0.LayerProfiling
+              /*
+                  -- GENERATED --
+                  DATE: Sat Oct 17 10:12:41 UTC 2026
+                  SOURCE: deeplearning4j-ui-parent/deeplearning4j-play/src/main/views/org/deeplearning4j/ui/views/profiling/LayerProfiling.scala.html
+                  HASH: 7da335915568d639839fffa0623c4ad1e298eec2
+                  MATRIX: 658->0
+                  LINES: 24->1
+                  -- GENERATED --
+              */
+          
\ No newline at end of file
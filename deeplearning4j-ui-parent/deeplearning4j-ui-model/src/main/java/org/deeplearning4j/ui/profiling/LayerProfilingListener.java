@@ -0,0 +1,338 @@
+package org.deeplearning4j.ui.profiling;
+
+import lombok.extern.slf4j.Slf4j;
+import org.bytedeco.javacpp.Pointer;
+import org.deeplearning4j.api.storage.StatsStorageRouter;
+import org.deeplearning4j.api.storage.listener.RoutingIterationListener;
+import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.optimize.api.LayerTrainingListener;
+import org.deeplearning4j.util.UIDProvider;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.*;
+
+/**
+ * A listener that profiles each layer (MultiLayerNetwork) or vertex (ComputationGraph) of a network during training.
+ * For each layer, the following are recorded separately for the forward pass, backprop and the updater:<br>
+ * - Time (wall clock, nanoseconds)<br>
+ * - Bytes allocated on the JVM heap by the thread executing the layer (where supported by the JVM - i.e., HotSpot)<br>
+ * - Net change in off-heap (JavaCPP) memory, in bytes<br>
+ * - Net change in the number of off-heap (JavaCPP) allocations, i.e., arrays, where supported by the JavaCPP version
+ * (Pointer.totalCount(), JavaCPP 1.4+); otherwise not recorded ({@link LayerProfilingPersistable#getOffHeapCounts()}
+ * is null, and the CSV values are -1)<br>
+ * The off-heap values are NOT per layer: they are deltas of process-global counters over the layer's step, and hence
+ * include allocations and deallocations (including garbage collection) by all other threads; they may be negative.
+ * The heap values are per layer, as they are measured for the thread executing the layer.<br>
+ * <br>
+ * To keep the overhead low, only one in every {@code frequency} iterations is profiled; on all other iterations the
+ * listener returns immediately. The results for each profiled iteration are posted to the provided
+ * {@link StatsStorageRouter} (as {@link LayerProfilingPersistable} instances) so they are available in the UI (the
+ * /profiling page), and (optionally) also appended to a CSV file, one row per layer per profiled iteration.
+ * <br>
+ * Note that at training time, the forward pass of the output layer(s) is performed as part of backprop. When
+ * concurrent branch execution is enabled for a ComputationGraph, vertices are profiled on the thread that executes
+ * them; the times of vertices executed concurrently overlap.
+ */
+@Slf4j
+public class LayerProfilingListener implements LayerTrainingListener, RoutingIterationListener {
+
+    public static final String CSV_HEADER = "iteration,timestamp,layer,forwardMs,backwardMs,updateMs,"
+            + "forwardHeapBytes,backwardHeapBytes,updateHeapBytes,"
+            + "forwardGlobalOffHeapBytes,backwardGlobalOffHeapBytes,updateGlobalOffHeapBytes,"
+            + "forwardGlobalOffHeapCount,backwardGlobalOffHeapCount,updateGlobalOffHeapCount";
+
+    private static final int NUM_PHASES = Phase.values().length;
+    private static final int NUM_VALUES = 4;
+    //Pointer.totalCount(): number of live off-heap allocations. Not available in all JavaCPP versions
+    private static final Method TOTAL_COUNT = totalCountMethod();
+
+    private transient StatsStorageRouter router;
+    private final int frequency;
+    private final File csvFile;
+    private String sessionID;
+    private String workerID;
+
+    private boolean invoked;
+    private int iterCount;
+    private boolean profiling = true;
+    private boolean csvHeaderWritten;
+    //Values: [phase*4 + 0] = nanos, [phase*4 + 1] = heap bytes, [phase*4 + 2] = off-heap bytes,
+    //[phase*4 + 3] = off-heap count. Guarded by itself, as vertices may be executed (and hence profiled) concurrently
+    private final Map<String, long[]> current = new LinkedHashMap<>();
+    //Start values for the layer currently being profiled on each thread, in the same order
+    private transient volatile ThreadLocal<long[]> start;
+
+    /**
+     * @param router    Router to post the results to
+     * @param frequency Frequency (in iterations) with which to profile the network. Must be 1 or more
+     */
+    public LayerProfilingListener(StatsStorageRouter router, int frequency) {
+        this(router, frequency, null);
+    }
+
+    /**
+     * @param router    Router to post the results to. May be null, if only CSV output is required
+     * @param frequency Frequency (in iterations) with which to profile the network. Must be 1 or more
+     * @param csvFile   CSV file to append the results to. May be null
+     */
+    public LayerProfilingListener(StatsStorageRouter router, int frequency, File csvFile) {
+        this(router, frequency, csvFile, null, null);
+    }
+
+    /**
+     * @param router    Router to post the results to. May be null, if only CSV output is required
+     * @param frequency Frequency (in iterations) with which to profile the network. Must be 1 or more
+     * @param csvFile   CSV file to append the results to. May be null
+     * @param sessionID Session ID. If null: a random session ID is generated
+     * @param workerID  Worker ID. If null: a worker ID is generated from the JVM UID and thread ID
+     */
+    public LayerProfilingListener(StatsStorageRouter router, int frequency, File csvFile, String sessionID,
+                                  String workerID) {
+        if (frequency <= 0) {
+            throw new IllegalArgumentException("Invalid frequency: must be 1 or more (got: " + frequency + ")");
+        }
+        if (router == null && csvFile == null) {
+            throw new IllegalArgumentException("Router and CSV file are both null: at least one must be provided");
+        }
+        this.router = router;
+        this.frequency = frequency;
+        this.csvFile = csvFile;
+        this.sessionID = (sessionID == null ? UUID.randomUUID().toString() : sessionID);
+        this.workerID = (workerID == null ? UIDProvider.getJVMUID() + "_" + Thread.currentThread().getId() : workerID);
+    }
+
+    @Override
+    public void onLayerStart(Model model, String layerName, Phase phase) {
+        if (!profiling)
+            return;
+        long[] s = startValues();
+        s[3] = offHeapCount();
+        s[2] = Pointer.totalBytes();
+        s[1] = threadAllocatedBytes();
+        s[0] = System.nanoTime();
+    }
+
+    @Override
+    public void onLayerEnd(Model model, String layerName, Phase phase) {
+        if (!profiling)
+            return;
+        long[] s = startValues();
+        long nanos = System.nanoTime() - s[0];
+        long heapBytes = threadAllocatedBytes() - s[1];
+        long offHeapBytes = Pointer.totalBytes() - s[2];
+        long offHeapCount = offHeapCount() - s[3];
+
+        synchronized (current) {
+            long[] values = current.get(layerName);
+            if (values == null) {
+                values = new long[NUM_VALUES * NUM_PHASES];
+                current.put(layerName, values);
+            }
+            int idx = NUM_VALUES * phase.ordinal();
+            values[idx] += nanos;
+            values[idx + 1] += heapBytes;
+            values[idx + 2] += offHeapBytes;
+            values[idx + 3] += offHeapCount;
+        }
+    }
+
+    private long[] startValues() {
+        if (start == null) {
+            synchronized (current) {
+                if (start == null) {
+                    start = new ThreadLocal<long[]>() {
+                        @Override
+                        protected long[] initialValue() {
+                            return new long[NUM_VALUES];
+                        }
+                    };
+                }
+            }
+        }
+        return start.get();
+    }
+
+    @Override
+    public void iterationDone(Model model, int iteration) {
+        invoked = true;
+        if (profiling && !current.isEmpty()) {
+            report(iteration);
+        }
+        current.clear();
+        iterCount++;
+        profiling = (iterCount % frequency == 0);
+    }
+
+    private void report(int iteration) {
+        long time = System.currentTimeMillis();
+        int nLayers = current.size();
+        String[] layerNames = new String[nLayers];
+        long[][] durationNanos = new long[nLayers][NUM_PHASES];
+        long[][] heapBytes = new long[nLayers][NUM_PHASES];
+        long[][] offHeapBytes = new long[nLayers][NUM_PHASES];
+        long[][] offHeapCounts = (TOTAL_COUNT != null ? new long[nLayers][NUM_PHASES] : null);
+
+        int i = 0;
+        for (Map.Entry<String, long[]> e : current.entrySet()) {
+            layerNames[i] = e.getKey();
+            long[] values = e.getValue();
+            for (int p = 0; p < NUM_PHASES; p++) {
+                durationNanos[i][p] = values[NUM_VALUES * p];
+                heapBytes[i][p] = values[NUM_VALUES * p + 1];
+                offHeapBytes[i][p] = values[NUM_VALUES * p + 2];
+                if (offHeapCounts != null)
+                    offHeapCounts[i][p] = values[NUM_VALUES * p + 3];
+            }
+            i++;
+        }
+
+        LayerProfilingPersistable persistable = new LayerProfilingPersistable(sessionID, workerID, time, iteration,
+                layerNames, durationNanos, heapBytes, offHeapBytes, offHeapCounts);
+        if (router != null) {
+            router.putUpdate(persistable);
+        }
+        if (csvFile != null) {
+            writeCsv(persistable);
+        }
+    }
+
+    private void writeCsv(LayerProfilingPersistable p) {
+        boolean writeHeader = !csvHeaderWritten && (!csvFile.exists() || csvFile.length() == 0);
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(csvFile, true))) {
+            if (writeHeader) {
+                bw.write(CSV_HEADER);
+                bw.newLine();
+            }
+            String[] layerNames = p.getLayerNames();
+            for (int i = 0; i < layerNames.length; i++) {
+                StringBuilder sb = new StringBuilder();
+                sb.append(p.getIteration()).append(",").append(p.getTimeStamp()).append(",").append(layerNames[i]);
+                for (int j = 0; j < NUM_PHASES; j++) {
+                    sb.append(",").append(p.getDurationNanos()[i][j] / 1e6);
+                }
+                for (int j = 0; j < NUM_PHASES; j++) {
+                    sb.append(",").append(p.getHeapBytes()[i][j]);
+                }
+                for (int j = 0; j < NUM_PHASES; j++) {
+                    sb.append(",").append(p.getOffHeapBytes()[i][j]);
+                }
+                for (int j = 0; j < NUM_PHASES; j++) {
+                    sb.append(",").append(p.getOffHeapCounts() != null ? p.getOffHeapCounts()[i][j] : -1);
+                }
+                bw.write(sb.toString());
+                bw.newLine();
+            }
+            csvHeaderWritten = true;
+        } catch (IOException e) {
+            log.warn("Error writing layer profiling results to CSV file {}", csvFile, e);
+        }
+    }
+
+    private static Method totalCountMethod() {
+        try {
+            return Pointer.class.getMethod("totalCount");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static long offHeapCount() {
+        if (TOTAL_COUNT == null)
+            return 0;
+        try {
+            return ((Number) TOTAL_COUNT.invoke(null)).longValue();
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    private static long threadAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean b = (com.sun.management.ThreadMXBean) bean;
+            if (b.isThreadAllocatedMemorySupported() && b.isThreadAllocatedMemoryEnabled()) {
+                return b.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public boolean invoked() {
+        return invoked;
+    }
+
+    @Override
+    public void invoke() {
+        this.invoked = true;
+    }
+
+    @Override
+    public void onEpochStart(Model model) {
+        //No op
+    }
+
+    @Override
+    public void onEpochEnd(Model model) {
+        //No op
+    }
+
+    @Override
+    public void onForwardPass(Model model, List<INDArray> activations) {
+        //No op
+    }
+
+    @Override
+    public void onForwardPass(Model model, Map<String, INDArray> activations) {
+        //No op
+    }
+
+    @Override
+    public void onGradientCalculation(Model model) {
+        //No op
+    }
+
+    @Override
+    public void onBackwardPass(Model model) {
+        //No op
+    }
+
+    @Override
+    public void setStorageRouter(StatsStorageRouter router) {
+        this.router = router;
+    }
+
+    @Override
+    public StatsStorageRouter getStorageRouter() {
+        return router;
+    }
+
+    @Override
+    public void setWorkerID(String workerID) {
+        this.workerID = workerID;
+    }
+
+    @Override
+    public String getWorkerID() {
+        return workerID;
+    }
+
+    @Override
+    public void setSessionID(String sessionID) {
+        this.sessionID = sessionID;
+    }
+
+    @Override
+    public String getSessionID() {
+        return sessionID;
+    }
+
+    @Override
+    public LayerProfilingListener clone() {
+        return new LayerProfilingListener(router, frequency, csvFile, sessionID, workerID);
+    }
+}
@@ -0,0 +1,111 @@
+package org.deeplearning4j.ui.profiling;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.apache.commons.compress.utils.IOUtils;
+import org.deeplearning4j.api.storage.Persistable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+/**
+ * Per-layer profiling results for a single (sampled) iteration, as collected by {@link LayerProfilingListener}.<br>
+ * The 2d arrays are indexed by [layer][phase], where the layer index is the position in {@link #getLayerNames()} and
+ * the phase index is the ordinal of {@link org.deeplearning4j.optimize.api.LayerTrainingListener.Phase}.<br>
+ * The off-heap values (bytes and, if available, counts) are deltas of process-global counters, not per-layer values:
+ * see {@link LayerProfilingListener}. The off-heap counts are null if not supported by the JavaCPP version
+ */
+@AllArgsConstructor @NoArgsConstructor @Data
+public class LayerProfilingPersistable implements Persistable {
+
+    public static final String TYPE_ID = "LayerProfilingListener";
+
+    private String sessionID;
+    private String workerID;
+    private long timestamp;
+    private int iteration;
+    private String[] layerNames;
+    private long[][] durationNanos;
+    private long[][] heapBytes;
+    private long[][] offHeapBytes;
+    private long[][] offHeapCounts;
+
+    @Override
+    public String getSessionID() {
+        return sessionID;
+    }
+
+    @Override
+    public String getTypeID() {
+        return TYPE_ID;
+    }
+
+    @Override
+    public String getWorkerID() {
+        return workerID;
+    }
+
+    @Override
+    public long getTimeStamp() {
+        return timestamp;
+    }
+
+    @Override
+    public int encodingLengthBytes() {
+        return 0;
+    }
+
+    @Override
+    public byte[] encode() {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try(ObjectOutputStream oos = new ObjectOutputStream(baos)){
+            oos.writeObject(this);
+        } catch (IOException e){
+            throw new RuntimeException(e);  //Shouldn't normally happen
+        }
+
+        return baos.toByteArray();
+    }
+
+    @Override
+    public void encode(ByteBuffer buffer) {
+        buffer.put(encode());
+    }
+
+    @Override
+    public void encode(OutputStream outputStream) throws IOException {
+        outputStream.write(encode());
+    }
+
+    @Override
+    public void decode(byte[] decode) {
+        try(ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(decode))){
+            LayerProfilingPersistable p = (LayerProfilingPersistable)ois.readObject();
+            this.sessionID = p.sessionID;
+            this.workerID = p.workerID;
+            this.timestamp = p.timestamp;
+            this.iteration = p.iteration;
+            this.layerNames = p.layerNames;
+            this.durationNanos = p.durationNanos;
+            this.heapBytes = p.heapBytes;
+            this.offHeapBytes = p.offHeapBytes;
+            this.offHeapCounts = p.offHeapCounts;
+        }catch (IOException | ClassNotFoundException e){
+            throw new RuntimeException(e);  //Shouldn't normally happen
+        }
+    }
+
+    @Override
+    public void decode(ByteBuffer buffer) {
+        byte[] arr = new byte[buffer.remaining()];
+        buffer.get(arr);
+        decode(arr);
+    }
+
+    @Override
+    public void decode(InputStream inputStream) throws IOException {
+        byte[] b = IOUtils.toByteArray(inputStream);
+        decode(b);
+    }
+}
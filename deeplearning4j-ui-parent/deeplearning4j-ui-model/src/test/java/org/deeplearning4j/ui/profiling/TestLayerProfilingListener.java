@@ -0,0 +1,87 @@
+package org.deeplearning4j.ui.profiling;
+
+import org.deeplearning4j.api.storage.Persistable;
+import org.deeplearning4j.api.storage.StatsStorage;
+import org.deeplearning4j.datasets.iterator.impl.IrisDataSetIterator;
+import org.deeplearning4j.nn.api.OptimizationAlgorithm;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.optimize.api.LayerTrainingListener;
+import org.deeplearning4j.ui.storage.InMemoryStatsStorage;
+import org.junit.Test;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestLayerProfilingListener {
+
+    @Test
+    public void testLayerProfiling() throws Exception {
+        DataSet ds = new IrisDataSetIterator(150, 150).next();
+
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .iterations(1).optimizationAlgo(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT)
+                .list()
+                .layer(0, new DenseLayer.Builder().nIn(4).nOut(5).build())
+                .layer(1, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(5).nOut(3).build())
+                .pretrain(false).backprop(true)
+                .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        File csv = File.createTempFile("layerProfiling", ".csv");
+        csv.delete();
+        csv.deleteOnExit();
+
+        StatsStorage ss = new InMemoryStatsStorage();
+        net.setListeners(new LayerProfilingListener(ss, 2, csv));
+
+        for (int i = 0; i < 4; i++) {
+            net.fit(ds);
+        }
+
+        //Iterations 0 and 2 should be profiled
+        String sessionID = ss.listSessionIDs().get(0);
+        String workerID = ss.listWorkerIDsForSession(sessionID).get(0);
+        List<Persistable> updates = ss.getAllUpdatesAfter(sessionID, LayerProfilingPersistable.TYPE_ID, workerID, 0);
+        assertEquals(2, updates.size());
+
+        int nPhases = LayerTrainingListener.Phase.values().length;
+        for (Persistable p : updates) {
+            LayerProfilingPersistable lp = (LayerProfilingPersistable) p;
+            assertArrayEquals(new String[]{"0", "1"}, lp.getLayerNames());
+            for (int i = 0; i < 2; i++) {
+                assertEquals(nPhases, lp.getDurationNanos()[i].length);
+                assertTrue(lp.getDurationNanos()[i][LayerTrainingListener.Phase.BACKWARD.ordinal()] > 0);
+                assertTrue(lp.getDurationNanos()[i][LayerTrainingListener.Phase.UPDATE.ordinal()] > 0);
+            }
+            //Output layer forward pass is part of backprop
+            assertTrue(lp.getDurationNanos()[0][LayerTrainingListener.Phase.FORWARD.ordinal()] > 0);
+
+            if (lp.getOffHeapCounts() != null) {
+                assertEquals(2, lp.getOffHeapCounts().length);
+                assertEquals(nPhases, lp.getOffHeapCounts()[0].length);
+            }
+
+            LayerProfilingPersistable decoded = new LayerProfilingPersistable();
+            decoded.decode(lp.encode());
+            assertEquals(lp, decoded);
+        }
+
+        List<String> lines = Files.readAllLines(csv.toPath(), StandardCharsets.UTF_8);
+        assertEquals(LayerProfilingListener.CSV_HEADER, lines.get(0));
+        assertEquals(1 + 2 * 2, lines.size());
+        assertEquals(LayerProfilingListener.CSV_HEADER.split(",").length, lines.get(1).split(",").length);
+        assertEquals(15, lines.get(1).split(",").length);
+    }
+}